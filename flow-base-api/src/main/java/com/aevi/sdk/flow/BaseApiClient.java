@@ -22,6 +22,7 @@ import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.os.Build;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.aevi.android.rxmessenger.ChannelClient;
 import com.aevi.android.rxmessenger.Channels;
@@ -32,24 +33,40 @@ import com.aevi.sdk.flow.constants.AppMessageTypes;
 import com.aevi.sdk.flow.constants.ErrorConstants;
 import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.Device;
+import com.aevi.sdk.flow.model.DeviceListDiff;
 import com.aevi.sdk.flow.model.FlowEvent;
 import com.aevi.sdk.flow.model.FlowException;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.model.Request;
 import com.aevi.sdk.flow.model.Response;
+import com.aevi.sdk.flow.model.ResponsePage;
 import com.aevi.sdk.flow.model.ResponseQuery;
 import com.aevi.sdk.flow.model.config.AppFlowSettings;
+import com.aevi.sdk.flow.util.ChannelPool;
+import com.aevi.sdk.flow.util.CorrelatedChannel;
+import com.aevi.sdk.flow.util.DeviceRegistry;
+import com.aevi.sdk.flow.util.FlowEventPipeline;
+import com.aevi.sdk.flow.util.ResponseJournal;
+import com.aevi.sdk.flow.util.ResponsePager;
+import com.aevi.sdk.flow.util.ServiceInstallState;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.ObservableSource;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import org.reactivestreams.Publisher;
 
 import static com.aevi.android.rxmessenger.MessageConstants.*;
 import static com.aevi.sdk.flow.constants.AppMessageTypes.*;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.SUPPORTS_MULTIPLEXING;
 import static com.aevi.sdk.flow.constants.ResponseMechanisms.*;
 
 /**
@@ -71,9 +88,16 @@ public abstract class BaseApiClient {
     protected static final FlowException NO_FPS_EXCEPTION =
             new FlowException(ErrorConstants.PROCESSING_SERVICE_NOT_INSTALLED, "Processing service is not installed");
 
+    private static volatile ChannelPool channelPool;
+    private static final ServiceInstallState PROCESSING_SERVICE_STATE =
+            new ServiceInstallState(FLOW_PROCESSING_SERVICE, new ProcessingServiceLookup());
+    private static volatile Context processingServiceContext;
+
     private final InternalData internalData;
     protected final Context context;
     private String commsChannel;
+    private volatile FlowEventPipeline eventPipeline;
+    private volatile DeviceRegistry deviceRegistry;
 
     protected BaseApiClient(String apiVersion, Context context) {
         internalData = new InternalData(apiVersion);
@@ -97,102 +121,367 @@ public abstract class BaseApiClient {
         return internalData;
     }
 
+    /**
+     * Keep connections to the processing service open after a call has completed, so that they can be reused by subsequent calls from any client
+     * in this process.
+     *
+     * Connections are closed after they have been idle for the given timeout. Connections are only reused once the processing service has
+     * advertised that it multiplexes calls over a connection, in the internal data of a message it sent to this application - until then, and
+     * with processing services that do not, each call still uses a connection of its own.
+     *
+     * @param idleTimeout The time after which an idle connection is closed
+     * @param unit        The unit of the timeout
+     */
+    public static void enableConnectionPooling(long idleTimeout, TimeUnit unit) {
+        ChannelPool previous = channelPool;
+        channelPool = new ChannelPool(idleTimeout, unit, Schedulers.computation());
+        if (previous != null) {
+            previous.clear();
+        }
+    }
+
+    /**
+     * Stop reusing connections to the processing service, and close any idle connections.
+     */
+    public static void disableConnectionPooling() {
+        ChannelPool previous = channelPool;
+        channelPool = null;
+        if (previous != null) {
+            previous.clear();
+        }
+    }
+
+    /**
+     * Send a message to a component, closing the connection or returning it to the connection pool once the exchange has finished.
+     *
+     * Connections are only pooled if the processing service has advertised that it multiplexes exchanges over a connection, as it otherwise
+     * handles one message per connection.
+     *
+     * @param componentName The component to send the message to
+     * @param appMessage    The message
+     * @return The stream of responses
+     */
+    protected Observable<String> sendMessage(ComponentName componentName, AppMessage appMessage) {
+        if (channelPool == null || !isMultiplexingSupported()) {
+            final ChannelClient messenger = getMessengerClient(componentName);
+            return messenger
+                    .sendMessage(appMessage.toJson())
+                    .doFinally(messenger::closeConnection);
+        }
+        return sendExchanges(componentName, channel -> CorrelatedChannel.replies(channel.send(appMessage)));
+    }
+
+    /**
+     * Send messages as correlated exchanges over one connection, which is closed or returned to the connection pool once they have finished.
+     */
+    private <T> Observable<T> sendExchanges(ComponentName componentName, Function<CorrelatedChannel, Observable<T>> exchanges) {
+        final ChannelPool pool = channelPool;
+        return Observable.defer(() -> {
+            if (pool == null) {
+                final ChannelClient messenger = getMessengerClient(componentName);
+                return exchanges.apply(new CorrelatedChannel(messenger)).doFinally(messenger::closeConnection);
+            }
+            // pooled connections may outlive the context of this client, which may be an activity
+            final ChannelPool.Lease lease = pool.acquire(componentName, name -> getMessengerClient(getApplicationContext(context), name));
+            final CorrelatedChannel channel = new CorrelatedChannel(lease.getClient());
+            return exchanges.apply(channel).doFinally(() -> {
+                onProcessingServiceInternalData(channel.getPeerInternalData());
+                if (channel.isMultiplexingAdvertised()) {
+                    lease.markMultiplexed();
+                }
+                lease.release();
+            });
+        });
+    }
+
+    private boolean isMultiplexingSupported() {
+        return PROCESSING_SERVICE_STATE.isAdvertised(SUPPORTS_MULTIPLEXING);
+    }
+
     @NonNull
     public Completable initiateRequest(final Request request) {
         return doSendRequest(request, REQUEST_MESSAGE);
     }
 
     public Completable sendEvent(final FlowEvent flowEvent) {
+        FlowEventPipeline pipeline = eventPipeline;
+        if (pipeline != null) {
+            return pipeline.submit(flowEvent);
+        }
+        return doSendRequest(createEventRequest(flowEvent), FLOW_EVENT);
+    }
+
+    /**
+     * Collect events sent via {@link #sendEvent(FlowEvent)} over the given window and send them together.
+     *
+     * Events of the given coalesced types replace any earlier event of the same type and target that is still waiting to be sent.
+     *
+     * @param window              The time to collect events for
+     * @param unit                The unit of the window
+     * @param coalescedEventTypes The event types where only the latest event is of interest
+     */
+    public void enableEventBatching(long window, TimeUnit unit, String... coalescedEventTypes) {
+        eventPipeline = new FlowEventPipeline(this::sendEvents, window, unit, Schedulers.computation(), FlowEventPipeline.DEFAULT_CAPACITY,
+                                              coalescedEventTypes);
+    }
+
+    /**
+     * Send events immediately again, after sending any events that are waiting to be sent.
+     */
+    public void disableEventBatching() {
+        FlowEventPipeline pipeline = eventPipeline;
+        eventPipeline = null;
+        if (pipeline != null) {
+            pipeline.flush();
+        }
+    }
+
+    /**
+     * Keep a local journal of the responses received by the listener services of this application, and answer response queries from it where
+     * possible.
+     *
+     * Queries are answered from the journal if they are for a request id that has been journaled. All other queries are sent to the processing
+     * service, as they may match responses that were never received by a listener service. The journal is kept until
+     * {@link #disableResponseJournal()} is called.
+     *
+     * @param maxSize The maximum size of the journal in bytes, after which the oldest responses are evicted
+     * @return True if the journal was enabled
+     */
+    public boolean enableResponseJournal(long maxSize) {
+        return ResponseJournal.enable(context, maxSize);
+    }
+
+    /**
+     * Stop journaling responses and delete all journaled responses.
+     */
+    public void disableResponseJournal() {
+        ResponseJournal.disable(context);
+    }
+
+    /**
+     * Get the JSON of the responses matching the query from the local response journal if the journal holds all such responses, or else from
+     * the processing service.
+     *
+     * The journal is opened and checked on an I/O thread, as it may have to be loaded from disk.
+     *
+     * @param responseQuery The query, with its response type set
+     * @param fromService   The query of the processing service, which is only subscribed to if the journal can not answer the query
+     * @return An observable stream of the responses as JSON
+     */
+    protected Observable<String> queryResponseJournal(final ResponseQuery responseQuery, final Observable<String> fromService) {
+        return Maybe.fromCallable(() -> {
+            ResponseJournal journal = ResponseJournal.getIfEnabled(context);
+            return journal != null && journal.covers(responseQuery) ? Observable.fromIterable(journal.query(responseQuery)) : null;
+        })
+                .subscribeOn(Schedulers.io())
+                .defaultIfEmpty(fromService)
+                .flatMapObservable(responses -> responses);
+    }
+
+    private Completable sendEvents(List<FlowEvent> flowEvents) {
+        if (flowEvents.size() == 1 || !isMultiplexingSupported()) {
+            List<Completable> sends = new ArrayList<>(flowEvents.size());
+            for (FlowEvent flowEvent : flowEvents) {
+                sends.add(doSendRequest(createEventRequest(flowEvent), FLOW_EVENT));
+            }
+            return Completable.merge(sends);
+        }
+        if (!isProcessingServiceInstalled(context)) {
+            return Completable.error(NO_FPS_EXCEPTION);
+        }
+        final List<AppMessage> appMessages = new ArrayList<>(flowEvents.size());
+        for (FlowEvent flowEvent : flowEvents) {
+            AppMessage appMessage = new AppMessage(FLOW_EVENT, createEventRequest(flowEvent).toJson(), getInternalData());
+            appMessage.setResponseMechanism(RESPONSE_SERVICE);
+            appMessages.add(appMessage);
+        }
+        // Each event is an exchange of its own, all sent over the same connection
+        return sendExchanges(FLOW_PROCESSING_SERVICE_COMPONENT, channel -> {
+            List<Completable> sends = new ArrayList<>(appMessages.size());
+            for (AppMessage appMessage : appMessages) {
+                sends.add(CorrelatedChannel.accepted(channel.send(appMessage)));
+            }
+            return Completable.merge(sends).toObservable();
+        })
+                .ignoreElements()
+                .onErrorResumeNext(throwable -> Completable.error(createFlowException(throwable)));
+    }
+
+    private static Request createEventRequest(FlowEvent flowEvent) {
         Request request = new Request(FLOW_EVENT);
         request.getRequestData().addData(FLOW_EVENT, flowEvent);
         request.setProcessInBackground(true); // events always processed in background (service receiving event may still be in the foreground)
-        return doSendRequest(request, FLOW_EVENT);
+        return request;
+    }
+
+    /**
+     * Initiate processing of a batch of requests, sent to the processing service in a single message.
+     *
+     * @param requests The requests
+     * @return Completable that represents the acceptance of all the requests
+     */
+    @NonNull
+    public Completable initiateRequests(final List<Request> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return Completable.error(new IllegalArgumentException("At least one request must be provided"));
+        }
+        if (!isMultiplexingSupported()) {
+            // The processing service does not understand batches, so the requests are sent one by one
+            List<Completable> sends = new ArrayList<>(requests.size());
+            for (Request request : requests) {
+                sends.add(doSendRequest(request, REQUEST_MESSAGE));
+            }
+            return Completable.merge(sends);
+        }
+        if (!isProcessingServiceInstalled(context)) {
+            return Completable.error(NO_FPS_EXCEPTION);
+        }
+        StringBuilder batch = new StringBuilder("[");
+        for (Request request : requests) {
+            if (batch.length() > 1) {
+                batch.append(',');
+            }
+            batch.append(request.toJson());
+        }
+        batch.append(']');
+        AppMessage appMessage = new AppMessage(BATCH_REQUEST_MESSAGE, batch.toString(), getInternalData());
+        appMessage.setResponseMechanism(RESPONSE_SERVICE);
+        final int batchSize = requests.size();
+        return sendExchanges(FLOW_PROCESSING_SERVICE_COMPONENT,
+                             channel -> CorrelatedChannel.batchAccepted(channel.send(appMessage), batchSize).toObservable())
+                .ignoreElements()
+                .onErrorResumeNext(throwable -> Completable.error(createFlowException(throwable)));
     }
 
     private Completable doSendRequest(final Request request, String appMessageType) {
         if (!isProcessingServiceInstalled(context)) {
             return Completable.error(NO_FPS_EXCEPTION);
         }
-        final ChannelClient requestMessenger = getMessengerClient(FLOW_PROCESSING_SERVICE_COMPONENT);
         AppMessage appMessage = new AppMessage(appMessageType, request.toJson(), getInternalData());
         appMessage.setResponseMechanism(RESPONSE_SERVICE);
-        return requestMessenger
-                .sendMessage(appMessage.toJson())
+        return sendMessage(FLOW_PROCESSING_SERVICE_COMPONENT, appMessage)
                 .singleOrError()
                 .ignoreElement()
-                .doFinally(requestMessenger::closeConnection)
                 .onErrorResumeNext(throwable -> Completable.error(createFlowException(throwable)));
     }
 
     @NonNull
     public Observable<Response> queryResponses(@NonNull ResponseQuery responseQuery) {
-        if (!isProcessingServiceInstalled(context)) {
-            return Observable.error(NO_FPS_EXCEPTION);
-        }
-
         responseQuery.setResponseType(Response.class.getName());
 
-        final ChannelClient paymentInfoMessenger = getMessengerClient(INFO_PROVIDER_SERVICE_COMPONENT);
-        AppMessage appMessage = new AppMessage(AppMessageTypes.RESPONSES_REQUEST, responseQuery.toJson(), getInternalData());
-        return paymentInfoMessenger
-                .sendMessage(appMessage.toJson())
+        Observable<String> fromService = Observable.defer(() -> {
+            if (!isProcessingServiceInstalled(context)) {
+                return Observable.error(NO_FPS_EXCEPTION);
+            }
+            AppMessage appMessage = new AppMessage(AppMessageTypes.RESPONSES_REQUEST, responseQuery.toJson(), getInternalData());
+            return sendMessage(INFO_PROVIDER_SERVICE_COMPONENT, appMessage);
+        });
+        return queryResponseJournal(responseQuery, fromService)
                 .map(Response::fromJson)
-                .doFinally(paymentInfoMessenger::closeConnection)
                 .onErrorResumeNext((Function<Throwable, ObservableSource<? extends Response>>) throwable -> Observable
                         .error(createFlowException(throwable)));
     }
 
+    /**
+     * Query for responses a page at a time, fetching each page as the previous one has been consumed.
+     *
+     * This requires a processing service that supports paged queries.
+     *
+     * @param responseQuery The query, with the page size to use
+     * @return A Flowable stream of responses
+     */
+    @NonNull
+    public Flowable<Response> queryResponsesPaged(@NonNull ResponseQuery responseQuery) {
+        responseQuery.setResponseType(Response.class.getName());
+        return queryResponsePages(responseQuery, Response::fromJson);
+    }
+
+    protected <T> Flowable<T> queryResponsePages(final ResponseQuery responseQuery, Function<String, T> responseMapper) {
+        if (!isProcessingServiceInstalled(context)) {
+            return Flowable.error(NO_FPS_EXCEPTION);
+        }
+        Flowable<T> responses = ResponsePager.stream(continuationToken -> Single.defer(() -> {
+            ResponseQuery pageQuery = responseQuery.withContinuationToken(continuationToken);
+            AppMessage appMessage = new AppMessage(RESPONSES_PAGE_REQUEST, pageQuery.toJson(), getInternalData());
+            return sendMessage(INFO_PROVIDER_SERVICE_COMPONENT, appMessage)
+                    .singleOrError()
+                    .map(ResponsePage::fromJson);
+        })).map(responseMapper);
+        if (responseQuery.getMaxResults() > 0) {
+            responses = responses.take(responseQuery.getMaxResults());
+        }
+        return responses.onErrorResumeNext((Function<Throwable, Publisher<? extends T>>) throwable -> Flowable.error(createFlowException(throwable)));
+    }
+
     protected Single<Response> initiateRequestDirect(final Request request) {
         if (!isProcessingServiceInstalled(context)) {
             return Single.error(NO_FPS_EXCEPTION);
         }
-        final ChannelClient requestMessenger = getMessengerClient(FLOW_PROCESSING_SERVICE_COMPONENT);
         AppMessage appMessage = new AppMessage(REQUEST_MESSAGE, request.toJson(), getInternalData());
         appMessage.setResponseMechanism(MESSENGER_CONNECTION);
-        return requestMessenger
-                .sendMessage(appMessage.toJson())
+        return sendMessage(FLOW_PROCESSING_SERVICE_COMPONENT, appMessage)
                 .singleOrError()
                 .map(json -> {
                     Response response = Response.fromJson(json);
                     response.setOriginatingRequest(request);
                     return response;
                 })
-                .doFinally(requestMessenger::closeConnection)
                 .onErrorResumeNext(throwable -> Single.error(createFlowException(throwable)));
     }
 
     @NonNull
     public Single<List<Device>> getDevices() {
+        DeviceRegistry registry = deviceRegistry;
+        List<Device> cached = registry != null ? registry.getCachedDevices() : null;
+        if (cached != null) {
+            return Single.just(cached);
+        }
+        return fetchDevices();
+    }
+
+    private Single<List<Device>> fetchDevices() {
         if (!isProcessingServiceInstalled(context)) {
             return Single.error(NO_FPS_EXCEPTION);
         }
-        final ChannelClient deviceMessenger = getMessengerClient(INFO_PROVIDER_SERVICE_COMPONENT);
         AppMessage appMessage = new AppMessage(DEVICE_INFO_REQUEST, getInternalData());
-        return deviceMessenger
-                .sendMessage(appMessage.toJson())
+        return sendMessage(INFO_PROVIDER_SERVICE_COMPONENT, appMessage)
                 .map(Device::fromJson)
                 .toList()
-                .doFinally(deviceMessenger::closeConnection)
                 .onErrorResumeNext(throwable -> Single.error(createFlowException(throwable)));
     }
 
+    @NonNull
+    public Observable<DeviceListDiff> subscribeToDeviceChanges() {
+        DeviceRegistry registry = deviceRegistry;
+        if (registry == null) {
+            synchronized (this) {
+                if (deviceRegistry == null) {
+                    deviceRegistry = new DeviceRegistry(Observable.defer(this::subscribeToSystemEvents), Single.defer(this::fetchDevices));
+                }
+                registry = deviceRegistry;
+            }
+        }
+        return registry.observeChanges();
+    }
+
     @NonNull
     public Observable<FlowEvent> subscribeToSystemEvents() {
         if (!isProcessingServiceInstalled(context)) {
             return Observable.error(NO_FPS_EXCEPTION);
         }
-        final ChannelClient deviceMessenger = getMessengerClient(SYSTEM_EVENT_SERVICE_COMPONENT);
         AppMessage appMessage = new AppMessage(REQUEST_MESSAGE, getInternalData());
-        return deviceMessenger
-                .sendMessage(appMessage.toJson())
+        return sendMessage(SYSTEM_EVENT_SERVICE_COMPONENT, appMessage)
                 .map(FlowEvent::fromJson)
-                .doFinally(deviceMessenger::closeConnection)
                 .onErrorResumeNext(throwable -> {
                     return Observable.error(createFlowException(throwable));
                 });
     }
 
     protected ChannelClient getMessengerClient(ComponentName componentName) {
+        return getMessengerClient(context, componentName);
+    }
+
+    protected ChannelClient getMessengerClient(Context context, ComponentName componentName) {
         switch (commsChannel) {
             case CHANNEL_WEBSOCKET:
                 return Channels.webSocket(context, componentName);
@@ -226,19 +515,75 @@ public abstract class BaseApiClient {
         return intent;
     }
 
+    /**
+     * Check whether the processing service is installed.
+     *
+     * The result is cached, and only checked again after the processing service package has been installed, updated or removed.
+     *
+     * @param context The Android context
+     * @return True if the processing service is installed
+     */
     public static boolean isProcessingServiceInstalled(Context context) {
-        PackageManager packageManager = context.getPackageManager();
-        List<ResolveInfo> resolveInfo = packageManager
-                .queryIntentServices(getIntent(FLOW_PROCESSING_SERVICE_COMPONENT), PackageManager.MATCH_DEFAULT_ONLY);
-        return resolveInfo.size() == 1 && resolveInfo.get(0).serviceInfo != null;
+        return getProcessingServiceState(context).isInstalled();
     }
 
+    /**
+     * Get the version of the processing service.
+     *
+     * The result is cached, and only checked again after the processing service package has been installed, updated or removed.
+     *
+     * @param context The Android context
+     * @return The processing service version, or "0.0.0" if it is not installed
+     */
     @NonNull
     public static String getProcessingServiceVersion(Context context) {
-        try {
-            return context.getPackageManager().getPackageInfo(FLOW_PROCESSING_SERVICE, 0).versionName;
-        } catch (PackageManager.NameNotFoundException e) {
-            return "0.0.0";
+        return getProcessingServiceState(context).getVersion();
+    }
+
+    /**
+     * Record the capabilities the processing service advertises in the internal data of a message it sent to this application.
+     *
+     * This is called by the services of this API for the messages they receive, and is not intended to be called by applications.
+     *
+     * @param internalData The internal data of the message, which is ignored unless it was sent by the processing service
+     */
+    public static void onProcessingServiceInternalData(@Nullable InternalData internalData) {
+        PROCESSING_SERVICE_STATE.onInternalDataReceived(internalData);
+    }
+
+    private static Context getApplicationContext(Context context) {
+        return context.getApplicationContext() != null ? context.getApplicationContext() : context;
+    }
+
+    private static synchronized ServiceInstallState getProcessingServiceState(Context context) {
+        Context applicationContext = getApplicationContext(context);
+        if (processingServiceContext != applicationContext) {
+            // any receiver registered with the previous context is unregistered
+            PROCESSING_SERVICE_STATE.registerForPackageChanges(applicationContext);
+            processingServiceContext = applicationContext;
+        }
+        return PROCESSING_SERVICE_STATE;
+    }
+
+    private static class ProcessingServiceLookup implements ServiceInstallState.Lookup {
+
+        // the state is only looked up via getProcessingServiceState(), which sets the context first
+
+        @Override
+        public boolean isInstalled() {
+            PackageManager packageManager = processingServiceContext.getPackageManager();
+            List<ResolveInfo> resolveInfo = packageManager
+                    .queryIntentServices(getIntent(FLOW_PROCESSING_SERVICE_COMPONENT), PackageManager.MATCH_DEFAULT_ONLY);
+            return resolveInfo.size() == 1 && resolveInfo.get(0).serviceInfo != null;
+        }
+
+        @Override
+        public String getVersion() {
+            try {
+                return processingServiceContext.getPackageManager().getPackageInfo(FLOW_PROCESSING_SERVICE, 0).versionName;
+            } catch (PackageManager.NameNotFoundException e) {
+                return "0.0.0";
+            }
         }
     }
 }
@@ -0,0 +1,439 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.codec;
+
+import android.support.annotation.NonNull;
+import com.aevi.sdk.flow.model.AppMessage;
+import com.aevi.sdk.flow.util.JsonScanner;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary message codec.
+ *
+ * The message data and internal data are tokenised rather than sent as JSON text. Strings are length-prefixed, integral numbers (such as
+ * amounts) are written as zigzag varints and object keys and short string values are written once per message and then referenced by index
+ * from a string table. Decoding re-creates equivalent (but not necessarily byte-identical) JSON.
+ *
+ * As channels only carry strings, the bytes of the encoding are packed seven bits at a time into ASCII chars, so that the encoded string does not
+ * grow when the transport itself encodes it as UTF-8.
+ *
+ * This is an internal class not intended to be used directly by external applications. No guarantees are made of backwards compatibility and the
+ * class may be removed without any warning.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+
+    public static final String NAME = "binary2";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final char MAGIC = '~';
+    private static final char FORMAT_VERSION = '2';
+    private static final int HEADER_LENGTH = 2;
+    private static final int MAX_TABLE_STRING_LENGTH = 64;
+
+    private static final int TOKEN_NULL = 0;
+    private static final int TOKEN_TRUE = 1;
+    private static final int TOKEN_FALSE = 2;
+    private static final int TOKEN_LONG = 3;
+    private static final int TOKEN_NUMBER = 4;
+    private static final int TOKEN_STRING = 5;
+    private static final int TOKEN_STRING_DEFINE = 6;
+    private static final int TOKEN_STRING_REFERENCE = 7;
+    private static final int TOKEN_BEGIN_OBJECT = 8;
+    private static final int TOKEN_BEGIN_ARRAY = 9;
+    private static final int TOKEN_END = 10;
+
+    @NonNull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @NonNull
+    @Override
+    public String encode(@NonNull AppMessage appMessage) {
+        try {
+            return encode(appMessage, true);
+        } catch (IOException | RuntimeException e) {
+            // The message data claims to be JSON but is not well-formed, so send it as-is
+            try {
+                return encode(appMessage, false);
+            } catch (IOException ioe) {
+                throw new IllegalStateException("Failed to encode message", ioe);
+            }
+        }
+    }
+
+    private String encode(AppMessage appMessage, boolean tokeniseMessageData) throws IOException {
+        Encoder encoder = new Encoder(appMessage.getMessageData().length() / 2 + 64);
+        encoder.writeString(appMessage.getMessageType());
+        encoder.writeString(appMessage.getResponseMechanism());
+        encoder.writeData(appMessage.getMessageData(), tokeniseMessageData);
+        encoder.writeData(appMessage.getInternalDataJson(), true);
+        if (appMessage.getCorrelationId() != null) {
+            // Optional trailing field
+            encoder.writeString(appMessage.getCorrelationId());
+        }
+        return encoder.toEncodedString();
+    }
+
+    @Override
+    public boolean canDecode(@NonNull String encoded) {
+        return encoded.length() > 1 && encoded.charAt(0) == MAGIC && encoded.charAt(1) == FORMAT_VERSION;
+    }
+
+    @NonNull
+    @Override
+    public AppMessage decode(@NonNull String encoded) {
+        if (!canDecode(encoded)) {
+            throw new IllegalArgumentException("Not a binary encoded message");
+        }
+        Decoder decoder = new Decoder(unpack(encoded));
+        try {
+            String messageType = decoder.readString();
+            String responseMechanism = decoder.readString();
+            String messageData = decoder.readData();
+            String internalData = decoder.readData();
+            AppMessage appMessage = AppMessage.fromParts(messageType, messageData, responseMechanism, internalData);
+            if (decoder.hasRemaining()) {
+                appMessage.setCorrelationId(decoder.readString());
+            }
+            return appMessage;
+        } catch (IOException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed binary message", e);
+        }
+    }
+
+    private static byte[] unpack(String encoded) {
+        // the padding of the last char is always less than a byte, so this is the exact number of encoded bytes
+        byte[] bytes = new byte[(encoded.length() - HEADER_LENGTH) * 7 / 8];
+        int count = 0;
+        int bits = 0;
+        int pending = 0;
+        for (int i = HEADER_LENGTH; i < encoded.length() && count < bytes.length; i++) {
+            char c = encoded.charAt(i);
+            if (c > 0x7F) {
+                throw new IllegalArgumentException("Malformed binary message");
+            }
+            pending = (pending << 7) | c;
+            bits += 7;
+            if (bits >= 8) {
+                bits -= 8;
+                bytes[count++] = (byte) (pending >>> bits);
+                pending &= (1 << bits) - 1;
+            }
+        }
+        return bytes;
+    }
+
+    private static final class Encoder {
+
+        private final Map<String, Integer> stringTable = new HashMap<>();
+        private byte[] buffer;
+        private int size;
+
+        Encoder(int initialCapacity) {
+            buffer = new byte[initialCapacity];
+        }
+
+        void writeData(String data, boolean tokenise) throws IOException {
+            if (data == null) {
+                writeByte(TOKEN_NULL);
+            } else if (tokenise && JsonScanner.looksLikeStructure(data)) {
+                JsonReader reader = new JsonReader(new StringReader(data));
+                writeValue(reader);
+                if (reader.peek() != JsonToken.END_DOCUMENT) {
+                    throw new IOException("Unexpected data after JSON value");
+                }
+            } else {
+                // Top level strings are always raw (non JSON) data
+                writeByte(TOKEN_STRING);
+                writeUtf8(data);
+            }
+        }
+
+        private void writeValue(JsonReader reader) throws IOException {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    writeByte(TOKEN_BEGIN_OBJECT);
+                    while (reader.hasNext()) {
+                        writeString(reader.nextName());
+                        writeValue(reader);
+                    }
+                    reader.endObject();
+                    writeByte(TOKEN_END);
+                    break;
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    writeByte(TOKEN_BEGIN_ARRAY);
+                    while (reader.hasNext()) {
+                        writeValue(reader);
+                    }
+                    reader.endArray();
+                    writeByte(TOKEN_END);
+                    break;
+                case STRING:
+                    writeString(reader.nextString());
+                    break;
+                case NUMBER:
+                    writeNumber(reader.nextString());
+                    break;
+                case BOOLEAN:
+                    writeByte(reader.nextBoolean() ? TOKEN_TRUE : TOKEN_FALSE);
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    writeByte(TOKEN_NULL);
+                    break;
+                default:
+                    throw new IOException("Unexpected JSON token: " + reader.peek());
+            }
+        }
+
+        private void writeNumber(String number) {
+            if (isInteger(number)) {
+                try {
+                    long value = Long.parseLong(number);
+                    writeByte(TOKEN_LONG);
+                    writeVarLong(zigzag(value));
+                    return;
+                } catch (NumberFormatException e) {
+                    // Too large for a long, fall through and keep as is
+                }
+            }
+            writeByte(TOKEN_NUMBER);
+            writeUtf8(number);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeByte(TOKEN_NULL);
+                return;
+            }
+            if (value.length() > MAX_TABLE_STRING_LENGTH) {
+                writeByte(TOKEN_STRING);
+                writeUtf8(value);
+                return;
+            }
+            Integer index = stringTable.get(value);
+            if (index != null) {
+                writeByte(TOKEN_STRING_REFERENCE);
+                writeVarLong(index);
+            } else {
+                stringTable.put(value, stringTable.size());
+                writeByte(TOKEN_STRING_DEFINE);
+                writeUtf8(value);
+            }
+        }
+
+        private void writeUtf8(String value) {
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                byte[] grown = new byte[Math.max(buffer.length * 2, size + extra)];
+                System.arraycopy(buffer, 0, grown, 0, size);
+                buffer = grown;
+            }
+        }
+
+        String toEncodedString() {
+            StringBuilder encoded = new StringBuilder(HEADER_LENGTH + (size * 8 + 6) / 7);
+            encoded.append(MAGIC).append(FORMAT_VERSION);
+            int bits = 0;
+            int pending = 0;
+            for (int i = 0; i < size; i++) {
+                pending = (pending << 8) | (buffer[i] & 0xFF);
+                bits += 8;
+                while (bits >= 7) {
+                    bits -= 7;
+                    encoded.append((char) ((pending >>> bits) & 0x7F));
+                }
+                pending &= (1 << bits) - 1;
+            }
+            if (bits > 0) {
+                encoded.append((char) ((pending << (7 - bits)) & 0x7F));
+            }
+            return encoded.toString();
+        }
+
+        private static boolean isInteger(String number) {
+            // Only canonical integers, so that decoding reproduces the same number
+            int length = number.length();
+            int start = length > 0 && number.charAt(0) == '-' ? 1 : 0;
+            if (start == length || (number.charAt(start) == '0' && (length > start + 1 || start == 1))) {
+                return false;
+            }
+            for (int i = start; i < length; i++) {
+                char c = number.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    private static final class Decoder {
+
+        private final List<String> stringTable = new ArrayList<>();
+        private final byte[] buffer;
+        private int pos;
+
+        Decoder(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean hasRemaining() {
+            return pos < buffer.length;
+        }
+
+        String readString() throws IOException {
+            return readString(buffer[pos++]);
+        }
+
+        private String readString(int token) throws IOException {
+            switch (token) {
+                case TOKEN_NULL:
+                    return null;
+                case TOKEN_STRING:
+                    return readUtf8();
+                case TOKEN_STRING_DEFINE:
+                    String value = readUtf8();
+                    stringTable.add(value);
+                    return value;
+                case TOKEN_STRING_REFERENCE:
+                    return stringTable.get((int) readVarLong());
+                default:
+                    throw new IOException("Expected string but found token: " + token);
+            }
+        }
+
+        String readData() throws IOException {
+            int token = buffer[pos];
+            if (token == TOKEN_NULL || token == TOKEN_STRING) {
+                pos++;
+                return readString(token);
+            }
+            StringWriter stringWriter = new StringWriter();
+            JsonWriter writer = new JsonWriter(stringWriter);
+            writer.setSerializeNulls(true);
+            readValue(writer, buffer[pos++]);
+            writer.flush();
+            return stringWriter.toString();
+        }
+
+        private void readValue(JsonWriter writer, int token) throws IOException {
+            switch (token) {
+                case TOKEN_NULL:
+                    writer.nullValue();
+                    break;
+                case TOKEN_TRUE:
+                    writer.value(true);
+                    break;
+                case TOKEN_FALSE:
+                    writer.value(false);
+                    break;
+                case TOKEN_LONG:
+                    long raw = readVarLong();
+                    writer.value((raw >>> 1) ^ -(raw & 1));
+                    break;
+                case TOKEN_NUMBER:
+                    writer.jsonValue(readUtf8());
+                    break;
+                case TOKEN_STRING:
+                case TOKEN_STRING_DEFINE:
+                case TOKEN_STRING_REFERENCE:
+                    writer.value(readString(token));
+                    break;
+                case TOKEN_BEGIN_OBJECT:
+                    writer.beginObject();
+                    int keyToken;
+                    while ((keyToken = buffer[pos++]) != TOKEN_END) {
+                        writer.name(readString(keyToken));
+                        readValue(writer, buffer[pos++]);
+                    }
+                    writer.endObject();
+                    break;
+                case TOKEN_BEGIN_ARRAY:
+                    writer.beginArray();
+                    int valueToken;
+                    while ((valueToken = buffer[pos++]) != TOKEN_END) {
+                        readValue(writer, valueToken);
+                    }
+                    writer.endArray();
+                    break;
+                default:
+                    throw new IOException("Unexpected token: " + token);
+            }
+        }
+
+        private String readUtf8() {
+            int length = (int) readVarLong();
+            if (length < 0 || pos + length > buffer.length) {
+                throw new IndexOutOfBoundsException("String length out of bounds: " + length);
+            }
+            String value = new String(buffer, pos, length, UTF_8);
+            pos += length;
+            return value;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.codec;
+
+import android.support.annotation.NonNull;
+import com.aevi.sdk.flow.model.AppMessage;
+
+/**
+ * The JSON message codec, which all API versions support.
+ *
+ * This is an internal class not intended to be used directly by external applications. No guarantees are made of backwards compatibility and the
+ * class may be removed without any warning.
+ */
+public class JsonMessageCodec implements MessageCodec {
+
+    public static final String NAME = "json";
+
+    private final boolean nestedEnvelope;
+
+    /**
+     * @param nestedEnvelope True to encode using the nested envelope format, see {@link AppMessage#toJson(boolean)}
+     */
+    public JsonMessageCodec(boolean nestedEnvelope) {
+        this.nestedEnvelope = nestedEnvelope;
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @NonNull
+    @Override
+    public String encode(@NonNull AppMessage appMessage) {
+        return appMessage.toJson(nestedEnvelope);
+    }
+
+    @Override
+    public boolean canDecode(@NonNull String encoded) {
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '{';
+            }
+        }
+        return false;
+    }
+
+    @NonNull
+    @Override
+    public AppMessage decode(@NonNull String encoded) {
+        return AppMessage.fromJson(encoded);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.codec;
+
+import android.support.annotation.NonNull;
+import com.aevi.sdk.flow.model.AppMessage;
+
+/**
+ * Encodes and decodes {@link AppMessage} instances for sending over a channel.
+ *
+ * Channels only carry strings, so every codec must produce a string representation of the message, even if it is not text based.
+ *
+ * This is an internal class not intended to be used directly by external applications. No guarantees are made of backwards compatibility and the
+ * class may be removed without any warning.
+ */
+public interface MessageCodec {
+
+    /**
+     * Get the name of this codec, as advertised to peers.
+     *
+     * @return The codec name
+     */
+    @NonNull
+    String getName();
+
+    /**
+     * Encode a message.
+     *
+     * @param appMessage The message to encode
+     * @return The encoded message
+     */
+    @NonNull
+    String encode(@NonNull AppMessage appMessage);
+
+    /**
+     * Check whether the given encoded message was produced by this codec.
+     *
+     * @param encoded The encoded message
+     * @return True if this codec can decode the message
+     */
+    boolean canDecode(@NonNull String encoded);
+
+    /**
+     * Decode a message.
+     *
+     * @param encoded The encoded message
+     * @return The decoded message
+     */
+    @NonNull
+    AppMessage decode(@NonNull String encoded);
+}
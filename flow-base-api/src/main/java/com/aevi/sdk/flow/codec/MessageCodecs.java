@@ -0,0 +1,140 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.codec;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.aevi.sdk.flow.model.AppMessage;
+import com.aevi.sdk.flow.model.InternalData;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.aevi.sdk.flow.constants.InternalDataKeys.SUPPORTED_MESSAGE_CODECS;
+
+/**
+ * Registry of the message codecs supported by this API, used to negotiate the codec to use with a peer.
+ *
+ * Each side advertises the codecs it can decode via {@link InternalData}. When sending, the first registered codec that the peer has advertised
+ * is used, falling back to JSON for peers that advertise nothing (i.e. older API versions). When receiving, the codec is detected from the
+ * message itself.
+ *
+ * This is an internal class not intended to be used directly by external applications. No guarantees are made of backwards compatibility and the
+ * class may be removed without any warning.
+ */
+public final class MessageCodecs {
+
+    public static final MessageCodec JSON = new JsonMessageCodec(false);
+    public static final MessageCodec JSON_NESTED = new JsonMessageCodec(true);
+    public static final MessageCodec BINARY = new BinaryMessageCodec();
+
+    private static final List<MessageCodec> CODECS = new CopyOnWriteArrayList<>();
+    private static volatile String supportedNames;
+
+    static {
+        CODECS.add(BINARY);
+        supportedNames = joinNames();
+    }
+
+    private MessageCodecs() {
+    }
+
+    /**
+     * Register an additional codec. Codecs registered later are preferred over those registered earlier.
+     *
+     * @param codec The codec to register
+     */
+    public static synchronized void register(@NonNull MessageCodec codec) {
+        CODECS.add(0, codec);
+        supportedNames = joinNames();
+    }
+
+    static synchronized void unregister(MessageCodec codec) {
+        CODECS.remove(codec);
+        supportedNames = joinNames();
+    }
+
+    /**
+     * Add the names of all currently supported codecs to the given internal data, so that peers can choose a codec we can decode.
+     *
+     * This should be called just before the internal data is sent, so that it includes any codecs registered since it was created. Only
+     * internal data sent by a side that decodes all messages it receives via {@link #decode(String)} should advertise codecs.
+     *
+     * @param internalData The internal data to add the codecs to
+     */
+    public static void addSupportedCodecs(@NonNull InternalData internalData) {
+        String names = supportedNames;
+        if (!names.equals(internalData.getAdditionalDataValue(SUPPORTED_MESSAGE_CODECS, null))) {
+            internalData.addAdditionalData(SUPPORTED_MESSAGE_CODECS, names);
+        }
+    }
+
+    private static String joinNames() {
+        StringBuilder names = new StringBuilder();
+        for (MessageCodec codec : CODECS) {
+            names.append(codec.getName()).append(',');
+        }
+        return names.append(JsonMessageCodec.NAME).toString();
+    }
+
+    /**
+     * Select the codec to use when sending to a peer.
+     *
+     * @param peerInternalData The internal data last received from the peer, or null if not known
+     * @return The codec to use
+     */
+    @NonNull
+    public static MessageCodec select(@Nullable InternalData peerInternalData) {
+        if (peerInternalData != null) {
+            String supported = peerInternalData.getAdditionalDataValue(SUPPORTED_MESSAGE_CODECS, null);
+            if (supported != null) {
+                for (MessageCodec codec : CODECS) {
+                    if (containsName(supported, codec.getName())) {
+                        return codec;
+                    }
+                }
+            }
+        }
+        return AppMessage.supportsNestedEnvelope(peerInternalData) ? JSON_NESTED : JSON;
+    }
+
+    /**
+     * Decode a message, detecting the codec that was used to encode it.
+     *
+     * @param encoded The encoded message
+     * @return The decoded message
+     */
+    @NonNull
+    public static AppMessage decode(@NonNull String encoded) {
+        for (MessageCodec codec : CODECS) {
+            if (codec.canDecode(encoded)) {
+                return codec.decode(encoded);
+            }
+        }
+        return AppMessage.fromJson(encoded);
+    }
+
+    private static boolean containsName(String names, String name) {
+        int index = names.indexOf(name);
+        while (index >= 0) {
+            int end = index + name.length();
+            if ((index == 0 || names.charAt(index - 1) == ',') && (end == names.length() || names.charAt(end) == ',')) {
+                return true;
+            }
+            index = names.indexOf(name, end);
+        }
+        return false;
+    }
+}
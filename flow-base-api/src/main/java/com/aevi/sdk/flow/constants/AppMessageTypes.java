@@ -21,17 +21,22 @@ public interface AppMessageTypes {
 
     // Initiated by client apps
     String REQUEST_MESSAGE = "request";
+    String BATCH_REQUEST_MESSAGE = "batchRequest";
     String PAYMENT_MESSAGE = "payment";
     String PAYMENT_FLOW_CONFIG_REQUEST = "paymentFlowConfigRequest";
     String RESPONSES_REQUEST = "responsesRequest";
+    String RESPONSES_PAGE_REQUEST = "responsesPageRequest";
+    String RESPONSES_AGGREGATE_REQUEST = "responsesAggregateRequest";
     String DEVICE_INFO_REQUEST = "deviceInfoRequest";
 
     // Sent from flow services
     String RESPONSE_MESSAGE = "response";
     String AUDIT_ENTRY = "auditEntry";
+    String AUDIT_ENTRY_BATCH = "auditEntryBatch";
     String FAILURE_MESSAGE = "failure";
     String REQUEST_ACK_MESSAGE = "requestAck";
     String FLOW_EVENT = "flowEvent";
+    String EXCHANGE_END = "exchangeEnd";
 
     // Sent by FPS
     String FLOW_SERVICE_EVENT = "flowServiceEvent";
@@ -21,4 +21,8 @@ public interface InternalDataKeys {
 
     String FLOW_STAGE = "flowStage";
     String FLOW_INITIATOR = "flowInitiator";
+    String SUPPORTED_MESSAGE_CODECS = "supportedMessageCodecs";
+    String SUPPORTS_MULTIPLEXING = "supportsMultiplexing";
+    String STAGE_DEADLINE = "stageDeadline";
+    String SUPPORTS_AUDIT_ENTRY_BATCH = "supportsAuditEntryBatch";
 }
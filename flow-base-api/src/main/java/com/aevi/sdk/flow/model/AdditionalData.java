@@ -18,6 +18,7 @@ package com.aevi.sdk.flow.model;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
+import com.aevi.sdk.flow.util.TypeTags;
 import com.aevi.util.json.JsonConverter;
 import com.aevi.util.json.JsonOption;
 import com.aevi.util.json.Jsonable;
@@ -26,7 +27,8 @@ import java.lang.reflect.Array;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+
+import static com.aevi.sdk.flow.model.AdditionalDataStore.*;
 
 /**
  * A container of generic/bespoke data that can be of any type, identified by a string key.
@@ -36,13 +38,13 @@ import java.util.concurrent.ConcurrentHashMap;
 @SuppressWarnings({"unchecked", "ConstantConditions", "WeakerAccess"})
 public class AdditionalData implements Jsonable {
 
-    private final Map<String, JsonOption> data;
+    private final AdditionalDataStore data;
 
     /**
      * Create a new instance with an empty collection of data.
      */
     public AdditionalData() {
-        data = new ConcurrentHashMap<>();
+        data = new AdditionalDataStore();
     }
 
     /**
@@ -51,7 +53,7 @@ public class AdditionalData implements Jsonable {
      * @param data The data to use as a base
      */
     public AdditionalData(Map<String, JsonOption> data) {
-        this.data = new ConcurrentHashMap<>(data);
+        this.data = new AdditionalDataStore(data);
     }
 
     /**
@@ -60,7 +62,7 @@ public class AdditionalData implements Jsonable {
      * @param copyFrom The data to copy from
      */
     public AdditionalData(AdditionalData copyFrom) {
-        this.data = new ConcurrentHashMap<>(copyFrom.data);
+        this.data = new AdditionalDataStore(copyFrom.data);
     }
 
     /**
@@ -89,10 +91,10 @@ public class AdditionalData implements Jsonable {
         if (values != null) {
             if (values.length == 1) {
                 if (values[0] != null) {
-                    data.put(key, new JsonOption(values[0]));
+                    data.set(key, values[0], values[0].getClass().getName());
                 }
             } else {
-                data.put(key, new JsonOption(values));
+                data.set(key, values, values.getClass().getName());
             }
         }
     }
@@ -109,7 +111,7 @@ public class AdditionalData implements Jsonable {
      */
     public <T> void addDataWithType(String key, T value, Class<?> type) {
         if (value != null && type != null) {
-            data.put(key, new JsonOption(value, type.getName()));
+            data.set(key, value, type.getName());
         }
     }
 
@@ -205,10 +207,7 @@ public class AdditionalData implements Jsonable {
      */
     @Nullable
     public String getValueClassName(String key) {
-        if (data.containsKey(key)) {
-            return data.get(key).getType();
-        }
-        return null;
+        return data.getType(key);
     }
 
     /**
@@ -220,12 +219,13 @@ public class AdditionalData implements Jsonable {
      */
     @Nullable
     public Object getValue(String key, Object... defaultValue) {
-        JsonOption option = data.get(key);
-        if (option != null) {
-            try {
-                return Class.forName(option.getType()).cast(option.getValue());
-            } catch (ClassNotFoundException e) {
-                //... fall thru
+        synchronized (data) {
+            int i = data.indexOf(key);
+            if (i >= 0) {
+                Class<?> type = TypeTags.resolve(data.typeAt(i));
+                if (type != null) {
+                    return type.cast(data.valueAt(i));
+                }
             }
         }
         if (defaultValue.length > 0) {
@@ -244,19 +244,17 @@ public class AdditionalData implements Jsonable {
     @NonNull
     public <T> Map<String, T> getDataOfType(Class<T> desiredType) {
         Map<String, T> map = new HashMap<>();
-        for (String key : data.keySet()) {
-            String classType = data.get(key).getType();
+        for (Map.Entry<String, JsonOption> entry : data.entrySet()) {
+            String classType = entry.getValue().getType();
             // First see if we can detect it as an assignable type, meaning we can return subclasses of a super type as well
-            try {
-                Class<?> entryClass = Class.forName(classType);
+            Class<?> entryClass = TypeTags.resolve(classType);
+            if (entryClass != null) {
                 if (desiredType.isAssignableFrom(entryClass)) {
-                    map.put(key, getValueByType(desiredType, data.get(key).getValue()));
+                    map.put(entry.getKey(), getValueByType(desiredType, entry.getValue().getValue()));
                 }
-            } catch (ClassNotFoundException e) {
+            } else if (classType.equals(desiredType.getName())) {
                 // Fallback to dealing with direct string comparison
-                if (classType.equals(desiredType.getName())) {
-                    map.put(key, getValue(key, desiredType));
-                }
+                map.put(entry.getKey(), getValue(entry.getKey(), desiredType));
             }
         }
         return map;
@@ -286,31 +284,39 @@ public class AdditionalData implements Jsonable {
      */
     @Nullable
     public <T> T getValue(String key, Class<T> desiredType, T... defaultValue) {
-        JsonOption option = data.get(key);
+        String type = null;
+        Object value = null;
+        synchronized (data) {
+            int i = data.indexOf(key);
+            if (i >= 0) {
+                type = data.typeAt(i);
+                value = data.valueAt(i);
+            }
+        }
         T returnValue = null;
 
-        if (option != null) {
+        if (type != null) {
 
             // If exact type match, cast and return
-            if (option.getType().equals(desiredType.getName())) {
-                returnValue = getValueByType(desiredType, option.getValue());
+            if (type.equals(desiredType.getName())) {
+                returnValue = getValueByType(desiredType, value);
             }
 
             // Else, let's see if expected is an array of the type stored and return it as array
-            else if (desiredType.isArray() && desiredType.getName().equals("[L" + option.getType() + ";")) {
-                returnValue = getValueAsArray(desiredType, option);
+            else if (desiredType.isArray() && TypeTags.isArrayOf(desiredType, type)) {
+                returnValue = getValueAsArray(desiredType, value);
             }
 
             // TODO check if assignable - value stored is a subclass of desired type
 
             // Eeeelse, if desired type is String[], we convert whatever we have to an array of strings relying on toString()
             else if (desiredType.equals(String[].class)) {
-                returnValue = getValueAsStringArray(option);
+                returnValue = getValueAsStringArray(value);
             }
 
             // Fallback - log as a warning
             else {
-                Log.w(AdditionalData.class.getSimpleName(), "Failed to convert " + option.getType() + " to " + desiredType.getName());
+                Log.w(AdditionalData.class.getSimpleName(), "Failed to convert " + type + " to " + desiredType.getName());
             }
         }
 
@@ -333,6 +339,12 @@ public class AdditionalData implements Jsonable {
      * @return The value associated with the key if it exists. If not, uses default value if provided, or null.
      */
     public String getStringValue(String key, String... defaultValue) {
+        synchronized (data) {
+            int i = data.indexOf(key);
+            if (i >= 0 && data.kindAt(i) == KIND_STRING) {
+                return (String) data.objectAt(i);
+            }
+        }
         return getValue(key, String.class, defaultValue);
     }
 
@@ -344,6 +356,12 @@ public class AdditionalData implements Jsonable {
      * @return The value associated with the key if it exists. If not, uses default value if provided, or null.
      */
     public int getIntegerValue(String key, Integer... defaultValue) {
+        synchronized (data) {
+            int i = data.indexOf(key);
+            if (i >= 0 && data.kindAt(i) == KIND_INTEGER) {
+                return (int) data.primitiveAt(i);
+            }
+        }
         return getValue(key, Integer.class, defaultValue);
     }
 
@@ -355,6 +373,12 @@ public class AdditionalData implements Jsonable {
      * @return The value associated with the key if it exists. If not, uses default value if provided, or null.
      */
     public boolean getBooleanValue(String key, Boolean... defaultValue) {
+        synchronized (data) {
+            int i = data.indexOf(key);
+            if (i >= 0 && data.kindAt(i) == KIND_BOOLEAN) {
+                return data.primitiveAt(i) != 0;
+            }
+        }
         return getValue(key, Boolean.class, defaultValue);
     }
 
@@ -368,23 +392,23 @@ public class AdditionalData implements Jsonable {
     }
 
     @SuppressWarnings("unchecked")
-    private <T> T getValueAsArray(Class<T> desiredType, JsonOption option) {
+    private <T> T getValueAsArray(Class<T> desiredType, Object value) {
         T t = (T) Array.newInstance(desiredType.getComponentType(), 1);
-        Array.set(t, 0, option.getValue());
+        Array.set(t, 0, value);
         return t;
     }
 
     @SuppressWarnings("unchecked")
-    private <T> T getValueAsStringArray(JsonOption option) {
-        if (option.getValue().getClass().isArray()) {
-            int arrayLength = Array.getLength(option.getValue());
+    private <T> T getValueAsStringArray(Object value) {
+        if (value.getClass().isArray()) {
+            int arrayLength = Array.getLength(value);
             String[] values = new String[arrayLength];
             for (int i = 0; i < arrayLength; i++) {
-                values[i] = Array.get(option.getValue(), i).toString();
+                values[i] = Array.get(value, i).toString();
             }
             return (T) values;
         } else {
-            return (T) new String[]{option.getValue().toString()};
+            return (T) new String[]{value.toString()};
         }
     }
 
@@ -412,13 +436,13 @@ public class AdditionalData implements Jsonable {
     public String toString() {
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append("{");
-        for (String key : data.keySet()) {
+        for (Map.Entry<String, JsonOption> entry : data.entrySet()) {
             if (stringBuilder.length() > 1) {
                 stringBuilder.append(", ");
             }
-            stringBuilder.append(key);
+            stringBuilder.append(entry.getKey());
             stringBuilder.append("=\"");
-            stringBuilder.append(data.get(key).getValue().toString());
+            stringBuilder.append(entry.getValue().getValue().toString());
             stringBuilder.append("\"");
         }
         stringBuilder.append("}");
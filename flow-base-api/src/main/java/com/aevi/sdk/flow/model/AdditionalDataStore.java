@@ -0,0 +1,355 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.model;
+
+import com.aevi.util.json.JsonOption;
+
+import java.util.*;
+
+/**
+ * Compact, thread safe storage for {@link AdditionalData}.
+ *
+ * Strings and common primitive values are kept unboxed in parallel typed slots, with their type implied by the slot kind. Any other value is
+ * kept as a {@link JsonOption}. Keys are found by linear search for small collections, which is the common case, and via a hash index once
+ * the collection grows beyond {@link #INDEX_THRESHOLD} entries.
+ *
+ * The class is exposed as a map of {@link JsonOption} so that it serialises to the same JSON as before. Options are created on demand when
+ * accessed via the map interface, so callers on the hot path should use the typed accessors instead.
+ */
+final class AdditionalDataStore extends AbstractMap<String, JsonOption> {
+
+    static final byte KIND_OTHER = 0;
+    static final byte KIND_STRING = 1;
+    static final byte KIND_BOOLEAN = 2;
+    static final byte KIND_INTEGER = 3;
+    static final byte KIND_LONG = 4;
+    static final byte KIND_DOUBLE = 5;
+    static final byte KIND_FLOAT = 6;
+
+    private static final String[] KIND_TYPES = {null, String.class.getName(), Boolean.class.getName(), Integer.class.getName(),
+            Long.class.getName(), Double.class.getName(), Float.class.getName()};
+
+    static final int INDEX_THRESHOLD = 8;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private long[] primitives = new long[INITIAL_CAPACITY];
+    private Object[] objects = new Object[INITIAL_CAPACITY];
+    private int size;
+    private Map<String, Integer> index;
+
+    AdditionalDataStore() {
+    }
+
+    AdditionalDataStore(Map<String, JsonOption> from) {
+        putAll(from);
+    }
+
+    AdditionalDataStore(AdditionalDataStore from) {
+        synchronized (from) {
+            keys = Arrays.copyOf(from.keys, from.keys.length);
+            kinds = Arrays.copyOf(from.kinds, from.kinds.length);
+            primitives = Arrays.copyOf(from.primitives, from.primitives.length);
+            objects = Arrays.copyOf(from.objects, from.objects.length);
+            size = from.size;
+            index = from.index != null ? new HashMap<>(from.index) : null;
+        }
+    }
+
+    /**
+     * Store a value with its type tag.
+     *
+     * @param key   The key
+     * @param value The value
+     * @param type  The type tag
+     */
+    synchronized void set(String key, Object value, String type) {
+        int i = indexOf(key);
+        if (i < 0) {
+            i = append(key);
+        }
+        byte kind = kindOf(value, type);
+        kinds[i] = kind;
+        objects[i] = null;
+        primitives[i] = 0;
+        switch (kind) {
+            case KIND_STRING:
+                objects[i] = value;
+                break;
+            case KIND_BOOLEAN:
+                primitives[i] = (Boolean) value ? 1 : 0;
+                break;
+            case KIND_INTEGER:
+                primitives[i] = (Integer) value;
+                break;
+            case KIND_LONG:
+                primitives[i] = (Long) value;
+                break;
+            case KIND_DOUBLE:
+                primitives[i] = Double.doubleToRawLongBits((Double) value);
+                break;
+            case KIND_FLOAT:
+                primitives[i] = Float.floatToRawIntBits((Float) value);
+                break;
+            default:
+                objects[i] = new JsonOption(value, type);
+                break;
+        }
+    }
+
+    /**
+     * Find the slot for a key. Callers reading a slot must hold the lock on this store across both calls.
+     *
+     * @param key The key
+     * @return The slot, or -1 if there is no such key
+     */
+    synchronized int indexOf(Object key) {
+        if (index != null) {
+            Integer i = index.get(key);
+            return i != null ? i : -1;
+        }
+        if (key != null) {
+            for (int i = 0; i < size; i++) {
+                if (key.equals(keys[i])) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    byte kindAt(int i) {
+        return kinds[i];
+    }
+
+    long primitiveAt(int i) {
+        return primitives[i];
+    }
+
+    Object objectAt(int i) {
+        return objects[i];
+    }
+
+    /**
+     * Get the type tag for the value with the given key.
+     *
+     * @param key The key
+     * @return The type tag, or null if there is no such key
+     */
+    synchronized String getType(String key) {
+        int i = indexOf(key);
+        return i >= 0 ? typeAt(i) : null;
+    }
+
+    String typeAt(int i) {
+        return kinds[i] == KIND_OTHER ? ((JsonOption) objects[i]).getType() : KIND_TYPES[kinds[i]];
+    }
+
+    Object valueAt(int i) {
+        long primitive = primitives[i];
+        switch (kinds[i]) {
+            case KIND_STRING:
+                return objects[i];
+            case KIND_BOOLEAN:
+                return primitive != 0;
+            case KIND_INTEGER:
+                return (int) primitive;
+            case KIND_LONG:
+                return primitive;
+            case KIND_DOUBLE:
+                return Double.longBitsToDouble(primitive);
+            case KIND_FLOAT:
+                return Float.intBitsToFloat((int) primitive);
+            default:
+                return ((JsonOption) objects[i]).getValue();
+        }
+    }
+
+    private JsonOption optionAt(int i) {
+        return kinds[i] == KIND_OTHER ? (JsonOption) objects[i] : new JsonOption(valueAt(i), typeAt(i));
+    }
+
+    @Override
+    public synchronized JsonOption put(String key, JsonOption option) {
+        if (key == null || option == null) {
+            throw new NullPointerException();
+        }
+        int i = indexOf(key);
+        JsonOption previous = i >= 0 ? optionAt(i) : null;
+        set(key, option.getValue(), option.getType());
+        return previous;
+    }
+
+    @Override
+    public synchronized JsonOption get(Object key) {
+        int i = indexOf(key);
+        return i >= 0 ? optionAt(i) : null;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public synchronized JsonOption remove(Object key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        JsonOption previous = optionAt(i);
+        removeAt(i);
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+        index = null;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, JsonOption>> entrySet() {
+        return new AbstractSet<Entry<String, JsonOption>>() {
+            @Override
+            public Iterator<Entry<String, JsonOption>> iterator() {
+                return new SnapshotIterator();
+            }
+
+            @Override
+            public int size() {
+                return AdditionalDataStore.this.size();
+            }
+        };
+    }
+
+    private int append(String key) {
+        if (size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            primitives = Arrays.copyOf(primitives, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+        }
+        int i = size++;
+        keys[i] = key;
+        if (index != null) {
+            index.put(key, i);
+        } else if (size > INDEX_THRESHOLD) {
+            index = new HashMap<>();
+            for (int j = 0; j < size; j++) {
+                index.put(keys[j], j);
+            }
+        }
+        return i;
+    }
+
+    private void removeAt(int i) {
+        // Move the last entry into the freed slot, as entries have no defined order
+        int last = --size;
+        if (index != null) {
+            index.remove(keys[i]);
+        }
+        if (i != last) {
+            keys[i] = keys[last];
+            kinds[i] = kinds[last];
+            primitives[i] = primitives[last];
+            objects[i] = objects[last];
+            if (index != null) {
+                index.put(keys[i], i);
+            }
+        }
+        keys[last] = null;
+        objects[last] = null;
+        if (index != null && size <= INDEX_THRESHOLD / 2) {
+            index = null;
+        }
+    }
+
+    private static byte kindOf(Object value, String type) {
+        // Only use a typed slot if the type tag is the natural one for the value, so that explicit (super) types are retained
+        if (value instanceof String) {
+            return KIND_TYPES[KIND_STRING].equals(type) ? KIND_STRING : KIND_OTHER;
+        } else if (value instanceof Boolean) {
+            return KIND_TYPES[KIND_BOOLEAN].equals(type) ? KIND_BOOLEAN : KIND_OTHER;
+        } else if (value instanceof Integer) {
+            return KIND_TYPES[KIND_INTEGER].equals(type) ? KIND_INTEGER : KIND_OTHER;
+        } else if (value instanceof Long) {
+            return KIND_TYPES[KIND_LONG].equals(type) ? KIND_LONG : KIND_OTHER;
+        } else if (value instanceof Double) {
+            return KIND_TYPES[KIND_DOUBLE].equals(type) ? KIND_DOUBLE : KIND_OTHER;
+        } else if (value instanceof Float) {
+            return KIND_TYPES[KIND_FLOAT].equals(type) ? KIND_FLOAT : KIND_OTHER;
+        }
+        return KIND_OTHER;
+    }
+
+    /**
+     * Iterates over a snapshot of the keys, so that the store can be modified during iteration (as was possible with a concurrent map).
+     */
+    private final class SnapshotIterator implements Iterator<Entry<String, JsonOption>> {
+
+        private final String[] snapshot;
+        private int next;
+        private String current;
+
+        SnapshotIterator() {
+            synchronized (AdditionalDataStore.this) {
+                snapshot = Arrays.copyOf(keys, size);
+            }
+            advance();
+        }
+
+        private void advance() {
+            // Skip keys removed since the snapshot was taken
+            while (next < snapshot.length && !containsKey(snapshot[next])) {
+                next++;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < snapshot.length;
+        }
+
+        @Override
+        public Entry<String, JsonOption> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = snapshot[next++];
+            JsonOption option = get(current);
+            advance();
+            return new SimpleImmutableEntry<>(current, option);
+        }
+
+        @Override
+        public void remove() {
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+            AdditionalDataStore.this.remove(current);
+            current = null;
+        }
+    }
+}
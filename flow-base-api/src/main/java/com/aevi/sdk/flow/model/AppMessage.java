@@ -17,22 +17,50 @@ package com.aevi.sdk.flow.model;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import com.aevi.sdk.flow.util.JsonScanner;
 import com.aevi.util.json.JsonConverter;
 import com.aevi.util.json.Jsonable;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 
 import static com.aevi.sdk.flow.constants.ResponseMechanisms.MESSENGER_CONNECTION;
 
 /**
  * Application message data for use between FPS and applications it calls.
+ *
+ * Messages can be serialised in two envelope formats. The legacy format stores the message data and internal data as JSON strings, meaning they
+ * are escaped again when the message itself is serialised. The nested format embeds them as JSON values instead, which avoids the double
+ * escaping and allows the receiver to extract them in a single pass. The nested format must only be used when the recipient supports it,
+ * see {@link #supportsNestedEnvelope(InternalData)}. Deserialisation detects the format automatically.
+ *
+ * Messages may carry a correlation id, which identifies the request/response exchange they belong to when several exchanges are multiplexed
+ * over one channel.
  */
 public class AppMessage implements Jsonable {
 
     public static final String EMPTY_DATA = "{}";
 
+    /**
+     * The first API version that can read messages in the nested envelope format.
+     */
+    public static final String NESTED_ENVELOPE_MIN_API_VERSION = "2.3.0";
+
+    private static final String FIELD_MESSAGE_TYPE = "messageType";
+    private static final String FIELD_MESSAGE_DATA = "messageData";
+    private static final String FIELD_RESPONSE_MECHANISM = "responseMechanism";
+    private static final String FIELD_INTERNAL_DATA = "internalData";
+    private static final String FIELD_CORRELATION_ID = "correlationId";
+
     private final String messageType; // See AppMessageTypes
     private final String messageData; // The message data in JSON
     private String responseMechanism; // See ResponseMechanisms
     private String internalData; // Data that may be useful for internal use, such as API version, etc
+    private String correlationId; // Identifies the exchange on a multiplexed channel, or null
 
     public AppMessage(String messageType, String messageData, InternalData internalData) {
         this.messageType = messageType != null ? messageType : "N/A";
@@ -53,6 +81,28 @@ public class AppMessage implements Jsonable {
         this(messageType, null, null);
     }
 
+    private AppMessage(String messageType, String messageData, String responseMechanism, String internalData) {
+        this.messageType = messageType;
+        this.messageData = messageData;
+        this.responseMechanism = responseMechanism;
+        this.internalData = internalData;
+    }
+
+    /**
+     * Create a message from its decoded parts, without re-serialising the internal data.
+     *
+     * For use by message codecs only.
+     *
+     * @param messageType       The message type
+     * @param messageData       The message data
+     * @param responseMechanism The response mechanism
+     * @param internalDataJson  The internal data JSON or null
+     * @return The message
+     */
+    public static AppMessage fromParts(String messageType, String messageData, String responseMechanism, String internalDataJson) {
+        return new AppMessage(messageType, messageData, responseMechanism, internalDataJson);
+    }
+
     public void setResponseMechanism(String responseMechanism) {
         this.responseMechanism = responseMechanism;
     }
@@ -61,6 +111,25 @@ public class AppMessage implements Jsonable {
         return responseMechanism;
     }
 
+    /**
+     * Set the id of the exchange this message belongs to, for channels that carry multiple exchanges.
+     *
+     * @param correlationId The correlation id
+     */
+    public void setCorrelationId(@Nullable String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    /**
+     * Get the id of the exchange this message belongs to.
+     *
+     * @return The correlation id, or null if the channel carries a single exchange
+     */
+    @Nullable
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
     /**
      * Get the message type.
      *
@@ -104,12 +173,119 @@ public class AppMessage implements Jsonable {
         return internalData != null ? InternalData.fromJson(internalData) : null;
     }
 
+    /**
+     * Get the internal data for this message as JSON.
+     *
+     * @return Internal data JSON or null
+     */
+    @Nullable
+    public String getInternalDataJson() {
+        return internalData;
+    }
+
+    /**
+     * Check whether the recipient of a message can read the nested envelope format.
+     *
+     * @param recipientInternalData The internal data last received from the recipient, or null if not known
+     * @return True if the nested envelope format can be used
+     */
+    public static boolean supportsNestedEnvelope(@Nullable InternalData recipientInternalData) {
+        return recipientInternalData != null && recipientInternalData.isSenderApiVersionAtLeast(NESTED_ENVELOPE_MIN_API_VERSION);
+    }
+
     @Override
     public String toJson() {
         return JsonConverter.serialize(this);
     }
 
+    /**
+     * Serialise this message, using the nested envelope format if requested.
+     *
+     * @param nestedEnvelope True to use the nested envelope format, false to use the legacy format
+     * @return The message as JSON
+     */
+    public String toJson(boolean nestedEnvelope) {
+        if (!nestedEnvelope) {
+            return toJson();
+        }
+        StringWriter stringWriter = new StringWriter(messageData.length() + (internalData != null ? internalData.length() : 0) + 128);
+        try (JsonWriter writer = new JsonWriter(stringWriter)) {
+            writer.beginObject();
+            writer.name(FIELD_MESSAGE_TYPE).value(messageType);
+            writeNested(writer, FIELD_MESSAGE_DATA, messageData);
+            writer.name(FIELD_RESPONSE_MECHANISM).value(responseMechanism);
+            writeNested(writer, FIELD_INTERNAL_DATA, internalData);
+            if (correlationId != null) {
+                writer.name(FIELD_CORRELATION_ID).value(correlationId);
+            }
+            writer.endObject();
+        } catch (IOException e) {
+            // StringWriter does not throw, but fall back to the legacy format just in case
+            return toJson();
+        }
+        return stringWriter.toString();
+    }
+
+    private static void writeNested(JsonWriter writer, String name, String json) throws IOException {
+        if (json == null) {
+            return;
+        }
+        writer.name(name);
+        if (JsonScanner.looksLikeStructure(json) && isWellFormed(json)) {
+            writer.jsonValue(json);
+        } else {
+            // Not (valid) JSON, so embed it as a string to keep the envelope intact
+            writer.value(json);
+        }
+    }
+
+    private static boolean isWellFormed(String json) {
+        try {
+            JsonReader reader = new JsonReader(new StringReader(json));
+            reader.skipValue();
+            return reader.peek() == JsonToken.END_DOCUMENT;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
     public static AppMessage fromJson(String json) {
-        return JsonConverter.deserialize(json, AppMessage.class);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return fromJsonSinglePass(json);
+        } catch (IllegalArgumentException e) {
+            // Let the converter deal with (and report on) anything the scanner can not handle
+            return JsonConverter.deserialize(json, AppMessage.class);
+        }
+    }
+
+    private static AppMessage fromJsonSinglePass(String json) {
+        final String[] fields = new String[5];
+        JsonScanner.scanObject(json, (name, source, valueStart, valueEnd) -> {
+            switch (name) {
+                case FIELD_MESSAGE_TYPE:
+                    fields[0] = JsonScanner.readString(source, valueStart, valueEnd);
+                    break;
+                case FIELD_MESSAGE_DATA:
+                    fields[1] = JsonScanner.readString(source, valueStart, valueEnd);
+                    break;
+                case FIELD_RESPONSE_MECHANISM:
+                    fields[2] = JsonScanner.readString(source, valueStart, valueEnd);
+                    break;
+                case FIELD_INTERNAL_DATA:
+                    fields[3] = JsonScanner.readString(source, valueStart, valueEnd);
+                    break;
+                case FIELD_CORRELATION_ID:
+                    fields[4] = JsonScanner.readString(source, valueStart, valueEnd);
+                    break;
+                default:
+                    break;
+            }
+        });
+        AppMessage appMessage = new AppMessage(fields[0], fields[1], fields[2], fields[3]);
+        appMessage.correlationId = fields[4];
+        return appMessage;
     }
 }
@@ -16,7 +16,7 @@ package com.aevi.sdk.flow.model;
 
 
 import android.support.annotation.NonNull;
-import com.aevi.sdk.flow.util.ComparisonUtil;
+import com.aevi.sdk.flow.util.CaseFoldedSet;
 
 import java.util.*;
 
@@ -40,6 +40,12 @@ public abstract class BaseServiceInfo extends BaseModel {
     private Set<String> stages;
     private final Map<String, String[]> flowAndStagesDefinitions;
 
+    // case folded snapshots for lookups, taken on first use as instances are mostly deserialised
+    private transient CaseFoldedSet foldedFlowTypes;
+    private transient CaseFoldedSet foldedCustomRequestTypes;
+    private transient CaseFoldedSet foldedStages;
+    private transient CaseFoldedSet foldedDataKeys;
+
     // Default constructor for deserialisation
     protected BaseServiceInfo() {
         this("", "", "", "", "", "", false,
@@ -143,7 +149,9 @@ public abstract class BaseServiceInfo extends BaseModel {
      * @return True if supported, false otherwise
      */
     public boolean supportsFlowType(String flowType) {
-        return supportedFlowTypes.size() > 0 && ComparisonUtil.stringCollectionContainsIgnoreCase(supportedFlowTypes, flowType);
+        CaseFoldedSet folded = CaseFoldedSet.of(foldedFlowTypes, supportedFlowTypes);
+        foldedFlowTypes = folded;
+        return folded.contains(flowType);
     }
 
     /**
@@ -165,7 +173,9 @@ public abstract class BaseServiceInfo extends BaseModel {
      * @return True if supported, false otherwise
      */
     public boolean supportsCustomRequestType(String requestType) {
-        return customRequestTypes.size() > 0 && ComparisonUtil.stringCollectionContainsIgnoreCase(customRequestTypes, requestType);
+        CaseFoldedSet folded = CaseFoldedSet.of(foldedCustomRequestTypes, customRequestTypes);
+        foldedCustomRequestTypes = folded;
+        return folded.contains(requestType);
     }
 
     /**
@@ -186,7 +196,9 @@ public abstract class BaseServiceInfo extends BaseModel {
      * @return True if the flow service operates in the given stage, false otherwise
      */
     public boolean containsStage(String stage) {
-        return stages.size() > 0 && ComparisonUtil.stringCollectionContainsIgnoreCase(stages, stage);
+        CaseFoldedSet folded = CaseFoldedSet.of(foldedStages, stages);
+        foldedStages = folded;
+        return folded.contains(stage);
     }
 
     /**
@@ -213,7 +225,9 @@ public abstract class BaseServiceInfo extends BaseModel {
      * @return True if supported, false otherwise
      */
     public boolean supportsDataKey(String dataKey) {
-        return supportedDataKeys.size() > 0 && ComparisonUtil.stringCollectionContainsIgnoreCase(supportedDataKeys, dataKey);
+        CaseFoldedSet folded = CaseFoldedSet.of(foldedDataKeys, supportedDataKeys);
+        foldedDataKeys = folded;
+        return folded.contains(dataKey);
     }
 
     /**
@@ -241,6 +255,7 @@ public abstract class BaseServiceInfo extends BaseModel {
      */
     public void setStages(Set<String> stages) {
         this.stages = stages;
+        foldedStages = null;
     }
 
     /**
@@ -250,6 +265,7 @@ public abstract class BaseServiceInfo extends BaseModel {
      */
     public void setStages(String... stages) {
         this.stages = new HashSet<>(Arrays.asList(stages));
+        foldedStages = null;
     }
 
     /**
@@ -0,0 +1,140 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.model;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents the changes between two lists of connected {@link Device} objects.
+ *
+ * Devices are matched by id. A device is considered changed if a device with the same id is present in both lists, but its details differ.
+ */
+public class DeviceListDiff {
+
+    private final List<Device> added;
+    private final List<Device> removed;
+    private final List<Device> changed;
+
+    public DeviceListDiff(List<Device> added, List<Device> removed, List<Device> changed) {
+        this.added = added != null ? added : Collections.<Device>emptyList();
+        this.removed = removed != null ? removed : Collections.<Device>emptyList();
+        this.changed = changed != null ? changed : Collections.<Device>emptyList();
+    }
+
+    /**
+     * Get the changes between two lists of devices.
+     *
+     * @param previous The previous list of devices, or null if there was none
+     * @param current  The current list of devices
+     * @return The changes from the previous to the current list
+     */
+    @NonNull
+    public static DeviceListDiff between(List<Device> previous, List<Device> current) {
+        Map<String, Device> previousById = new LinkedHashMap<>();
+        if (previous != null) {
+            for (Device device : previous) {
+                previousById.put(device.getId(), device);
+            }
+        }
+        List<Device> added = new ArrayList<>();
+        List<Device> changed = new ArrayList<>();
+        for (Device device : current) {
+            Device previousDevice = previousById.remove(device.getId());
+            if (previousDevice == null) {
+                added.add(device);
+            } else if (!previousDevice.equals(device)) {
+                changed.add(device);
+            }
+        }
+        return new DeviceListDiff(added, new ArrayList<>(previousById.values()), changed);
+    }
+
+    /**
+     * Get the devices that have been connected.
+     *
+     * @return The added devices
+     */
+    @NonNull
+    public List<Device> getAdded() {
+        return added;
+    }
+
+    /**
+     * Get the devices that have been disconnected.
+     *
+     * @return The removed devices
+     */
+    @NonNull
+    public List<Device> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Get the devices whose details have changed, with their current details.
+     *
+     * @return The changed devices
+     */
+    @NonNull
+    public List<Device> getChanged() {
+        return changed;
+    }
+
+    /**
+     * Check whether there are no changes.
+     *
+     * @return True if no devices were added, removed or changed
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        DeviceListDiff that = (DeviceListDiff) o;
+
+        return added.equals(that.added) && removed.equals(that.removed) && changed.equals(that.changed);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = added.hashCode();
+        result = 31 * result + removed.hashCode();
+        result = 31 * result + changed.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceListDiff{" +
+                "added=" + added +
+                ", removed=" + removed +
+                ", changed=" + changed +
+                '}';
+    }
+}
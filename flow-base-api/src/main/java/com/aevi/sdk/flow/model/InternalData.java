@@ -17,8 +17,10 @@ package com.aevi.sdk.flow.model;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import com.aevi.sdk.flow.util.ComparisonUtil;
 import com.aevi.util.json.JsonConverter;
 import com.aevi.util.json.Jsonable;
+import com.google.gson.annotations.JsonAdapter;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -26,6 +28,7 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * Wrapper for any internal data (as in data not passed to external apps) that may need to be passed.
  */
+@JsonAdapter(InternalDataJsonAdapter.class)
 public class InternalData implements Jsonable {
 
     private final String senderApiVersion;
@@ -41,6 +44,18 @@ public class InternalData implements Jsonable {
         return senderApiVersion;
     }
 
+    /**
+     * Check whether the sender API version is at least the given version.
+     *
+     * Only the numeric major.minor.patch components are compared, any qualifiers such as "-SNAPSHOT" are ignored.
+     *
+     * @param version The version to compare with
+     * @return True if the sender API version is the same as or newer than the given version
+     */
+    public boolean isSenderApiVersionAtLeast(String version) {
+        return ComparisonUtil.isVersionAtLeast(senderApiVersion, version);
+    }
+
     public String getSenderPackageName() {
         return senderPackageName;
     }
@@ -0,0 +1,82 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.model;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.aevi.sdk.flow.util.JsonAdapterUtil.*;
+
+/**
+ * Reflection-free JSON adapter for {@link InternalData}, which is read and written for every message.
+ */
+final class InternalDataJsonAdapter extends TypeAdapter<InternalData> {
+
+    @Override
+    public void write(JsonWriter out, InternalData internalData) throws IOException {
+        if (internalData == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        writeString(out, "senderApiVersion", internalData.getSenderApiVersion());
+        writeString(out, "senderPackageName", internalData.getSenderPackageName());
+        writeStringMap(out, "additionalData", internalData.getAdditionalData());
+        out.endObject();
+    }
+
+    @Override
+    public InternalData read(JsonReader in) throws IOException {
+        if (skipNull(in)) {
+            return null;
+        }
+        String senderApiVersion = null;
+        String senderPackageName = null;
+        Map<String, String> additionalData = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "senderApiVersion":
+                    senderApiVersion = readString(in);
+                    break;
+                case "senderPackageName":
+                    senderPackageName = readString(in);
+                    break;
+                case "additionalData":
+                    additionalData = readStringMap(in, new LinkedHashMap<>());
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        InternalData internalData = new InternalData(senderApiVersion);
+        internalData.setSenderPackageName(senderPackageName);
+        if (additionalData != null) {
+            for (Map.Entry<String, String> entry : additionalData.entrySet()) {
+                if (entry.getValue() != null) {
+                    internalData.addAdditionalData(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return internalData;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.aevi.sdk.flow.util.JsonScanner;
+import com.aevi.util.json.JsonConverter;
+import com.aevi.util.json.Jsonable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An internal object used to send a page of responses for a paged {@link ResponseQuery}.
+ *
+ * The responses are kept as JSON, so that a page can carry any type of response and each response is only deserialised when it is consumed.
+ */
+public final class ResponsePage implements Jsonable {
+
+    private static final String RESPONSES = "responses";
+    private static final String CONTINUATION_TOKEN = "continuationToken";
+
+    private final List<String> responses;
+    private final String continuationToken;
+
+    /**
+     * @param responses         The JSON of each response in this page
+     * @param continuationToken The token to request the next page with, or null if this is the last page
+     */
+    public ResponsePage(List<String> responses, String continuationToken) {
+        this.responses = responses != null ? responses : Collections.<String>emptyList();
+        this.continuationToken = continuationToken;
+    }
+
+    /**
+     * Get the JSON of each response in this page.
+     *
+     * @return The responses as JSON
+     */
+    @NonNull
+    public List<String> getResponses() {
+        return responses;
+    }
+
+    /**
+     * Get the token to request the next page with.
+     *
+     * @return The continuation token, or null if this is the last page
+     */
+    @Nullable
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * Check whether there are more pages after this one.
+     *
+     * @return True if there are more pages
+     */
+    public boolean hasMore() {
+        return continuationToken != null;
+    }
+
+    @Override
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"" + RESPONSES + "\":[");
+        for (int i = 0; i < responses.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(responses.get(i));
+        }
+        json.append(']');
+        if (continuationToken != null) {
+            json.append(",\"" + CONTINUATION_TOKEN + "\":").append(JsonConverter.serialize(continuationToken));
+        }
+        return json.append('}').toString();
+    }
+
+    public static ResponsePage fromJson(String json) {
+        final List<String> responses = new ArrayList<>();
+        final String[] continuationToken = new String[1];
+        JsonScanner.scanObject(json, (name, source, valueStart, valueEnd) -> {
+            if (RESPONSES.equals(name) && JsonScanner.isStructure(source, valueStart)) {
+                JsonScanner.scanArray(source.substring(valueStart, valueEnd),
+                                      (array, elementStart, elementEnd) -> responses.add(array.substring(elementStart, elementEnd)));
+            } else if (CONTINUATION_TOKEN.equals(name) && JsonScanner.isString(source, valueStart)) {
+                continuationToken[0] = JsonScanner.readString(source, valueStart, valueEnd);
+            }
+        });
+        return new ResponsePage(responses, continuationToken[0]);
+    }
+}
@@ -32,8 +32,10 @@ public final class ResponseQuery implements Jsonable {
     private final long startDate;
     private final long endDate;
     private final int maxResults;
+    private final int pageSize;
 
     private String responseType;
+    private String continuationToken;
 
     /*
      * @param requestId The requestId to limit this query to
@@ -42,14 +44,16 @@ public final class ResponseQuery implements Jsonable {
      * @param startDate  The first/start date to use to restrict the results to
      * @param endDate    The last/end date to use to restrict the results to
      * @param maxResults The maximum number of responses to return
+     * @param pageSize   The number of responses per page for paged queries
      */
-    ResponseQuery(String requestId, String flowName, String flowType, long startDate, long endDate, int maxResults) {
+    ResponseQuery(String requestId, String flowName, String flowType, long startDate, long endDate, int maxResults, int pageSize) {
         this.requestId = requestId;
         this.flowName = flowName;
         this.flowType = flowType;
         this.startDate = startDate;
         this.endDate = endDate;
         this.maxResults = maxResults;
+        this.pageSize = pageSize;
     }
 
     /**
@@ -106,6 +110,15 @@ public final class ResponseQuery implements Jsonable {
         return maxResults;
     }
 
+    /**
+     * The number of responses to fetch per page, for paged queries
+     *
+     * @return The page size
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
     /**
      * Returns true if this query has a date range
      *
@@ -139,4 +152,23 @@ public final class ResponseQuery implements Jsonable {
         return responseType;
     }
 
+    /**
+     * An internal method used by this API to get a copy of this query that continues a paged query from the given position.
+     *
+     * FOR INTERNAL USE ONLY: This method should not be used by external classes
+     *
+     * @param continuationToken The continuation token of the previous page, or null for the first page
+     * @return A copy of this query for the page
+     */
+    public ResponseQuery withContinuationToken(String continuationToken) {
+        ResponseQuery pageQuery = new ResponseQuery(requestId, flowName, flowType, startDate, endDate, maxResults, pageSize);
+        pageQuery.responseType = responseType;
+        pageQuery.continuationToken = continuationToken;
+        return pageQuery;
+    }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
 }
@@ -19,12 +19,15 @@ package com.aevi.sdk.flow.model;
  */
 public class ResponseQueryBuilder {
 
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
     private long startDate;
     private long endDate;
     private String flowName;
     private String requestId;
     private String flowType;
     private int maxResults = 100;
+    private int pageSize = DEFAULT_PAGE_SIZE;
 
     /**
      * Setup a new query builder
@@ -95,8 +98,25 @@ public class ResponseQueryBuilder {
         return this;
     }
 
+    /**
+     * This field can be used to change the number of responses fetched at a time by paged queries. By default it is set to 100
+     *
+     * Note that the maximum number of results still applies to the total number of responses across all pages
+     *
+     * @param pageSize The number of responses per page
+     * @return this builder
+     */
+    public ResponseQueryBuilder withPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
     public ResponseQuery build() {
 
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be greater than zero");
+        }
+
         if (endDate > 0 && startDate <= 0) {
             throw new IllegalArgumentException("Start date must be set for date range");
         }
@@ -109,6 +129,6 @@ public class ResponseQueryBuilder {
             throw new IllegalArgumentException("Invalid parameters, start date must be earlier (lower) than end date");
         }
 
-        return new ResponseQuery(requestId, flowName, flowType, startDate, endDate, maxResults);
+        return new ResponseQuery(requestId, flowName, flowType, startDate, endDate, maxResults, pageSize);
     }
 }
\ No newline at end of file
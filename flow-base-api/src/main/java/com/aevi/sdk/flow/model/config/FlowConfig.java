@@ -45,8 +45,7 @@ public class FlowConfig implements Jsonable, JsonPostProcessing {
     private final boolean allowZeroAmounts;
     private boolean generatedFromCustomType;
 
-    private transient List<FlowStage> allStagesFlattened;
-    private transient Map<String, FlowStage> allStagesMap;
+    private transient volatile StageIndex stageIndex;
 
     FlowConfig() {
         this("N/A", "N/A", 0, 0, null, null, null, false, false);
@@ -67,9 +66,24 @@ public class FlowConfig implements Jsonable, JsonPostProcessing {
     }
 
     private synchronized void parseStageHierarchy() {
-        this.allStagesFlattened = new ArrayList<>();
-        this.allStagesMap = new HashMap<>();
-        getDeepStages(allStagesFlattened, allStagesMap, stages);
+        stageIndex = new StageIndex(stages);
+    }
+
+    /**
+     * Get the stage index, rebuilding it if any of its stages has been changed via {@link FlowStage#setFlowApps(List)} or
+     * {@link FlowStage#setInnerFlow(FlowConfig)} since it was built, or if any of its inner flows has changed.
+     */
+    private StageIndex getStageIndex() {
+        StageIndex current = stageIndex;
+        if (current.isStale()) {
+            synchronized (this) {
+                if (stageIndex.isStale()) {
+                    parseStageHierarchy();
+                }
+                current = stageIndex;
+            }
+        }
+        return current;
     }
 
     /**
@@ -162,7 +176,7 @@ public class FlowConfig implements Jsonable, JsonPostProcessing {
      * @return The stages for this flow
      */
     public List<FlowStage> getStages(boolean flattened) {
-        return flattened ? allStagesFlattened : stages;
+        return flattened ? getStageIndex().allStagesFlattened : stages;
     }
 
     /**
@@ -175,7 +189,7 @@ public class FlowConfig implements Jsonable, JsonPostProcessing {
      * @return The request class for this flow
      */
     public String getRequestClass() {
-        return allStagesMap.keySet().contains(normaliseStageName(FlowStages.TRANSACTION_PROCESSING)) ? REQUEST_CLASS_PAYMENT : REQUEST_CLASS_GENERIC;
+        return hasStage(FlowStages.TRANSACTION_PROCESSING) ? REQUEST_CLASS_PAYMENT : REQUEST_CLASS_GENERIC;
     }
 
     /**
@@ -221,38 +235,44 @@ public class FlowConfig implements Jsonable, JsonPostProcessing {
         this.generatedFromCustomType = generatedFromCustomType;
     }
 
-    public synchronized Set<String> getAllStageNames() {
-        return allStagesMap.keySet();
+    /**
+     * Get the execution plan for this flow, which is compiled the first time it is requested and again after any changes via
+     * {@link #setApps(String, List)}.
+     *
+     * @return The execution plan
+     */
+    @NonNull
+    public FlowExecutionPlan getExecutionPlan() {
+        StageIndex current = getStageIndex();
+        FlowExecutionPlan executionPlan = current.executionPlan;
+        if (executionPlan == null) {
+            executionPlan = FlowExecutionPlan.compile(this);
+            current.executionPlan = executionPlan;
+        }
+        return executionPlan;
     }
 
-    private synchronized void getDeepStages(List<FlowStage> allStages, Map<String, FlowStage> allStagesMap, List<FlowStage> toAdd) {
-        if (toAdd != null) {
-            for (FlowStage stage : toAdd) {
-                allStages.add(stage);
-                allStagesMap.put(normaliseStageName(stage.getName()), stage);
-                if (stage.hasInnerFlow()) {
-                    getDeepStages(allStages, allStagesMap, stage.getInnerFlow().getStages(false));
-                }
-            }
-        }
+    public Set<String> getAllStageNames() {
+        return getStageIndex().stageNames;
     }
 
-    public synchronized FlowStage getStage(String stageName) {
-        return allStagesMap.get(normaliseStageName(stageName));
+    public FlowStage getStage(String stageName) {
+        StageIndex current = getStageIndex();
+        return current.get(current.stagesByName, stageName);
     }
 
-    public synchronized boolean hasStage(String stage) {
-        return allStagesMap.containsKey(normaliseStageName(stage));
+    public boolean hasStage(String stage) {
+        return getStage(stage) != null;
     }
 
-    public synchronized boolean hasAppForStage(String stage) {
-        stage = normaliseStageName(stage);
-        return allStagesMap.containsKey(stage) && allStagesMap.get(stage).getFlowApps().size() > 0;
+    public boolean hasAppForStage(String stage) {
+        StageIndex current = getStageIndex();
+        Map<String, FlowApp> apps = current.get(current.appsByStage, stage);
+        return apps != null && !apps.isEmpty();
     }
 
-    public synchronized boolean hasAppForStage(String appId, String stage) {
-        stage = normaliseStageName(stage);
-        return allStagesMap.containsKey(stage) && scanAppList(allStagesMap.get(stage).getFlowApps(), appId);
+    public boolean hasAppForStage(String appId, String stage) {
+        return getFlowApp(stage, appId) != null;
     }
 
     public List<FlowApp> getAppsForStage(String stageName) {
@@ -273,62 +293,54 @@ public class FlowConfig implements Jsonable, JsonPostProcessing {
     }
 
     public boolean containsApp(String flowAppId) {
-        boolean found = false;
-        for (FlowStage stage : getStages(true)) {
-            found |= scanAppList(stage.getFlowApps(), flowAppId);
-        }
-        return found;
-    }
-
-    public synchronized FlowApp getFlowApp(String stage, String appId) {
-        stage = normaliseStageName(stage);
-        if (allStagesMap.containsKey(stage)) {
-            return findAppInList(allStagesMap.get(stage).getFlowApps(), appId);
-        }
-        return null;
+        return getStageIndex().stagesByAppId.containsKey(flowAppId);
     }
 
-    private FlowApp findAppInList(List<FlowApp> apps, String appId) {
-        if (apps != null) {
-            for (FlowApp app : apps) {
-                if (app.getId().equals(appId)) {
-                    return app;
-                }
-            }
-        }
-        return null;
+    /**
+     * Get the names of all the stages (top level and nested) that the given app is defined for.
+     *
+     * @param flowAppId The flow app id
+     * @return The normalised names of the stages, or an empty set if the app is not in this flow
+     */
+    @NonNull
+    public Set<String> getStagesForApp(String flowAppId) {
+        Set<String> stageNames = getStageIndex().stagesByAppId.get(flowAppId);
+        return stageNames != null ? Collections.unmodifiableSet(stageNames) : Collections.<String>emptySet();
     }
 
-    private boolean scanAppList(List<FlowApp> apps, String appId) {
-        if (apps != null) {
-            for (FlowApp app : apps) {
-                if (app.getId().equals(appId)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    public FlowApp getFlowApp(String stage, String appId) {
+        StageIndex current = getStageIndex();
+        Map<String, FlowApp> apps = current.get(current.appsByStage, stage);
+        return apps != null ? apps.get(appId) : null;
     }
 
-    private String normaliseStageName(String stage) {
+    private static String normaliseStageName(String stage) {
         if (stage != null) {
             return stage.toUpperCase();
         }
         return null;
     }
 
-    public void setApps(String stage, List<FlowApp> flowApps) {
+    /**
+     * Set the apps for a stage, adding the stage if it is not defined yet.
+     *
+     * Changes to the apps of a stage should be made via this method, so that they are reflected in app lookups.
+     *
+     * @param stage    The stage name
+     * @param flowApps The flow apps for the stage
+     */
+    public synchronized void setApps(String stage, List<FlowApp> flowApps) {
         stage = normaliseStageName(stage);
-        FlowStage flowStage = getStage(stage);
+        StageIndex current = getStageIndex();
+        FlowStage flowStage = current.get(current.stagesByName, stage);
         if (flowStage == null) {
             flowStage = new FlowStage(stage, AppExecutionType.MULTIPLE);
             flowStage.setFlowApps(flowApps);
             stages.add(flowStage);
-            allStagesFlattened = null;
-            allStagesMap = null;
-            parseStageHierarchy();
+            stageIndex = current.withStageAdded(flowStage);
         } else {
             flowStage.setFlowApps(flowApps);
+            stageIndex = current.withAppsChanged(stage);
         }
     }
 
@@ -363,14 +375,174 @@ public class FlowConfig implements Jsonable, JsonPostProcessing {
                 Objects.equals(type, that.type) &&
                 Objects.equals(description, that.description) &&
                 Objects.equals(restrictedToApp, that.restrictedToApp) &&
-                Objects.equals(stages, that.stages) &&
-                Objects.equals(allStagesFlattened, that.allStagesFlattened) &&
-                Objects.equals(allStagesMap, that.allStagesMap);
+                Objects.equals(stages, that.stages);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, type, version, apiMajorVersion, description, restrictedToApp, stages, processInBackground, generatedFromCustomType,
-                            allStagesFlattened, allStagesMap);
+        return Objects.hash(name, type, version, apiMajorVersion, description, restrictedToApp, stages, processInBackground, generatedFromCustomType);
+    }
+
+    /**
+     * Immutable index of the stage hierarchy, keyed by normalised stage name.
+     *
+     * Changes to the apps of a stage via {@link #setApps(String, List)} publish a new index, which only rebuilds the entries of that stage. Changes
+     * made directly to one of the indexed stages, or to an inner flow, make the index stale, and it is rebuilt in full on the next lookup.
+     */
+    private static final class StageIndex {
+
+        private final List<FlowStage> allStagesFlattened;
+        private final Map<String, FlowStage> stagesByName;
+        private final Set<String> stageNames;
+        private final Map<String, Map<String, FlowApp>> appsByStage;
+        private final Map<String, Set<String>> stagesByAppId;
+        private final int[] stageModificationCounts;
+        private final List<FlowConfig> innerFlows;
+        private final List<StageIndex> innerFlowIndexes;
+        private volatile FlowExecutionPlan executionPlan;
+
+        StageIndex(List<FlowStage> stages) {
+            allStagesFlattened = new ArrayList<>();
+            stagesByName = new HashMap<>();
+            innerFlows = new ArrayList<>();
+            innerFlowIndexes = new ArrayList<>();
+            addDeepStages(stages);
+            // read before indexing the apps, so that changes made while indexing leave the index stale
+            stageModificationCounts = readModificationCounts(allStagesFlattened);
+            stageNames = Collections.unmodifiableSet(stagesByName.keySet());
+            appsByStage = new HashMap<>();
+            for (Map.Entry<String, FlowStage> entry : stagesByName.entrySet()) {
+                appsByStage.put(entry.getKey(), indexApps(entry.getValue()));
+            }
+            stagesByAppId = new HashMap<>();
+            for (FlowStage stage : allStagesFlattened) {
+                addStageForApps(stagesByAppId, stage);
+            }
+        }
+
+        private StageIndex(StageIndex previous, List<FlowStage> allStagesFlattened, Map<String, FlowStage> stagesByName,
+                           Map<String, Map<String, FlowApp>> appsByStage, Map<String, Set<String>> stagesByAppId) {
+            this.stageModificationCounts = readModificationCounts(allStagesFlattened);
+            this.innerFlows = previous.innerFlows;
+            this.innerFlowIndexes = previous.innerFlowIndexes;
+            this.allStagesFlattened = allStagesFlattened;
+            this.stagesByName = stagesByName;
+            this.stageNames = Collections.unmodifiableSet(stagesByName.keySet());
+            this.appsByStage = appsByStage;
+            this.stagesByAppId = stagesByAppId;
+        }
+
+        boolean isStale() {
+            for (int i = 0; i < stageModificationCounts.length; i++) {
+                if (allStagesFlattened.get(i).getModificationCount() != stageModificationCounts[i]) {
+                    return true;
+                }
+            }
+            for (int i = 0; i < innerFlows.size(); i++) {
+                if (innerFlows.get(i).getStageIndex() != innerFlowIndexes.get(i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int[] readModificationCounts(List<FlowStage> stages) {
+            int[] modificationCounts = new int[stages.size()];
+            for (int i = 0; i < modificationCounts.length; i++) {
+                modificationCounts[i] = stages.get(i).getModificationCount();
+            }
+            return modificationCounts;
+        }
+
+        /**
+         * Look up a stage entry, only normalising the stage name if it is not already normalised.
+         */
+        <T> T get(Map<String, T> map, String stage) {
+            if (stage == null) {
+                return null;
+            }
+            T value = map.get(stage);
+            return value != null ? value : map.get(normaliseStageName(stage));
+        }
+
+        StageIndex withStageAdded(FlowStage flowStage) {
+            List<FlowStage> allStagesFlattened = new ArrayList<>(this.allStagesFlattened);
+            allStagesFlattened.add(flowStage);
+            Map<String, FlowStage> stagesByName = new HashMap<>(this.stagesByName);
+            String stageName = normaliseStageName(flowStage.getName());
+            stagesByName.put(stageName, flowStage);
+            Map<String, Map<String, FlowApp>> appsByStage = new HashMap<>(this.appsByStage);
+            appsByStage.put(stageName, indexApps(flowStage));
+            Map<String, Set<String>> stagesByAppId = copyStagesByAppId();
+            addStageForApps(stagesByAppId, flowStage);
+            return new StageIndex(this, allStagesFlattened, stagesByName, appsByStage, stagesByAppId);
+        }
+
+        StageIndex withAppsChanged(String stageName) {
+            Map<String, Map<String, FlowApp>> appsByStage = new HashMap<>(this.appsByStage);
+            appsByStage.put(stageName, indexApps(stagesByName.get(stageName)));
+            Map<String, Set<String>> stagesByAppId = copyStagesByAppId();
+            Iterator<Set<String>> iterator = stagesByAppId.values().iterator();
+            while (iterator.hasNext()) {
+                Set<String> appStages = iterator.next();
+                appStages.remove(stageName);
+                if (appStages.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+            for (FlowStage stage : allStagesFlattened) {
+                if (stageName.equals(normaliseStageName(stage.getName()))) {
+                    addStageForApps(stagesByAppId, stage);
+                }
+            }
+            return new StageIndex(this, allStagesFlattened, stagesByName, appsByStage, stagesByAppId);
+        }
+
+        private void addDeepStages(List<FlowStage> toAdd) {
+            if (toAdd != null) {
+                for (FlowStage stage : toAdd) {
+                    allStagesFlattened.add(stage);
+                    stagesByName.put(normaliseStageName(stage.getName()), stage);
+                    if (stage.hasInnerFlow()) {
+                        FlowConfig innerFlow = stage.getInnerFlow();
+                        // stages added to the inner flow via its setApps() publish a new index of the inner flow
+                        innerFlows.add(innerFlow);
+                        innerFlowIndexes.add(innerFlow.getStageIndex());
+                        addDeepStages(innerFlow.getStages(false));
+                    }
+                }
+            }
+        }
+
+        private Map<String, Set<String>> copyStagesByAppId() {
+            Map<String, Set<String>> copy = new HashMap<>();
+            for (Map.Entry<String, Set<String>> entry : stagesByAppId.entrySet()) {
+                copy.put(entry.getKey(), new HashSet<>(entry.getValue()));
+            }
+            return copy;
+        }
+
+        private static Map<String, FlowApp> indexApps(FlowStage stage) {
+            Map<String, FlowApp> apps = new HashMap<>();
+            for (FlowApp app : stage.getFlowApps()) {
+                if (!apps.containsKey(app.getId())) {
+                    // the first app with an id takes precedence, as with a scan in order
+                    apps.put(app.getId(), app);
+                }
+            }
+            return apps;
+        }
+
+        private static void addStageForApps(Map<String, Set<String>> stagesByAppId, FlowStage stage) {
+            String stageName = normaliseStageName(stage.getName());
+            for (FlowApp app : stage.getFlowApps()) {
+                Set<String> appStages = stagesByAppId.get(app.getId());
+                if (appStages == null) {
+                    appStages = new HashSet<>();
+                    stagesByAppId.put(app.getId(), appStages);
+                }
+                appStages.add(stageName);
+            }
+        }
     }
 }
@@ -0,0 +1,237 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.model.config;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.*;
+
+/**
+ * Represents a flow configuration compiled into a flat plan of stages, in the order they are executed.
+ *
+ * Nested stages of inner flows follow the stage they are defined for. Each stage is identified by its ordinal in the plan, and the
+ * applications for each stage are resolved when the plan is compiled, so that walking the plan does not require any lookups.
+ *
+ * The plan is a snapshot of the flow configuration at the time it was compiled. Use {@link FlowConfig#getExecutionPlan()} to get the plan
+ * for the current configuration.
+ */
+public final class FlowExecutionPlan {
+
+    /**
+     * The ordinal returned for stages that are not part of the plan.
+     */
+    public static final int NO_STAGE = -1;
+
+    private final String flowName;
+    private final String[] stageNames;
+    private final AppExecutionType[] appExecutionTypes;
+    private final List<FlowApp>[] apps;
+    private final boolean[] hasConditionalApps;
+    private final int[] nextExecutableStage;
+    private final Map<String, Integer> ordinals;
+
+    @SuppressWarnings("unchecked")
+    private FlowExecutionPlan(String flowName, List<FlowStage> flattenedStages) {
+        int stageCount = flattenedStages.size();
+        this.flowName = flowName;
+        stageNames = new String[stageCount];
+        appExecutionTypes = new AppExecutionType[stageCount];
+        apps = new List[stageCount];
+        hasConditionalApps = new boolean[stageCount];
+        nextExecutableStage = new int[stageCount + 1];
+        ordinals = new HashMap<>(stageCount * 2);
+        for (int ordinal = 0; ordinal < stageCount; ordinal++) {
+            FlowStage stage = flattenedStages.get(ordinal);
+            stageNames[ordinal] = stage.getName().toUpperCase();
+            appExecutionTypes[ordinal] = stage.getAppExecutionType() != null ? stage.getAppExecutionType() : AppExecutionType.NONE;
+            apps[ordinal] = Collections.unmodifiableList(new ArrayList<>(stage.getFlowApps()));
+            for (FlowApp app : apps[ordinal]) {
+                hasConditionalApps[ordinal] |= app.getConditionalOnValue() != null;
+            }
+            if (!ordinals.containsKey(stageNames[ordinal])) {
+                ordinals.put(stageNames[ordinal], ordinal);
+            }
+        }
+        // resolved backwards, so that each entry points at the first executable stage after the one before it
+        int next = NO_STAGE;
+        for (int ordinal = stageCount - 1; ordinal >= 0; ordinal--) {
+            nextExecutableStage[ordinal + 1] = next;
+            if (isExecutable(ordinal)) {
+                next = ordinal;
+            }
+        }
+        nextExecutableStage[0] = next;
+    }
+
+    /**
+     * Compile a plan for the current state of a flow configuration.
+     *
+     * @param flowConfig The flow configuration
+     * @return The execution plan
+     */
+    @NonNull
+    public static FlowExecutionPlan compile(FlowConfig flowConfig) {
+        return new FlowExecutionPlan(flowConfig.getName(), flowConfig.getStages(true));
+    }
+
+    /**
+     * Get the name of the flow this plan was compiled from.
+     *
+     * @return The flow name
+     */
+    @NonNull
+    public String getFlowName() {
+        return flowName;
+    }
+
+    /**
+     * Get the number of stages in this plan, including stages without any applications.
+     *
+     * @return The number of stages
+     */
+    public int getStageCount() {
+        return stageNames.length;
+    }
+
+    /**
+     * Get the ordinal of a stage in this plan.
+     *
+     * If a stage is defined more than once in the flow hierarchy, the ordinal of its first occurrence is returned.
+     *
+     * @param stageName The stage name (case insensitive)
+     * @return The ordinal of the stage, or {@link #NO_STAGE} if the stage is not part of this plan
+     */
+    public int getOrdinal(String stageName) {
+        if (stageName == null) {
+            return NO_STAGE;
+        }
+        Integer ordinal = ordinals.get(stageName);
+        if (ordinal == null) {
+            ordinal = ordinals.get(stageName.toUpperCase());
+        }
+        return ordinal != null ? ordinal : NO_STAGE;
+    }
+
+    /**
+     * Get the name of the stage at the given ordinal.
+     *
+     * @param ordinal The stage ordinal
+     * @return The stage name, in upper case
+     */
+    @NonNull
+    public String getStageName(int ordinal) {
+        return stageNames[ordinal];
+    }
+
+    /**
+     * Get the app execution type of the stage at the given ordinal.
+     *
+     * @param ordinal The stage ordinal
+     * @return The app execution type
+     */
+    @NonNull
+    public AppExecutionType getAppExecutionType(int ordinal) {
+        return appExecutionTypes[ordinal];
+    }
+
+    /**
+     * Get the applications defined for the stage at the given ordinal, regardless of their conditions.
+     *
+     * @param ordinal The stage ordinal
+     * @return An unmodifiable list of the applications, in order of definition
+     */
+    @NonNull
+    public List<FlowApp> getApps(int ordinal) {
+        return apps[ordinal];
+    }
+
+    /**
+     * Get the applications for the stage at the given ordinal that are eligible given the conditions that have been met.
+     *
+     * Applications without a condition are always eligible. See {@link FlowAppConditions} for the available conditions.
+     *
+     * @param ordinal       The stage ordinal
+     * @param conditionsMet The conditions that have been met
+     * @return An unmodifiable list of the eligible applications, in order of definition
+     */
+    @NonNull
+    public List<FlowApp> getEligibleApps(int ordinal, String... conditionsMet) {
+        if (!hasConditionalApps[ordinal]) {
+            return apps[ordinal];
+        }
+        List<String> conditions = Arrays.asList(conditionsMet);
+        List<FlowApp> eligibleApps = new ArrayList<>();
+        for (FlowApp app : apps[ordinal]) {
+            if (app.getConditionalOnValue() == null || conditions.contains(app.getConditionalOnValue())) {
+                eligibleApps.add(app);
+            }
+        }
+        return Collections.unmodifiableList(eligibleApps);
+    }
+
+    /**
+     * Get the first application for the stage at the given ordinal.
+     *
+     * @param ordinal The stage ordinal
+     * @return The first application, or null if there are none
+     */
+    @Nullable
+    public FlowApp getFirstApp(int ordinal) {
+        return apps[ordinal].isEmpty() ? null : apps[ordinal].get(0);
+    }
+
+    /**
+     * Check whether the stage at the given ordinal will be executed.
+     *
+     * A stage is executed if its app execution type is {@link AppExecutionType#DYNAMIC_SELECT}, or if it has applications and its type is not
+     * {@link AppExecutionType#NONE}.
+     *
+     * @param ordinal The stage ordinal
+     * @return True if the stage will be executed
+     */
+    public boolean isExecutable(int ordinal) {
+        switch (appExecutionTypes[ordinal]) {
+            case NONE:
+                return false;
+            case DYNAMIC_SELECT:
+                return true;
+            default:
+                return !apps[ordinal].isEmpty();
+        }
+    }
+
+    /**
+     * Get the next stage that will be executed after the stage at the given ordinal.
+     *
+     * @param ordinal The current stage ordinal, or {@link #NO_STAGE} to get the first stage that will be executed
+     * @return The ordinal of the next stage, or {@link #NO_STAGE} if no further stages will be executed
+     */
+    public int getNextStage(int ordinal) {
+        return nextExecutableStage[ordinal + 1];
+    }
+
+    /**
+     * Check whether a stage will still be executed after the stage at the given ordinal.
+     *
+     * @param ordinal   The current stage ordinal, or {@link #NO_STAGE} to check from the start of the flow
+     * @param stageName The stage to check for (case insensitive)
+     * @return True if the stage is after the current stage and will be executed
+     */
+    public boolean isStageReachable(int ordinal, String stageName) {
+        int stageOrdinal = getOrdinal(stageName);
+        return stageOrdinal > ordinal && isExecutable(stageOrdinal);
+    }
+}
@@ -20,6 +20,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -33,6 +34,9 @@ public class FlowStage {
     private List<FlowApp> flowApps;
     private FlowConfig innerFlow;
 
+    // Counts changes to the apps or inner flow of this stage, so that flow configs can tell when their index of the stages is stale
+    private transient volatile int modificationCount;
+
     /**
      * Initialise with default values.
      */
@@ -60,7 +64,7 @@ public class FlowStage {
     public FlowStage(String name, AppExecutionType appExecutionType, List<FlowApp> flowApps) {
         this.name = name;
         this.appExecutionType = appExecutionType;
-        this.flowApps = flowApps != null ? flowApps : new ArrayList<>();
+        this.flowApps = flowApps != null ? new ArrayList<>(flowApps) : new ArrayList<>();
     }
 
     /**
@@ -109,29 +113,39 @@ public class FlowStage {
      */
     public void setInnerFlow(FlowConfig innerFlow) {
         this.innerFlow = innerFlow;
+        modificationCount++;
     }
 
     /**
      * Get the flow apps defined for this stage.
      *
+     * The returned list can not be modified - use {@link #setFlowApps(List)} to change the apps.
+     *
      * @return The flow apps defined for this stage
      */
     @NonNull
     public List<FlowApp> getFlowApps() {
-        return flowApps;
+        return flowApps != null ? Collections.unmodifiableList(flowApps) : Collections.<FlowApp>emptyList();
     }
 
     /**
      * Set the flow apps defined for this stage.
      *
+     * The list is copied, so later changes to it are not reflected in this stage.
+     *
      * @param flowApps The flow apps defined for this stage
      */
     public void setFlowApps(List<FlowApp> flowApps) {
         if (flowApps != null) {
-            this.flowApps = flowApps;
+            this.flowApps = new ArrayList<>(flowApps);
+            modificationCount++;
         }
     }
 
+    int getModificationCount() {
+        return modificationCount;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -20,11 +20,25 @@ import android.support.annotation.Nullable;
 import android.util.Log;
 import com.aevi.android.rxmessenger.ChannelServer;
 import com.aevi.android.rxmessenger.service.AbstractChannelService;
+import com.aevi.sdk.flow.BaseApiClient;
 import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.InternalData;
+import com.aevi.sdk.flow.util.JsonScanner;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+import static com.aevi.sdk.flow.constants.AppMessageTypes.BATCH_REQUEST_MESSAGE;
 import static com.aevi.sdk.flow.constants.AppMessageTypes.REQUEST_MESSAGE;
 import static com.aevi.sdk.flow.constants.ErrorConstants.FLOW_SERVICE_ERROR;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.SUPPORTS_MULTIPLEXING;
 
 /**
  * Internal base class for all API service implementations.
@@ -38,8 +52,11 @@ public abstract class BaseApiService extends AbstractChannelService {
 
     protected final InternalData internalData;
 
+    private RequestExecution requestExecution = new RequestExecution(null, null);
+
     protected BaseApiService(String apiVersion) {
         internalData = new InternalData(apiVersion);
+        internalData.addAdditionalData(SUPPORTS_MULTIPLEXING, "true");
     }
 
     @Override
@@ -66,21 +83,97 @@ public abstract class BaseApiService extends AbstractChannelService {
         setStopSelfOnEndOfStream(stopServiceOnEndOfStream);
     }
 
+    /**
+     * Handle messages from clients on the given scheduler, instead of on the thread they are delivered on, which is usually the main thread.
+     *
+     * Messages from each client are decoded and processed one at a time, in the order they were received. Messages from different clients may be
+     * processed concurrently, bounded by the threads available to the scheduler. Note that a scheduler such as {@code Schedulers.computation()}
+     * pins each client to one of its threads.
+     *
+     * This only applies to clients that connect after this has been called.
+     *
+     * @param scheduler The scheduler to handle messages on, or null to handle messages on the thread they are delivered on
+     */
+    public void setRequestScheduler(@Nullable Scheduler scheduler) {
+        setRequestExecution(new RequestExecution(scheduler, null));
+    }
+
+    /**
+     * Handle messages from clients on a pool of at most the given number of threads, instead of on the thread they are delivered on.
+     *
+     * See {@link #setRequestScheduler(Scheduler)} for details. A pool that is replaced is shut down once the clients using it have disconnected.
+     * The pool is shut down when the service is destroyed.
+     *
+     * @param maxParallelism The maximum number of clients to handle messages for concurrently
+     */
+    public void setConcurrentRequestHandling(int maxParallelism) {
+        if (maxParallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than zero");
+        }
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, TAG + "-request-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(maxParallelism, threadFactory);
+        setRequestExecution(new RequestExecution(Schedulers.from(executor), executor));
+    }
+
+    private synchronized void setRequestExecution(RequestExecution execution) {
+        RequestExecution previous = requestExecution;
+        requestExecution = execution;
+        // Clients that are already connected keep handling messages on the previous scheduler
+        previous.retire();
+    }
+
+    private synchronized RequestExecution acquireRequestExecution() {
+        requestExecution.acquire();
+        return requestExecution;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        synchronized (this) {
+            requestExecution.shutdown();
+            requestExecution = new RequestExecution(null, null);
+        }
+    }
+
     @Override
     protected final void onNewClient(ChannelServer channelServer, String packageName) {
         Log.d(TAG, "onNewClient: " + packageName);
         final ClientCommunicator clientCommunicator = new ClientCommunicator(channelServer, internalData);
-        clientCommunicator.subscribeToMessages()
+        final RequestExecution execution = acquireRequestExecution();
+        clientCommunicator.subscribeToMessages(execution.scheduler)
                 .takeUntil(appMessage -> {
-                    return appMessage.getMessageType().equals(REQUEST_MESSAGE);
+                    // A multiplexed channel (requests with correlation ids, or batches) stays open for further requests
+                    return appMessage.getMessageType().equals(REQUEST_MESSAGE) && appMessage.getCorrelationId() == null;
+                })
+                .filter(appMessage -> {
+                    // Other messages for multiplexed exchanges are handled by the communicator of the exchange
+                    return appMessage.getCorrelationId() == null || isRequest(appMessage);
                 })
+                .doFinally(execution::release)
                 .subscribe(appMessage -> {
                     Log.d(TAG, "Received message: " + appMessage.getMessageType());
                     checkVersions(appMessage, internalData);
+                    BaseApiClient.onProcessingServiceInternalData(appMessage.getInternalData());
                     String messageData = appMessage.getMessageData();
                     switch (appMessage.getMessageType()) {
                         case REQUEST_MESSAGE:
-                            handleRequestMessage(clientCommunicator, messageData, appMessage.getInternalData());
+                            InternalData senderInternalData = appMessage.getInternalData();
+                            if (appMessage.getCorrelationId() != null) {
+                                handleExchangeRequestMessage(clientCommunicator.forExchange(appMessage.getCorrelationId()), messageData,
+                                                             senderInternalData);
+                            } else {
+                                clientCommunicator.setClientInternalData(senderInternalData);
+                                handleRequestMessage(clientCommunicator, messageData, senderInternalData);
+                            }
+                            break;
+                        case BATCH_REQUEST_MESSAGE:
+                            handleBatchRequestMessage(clientCommunicator, appMessage);
                             break;
                         default:
                             Log.w(TAG, String.format("Ignoring message type: %s", appMessage.getMessageType()));
@@ -112,6 +205,40 @@ public abstract class BaseApiService extends AbstractChannelService {
         }
     }
 
+    private static boolean isRequest(AppMessage appMessage) {
+        return appMessage.getMessageType().equals(REQUEST_MESSAGE) || appMessage.getMessageType().equals(BATCH_REQUEST_MESSAGE);
+    }
+
+    private void handleBatchRequestMessage(ClientCommunicator clientCommunicator, AppMessage appMessage) {
+        // Each request in the batch is handled as an exchange of its own, identified by its index within the batch
+        InternalData senderInternalData = appMessage.getInternalData();
+        List<String> requests = new ArrayList<>();
+        try {
+            JsonScanner.scanArray(appMessage.getMessageData(), (json, valueStart, valueEnd) -> requests.add(json.substring(valueStart, valueEnd)));
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Failed to parse batch request", e);
+            ClientCommunicator batchCommunicator = appMessage.getCorrelationId() != null ?
+                    clientCommunicator.forExchange(appMessage.getCorrelationId()) : clientCommunicator;
+            batchCommunicator.setClientInternalData(senderInternalData);
+            batchCommunicator.sendResponseAsErrorAndEnd(FLOW_SERVICE_ERROR, "Malformed batch request");
+            return;
+        }
+        String idPrefix = appMessage.getCorrelationId() != null ? appMessage.getCorrelationId() + ":" : "";
+        for (int i = 0; i < requests.size(); i++) {
+            handleExchangeRequestMessage(clientCommunicator.forExchange(idPrefix + i), requests.get(i), senderInternalData);
+        }
+    }
+
+    private void handleExchangeRequestMessage(ClientCommunicator clientCommunicator, String requestData, InternalData internalData) {
+        clientCommunicator.setClientInternalData(internalData);
+        try {
+            handleRequestMessage(clientCommunicator, requestData, internalData);
+        } catch (Throwable t) {
+            // Do not let a failed exchange end the channel for the other exchanges
+            Log.e(TAG, "Failed to process request", t);
+        }
+    }
+
     /**
      * Get the API version.
      *
@@ -132,4 +259,49 @@ public abstract class BaseApiService extends AbstractChannelService {
      */
     protected abstract void processRequest(@NonNull ClientCommunicator clientCommunicator, @NonNull String request,
                                            @Nullable InternalData senderInternalData);
-}
\ No newline at end of file
+
+    /**
+     * The scheduler messages are handled on, and the executor backing it if it is owned by this service.
+     *
+     * An owned executor is shut down once it has been replaced and all clients that were using it have disconnected.
+     */
+    private static final class RequestExecution {
+
+        private final Scheduler scheduler;
+        private final ExecutorService executor;
+        private int clients;
+        private boolean retired;
+
+        RequestExecution(@Nullable Scheduler scheduler, @Nullable ExecutorService executor) {
+            this.scheduler = scheduler;
+            this.executor = executor;
+        }
+
+        synchronized void acquire() {
+            clients++;
+        }
+
+        synchronized void release() {
+            clients--;
+            shutdownIfUnused();
+        }
+
+        synchronized void retire() {
+            retired = true;
+            shutdownIfUnused();
+        }
+
+        synchronized void shutdown() {
+            retired = true;
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+
+        private void shutdownIfUnused() {
+            if (retired && clients == 0 && executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+}
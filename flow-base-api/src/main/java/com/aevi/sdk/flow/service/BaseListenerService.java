@@ -15,11 +15,19 @@ package com.aevi.sdk.flow.service;
 
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.util.Log;
 
 import com.aevi.android.rxmessenger.ChannelServer;
 import com.aevi.android.rxmessenger.service.AbstractChannelService;
+import com.aevi.sdk.flow.BaseApiClient;
+import com.aevi.sdk.flow.codec.MessageCodecs;
 import com.aevi.sdk.flow.constants.AppMessageTypes;
 import com.aevi.sdk.flow.model.*;
+import com.aevi.sdk.flow.util.ResponseJournal;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import static com.aevi.sdk.flow.BaseApiClient.FLOW_PROCESSING_SERVICE;
 import static com.aevi.sdk.flow.constants.AppMessageTypes.REQUEST_ACK_MESSAGE;
@@ -34,6 +42,13 @@ import static com.aevi.sdk.flow.service.BaseApiService.checkVersions;
  */
 public abstract class BaseListenerService<RESPONSE extends BaseModel> extends AbstractChannelService {
 
+    // a single thread keeps journal appends in the order the responses were received in
+    private static final Executor JOURNAL_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, BaseListenerService.class.getSimpleName() + "-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final Class<RESPONSE> responseClass;
     private final InternalData internalData;
 
@@ -53,10 +68,11 @@ public abstract class BaseListenerService<RESPONSE extends BaseModel> extends Ab
     protected final void onNewClient(final ChannelServer channelServer, final String packageName) {
         sendAck(channelServer);
         channelServer.subscribeToMessages().take(1).subscribe(message -> {
-            AppMessage appMessage = AppMessage.fromJson(message);
+            AppMessage appMessage = MessageCodecs.decode(message);
             checkVersions(appMessage, internalData);
             channelServer.sendEndStream();
             if (FLOW_PROCESSING_SERVICE.equals(appMessage.getInternalData().getSenderPackageName())) {
+                BaseApiClient.onProcessingServiceInternalData(appMessage.getInternalData());
                 if (AppMessageTypes.RESPONSE_MESSAGE.equals(appMessage.getMessageType())) {
                     Response response = Response.fromJson(appMessage.getMessageData());
                     RESPONSE unwrapped;
@@ -67,6 +83,7 @@ public abstract class BaseListenerService<RESPONSE extends BaseModel> extends Ab
                     }
 
                     if (unwrapped != null) {
+                        appendToJournal(response, unwrapped);
                         notifyResponse(unwrapped);
                     }
                 } else if (AppMessageTypes.FAILURE_MESSAGE.equals(appMessage.getMessageType())) {
@@ -86,7 +103,39 @@ public abstract class BaseListenerService<RESPONSE extends BaseModel> extends Ab
         });
     }
 
+    private void appendToJournal(Response response, RESPONSE unwrapped) {
+        // captured before notifying, as the response may be changed by the listener
+        final ResponseJournal.Entry entry = createJournalEntry(response, unwrapped);
+        final String json = unwrapped.toJson();
+        JOURNAL_EXECUTOR.execute(() -> {
+            ResponseJournal journal = ResponseJournal.getIfEnabled(this);
+            if (journal != null) {
+                try {
+                    journal.append(entry, json);
+                } catch (IOException e) {
+                    Log.e(BaseListenerService.class.getSimpleName(), "Failed to append response to journal", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the details to index a response by in the local response journal, if the journal has been enabled by the application.
+     *
+     * @param response  The response as sent by the processing service
+     * @param unwrapped The response passed to {@link #notifyResponse(BaseModel)}
+     * @return The journal entry details
+     */
+    @NonNull
+    protected ResponseJournal.Entry createJournalEntry(@NonNull Response response, @NonNull RESPONSE unwrapped) {
+        Request request = response.getOriginatingRequest();
+        // generic responses do not record when they were created, and the time they were received at would not match the processing service
+        return new ResponseJournal.Entry(responseClass.getName(), unwrapped.getId(), request != null ? request.getRequestType() : null,
+                                         request != null ? request.getFlowName() : null, ResponseJournal.Entry.UNKNOWN_CREATION_TIME);
+    }
+
     private void sendAck(ChannelServer channelServer) {
+        MessageCodecs.addSupportedCodecs(internalData);
         AppMessage appMessage = new AppMessage(REQUEST_ACK_MESSAGE, internalData);
         channelServer.send(appMessage.toJson());
     }
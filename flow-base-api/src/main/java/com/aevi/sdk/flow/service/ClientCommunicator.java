@@ -3,10 +3,13 @@ package com.aevi.sdk.flow.service;
 import android.support.annotation.NonNull;
 import android.util.Log;
 import com.aevi.android.rxmessenger.ChannelServer;
+import com.aevi.sdk.flow.codec.MessageCodec;
+import com.aevi.sdk.flow.codec.MessageCodecs;
 import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.FlowException;
 import com.aevi.sdk.flow.model.InternalData;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 
 import static com.aevi.sdk.flow.constants.AppMessageTypes.*;
 import static com.aevi.sdk.flow.model.AppMessage.EMPTY_DATA;
@@ -15,6 +18,9 @@ import static com.aevi.sdk.flow.model.AppMessage.EMPTY_DATA;
 /**
  * This class can be used to communicate with clients.
  *
+ * If the client multiplexes several exchanges over one channel, a communicator is created per exchange. It tags all messages it sends with the
+ * correlation id of the exchange, and only sees the client messages for that exchange.
+ *
  * This is an internal class not intended to be used directly by external applications. No guarantees are made of backwards compatibility and the
  * class may be removed without any warning.
  */
@@ -24,19 +30,53 @@ public class ClientCommunicator {
 
     private final ChannelServer channelServer;
     private final InternalData responseInternalData;
+    private final String correlationId;
+    private volatile MessageCodec messageCodec = MessageCodecs.JSON;
 
     ClientCommunicator(ChannelServer channelServer, InternalData responseInternalData) {
+        this(channelServer, responseInternalData, null);
+    }
+
+    private ClientCommunicator(ChannelServer channelServer, InternalData responseInternalData, String correlationId) {
         this.channelServer = channelServer;
         this.responseInternalData = responseInternalData;
+        this.correlationId = correlationId;
+    }
+
+    /**
+     * Create a communicator for one exchange on a multiplexed channel.
+     *
+     * @param correlationId The correlation id of the exchange
+     * @return The communicator for the exchange
+     */
+    ClientCommunicator forExchange(String correlationId) {
+        ClientCommunicator clientCommunicator = new ClientCommunicator(channelServer, responseInternalData, correlationId);
+        clientCommunicator.messageCodec = messageCodec;
+        return clientCommunicator;
     }
 
     public void sendAck() {
         Log.d(TAG, "Sending ack");
-        AppMessage appMessage = new AppMessage(REQUEST_ACK_MESSAGE, responseInternalData);
-        channelServer.send(appMessage.toJson());
+        AppMessage appMessage = new AppMessage(REQUEST_ACK_MESSAGE, getResponseInternalData());
+        send(appMessage);
+    }
+
+    /**
+     * Set the internal data received from the client, which determines the codec used for messages sent back to it.
+     *
+     * @param clientInternalData The internal data from the client
+     */
+    void setClientInternalData(InternalData clientInternalData) {
+        messageCodec = MessageCodecs.select(clientInternalData);
     }
 
+    /**
+     * Get the internal data to send to the client, including the codecs that are currently supported.
+     *
+     * @return The internal data to send
+     */
     public InternalData getResponseInternalData() {
+        MessageCodecs.addSupportedCodecs(responseInternalData);
         return responseInternalData;
     }
 
@@ -47,7 +87,18 @@ public class ClientCommunicator {
      */
     public void sendMessage(AppMessage message) {
         if (channelServer != null) {
-            channelServer.send(message.toJson());
+            send(message);
+        }
+    }
+
+    private void send(AppMessage message) {
+        if (correlationId != null) {
+            message.setCorrelationId(correlationId);
+        }
+        String encoded = messageCodec.encode(message);
+        // Exchanges on a multiplexed channel may send concurrently
+        synchronized (channelServer) {
+            channelServer.send(encoded);
         }
     }
 
@@ -57,7 +108,7 @@ public class ClientCommunicator {
      * @param response The response to send
      */
     public void sendResponse(@NonNull String response) {
-        AppMessage appMessage = new AppMessage(RESPONSE_MESSAGE, response, responseInternalData);
+        AppMessage appMessage = new AppMessage(RESPONSE_MESSAGE, response, getResponseInternalData());
         sendMessage(appMessage);
     }
 
@@ -65,15 +116,21 @@ public class ClientCommunicator {
      * Finish your flow service with no response.
      */
     public void finishWithNoResponse() {
-        AppMessage appMessage = new AppMessage(RESPONSE_MESSAGE, EMPTY_DATA, responseInternalData);
+        AppMessage appMessage = new AppMessage(RESPONSE_MESSAGE, EMPTY_DATA, getResponseInternalData());
         sendMessage(appMessage);
     }
 
     /**
      * End the stream with the client.
+     *
+     * For an exchange on a multiplexed channel, this ends the exchange only and the channel stays open.
      */
     public void endStream() {
-        channelServer.sendEndStream();
+        if (correlationId != null) {
+            send(new AppMessage(EXCHANGE_END, getResponseInternalData()));
+        } else {
+            channelServer.sendEndStream();
+        }
     }
 
     /**
@@ -88,7 +145,7 @@ public class ClientCommunicator {
         FlowException flowServiceException = new FlowException(errorCode, message);
         String msg = flowServiceException.toJson();
         Log.d(TAG, "Sending error message: " + msg);
-        AppMessage errorMessage = new AppMessage(FAILURE_MESSAGE, msg, responseInternalData);
+        AppMessage errorMessage = new AppMessage(FAILURE_MESSAGE, msg, getResponseInternalData());
         sendMessage(errorMessage);
     }
 
@@ -98,6 +155,19 @@ public class ClientCommunicator {
      * @return An observable stream of client messages
      */
     public Observable<AppMessage> subscribeToMessages() {
-        return channelServer.subscribeToMessages().map(AppMessage::fromJson);
+        return subscribeToMessages(null);
+    }
+
+    Observable<AppMessage> subscribeToMessages(Scheduler scheduler) {
+        Observable<String> received = channelServer.subscribeToMessages();
+        if (scheduler != null) {
+            // observeOn uses a single worker for the subscription, so messages are still handled one at a time and in order
+            received = received.observeOn(scheduler);
+        }
+        Observable<AppMessage> messages = received.map(MessageCodecs::decode);
+        if (correlationId != null) {
+            return messages.filter(appMessage -> correlationId.equals(appMessage.getCorrelationId()));
+        }
+        return messages;
     }
 }
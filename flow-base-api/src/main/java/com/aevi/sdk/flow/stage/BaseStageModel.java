@@ -19,6 +19,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
 
 import com.aevi.android.rxmessenger.activity.ObservableActivityHelper;
 import com.aevi.sdk.flow.constants.FlowServiceEventDataKeys;
@@ -28,13 +29,25 @@ import com.aevi.sdk.flow.model.AuditEntry;
 import com.aevi.sdk.flow.model.FlowEvent;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.service.ClientCommunicator;
+import com.aevi.sdk.flow.util.FlowEventPipeline;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
 
 import static com.aevi.sdk.flow.constants.AppMessageTypes.*;
 import static com.aevi.sdk.flow.constants.InternalDataKeys.FLOW_INITIATOR;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.STAGE_DEADLINE;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.SUPPORTS_AUDIT_ENTRY_BATCH;
 import static com.aevi.sdk.flow.model.AppMessage.EMPTY_DATA;
 import static com.aevi.sdk.flow.stage.ServiceComponentDelegate.ACTIVITY_REQUEST_KEY;
+import static com.aevi.sdk.flow.util.Preconditions.checkArgument;
 
 /**
  * Internal base class for all stage models that provide the stage specific data functions.
@@ -47,11 +60,21 @@ import static com.aevi.sdk.flow.stage.ServiceComponentDelegate.ACTIVITY_REQUEST_
  */
 public abstract class BaseStageModel {
 
-    private static final int MAX_AUDIT_ENTRIES = 5;
+    private static final String TAG = BaseStageModel.class.getSimpleName();
+    private static final int DEFAULT_AUDIT_ENTRY_BUDGET = 400;
+    private static final long NO_DEADLINE = -1;
 
     private final AndroidComponentDelegate androidComponentDelegate;
-    private int auditEntryCount;
+    private final List<PendingAuditEntry> pendingAuditEntries = new ArrayList<>();
+    private int auditEntryBudget = DEFAULT_AUDIT_ENTRY_BUDGET;
+    private int auditEntryCharsUsed;
     private boolean responseSent;
+    private boolean processingInActivity;
+    private FlowEventPipeline eventPipeline;
+    private Scheduler deadlineScheduler = Schedulers.computation();
+    private Long deadline;
+    private Disposable deadlineSkip;
+    private boolean deadlineExpired;
 
     /**
      * Initialise the stage model with an android component delegate directly.
@@ -99,6 +122,100 @@ public abstract class BaseStageModel {
         return senderInternalData != null ? senderInternalData.getAdditionalDataValue(dataKey, "UNKNOWN") : "UNKNOWN";
     }
 
+    /**
+     * Check whether the processing service has set a deadline for this stage.
+     *
+     * @return True if the stage has a deadline
+     */
+    public boolean hasDeadline() {
+        return getDeadline() != NO_DEADLINE;
+    }
+
+    /**
+     * Get the time left until the deadline of this stage, after which the processing service will no longer wait for the response.
+     *
+     * This can be used to size the timeouts of any remote calls made to process the stage.
+     *
+     * @return The remaining time in milliseconds, zero if the deadline has passed or {@link Long#MAX_VALUE} if the stage has no deadline
+     */
+    public long getRemainingTimeMillis() {
+        long deadline = getDeadline();
+        if (deadline == NO_DEADLINE) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, deadline - deadlineScheduler.now(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Get a completable that completes when the deadline of this stage passes.
+     *
+     * This can be used to stop any work for the stage once the processing service has given up on the response, e.g. via
+     * {@code takeUntil(model.deadline().toObservable())}. If the stage has no deadline, the completable never completes.
+     *
+     * @return A completable completing at the deadline
+     */
+    @NonNull
+    public Completable deadline() {
+        if (!hasDeadline()) {
+            return Completable.never();
+        }
+        return Completable.defer(() -> Completable.timer(getRemainingTimeMillis(), TimeUnit.MILLISECONDS, deadlineScheduler));
+    }
+
+    /**
+     * Skip the stage automatically when its deadline passes before a response has been sent.
+     *
+     * Any response sent after the deadline has passed will then fail with an {@link IllegalStateException}, rather than being sent to a processing
+     * service that is no longer waiting for it. This has no effect if the stage has no deadline.
+     */
+    public void skipOnDeadline() {
+        if (hasDeadline() && deadlineSkip == null) {
+            deadlineSkip = deadline().subscribe(this::onDeadlineExpired);
+        }
+    }
+
+    private synchronized void onDeadlineExpired() {
+        if (!responseSent) {
+            skipAfterDeadline();
+        }
+        deadlineExpired = true;
+    }
+
+    /**
+     * Send the response used to skip the stage when its deadline has passed, see {@link #skipOnDeadline()}.
+     *
+     * By default an empty response is sent. Stage models where an empty response is not a valid way of skipping the stage override this. Stage
+     * models for stages that can not be skipped override this to send nothing, so that only responses sent after the deadline fail.
+     *
+     * This is called on the deadline scheduler, and may run concurrently with the handling of the stage.
+     */
+    protected void skipAfterDeadline() {
+        sendEmptyResponse();
+    }
+
+    private long getDeadline() {
+        if (deadline == null) {
+            deadline = parseDeadline(androidComponentDelegate.getSenderInternalData());
+        }
+        return deadline;
+    }
+
+    private static long parseDeadline(@Nullable InternalData senderInternalData) {
+        String value = senderInternalData != null ? senderInternalData.getAdditionalDataValue(STAGE_DEADLINE, null) : null;
+        if (value != null) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Ignoring invalid stage deadline: " + value);
+            }
+        }
+        return NO_DEADLINE;
+    }
+
+    void setDeadlineScheduler(Scheduler deadlineScheduler) {
+        this.deadlineScheduler = deadlineScheduler;
+    }
+
     /**
      * Returns a stream of events relevant for this service from the flow processing service.
      *
@@ -154,6 +271,11 @@ public abstract class BaseStageModel {
      */
     @NonNull
     public ObservableActivityHelper<AppMessage> processInActivity(Context context, Intent activityIntent, String requestJson) {
+        synchronized (this) {
+            // the activity responds via a model of its own, so the entries added here would otherwise never be sent
+            processingInActivity = true;
+            flushAuditEntries();
+        }
         return androidComponentDelegate.processInActivity(context, activityIntent, requestJson);
     }
 
@@ -166,7 +288,12 @@ public abstract class BaseStageModel {
      * If events occur in your flow service that may be useful for the merchant (or yourself) to know about for information and troubleshooting purposes, this
      * method can be used to notify of these events.
      *
-     * Note that a maximum of 5 audit entries per flow service per stage is allowed.
+     * Audit entries are collected and sent together just before the response, or before the stage is handed to an activity via
+     * {@link #processInActivity(Context, Class)}. The message is only formatted at that point, so the parameters should not be modified after
+     * calling this method. Entries that fail to format are dropped. Entries added after that point are sent immediately.
+     *
+     * The total length of the audit messages per flow service per stage is limited by the audit entry budget, see
+     * {@link #setAuditEntryBudget(int)}. Entries that do not fit in the remaining budget are dropped.
      *
      * The message will be truncated if it exceeds 80 characters.
      *
@@ -174,14 +301,81 @@ public abstract class BaseStageModel {
      * @param message       The message (as per the String.format() rules) - maximum 80 characters
      * @param parameters    Optional parameters to use for formatting the message, as per String.format() rules
      */
-    public void addAuditEntry(AuditEntry.AuditSeverity auditSeverity, String message, Object... parameters) {
-        if (auditEntryCount < MAX_AUDIT_ENTRIES) {
-            AuditEntry auditEntry = new AuditEntry(auditSeverity, String.format(message, parameters));
-            sendMessage(AUDIT_ENTRY, auditEntry.toJson());
-            auditEntryCount++;
+    public synchronized void addAuditEntry(AuditEntry.AuditSeverity auditSeverity, String message, Object... parameters) {
+        PendingAuditEntry pendingAuditEntry = new PendingAuditEntry(auditSeverity, message, parameters);
+        if (responseSent || processingInActivity) {
+            List<AuditEntry> auditEntries = new ArrayList<>(1);
+            addWithinBudget(auditEntries, pendingAuditEntry);
+            sendAuditEntries(auditEntries);
+        } else if (pendingAuditEntries.size() < auditEntryBudget) {
+            // as every entry takes up at least a character of the budget, any entries beyond this would be dropped anyway
+            pendingAuditEntries.add(pendingAuditEntry);
         }
     }
 
+    /**
+     * Set the maximum total number of characters of the audit messages sent for this stage.
+     *
+     * Defaults to 400 characters, which allows for five audit entries of the maximum length.
+     *
+     * @param maxCharacters The audit entry budget in characters
+     */
+    public synchronized void setAuditEntryBudget(int maxCharacters) {
+        checkArgument(maxCharacters >= 0, "The audit entry budget may not be negative");
+        auditEntryBudget = maxCharacters;
+    }
+
+    private void flushAuditEntries() {
+        if (pendingAuditEntries.isEmpty()) {
+            return;
+        }
+        List<AuditEntry> auditEntries = new ArrayList<>(pendingAuditEntries.size());
+        for (PendingAuditEntry pendingAuditEntry : pendingAuditEntries) {
+            addWithinBudget(auditEntries, pendingAuditEntry);
+        }
+        pendingAuditEntries.clear();
+        sendAuditEntries(auditEntries);
+    }
+
+    private void addWithinBudget(List<AuditEntry> auditEntries, PendingAuditEntry pendingAuditEntry) {
+        AuditEntry auditEntry;
+        try {
+            auditEntry = pendingAuditEntry.format();
+        } catch (RuntimeException e) {
+            // a malformed entry must not prevent the response or the other entries from being sent
+            Log.e(TAG, "Dropping audit entry that failed to format: " + pendingAuditEntry.message, e);
+            return;
+        }
+        int length = auditEntry.getAuditMessage().length();
+        if (auditEntryCharsUsed + length <= auditEntryBudget) {
+            auditEntryCharsUsed += length;
+            auditEntries.add(auditEntry);
+        }
+    }
+
+    private void sendAuditEntries(List<AuditEntry> auditEntries) {
+        if (auditEntries.size() > 1 && isAuditEntryBatchSupported()) {
+            StringBuilder batch = new StringBuilder("[");
+            for (AuditEntry auditEntry : auditEntries) {
+                if (batch.length() > 1) {
+                    batch.append(',');
+                }
+                batch.append(auditEntry.toJson());
+            }
+            batch.append(']');
+            sendMessage(AUDIT_ENTRY_BATCH, batch.toString());
+        } else {
+            for (AuditEntry auditEntry : auditEntries) {
+                sendMessage(AUDIT_ENTRY, auditEntry.toJson());
+            }
+        }
+    }
+
+    private boolean isAuditEntryBatchSupported() {
+        InternalData senderInternalData = androidComponentDelegate.getSenderInternalData();
+        return senderInternalData != null && Boolean.parseBoolean(senderInternalData.getAdditionalDataValue(SUPPORTS_AUDIT_ENTRY_BATCH, null));
+    }
+
     /**
      * Send an event back to the processing service for forwarding to any interested clients
      *
@@ -189,7 +383,34 @@ public abstract class BaseStageModel {
      *                  originatingRequestId and target will be automatically set by processing service accordingly
      */
     public void sendEvent(FlowEvent flowEvent) {
-        sendMessage(FLOW_EVENT, flowEvent.toJson());
+        if (eventPipeline != null) {
+            eventPipeline.submit(flowEvent).subscribe(() -> {
+            }, throwable -> Log.e(TAG, "Failed to send event", throwable));
+        } else {
+            sendMessage(FLOW_EVENT, flowEvent.toJson());
+        }
+    }
+
+    /**
+     * Collect events sent via {@link #sendEvent(FlowEvent)} over the given window before sending them.
+     *
+     * Events of the given coalesced types replace any earlier event of the same type and target that is still waiting to be sent, which is
+     * useful for events where only the latest one is of interest, such as progress updates. Any waiting events are sent before the response.
+     *
+     * @param window              The time to collect events for
+     * @param unit                The unit of the window
+     * @param coalescedEventTypes The event types where only the latest event is of interest
+     */
+    public void enableEventBatching(long window, TimeUnit unit, String... coalescedEventTypes) {
+        eventPipeline = new FlowEventPipeline(this::sendEvents, window, unit, Schedulers.computation(), FlowEventPipeline.DEFAULT_CAPACITY,
+                                              coalescedEventTypes);
+    }
+
+    private Completable sendEvents(List<FlowEvent> flowEvents) {
+        for (FlowEvent flowEvent : flowEvents) {
+            sendMessage(FLOW_EVENT, flowEvent.toJson());
+        }
+        return Completable.complete();
     }
 
     /**
@@ -204,11 +425,21 @@ public abstract class BaseStageModel {
      *
      * @param response The response
      */
-    protected final void doSendResponse(String response) {
+    protected final synchronized void doSendResponse(String response) {
+        if (deadlineExpired) {
+            throw new IllegalStateException("The stage deadline has passed");
+        }
         if (responseSent) {
             throw new IllegalStateException("Response may only be sent once");
         }
         responseSent = true;
+        if (deadlineSkip != null) {
+            deadlineSkip.dispose();
+        }
+        if (eventPipeline != null) {
+            eventPipeline.flush();
+        }
+        flushAuditEntries();
         sendMessage(RESPONSE_MESSAGE, response);
     }
 
@@ -216,4 +447,21 @@ public abstract class BaseStageModel {
         AppMessage appMessage = new AppMessage(messageType, messageData);
         androidComponentDelegate.sendMessage(appMessage);
     }
-}
\ No newline at end of file
+
+    private static class PendingAuditEntry {
+
+        private final AuditEntry.AuditSeverity auditSeverity;
+        private final String message;
+        private final Object[] parameters;
+
+        PendingAuditEntry(AuditEntry.AuditSeverity auditSeverity, String message, Object[] parameters) {
+            this.auditSeverity = auditSeverity;
+            this.message = message;
+            this.parameters = parameters;
+        }
+
+        AuditEntry format() {
+            return new AuditEntry(auditSeverity, String.format(message, parameters));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Internal immutable snapshot of a collection of strings for case insensitive lookups.
+ *
+ * A snapshot remembers the collection it was taken of along with its size and hash code, so that holders can check whether it needs to be taken
+ * again without folding the values. Holders should also drop their snapshot when they replace the collection.
+ */
+public final class CaseFoldedSet {
+
+    private static final CaseFoldedSet EMPTY = new CaseFoldedSet(null);
+
+    private final Collection<String> source;
+    private final int sourceSize;
+    private final int sourceHash;
+    private final Set<String> folded;
+
+    private CaseFoldedSet(Collection<String> source) {
+        this.source = source;
+        if (source == null || source.isEmpty()) {
+            sourceSize = 0;
+            sourceHash = 0;
+            folded = Collections.emptySet();
+        } else {
+            sourceSize = source.size();
+            sourceHash = source.hashCode();
+            folded = new HashSet<>(sourceSize * 2);
+            for (String value : source) {
+                folded.add(ComparisonUtil.foldCase(value));
+            }
+        }
+    }
+
+    /**
+     * Get a snapshot of the given collection, reusing the current snapshot if it was taken of the same collection and neither the size nor the
+     * hash code of the collection has changed since.
+     *
+     * @param current The current snapshot, or null
+     * @param source  The collection, or null for an empty snapshot
+     * @return The snapshot
+     */
+    public static CaseFoldedSet of(CaseFoldedSet current, Collection<String> source) {
+        if (source == null) {
+            return EMPTY;
+        }
+        if (current != null && current.source == source && current.sourceSize == source.size() && current.sourceHash == source.hashCode()) {
+            return current;
+        }
+        return new CaseFoldedSet(source);
+    }
+
+    /**
+     * Check whether the collection contains a value, ignoring case.
+     *
+     * @param value The value
+     * @return True if a value equal to the given value ignoring case is contained
+     */
+    public boolean contains(String value) {
+        return value != null && !folded.isEmpty() && folded.contains(ComparisonUtil.foldCase(value));
+    }
+}
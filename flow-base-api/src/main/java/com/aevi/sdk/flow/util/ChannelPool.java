@@ -0,0 +1,230 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import android.content.ComponentName;
+import com.aevi.android.rxmessenger.ChannelClient;
+import io.reactivex.Scheduler;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Internal pool of open channel connections, keyed by the component they are connected to.
+ *
+ * A connection is leased exclusively for one use at a time. A lease is only returned to the pool if the peer has advertised that it multiplexes
+ * exchanges over the connection (see {@link CorrelatedChannel}) - a peer that handles a single exchange per connection would never answer a
+ * further message, so such connections are closed instead.
+ *
+ * Idle connections are closed once they have been idle for the configured timeout, and are checked to still be connected before being reused.
+ */
+public class ChannelPool {
+
+    public interface ChannelFactory {
+        ChannelClient create(ComponentName componentName);
+    }
+
+    static final int MAX_IDLE_PER_COMPONENT = 4;
+
+    private final Map<ComponentName, Deque<IdleChannel>> idleChannels = new HashMap<>();
+    private final long idleTimeoutMs;
+    private final Scheduler scheduler;
+    private boolean evictionScheduled;
+
+    public ChannelPool(long idleTimeout, TimeUnit unit, Scheduler scheduler) {
+        this.idleTimeoutMs = unit.toMillis(idleTimeout);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Lease a connection to the given component, reusing an idle connection if there is a healthy one.
+     *
+     * @param componentName The component to connect to
+     * @param factory       The factory for new connections
+     * @return The lease, which must be released once the exchange has finished
+     */
+    public Lease acquire(ComponentName componentName, ChannelFactory factory) {
+        List<ChannelClient> toClose = new ArrayList<>();
+        ChannelClient reusable = null;
+        synchronized (this) {
+            Deque<IdleChannel> idle = idleChannels.get(componentName);
+            long now = now();
+            while (reusable == null && idle != null && !idle.isEmpty()) {
+                IdleChannel idleChannel = idle.pollFirst();
+                if (isExpired(idleChannel, now) || !idleChannel.client.isConnected()) {
+                    toClose.add(idleChannel.client);
+                } else {
+                    reusable = idleChannel.client;
+                }
+            }
+        }
+        closeAll(toClose);
+        return new Lease(componentName, reusable != null ? reusable : factory.create(componentName), reusable != null);
+    }
+
+    /**
+     * Close all idle connections.
+     *
+     * Connections that are currently leased are closed when they are released.
+     */
+    public void clear() {
+        List<ChannelClient> toClose = new ArrayList<>();
+        synchronized (this) {
+            for (Deque<IdleChannel> idle : idleChannels.values()) {
+                for (IdleChannel idleChannel : idle) {
+                    toClose.add(idleChannel.client);
+                }
+            }
+            idleChannels.clear();
+        }
+        closeAll(toClose);
+    }
+
+    synchronized int getIdleCount(ComponentName componentName) {
+        Deque<IdleChannel> idle = idleChannels.get(componentName);
+        return idle != null ? idle.size() : 0;
+    }
+
+    private void release(Lease lease) {
+        ChannelClient toClose = lease.client;
+        if (lease.multiplexed) {
+            synchronized (this) {
+                Deque<IdleChannel> idle = idleChannels.get(lease.componentName);
+                if (idle == null) {
+                    idle = new ArrayDeque<>();
+                    idleChannels.put(lease.componentName, idle);
+                }
+                if (idle.size() < MAX_IDLE_PER_COMPONENT) {
+                    // Most recently used first, so that the least used connections are the ones left to expire
+                    idle.addFirst(new IdleChannel(lease.client, now()));
+                    toClose = null;
+                    scheduleEviction(idleTimeoutMs);
+                }
+            }
+        }
+        if (toClose != null) {
+            toClose.closeConnection();
+        }
+    }
+
+    private void scheduleEviction(long delayMs) {
+        if (!evictionScheduled) {
+            evictionScheduled = true;
+            scheduler.scheduleDirect(this::evictIdle, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void evictIdle() {
+        List<ChannelClient> toClose = new ArrayList<>();
+        synchronized (this) {
+            evictionScheduled = false;
+            long now = now();
+            long nextExpiry = Long.MAX_VALUE;
+            Iterator<Deque<IdleChannel>> iterator = idleChannels.values().iterator();
+            while (iterator.hasNext()) {
+                Deque<IdleChannel> idle = iterator.next();
+                while (!idle.isEmpty() && isExpired(idle.peekLast(), now)) {
+                    toClose.add(idle.pollLast().client);
+                }
+                if (idle.isEmpty()) {
+                    iterator.remove();
+                } else {
+                    nextExpiry = Math.min(nextExpiry, idle.peekLast().idleSince + idleTimeoutMs);
+                }
+            }
+            if (!idleChannels.isEmpty()) {
+                scheduleEviction(nextExpiry - now);
+            }
+        }
+        closeAll(toClose);
+    }
+
+    private boolean isExpired(IdleChannel idleChannel, long now) {
+        return now - idleChannel.idleSince >= idleTimeoutMs;
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+
+    private static void closeAll(List<ChannelClient> clients) {
+        for (ChannelClient client : clients) {
+            client.closeConnection();
+        }
+    }
+
+    /**
+     * An exclusive lease of a connection.
+     */
+    public final class Lease {
+
+        private final ComponentName componentName;
+        private final ChannelClient client;
+        private final boolean reused;
+        private boolean multiplexed;
+        private boolean released;
+
+        private Lease(ComponentName componentName, ChannelClient client, boolean reused) {
+            this.componentName = componentName;
+            this.client = client;
+            this.reused = reused;
+            this.multiplexed = reused;
+        }
+
+        public ChannelClient getClient() {
+            return client;
+        }
+
+        /**
+         * @return True if the connection was taken from the pool, false if it is a new connection
+         */
+        public boolean isReused() {
+            return reused;
+        }
+
+        /**
+         * Mark the connection as multiplexed by the peer, so that it is returned to the pool on release.
+         *
+         * Connections taken from the pool are already marked as multiplexed.
+         */
+        public synchronized void markMultiplexed() {
+            multiplexed = true;
+        }
+
+        /**
+         * Release the lease, either returning the connection to the pool or closing it.
+         */
+        public void release() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            ChannelPool.this.release(this);
+        }
+    }
+
+    private static class IdleChannel {
+
+        private final ChannelClient client;
+        private final long idleSince;
+
+        IdleChannel(ChannelClient client, long idleSince) {
+            this.client = client;
+            this.idleSince = idleSince;
+        }
+    }
+}
@@ -25,6 +25,45 @@ public final class ComparisonUtil {
     private ComparisonUtil() {
     }
 
+    /**
+     * Check whether a version is at least the given minimum version.
+     *
+     * Only the numeric major.minor.patch components are compared, any qualifiers such as "-SNAPSHOT" are ignored.
+     *
+     * @param version        The version to check
+     * @param minimumVersion The minimum version
+     * @return True if the version is the same as or newer than the minimum version
+     */
+    public static boolean isVersionAtLeast(String version, String minimumVersion) {
+        int[] parts = parseVersion(version);
+        int[] minimumParts = parseVersion(minimumVersion);
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i] != minimumParts[i]) {
+                return parts[i] > minimumParts[i];
+            }
+        }
+        return true;
+    }
+
+    private static int[] parseVersion(String version) {
+        int[] parts = new int[3];
+        if (version == null) {
+            return parts;
+        }
+        int part = 0;
+        for (int i = 0; i < version.length() && part < parts.length; i++) {
+            char c = version.charAt(i);
+            if (c >= '0' && c <= '9') {
+                parts[part] = parts[part] * 10 + (c - '0');
+            } else if (c == '.') {
+                part++;
+            } else {
+                break;
+            }
+        }
+        return parts;
+    }
+
     public static boolean stringCollectionContainsIgnoreCase(Collection<String> collection, String value) {
         if (value == null) {
             return false;
@@ -37,6 +76,35 @@ public final class ComparisonUtil {
         return false;
     }
 
+    /**
+     * Fold the case of a string, so that strings that are equal ignoring case (as per {@link String#equalsIgnoreCase(String)}) fold to equal
+     * strings.
+     *
+     * @param value The string to fold
+     * @return The case folded string, which is the same instance if the string is already folded
+     */
+    public static String foldCase(String value) {
+        if (value == null) {
+            return null;
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (foldCase(c) != c) {
+                char[] folded = value.toCharArray();
+                for (int j = i; j < length; j++) {
+                    folded[j] = foldCase(folded[j]);
+                }
+                return new String(folded);
+            }
+        }
+        return value;
+    }
+
+    private static char foldCase(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
     public static boolean stringArrayContainsIgnoreCase(String[] array, String value) {
         if (value == null) {
             return false;
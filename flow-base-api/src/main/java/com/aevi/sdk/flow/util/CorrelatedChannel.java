@@ -0,0 +1,171 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.util;
+
+import com.aevi.android.rxmessenger.ChannelClient;
+import com.aevi.sdk.flow.codec.MessageCodecs;
+import com.aevi.sdk.flow.constants.ErrorConstants;
+import com.aevi.sdk.flow.model.AppMessage;
+import com.aevi.sdk.flow.model.FlowException;
+import com.aevi.sdk.flow.model.InternalData;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.aevi.sdk.flow.constants.AppMessageTypes.EXCHANGE_END;
+import static com.aevi.sdk.flow.constants.AppMessageTypes.FAILURE_MESSAGE;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.SUPPORTS_MULTIPLEXING;
+
+/**
+ * Internal wrapper of a channel connection that multiplexes several exchanges over the connection.
+ *
+ * Each message is sent as an exchange of its own, identified by a new correlation id. The peer tags every message of the exchange with the
+ * correlation id, or for a batch with the correlation id followed by ":" and the index of the item in the batch, ends the exchange with an
+ * {@link com.aevi.sdk.flow.constants.AppMessageTypes#EXCHANGE_END} message and leaves the connection open for further exchanges.
+ */
+public class CorrelatedChannel {
+
+    private static final String ITEM_SEPARATOR = ":";
+
+    private final ChannelClient client;
+    private volatile boolean multiplexingAdvertised;
+    private volatile InternalData peerInternalData;
+
+    public CorrelatedChannel(ChannelClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Send a message as a new exchange.
+     *
+     * @param appMessage The message, which is given a new correlation id on each subscription
+     * @return The messages of the exchange, including those of each item if the message is a batch
+     */
+    public Observable<AppMessage> send(final AppMessage appMessage) {
+        return Observable.defer(() -> {
+            final String correlationId = UUID.randomUUID().toString();
+            final String itemPrefix = correlationId + ITEM_SEPARATOR;
+            appMessage.setCorrelationId(correlationId);
+            return client.sendMessage(appMessage.toJson())
+                    .map(MessageCodecs::decode)
+                    .filter(reply -> {
+                        String replyId = reply.getCorrelationId();
+                        return replyId != null && (replyId.equals(correlationId) || replyId.startsWith(itemPrefix));
+                    })
+                    .doOnNext(this::checkPeerInternalData);
+        });
+    }
+
+    /**
+     * @return True if the peer has advertised that it keeps the connection open for further exchanges
+     */
+    public boolean isMultiplexingAdvertised() {
+        return multiplexingAdvertised;
+    }
+
+    /**
+     * @return The internal data of the last reply from the peer that had any, or null
+     */
+    public InternalData getPeerInternalData() {
+        return peerInternalData;
+    }
+
+    private void checkPeerInternalData(AppMessage reply) {
+        InternalData internalData = reply.getInternalData();
+        if (internalData != null) {
+            peerInternalData = internalData;
+            if (Boolean.parseBoolean(internalData.getAdditionalDataValue(SUPPORTS_MULTIPLEXING, "false"))) {
+                multiplexingAdvertised = true;
+            }
+        }
+    }
+
+    /**
+     * Get the data of the messages of an exchange, as it would have been sent on a connection of its own.
+     *
+     * @param exchange The messages of the exchange
+     * @return The message data, completing once the peer has ended the exchange or failing if the peer sent a failure
+     */
+    public static Observable<String> replies(Observable<AppMessage> exchange) {
+        return exchange
+                .takeWhile(reply -> !EXCHANGE_END.equals(reply.getMessageType()))
+                .concatMap(reply -> {
+                    if (FAILURE_MESSAGE.equals(reply.getMessageType())) {
+                        return Observable.error(FlowException.fromJson(reply.getMessageData()));
+                    }
+                    return Observable.just(reply.getMessageData());
+                });
+    }
+
+    /**
+     * Wait for an exchange to be accepted by the peer, which is when the peer sends the first message of the exchange.
+     *
+     * @param exchange The messages of the exchange
+     * @return Completable that completes once the exchange was accepted, or fails if the peer sent a failure instead
+     */
+    public static Completable accepted(Observable<AppMessage> exchange) {
+        return exchange
+                .firstOrError()
+                .flatMapCompletable(CorrelatedChannel::checkAccepted);
+    }
+
+    /**
+     * Wait for every item of a batch exchange to be accepted by the peer, which is when the peer sends the first message for the item.
+     *
+     * @param exchange  The messages of the batch exchange
+     * @param itemCount The number of items in the batch
+     * @return Completable that completes once every item was accepted, or fails once every item has been accounted for if the peer sent a failure
+     * for any of them, or for the batch as a whole
+     */
+    public static Completable batchAccepted(final Observable<AppMessage> exchange, final int itemCount) {
+        return Observable.defer(() -> {
+            final Set<String> accountedItems = new HashSet<>();
+            return exchange.filter(reply -> !isItem(reply) || accountedItems.add(reply.getCorrelationId()));
+        }).concatMap(reply -> {
+            if (isItem(reply)) {
+                return Observable.just(reply);
+            }
+            // A failure of the batch as a whole means that none of the items will be accounted for
+            return FAILURE_MESSAGE.equals(reply.getMessageType()) ?
+                    Observable.error(FlowException.fromJson(reply.getMessageData())) : Observable.empty();
+        }).take(itemCount).toList().flatMapCompletable(firstReplies -> {
+            for (AppMessage reply : firstReplies) {
+                if (FAILURE_MESSAGE.equals(reply.getMessageType())) {
+                    return checkAccepted(reply);
+                }
+            }
+            if (firstReplies.size() < itemCount) {
+                return Completable.error(new FlowException(ErrorConstants.FLOW_SERVICE_ERROR,
+                                                           "Connection ended before all requests in the batch were accepted"));
+            }
+            return Completable.complete();
+        });
+    }
+
+    private static boolean isItem(AppMessage reply) {
+        return reply.getCorrelationId().contains(ITEM_SEPARATOR);
+    }
+
+    private static Completable checkAccepted(AppMessage reply) {
+        if (FAILURE_MESSAGE.equals(reply.getMessageType())) {
+            return Completable.error(FlowException.fromJson(reply.getMessageData()));
+        }
+        return Completable.complete();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.util;
+
+import com.aevi.sdk.flow.model.Device;
+import com.aevi.sdk.flow.model.DeviceListDiff;
+import com.aevi.sdk.flow.model.FlowEvent;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Internal cache of the connected devices, kept up to date from system events.
+ *
+ * The device list is fetched when the first subscriber subscribes to {@link #observeChanges()}, and fetched again after each system event. A
+ * failed fetch is skipped, and the list is fetched again after the next system event. While there are subscribers, the latest list is available
+ * via {@link #getCachedDevices()}. The cache is dropped once all subscribers have unsubscribed or the system events fail, as changes can no longer
+ * be observed.
+ */
+public class DeviceRegistry {
+
+    private final Observable<List<Device>> deviceLists;
+    private volatile List<Device> devices;
+
+    /**
+     * @param systemEvents The system events that may indicate a change of the connected devices
+     * @param fetch        The single to fetch the connected devices with
+     */
+    public DeviceRegistry(Observable<FlowEvent> systemEvents, final Single<List<Device>> fetch) {
+        deviceLists = systemEvents
+                .map(event -> Boolean.TRUE)
+                .startWith(Boolean.TRUE)
+                // a fetch still in progress is superseded by the one for a later event
+                .switchMapMaybe(refresh -> fetch.toMaybe().onErrorComplete())
+                .map(this::update)
+                .doFinally(() -> devices = null)
+                // late subscribers get the latest list, to report as added
+                .replay(1)
+                .refCount();
+    }
+
+    /**
+     * Observe changes to the connected devices.
+     *
+     * The first emission to each subscriber reports all currently connected devices as added.
+     *
+     * @return A stream of the changes to the connected devices
+     */
+    public Observable<DeviceListDiff> observeChanges() {
+        return Observable.defer(() -> {
+            // each subscriber gets the changes relative to the last list it has seen
+            final AtomicReference<List<Device>> previous = new AtomicReference<>();
+            return deviceLists
+                    .map(current -> DeviceListDiff.between(previous.getAndSet(current), current))
+                    .filter(diff -> !diff.isEmpty());
+        });
+    }
+
+    /**
+     * Get the latest list of connected devices, if changes are being observed.
+     *
+     * @return The connected devices, or null if the list is not known
+     */
+    public List<Device> getCachedDevices() {
+        return devices;
+    }
+
+    private List<Device> update(List<Device> current) {
+        List<Device> snapshot = Collections.unmodifiableList(new ArrayList<>(current));
+        devices = snapshot;
+        return snapshot;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import com.aevi.sdk.flow.model.FlowEvent;
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import io.reactivex.subjects.CompletableSubject;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.aevi.sdk.flow.constants.FlowServiceEventTypes.FINISH_IMMEDIATELY;
+
+/**
+ * Internal pipeline that collects flow events over a short window and sends them together.
+ *
+ * While queued, an event of a coalesced type replaces any earlier queued event of the same type and target, as only the latest such event
+ * (for instance a progress update) is of interest. The queue is flushed when the window expires, when it is full, or immediately for terminal
+ * events such as {@link com.aevi.sdk.flow.constants.FlowServiceEventTypes#FINISH_IMMEDIATELY}. Events are sent in the order they were queued.
+ */
+public class FlowEventPipeline {
+
+    public interface EventSink {
+
+        /**
+         * Send a batch of events.
+         *
+         * @param events The events, in order
+         * @return A completable that completes once the events have been accepted
+         */
+        Completable send(List<FlowEvent> events);
+    }
+
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private static final Set<String> TERMINAL_TYPES = Collections.singleton(FINISH_IMMEDIATELY);
+
+    private final EventSink sink;
+    private final long windowMs;
+    private final Scheduler scheduler;
+    private final int capacity;
+    private final Set<String> coalescedTypes;
+    private final List<PendingEvent> pending = new ArrayList<>();
+    private boolean flushScheduled;
+
+    public FlowEventPipeline(EventSink sink, long window, TimeUnit unit, Scheduler scheduler, int capacity, String... coalescedTypes) {
+        this.sink = sink;
+        this.windowMs = unit.toMillis(window);
+        this.scheduler = scheduler;
+        this.capacity = capacity;
+        this.coalescedTypes = new HashSet<>(Arrays.asList(coalescedTypes));
+    }
+
+    /**
+     * Queue an event for sending when subscribed to.
+     *
+     * @param flowEvent The event
+     * @return A completable that completes once the event, or an event that superseded it, has been sent
+     */
+    public Completable submit(final FlowEvent flowEvent) {
+        return Completable.defer(() -> {
+            CompletableSubject result = CompletableSubject.create();
+            List<PendingEvent> toSend = null;
+            synchronized (this) {
+                PendingEvent pendingEvent = new PendingEvent(flowEvent, result);
+                if (coalescedTypes.contains(flowEvent.getType())) {
+                    coalesce(pendingEvent);
+                }
+                pending.add(pendingEvent);
+                if (pending.size() >= capacity || TERMINAL_TYPES.contains(flowEvent.getType())) {
+                    toSend = drain();
+                } else if (!flushScheduled) {
+                    flushScheduled = true;
+                    scheduler.scheduleDirect(this::flush, windowMs, TimeUnit.MILLISECONDS);
+                }
+            }
+            dispatch(toSend);
+            return result;
+        });
+    }
+
+    /**
+     * Send any queued events now.
+     */
+    public void flush() {
+        List<PendingEvent> toSend;
+        synchronized (this) {
+            toSend = drain();
+        }
+        dispatch(toSend);
+    }
+
+    synchronized int getQueuedCount() {
+        return pending.size();
+    }
+
+    private void coalesce(PendingEvent pendingEvent) {
+        Iterator<PendingEvent> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            PendingEvent queued = iterator.next();
+            if (queued.supersededBy(pendingEvent.flowEvent)) {
+                iterator.remove();
+                pendingEvent.results.addAll(queued.results);
+            }
+        }
+    }
+
+    private List<PendingEvent> drain() {
+        flushScheduled = false;
+        if (pending.isEmpty()) {
+            return null;
+        }
+        List<PendingEvent> drained = new ArrayList<>(pending);
+        pending.clear();
+        return drained;
+    }
+
+    private void dispatch(final List<PendingEvent> toSend) {
+        if (toSend == null) {
+            return;
+        }
+        List<FlowEvent> events = new ArrayList<>(toSend.size());
+        for (PendingEvent pendingEvent : toSend) {
+            events.add(pendingEvent.flowEvent);
+        }
+        Completable sent;
+        try {
+            sent = sink.send(events);
+        } catch (Throwable t) {
+            sent = Completable.error(t);
+        }
+        sent.subscribe(() -> {
+            for (PendingEvent pendingEvent : toSend) {
+                pendingEvent.onComplete();
+            }
+        }, throwable -> {
+            for (PendingEvent pendingEvent : toSend) {
+                pendingEvent.onError(throwable);
+            }
+        });
+    }
+
+    private static class PendingEvent {
+
+        private final FlowEvent flowEvent;
+        private final List<CompletableSubject> results = new ArrayList<>(1);
+
+        PendingEvent(FlowEvent flowEvent, CompletableSubject result) {
+            this.flowEvent = flowEvent;
+            results.add(result);
+        }
+
+        boolean supersededBy(FlowEvent other) {
+            return flowEvent.getType().equals(other.getType()) && Objects.equals(flowEvent.getTarget(), other.getTarget());
+        }
+
+        void onComplete() {
+            for (CompletableSubject result : results) {
+                result.onComplete();
+            }
+        }
+
+        void onError(Throwable throwable) {
+            for (CompletableSubject result : results) {
+                result.onError(throwable);
+            }
+        }
+    }
+}
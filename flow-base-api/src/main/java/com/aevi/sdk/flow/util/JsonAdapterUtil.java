@@ -0,0 +1,186 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Internal helpers for hand-written JSON type adapters.
+ *
+ * The helpers mirror how the reflective converter reads and writes fields, so that adapters built on them produce and accept the same JSON.
+ */
+public final class JsonAdapterUtil {
+
+    private JsonAdapterUtil() {
+    }
+
+    /**
+     * Write a string field. Null values are only written if the writer is set to serialise nulls.
+     *
+     * @param out   The writer
+     * @param name  The field name
+     * @param value The value
+     * @throws IOException on write failure
+     */
+    public static void writeString(JsonWriter out, String name, String value) throws IOException {
+        out.name(name);
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(value);
+        }
+    }
+
+    /**
+     * Read a string value, accepting numbers and booleans as the reflective converter does.
+     *
+     * @param in The reader
+     * @return The value, or null
+     * @throws IOException on read failure
+     */
+    public static String readString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    /**
+     * Consume a null value if there is one.
+     *
+     * Primitive fields keep their default value when the JSON value is null.
+     *
+     * @param in The reader
+     * @return True if a null was consumed
+     * @throws IOException on read failure
+     */
+    public static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Write a map of strings to longs as a field.
+     *
+     * @param out  The writer
+     * @param name The field name
+     * @param map  The map
+     * @throws IOException on write failure
+     */
+    public static void writeLongMap(JsonWriter out, String name, Map<String, Long> map) throws IOException {
+        out.name(name);
+        if (map == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        for (Map.Entry<String, Long> entry : map.entrySet()) {
+            out.name(String.valueOf(entry.getKey()));
+            Long value = entry.getValue();
+            if (value == null) {
+                out.nullValue();
+            } else {
+                out.value(value.longValue());
+            }
+        }
+        out.endObject();
+    }
+
+    /**
+     * Read a map of strings to longs.
+     *
+     * @param in The reader
+     * @return The map, or null
+     * @throws IOException on read failure
+     */
+    public static Map<String, Long> readLongMap(JsonReader in) throws IOException {
+        if (skipNull(in)) {
+            return null;
+        }
+        Map<String, Long> map = new LinkedHashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            Long value = skipNull(in) ? null : in.nextLong();
+            putUnique(map, key, value);
+        }
+        in.endObject();
+        return map;
+    }
+
+    /**
+     * Write a map of strings to strings as a field.
+     *
+     * @param out  The writer
+     * @param name The field name
+     * @param map  The map
+     * @throws IOException on write failure
+     */
+    public static void writeStringMap(JsonWriter out, String name, Map<String, String> map) throws IOException {
+        out.name(name);
+        if (map == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writeString(out, String.valueOf(entry.getKey()), entry.getValue());
+        }
+        out.endObject();
+    }
+
+    /**
+     * Read a map of strings to strings into the given map.
+     *
+     * @param in  The reader
+     * @param map The map to read into
+     * @return The map, or null if the JSON value was null
+     * @throws IOException on read failure
+     */
+    public static Map<String, String> readStringMap(JsonReader in, Map<String, String> map) throws IOException {
+        if (skipNull(in)) {
+            return null;
+        }
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            putUnique(map, key, readString(in));
+        }
+        in.endObject();
+        return map;
+    }
+
+    private static <V> void putUnique(Map<String, V> map, String key, V value) {
+        if (map.containsKey(key)) {
+            throw new JsonSyntaxException("duplicate key: " + key);
+        }
+        map.put(key, value);
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+/**
+ * Internal single pass scanner for the top level members of a JSON object.
+ *
+ * Member values are not parsed or unescaped, the scanner only reports where they start and end in the source string. This allows nested
+ * JSON values to be extracted as-is, without the cost of building an object tree and serialising it again.
+ */
+public final class JsonScanner {
+
+    /**
+     * Callback for each top level member of a scanned JSON object.
+     */
+    public interface MemberVisitor {
+
+        /**
+         * Called for each member of the object.
+         *
+         * @param name       The (unescaped) member name
+         * @param json       The source JSON
+         * @param valueStart The index of the first character of the value
+         * @param valueEnd   The index after the last character of the value
+         */
+        void onMember(String name, String json, int valueStart, int valueEnd);
+    }
+
+    /**
+     * Callback for each top level element of a scanned JSON array.
+     */
+    public interface ElementVisitor {
+
+        /**
+         * Called for each element of the array.
+         *
+         * @param json       The source JSON
+         * @param valueStart The index of the first character of the element
+         * @param valueEnd   The index after the last character of the element
+         */
+        void onElement(String json, int valueStart, int valueEnd);
+    }
+
+    private JsonScanner() {
+    }
+
+    /**
+     * Scan the top level members of a JSON object.
+     *
+     * @param json    The JSON object
+     * @param visitor The visitor to call for each member
+     * @throws IllegalArgumentException if the JSON is not a well-formed object
+     */
+    public static void scanObject(String json, MemberVisitor visitor) {
+        int pos = skipWhitespace(json, 0);
+        expect(json, pos, '{');
+        pos = skipWhitespace(json, pos + 1);
+        if (charAt(json, pos) == '}') {
+            checkTrailing(json, pos + 1);
+            return;
+        }
+        while (true) {
+            expect(json, pos, '"');
+            int nameEnd = skipString(json, pos);
+            String name = readString(json, pos, nameEnd);
+            pos = skipWhitespace(json, nameEnd);
+            expect(json, pos, ':');
+            int valueStart = skipWhitespace(json, pos + 1);
+            int valueEnd = skipValue(json, valueStart);
+            visitor.onMember(name, json, valueStart, valueEnd);
+            pos = skipWhitespace(json, valueEnd);
+            char c = charAt(json, pos);
+            if (c == ',') {
+                pos = skipWhitespace(json, pos + 1);
+            } else if (c == '}') {
+                checkTrailing(json, pos + 1);
+                return;
+            } else {
+                throw malformed(json, pos);
+            }
+        }
+    }
+
+    /**
+     * Scan the top level elements of a JSON array.
+     *
+     * @param json    The JSON array
+     * @param visitor The visitor to call for each element
+     * @throws IllegalArgumentException if the JSON is not a well-formed array
+     */
+    public static void scanArray(String json, ElementVisitor visitor) {
+        int pos = skipWhitespace(json, 0);
+        expect(json, pos, '[');
+        pos = skipWhitespace(json, pos + 1);
+        if (charAt(json, pos) == ']') {
+            checkTrailing(json, pos + 1);
+            return;
+        }
+        while (true) {
+            int valueEnd = skipValue(json, pos);
+            visitor.onElement(json, pos, valueEnd);
+            pos = skipWhitespace(json, valueEnd);
+            char c = charAt(json, pos);
+            if (c == ',') {
+                pos = skipWhitespace(json, pos + 1);
+            } else if (c == ']') {
+                checkTrailing(json, pos + 1);
+                return;
+            } else {
+                throw malformed(json, pos);
+            }
+        }
+    }
+
+    /**
+     * Check whether the value in the given range is a JSON string literal.
+     *
+     * @param json       The source JSON
+     * @param valueStart The start of the value
+     * @return True if the value is a string
+     */
+    public static boolean isString(String json, int valueStart) {
+        return charAt(json, valueStart) == '"';
+    }
+
+    /**
+     * Check whether the value in the given range is a JSON object or array.
+     *
+     * @param json       The source JSON
+     * @param valueStart The start of the value
+     * @return True if the value is an object or array
+     */
+    public static boolean isStructure(String json, int valueStart) {
+        char c = charAt(json, valueStart);
+        return c == '{' || c == '[';
+    }
+
+    /**
+     * Check whether the given value is a JSON object or array, ignoring any leading whitespace.
+     *
+     * @param value The value to check
+     * @return True if the value looks like an object or array
+     */
+    public static boolean looksLikeStructure(String value) {
+        return value != null && isStructure(value, skipWhitespace(value, 0));
+    }
+
+    /**
+     * Read the given top level members of a JSON object as strings, without parsing the other members.
+     *
+     * Each value is read as per {@link #readString(String, int, int)}.
+     *
+     * @param json  The JSON object
+     * @param names The member names
+     * @return The member values in the order of the given names, with null for missing members
+     */
+    public static String[] readMembers(String json, String... names) {
+        final String[] values = new String[names.length];
+        scanObject(json, (name, source, valueStart, valueEnd) -> {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    values[i] = readString(source, valueStart, valueEnd);
+                }
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Read a value in the given range as a string.
+     *
+     * String literals are unescaped, null literals are returned as null and any other value is returned as its raw JSON.
+     *
+     * @param json       The source JSON
+     * @param valueStart The start of the value
+     * @param valueEnd   The end of the value
+     * @return The value
+     */
+    public static String readString(String json, int valueStart, int valueEnd) {
+        if (!isString(json, valueStart)) {
+            return json.regionMatches(valueStart, "null", 0, 4) && valueEnd - valueStart == 4 ? null : json.substring(valueStart, valueEnd);
+        }
+        int contentEnd = valueEnd - 1;
+        int escape = json.indexOf('\\', valueStart + 1);
+        if (escape < 0 || escape >= contentEnd) {
+            return json.substring(valueStart + 1, contentEnd);
+        }
+        StringBuilder sb = new StringBuilder(contentEnd - valueStart);
+        sb.append(json, valueStart + 1, escape);
+        int pos = escape;
+        while (pos < contentEnd) {
+            char c = json.charAt(pos++);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char escaped = json.charAt(pos++);
+            switch (escaped) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > contentEnd) {
+                        throw malformed(json, pos);
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw malformed(json, pos);
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    sb.append(escaped);
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Find the end of the value starting at the given position.
+     *
+     * @param json  The source JSON
+     * @param start The start of the value
+     * @return The index after the last character of the value
+     */
+    public static int skipValue(String json, int start) {
+        char c = charAt(json, start);
+        if (c == '"') {
+            return skipString(json, start);
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            int pos = start;
+            while (pos < json.length()) {
+                char current = json.charAt(pos);
+                if (current == '"') {
+                    pos = skipString(json, pos);
+                    continue;
+                }
+                if (current == '{' || current == '[') {
+                    depth++;
+                } else if (current == '}' || current == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        return pos + 1;
+                    }
+                }
+                pos++;
+            }
+            throw malformed(json, pos);
+        }
+        int pos = start;
+        while (pos < json.length()) {
+            char current = json.charAt(pos);
+            if (current == ',' || current == '}' || current == ']' || isWhitespace(current)) {
+                break;
+            }
+            pos++;
+        }
+        if (pos == start) {
+            throw malformed(json, pos);
+        }
+        return pos;
+    }
+
+    private static int skipString(String json, int start) {
+        int pos = start + 1;
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c == '\\') {
+                pos += 2;
+            } else if (c == '"') {
+                return pos + 1;
+            } else {
+                pos++;
+            }
+        }
+        throw malformed(json, pos);
+    }
+
+    private static int skipWhitespace(String json, int pos) {
+        while (pos < json.length() && isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static void checkTrailing(String json, int pos) {
+        if (skipWhitespace(json, pos) != json.length()) {
+            throw malformed(json, pos);
+        }
+    }
+
+    private static char charAt(String json, int pos) {
+        return pos < json.length() ? json.charAt(pos) : 0;
+    }
+
+    private static void expect(String json, int pos, char expected) {
+        if (charAt(json, pos) != expected) {
+            throw malformed(json, pos);
+        }
+    }
+
+    private static IllegalArgumentException malformed(String json, int pos) {
+        return new IllegalArgumentException(String.format("Malformed JSON at position %d of %d", pos, json.length()));
+    }
+}
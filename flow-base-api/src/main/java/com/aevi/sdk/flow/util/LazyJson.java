@@ -0,0 +1,174 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.aevi.util.json.Jsonable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Internal holder of a model that is only deserialised from its JSON when first accessed.
+ *
+ * Top level members can be read from the raw JSON via {@link #getString(String)} and {@link #getMemberJson(String)} without deserialising the
+ * model, which allows callers to inspect a few header fields cheaply and skip the full decode when they turn out not to need the model.
+ *
+ * @param <T> The model type
+ */
+public final class LazyJson<T extends Jsonable> {
+
+    public interface Decoder<T> {
+
+        /**
+         * Deserialise the model.
+         *
+         * @param json The JSON of the model
+         * @return The model
+         */
+        T decode(String json);
+    }
+
+    private final Decoder<T> decoder;
+    private String json;
+    private volatile T value;
+    private Map<String, int[]> members;
+
+    private LazyJson(String json, Decoder<T> decoder, T value) {
+        this.json = json;
+        this.decoder = decoder;
+        this.value = value;
+    }
+
+    /**
+     * Wrap the JSON of a model that should be deserialised on first access.
+     *
+     * @param json    The JSON of the model
+     * @param decoder The decoder to deserialise the model with
+     * @param <T>     The model type
+     * @return The lazy holder
+     */
+    @NonNull
+    public static <T extends Jsonable> LazyJson<T> of(@NonNull String json, @NonNull Decoder<T> decoder) {
+        return new LazyJson<>(json, decoder, null);
+    }
+
+    /**
+     * Wrap an already deserialised model.
+     *
+     * @param value The model
+     * @param <T>   The model type
+     * @return The holder
+     */
+    @NonNull
+    public static <T extends Jsonable> LazyJson<T> of(@NonNull T value) {
+        return new LazyJson<>(null, null, value);
+    }
+
+    /**
+     * Get the model, deserialising it on the first call.
+     *
+     * @return The model
+     */
+    @NonNull
+    public T get() {
+        T result = value;
+        if (result == null) {
+            synchronized (this) {
+                result = value;
+                if (result == null) {
+                    result = value = decoder.decode(json);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check whether the model has been deserialised yet.
+     *
+     * @return True if the model has been deserialised
+     */
+    public boolean isDecoded() {
+        return value != null;
+    }
+
+    /**
+     * Get the JSON of the model.
+     *
+     * The original JSON is returned as-is if there is any, so that passing the model on does not require a deserialise and serialise round trip.
+     *
+     * @return The JSON of the model
+     */
+    @NonNull
+    public synchronized String toJson() {
+        if (json == null) {
+            json = value.toJson();
+        }
+        return json;
+    }
+
+    /**
+     * Get the JSON of the model as it is now.
+     *
+     * Once the model has been deserialised it may have been modified, so it is serialised again. Otherwise the original JSON is returned as-is.
+     *
+     * @return The JSON of the model
+     */
+    @NonNull
+    public String toCurrentJson() {
+        T result = value;
+        return result != null ? result.toJson() : toJson();
+    }
+
+    /**
+     * Read a top level string member of the model without deserialising it.
+     *
+     * @param name The member name
+     * @return The member value, or null if there is no such member
+     */
+    @Nullable
+    public String getString(String name) {
+        int[] range = getMemberRange(name);
+        return range != null ? JsonScanner.readString(toJson(), range[0], range[1]) : null;
+    }
+
+    /**
+     * Get the raw JSON of a top level member of the model without deserialising it.
+     *
+     * @param name The member name
+     * @return The JSON of the member value, or null if there is no such member or its value is null
+     */
+    @Nullable
+    public String getMemberJson(String name) {
+        int[] range = getMemberRange(name);
+        if (range == null) {
+            return null;
+        }
+        String source = toJson();
+        boolean isNull = range[1] - range[0] == 4 && source.regionMatches(range[0], "null", 0, 4);
+        return isNull ? null : source.substring(range[0], range[1]);
+    }
+
+    private synchronized int[] getMemberRange(String name) {
+        if (members == null) {
+            final Map<String, int[]> scanned = new HashMap<>();
+            JsonScanner.scanObject(toJson(), (memberName, source, valueStart, valueEnd) -> scanned.put(memberName, new int[]{valueStart, valueEnd}));
+            members = scanned;
+        }
+        return members.get(name);
+    }
+}
@@ -0,0 +1,648 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.util;
+
+import android.content.Context;
+import com.aevi.sdk.flow.model.ResponseQuery;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Internal journal of the responses received by the listener services of an application, to serve response queries without the processing service.
+ *
+ * Responses are appended to segment files as length prefixed and checksummed records, and indexed in memory by type and id and by creation time.
+ * Full segments are sealed and memory mapped for reads, and compacted if most of their records have been superseded by later records for the same
+ * response. The oldest segments are evicted once the journal exceeds its maximum size.
+ *
+ * The journal keeps track of the creation time from which on it holds all responses it was given, which is the time it was enabled or the time of
+ * the newest evicted response. As it is not given all responses (direct responses and responses of types without a listener service are never
+ * journaled), queries are only answered by the journal if they are for a response it holds, see {@link #covers(ResponseQuery)}.
+ */
+public class ResponseJournal {
+
+    public static final long DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+    private static final String DIRECTORY_NAME = "response-journal";
+    private static final String META_FILE_NAME = "journal.meta";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int SEGMENTS_PER_JOURNAL = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Map<String, ResponseJournal> journals = new HashMap<>();
+
+    /**
+     * The details a journaled response is indexed by.
+     */
+    public static class Entry {
+
+        /**
+         * The creation time of responses that do not record when they were created.
+         */
+        public static final long UNKNOWN_CREATION_TIME = 0;
+
+        private final String responseType;
+        private final String id;
+        private final String flowType;
+        private final String flowName;
+        private final long creationTime;
+
+        /**
+         * @param responseType The class name of the response
+         * @param id           The id of the response, which is the id of the originating request
+         * @param flowType     The flow type of the originating request
+         * @param flowName     The flow name of the originating request
+         * @param creationTime The creation time of the response in milliseconds since epoch, or {@link #UNKNOWN_CREATION_TIME}
+         */
+        public Entry(String responseType, String id, String flowType, String flowName, long creationTime) {
+            this.responseType = responseType;
+            this.id = id;
+            this.flowType = flowType;
+            this.flowName = flowName;
+            this.creationTime = creationTime;
+        }
+
+        public String getResponseType() {
+            return responseType;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getFlowType() {
+            return flowType;
+        }
+
+        public String getFlowName() {
+            return flowName;
+        }
+
+        public long getCreationTime() {
+            return creationTime;
+        }
+
+        boolean matches(ResponseQuery query) {
+            return equal(query.getResponseType(), responseType) &&
+                    (query.getRequestId() == null || query.getRequestId().equals(id)) &&
+                    (query.getFlowType() == null || query.getFlowType().equals(flowType)) &&
+                    (query.getFlowName() == null || query.getFlowName().equals(flowName));
+        }
+    }
+
+    private static final class Record {
+
+        final Entry entry;
+        Segment segment;
+        long position;
+        final int length;
+
+        Record(Entry entry, Segment segment, long position, int length) {
+            this.entry = entry;
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+        }
+
+        int getSize() {
+            return RECORD_HEADER_SIZE + length;
+        }
+    }
+
+    private static final class Segment {
+
+        final File file;
+        RandomAccessFile activeFile;
+        MappedByteBuffer mapped;
+        long size;
+        long deadBytes;
+
+        Segment(File file) {
+            this.file = file;
+        }
+    }
+
+    private final File directory;
+    private final long maxSize;
+    private final long maxSegmentSize;
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<String, Record> recordsByKey = new HashMap<>();
+    private final TreeMap<Long, List<Record>> recordsByTime = new TreeMap<>();
+    private long nextSequence;
+    private long totalSize;
+    private long coveredSince;
+
+    /**
+     * Open the journal in the given directory, creating it if required.
+     *
+     * @param directory The directory of the journal
+     * @param maxSize   The maximum size of the journal in bytes
+     * @throws IOException If the journal can not be read or created
+     */
+    ResponseJournal(File directory, long maxSize) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.maxSegmentSize = Math.max(maxSize / SEGMENTS_PER_JOURNAL, 1024);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create journal directory " + directory);
+        }
+        readMeta();
+        loadSegments();
+    }
+
+    /**
+     * Enable the journal for the application of the given context.
+     *
+     * @param context The context
+     * @param maxSize The maximum size of the journal in bytes
+     * @return True if the journal was enabled
+     */
+    public static synchronized boolean enable(Context context, long maxSize) {
+        File directory = getDirectory(context);
+        try {
+            ResponseJournal journal = journals.get(directory.getAbsolutePath());
+            if (journal == null || journal.maxSize != maxSize) {
+                if (journal != null) {
+                    journal.close();
+                }
+                writeMeta(directory, readCoveredSince(directory), maxSize);
+                journals.put(directory.getAbsolutePath(), new ResponseJournal(directory, maxSize));
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Disable the journal for the application of the given context, deleting all journaled responses.
+     *
+     * @param context The context
+     */
+    public static synchronized void disable(Context context) {
+        File directory = getDirectory(context);
+        ResponseJournal journal = journals.remove(directory.getAbsolutePath());
+        if (journal != null) {
+            journal.close();
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Get the journal for the application of the given context, if it has been enabled.
+     *
+     * @param context The context
+     * @return The journal, or null if the journal is not enabled or can not be read
+     */
+    public static synchronized ResponseJournal getIfEnabled(Context context) {
+        File directory = getDirectory(context);
+        ResponseJournal journal = journals.get(directory.getAbsolutePath());
+        if (journal == null && new File(directory, META_FILE_NAME).isFile()) {
+            try {
+                journal = new ResponseJournal(directory, readMaxSize(directory));
+                journals.put(directory.getAbsolutePath(), journal);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return journal;
+    }
+
+    private static File getDirectory(Context context) {
+        return new File(context.getFilesDir(), DIRECTORY_NAME);
+    }
+
+    /**
+     * Append a response to the journal, superseding any earlier response of the same type and id.
+     *
+     * @param entry The details to index the response by
+     * @param json  The response as JSON
+     * @throws IOException If the response could not be written
+     */
+    public synchronized void append(Entry entry, String json) throws IOException {
+        byte[] payload = encode(entry, json);
+        Segment active = segments.get(segments.size() - 1);
+        if (active.size > 0 && active.size + RECORD_HEADER_SIZE + payload.length > maxSegmentSize) {
+            active = rollSegment();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length).putInt(checksum(payload, 0, payload.length)).put(payload);
+        buffer.flip();
+        FileChannel channel = active.activeFile.getChannel();
+        long position = active.size;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        Record record = new Record(entry, active, active.size, payload.length);
+        active.size += record.getSize();
+        totalSize += record.getSize();
+        index(record);
+        evictIfRequired();
+    }
+
+    /**
+     * Check whether the journal holds all responses that match the query.
+     *
+     * This is only the case if the query is for a request id that has been journaled, and the creation time of the journaled response is known
+     * if the query is restricted to a date range. Any other query may match responses the journal was never given.
+     *
+     * @param query The query
+     * @return True if the query can be answered by the journal
+     */
+    public synchronized boolean covers(ResponseQuery query) {
+        if (query.getRequestId() == null) {
+            return false;
+        }
+        Record record = recordsByKey.get(getKey(query.getResponseType(), query.getRequestId()));
+        return record != null && (!query.hasDateRange() || record.entry.getCreationTime() != Entry.UNKNOWN_CREATION_TIME);
+    }
+
+    /**
+     * Get the responses that match the query, in order of creation time.
+     *
+     * @param query The query
+     * @return The JSON of each matching response
+     * @throws IOException If the responses could not be read
+     */
+    public synchronized List<String> query(ResponseQuery query) throws IOException {
+        SortedMap<Long, List<Record>> range = query.hasDateRange() ? recordsByTime.subMap(query.getStartDate(), true, query.getEndDate(), true)
+                : recordsByTime;
+        List<String> responses = new ArrayList<>();
+        for (List<Record> records : range.values()) {
+            for (Record record : records) {
+                if (record.entry.matches(query)) {
+                    responses.add(readJson(record));
+                    if (query.getMaxResults() > 0 && responses.size() >= query.getMaxResults()) {
+                        return responses;
+                    }
+                }
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Get the creation time from which on the journal holds all responses it was given.
+     *
+     * @return The creation time in milliseconds since epoch
+     */
+    public synchronized long getCoveredSince() {
+        return coveredSince;
+    }
+
+    /**
+     * Get the size of the journal on disk.
+     *
+     * @return The size in bytes
+     */
+    public synchronized long getSize() {
+        return totalSize;
+    }
+
+    synchronized void close() {
+        Segment active = segments.get(segments.size() - 1);
+        closeQuietly(active.activeFile);
+        active.activeFile = null;
+    }
+
+    private void index(Record record) {
+        Record previous = recordsByKey.put(getKey(record.entry.getResponseType(), record.entry.getId()), record);
+        if (previous != null) {
+            removeByTime(previous);
+            previous.segment.deadBytes += previous.getSize();
+        }
+        List<Record> records = recordsByTime.get(record.entry.getCreationTime());
+        if (records == null) {
+            records = new ArrayList<>(1);
+            recordsByTime.put(record.entry.getCreationTime(), records);
+        }
+        records.add(record);
+    }
+
+    private void removeByTime(Record record) {
+        List<Record> records = recordsByTime.get(record.entry.getCreationTime());
+        if (records != null) {
+            records.remove(record);
+            if (records.isEmpty()) {
+                recordsByTime.remove(record.entry.getCreationTime());
+            }
+        }
+    }
+
+    private Segment rollSegment() throws IOException {
+        Segment sealed = segments.get(segments.size() - 1);
+        seal(sealed);
+        for (Segment segment : new ArrayList<>(segments)) {
+            if (segment.deadBytes * 2 > segment.size) {
+                compact(segment);
+            }
+        }
+        return openActiveSegment(createSegment());
+    }
+
+    private void seal(Segment segment) throws IOException {
+        FileChannel channel = segment.activeFile.getChannel();
+        segment.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+        closeQuietly(segment.activeFile);
+        segment.activeFile = null;
+    }
+
+    private void compact(Segment segment) throws IOException {
+        List<Record> live = new ArrayList<>();
+        for (Record record : recordsByKey.values()) {
+            if (record.segment == segment) {
+                live.add(record);
+            }
+        }
+        if (live.isEmpty()) {
+            deleteSegment(segment);
+            return;
+        }
+        Collections.sort(live, (a, b) -> Long.compare(a.position, b.position));
+        File tempFile = new File(directory, segment.file.getName() + TEMP_SUFFIX);
+        RandomAccessFile compacted = new RandomAccessFile(tempFile, "rw");
+        long size = 0;
+        try {
+            FileChannel channel = compacted.getChannel();
+            channel.truncate(0);
+            for (Record record : live) {
+                ByteBuffer buffer = slice(segment.mapped, record.position, record.getSize());
+                long position = size;
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                record.position = size;
+                size += record.getSize();
+            }
+            segment.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            closeQuietly(compacted);
+        }
+        if (!tempFile.renameTo(segment.file)) {
+            throw new IOException("Unable to replace journal segment " + segment.file);
+        }
+        totalSize -= segment.size - size;
+        segment.size = size;
+        segment.deadBytes = 0;
+    }
+
+    private void evictIfRequired() throws IOException {
+        while (totalSize > maxSize && segments.size() > 1) {
+            Segment oldest = segments.get(0);
+            long newestEvicted = coveredSince - 1;
+            for (Iterator<Record> iterator = recordsByKey.values().iterator(); iterator.hasNext(); ) {
+                Record record = iterator.next();
+                if (record.segment == oldest) {
+                    iterator.remove();
+                    removeByTime(record);
+                    newestEvicted = Math.max(newestEvicted, record.entry.getCreationTime());
+                }
+            }
+            deleteSegment(oldest);
+            coveredSince = newestEvicted + 1;
+            writeMeta(directory, coveredSince, maxSize);
+        }
+    }
+
+    private void deleteSegment(Segment segment) {
+        segments.remove(segment);
+        totalSize -= segment.size;
+        closeQuietly(segment.activeFile);
+        segment.file.delete();
+    }
+
+    private Segment createSegment() {
+        Segment segment = new Segment(new File(directory, String.format(Locale.ROOT, "%010d", nextSequence++) + SEGMENT_SUFFIX));
+        segments.add(segment);
+        return segment;
+    }
+
+    private Segment openActiveSegment(Segment segment) throws IOException {
+        segment.activeFile = new RandomAccessFile(segment.file, "rw");
+        return segment;
+    }
+
+    private void loadSegments() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName();
+                nextSequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())) + 1;
+                Segment segment = new Segment(file);
+                segments.add(segment);
+                loadSegment(segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            createSegment();
+        }
+        Segment active = openActiveSegment(segments.get(segments.size() - 1));
+        active.mapped = null;
+        evictIfRequired();
+    }
+
+    private void loadSegment(Segment segment) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(segment.file, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            long fileSize = channel.size();
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            long position = 0;
+            while (position + RECORD_HEADER_SIZE <= fileSize) {
+                int length = mapped.getInt((int) position);
+                int checksum = mapped.getInt((int) position + 4);
+                if (length < 0 || position + RECORD_HEADER_SIZE + length > fileSize) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                slice(mapped, position + RECORD_HEADER_SIZE, length).get(payload);
+                if (checksum(payload, 0, length) != checksum) {
+                    break;
+                }
+                Record record = new Record(decodeEntry(payload), segment, position, length);
+                index(record);
+                position += record.getSize();
+            }
+            if (position < fileSize) {
+                // drop the remains of an interrupted write
+                channel.truncate(position);
+            }
+            segment.mapped = mapped;
+            segment.size = position;
+            totalSize += position;
+        } finally {
+            closeQuietly(file);
+        }
+    }
+
+    private String readJson(Record record) throws IOException {
+        Segment segment = record.segment;
+        byte[] payload = new byte[record.length];
+        if (segment.mapped != null) {
+            slice(segment.mapped, record.position + RECORD_HEADER_SIZE, record.length).get(payload);
+        } else {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            long position = record.position + RECORD_HEADER_SIZE;
+            while (buffer.hasRemaining()) {
+                int read = segment.activeFile.getChannel().read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException("Journal record truncated in " + segment.file);
+                }
+                position += read;
+            }
+        }
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+        input.readLong();
+        for (int i = 0; i < 4; i++) {
+            readString(input);
+        }
+        return readString(input);
+    }
+
+    private static ByteBuffer slice(MappedByteBuffer mapped, long position, int length) {
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.position((int) position);
+        buffer.limit((int) position + length);
+        return buffer;
+    }
+
+    private static byte[] encode(Entry entry, String json) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length() + 128);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeLong(entry.getCreationTime());
+        writeString(output, entry.getResponseType());
+        writeString(output, entry.getId());
+        writeString(output, entry.getFlowType());
+        writeString(output, entry.getFlowName());
+        writeString(output, json);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Entry decodeEntry(byte[] payload) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+        long creationTime = input.readLong();
+        return new Entry(readString(input), readString(input), readString(input), readString(input), creationTime);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static String getKey(String responseType, String id) {
+        return responseType + ":" + id;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a != null ? a.equals(b) : b == null;
+    }
+
+    private void readMeta() throws IOException {
+        File metaFile = new File(directory, META_FILE_NAME);
+        if (metaFile.isFile()) {
+            coveredSince = readCoveredSince(directory);
+        } else {
+            coveredSince = System.currentTimeMillis();
+            writeMeta(directory, coveredSince, maxSize);
+        }
+    }
+
+    private static long readCoveredSince(File directory) throws IOException {
+        long[] meta = readMetaValues(directory);
+        return meta != null ? meta[0] : System.currentTimeMillis();
+    }
+
+    private static long readMaxSize(File directory) throws IOException {
+        long[] meta = readMetaValues(directory);
+        return meta != null ? meta[1] : DEFAULT_MAX_SIZE;
+    }
+
+    private static long[] readMetaValues(File directory) throws IOException {
+        File metaFile = new File(directory, META_FILE_NAME);
+        if (!metaFile.isFile()) {
+            return null;
+        }
+        DataInputStream input = new DataInputStream(new FileInputStream(metaFile));
+        try {
+            return new long[]{input.readLong(), input.readLong()};
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    private static void writeMeta(File directory, long coveredSince, long maxSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create journal directory " + directory);
+        }
+        File tempFile = new File(directory, META_FILE_NAME + TEMP_SUFFIX);
+        DataOutputStream output = new DataOutputStream(new FileOutputStream(tempFile));
+        try {
+            output.writeLong(coveredSince);
+            output.writeLong(maxSize);
+        } finally {
+            closeQuietly(output);
+        }
+        if (!tempFile.renameTo(new File(directory, META_FILE_NAME))) {
+            throw new IOException("Unable to write journal meta data in " + directory);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import com.aevi.sdk.flow.model.ResponsePage;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.processors.UnicastProcessor;
+
+/**
+ * Internal helper to walk a paged response query as a single stream of responses.
+ *
+ * Pages are fetched one at a time as the responses are consumed. The next page is requested once the previous page has arrived, so that at most
+ * one page is held ahead of the consumer.
+ */
+public final class ResponsePager {
+
+    public interface PageFetcher {
+
+        /**
+         * Fetch a page of responses.
+         *
+         * @param continuationToken The continuation token of the previous page, or null for the first page
+         * @return A single emitting the page
+         */
+        Single<ResponsePage> fetch(String continuationToken);
+    }
+
+    private ResponsePager() {
+    }
+
+    /**
+     * Stream the responses of all pages, as JSON.
+     *
+     * @param fetcher The fetcher for each page
+     * @return A flowable emitting the JSON of each response, in page order
+     */
+    public static Flowable<String> stream(final PageFetcher fetcher) {
+        return Flowable.defer(() -> {
+            final UnicastProcessor<String> continuationTokens = UnicastProcessor.create();
+            return fetcher.fetch(null).toFlowable()
+                    .concatWith(continuationTokens.concatMap(continuationToken -> fetcher.fetch(continuationToken).toFlowable(), 1))
+                    .doOnNext(page -> {
+                        if (page.hasMore()) {
+                            continuationTokens.onNext(page.getContinuationToken());
+                        } else {
+                            continuationTokens.onComplete();
+                        }
+                    })
+                    .concatMapIterable(ResponsePage::getResponses, 1);
+        });
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import com.aevi.sdk.flow.model.InternalData;
+
+/**
+ * Internal cache of whether a service package is installed, of its version, and of the capabilities it has advertised in its internal data.
+ *
+ * The package manager is only queried the first time a value is needed, and again after the package has been added, replaced, changed or
+ * removed. Package changes are either observed via {@link #registerForPackageChanges(Context)}, or reported via {@link #onPackageChanged(String)}.
+ */
+public class ServiceInstallState {
+
+    public interface Lookup {
+
+        /**
+         * @return True if the service is installed
+         */
+        boolean isInstalled();
+
+        /**
+         * @return The version of the package the service is in
+         */
+        String getVersion();
+    }
+
+    private final String packageName;
+    private final Lookup lookup;
+    private volatile Boolean installed;
+    private volatile String version;
+    private volatile InternalData advertisedInternalData;
+    private int generation;
+    private Context receiverContext;
+    private BroadcastReceiver packageChangeReceiver;
+
+    public ServiceInstallState(String packageName, Lookup lookup) {
+        this.packageName = packageName;
+        this.lookup = lookup;
+    }
+
+    /**
+     * Invalidate the cached state whenever the package changes, for as long as the given context is alive.
+     *
+     * Any receiver registered by a previous call is unregistered first.
+     *
+     * @param context The context to register the receiver with, which should be the application context
+     */
+    public synchronized void registerForPackageChanges(Context context) {
+        unregisterForPackageChanges();
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                Uri data = intent.getData();
+                if (data != null) {
+                    onPackageChanged(data.getSchemeSpecificPart());
+                }
+            }
+        };
+        context.registerReceiver(receiver, filter);
+        receiverContext = context;
+        packageChangeReceiver = receiver;
+    }
+
+    /**
+     * Stop observing package changes, if {@link #registerForPackageChanges(Context)} has been called.
+     */
+    public synchronized void unregisterForPackageChanges() {
+        if (packageChangeReceiver != null) {
+            receiverContext.unregisterReceiver(packageChangeReceiver);
+            packageChangeReceiver = null;
+            receiverContext = null;
+        }
+    }
+
+    public boolean isInstalled() {
+        Boolean cached = installed;
+        if (cached != null) {
+            return cached;
+        }
+        int lookupGeneration = getGeneration();
+        boolean value = lookup.isInstalled();
+        synchronized (this) {
+            // a package change during the lookup means the value may already be stale, so leave it to the next call
+            if (lookupGeneration == generation) {
+                installed = value;
+            }
+        }
+        return value;
+    }
+
+    public String getVersion() {
+        String cached = version;
+        if (cached != null) {
+            return cached;
+        }
+        int lookupGeneration = getGeneration();
+        String value = lookup.getVersion();
+        synchronized (this) {
+            if (lookupGeneration == generation) {
+                version = value;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Record the internal data of a message sent by the service package, for the capabilities it advertises.
+     *
+     * @param internalData The internal data of the message
+     */
+    public synchronized void onInternalDataReceived(InternalData internalData) {
+        if (internalData != null && packageName.equals(internalData.getSenderPackageName())) {
+            advertisedInternalData = internalData;
+        }
+    }
+
+    /**
+     * Check whether the service package has advertised a capability, in the internal data of the last message it sent since it last changed.
+     *
+     * @param dataKey The internal data key of the capability
+     * @return True if the capability has been advertised
+     */
+    public boolean isAdvertised(String dataKey) {
+        InternalData internalData = advertisedInternalData;
+        return internalData != null && Boolean.parseBoolean(internalData.getAdditionalDataValue(dataKey, "false"));
+    }
+
+    /**
+     * Report that a package has been added, replaced, changed or removed.
+     *
+     * @param changedPackageName The name of the package
+     */
+    public void onPackageChanged(String changedPackageName) {
+        if (packageName.equals(changedPackageName)) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Clear the cached state, so that it is looked up again when next needed.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        installed = null;
+        version = null;
+        // the package may have been replaced by a version with other capabilities
+        advertisedInternalData = null;
+    }
+
+    private synchronized int getGeneration() {
+        return generation;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import android.util.Log;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Internal cache of a snapshot of data fetched as JSON, with stale-while-revalidate semantics.
+ *
+ * The first call fetches and parses the data, with concurrent callers sharing the fetch. Once a snapshot is held it is returned straight away,
+ * and if it is older than the maximum age, a fetch is started in the background to revalidate it. After the snapshot has been invalidated, the
+ * next callers share a fetch and wait for its result instead. The fetched JSON acts as the version token of the snapshot - if it has not
+ * changed, the existing snapshot is kept without being parsed again.
+ *
+ * If a fetch fails, the error is passed on when there is no snapshot yet, otherwise the existing snapshot is returned. The next call fetches
+ * again.
+ *
+ * @param <T> The type of the snapshot
+ */
+public class SnapshotCache<T> {
+
+    private static final String TAG = SnapshotCache.class.getSimpleName();
+
+    private final Function<String, T> parser;
+    private final long maxAgeMs;
+    private final Scheduler scheduler;
+    private Snapshot<T> snapshot;
+    private Single<T> pendingFetch;
+    private int pendingFetchGeneration;
+    private int generation;
+
+    public SnapshotCache(Function<String, T> parser, long maxAge, TimeUnit unit, Scheduler scheduler) {
+        this.parser = parser;
+        this.maxAgeMs = unit.toMillis(maxAge);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Get the snapshot, fetching it if required.
+     *
+     * @param fetch The fetch of the JSON data, used if there is no snapshot yet or it needs to be revalidated
+     * @return A single emitting the snapshot
+     */
+    public Single<T> get(final Single<String> fetch) {
+        return Single.defer(() -> {
+            Single<T> revalidation = null;
+            Single<T> refetch;
+            T current;
+            synchronized (this) {
+                boolean invalidated = snapshot != null && snapshot.generation != generation;
+                boolean fetchRequired = snapshot == null || invalidated || now() - snapshot.fetchedAt >= maxAgeMs;
+                if (fetchRequired && (pendingFetch == null || pendingFetchGeneration != generation)) {
+                    pendingFetch = createFetch(fetch);
+                    pendingFetchGeneration = generation;
+                    revalidation = snapshot != null && !invalidated ? pendingFetch : null;
+                }
+                if (snapshot == null) {
+                    return pendingFetch;
+                }
+                current = snapshot.value;
+                refetch = invalidated ? pendingFetch : null;
+            }
+            if (refetch != null) {
+                return refetch.onErrorReturn(throwable -> {
+                    Log.w(TAG, "Failed to fetch invalidated snapshot", throwable);
+                    return current;
+                });
+            }
+            if (revalidation != null) {
+                revalidation.subscribe(value -> {
+                }, throwable -> Log.w(TAG, "Failed to revalidate snapshot", throwable));
+            }
+            return Single.just(current);
+        });
+    }
+
+    /**
+     * Mark the snapshot as stale, so that the next call fetches it again and waits for the result.
+     */
+    public synchronized void invalidate() {
+        generation++;
+    }
+
+    private Single<T> createFetch(Single<String> fetch) {
+        final int fetchGeneration = generation;
+        return fetch
+                .map(json -> onFetched(json, fetchGeneration))
+                .doOnError(throwable -> onFetchFailed(fetchGeneration))
+                .cache();
+    }
+
+    private T onFetched(String json, int fetchGeneration) throws Exception {
+        Snapshot<T> previous;
+        synchronized (this) {
+            previous = snapshot;
+        }
+        T value = previous != null && previous.token.equals(json) ? previous.value : parser.apply(json);
+        synchronized (this) {
+            // an invalidation during the fetch is kept, so that the snapshot is revalidated again on the next call
+            if (snapshot == null || snapshot.generation <= fetchGeneration) {
+                snapshot = new Snapshot<>(json, value, now(), fetchGeneration);
+            }
+            if (pendingFetchGeneration == fetchGeneration) {
+                pendingFetch = null;
+            }
+        }
+        return value;
+    }
+
+    private synchronized void onFetchFailed(int fetchGeneration) {
+        if (pendingFetchGeneration == fetchGeneration) {
+            pendingFetch = null;
+        }
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+
+    private static class Snapshot<T> {
+
+        private final String token;
+        private final T value;
+        private final long fetchedAt;
+        private final int generation;
+
+        Snapshot(String token, T value, long fetchedAt, int generation) {
+            this.token = token;
+            this.value = value;
+            this.fetchedAt = fetchedAt;
+            this.generation = generation;
+        }
+    }
+}
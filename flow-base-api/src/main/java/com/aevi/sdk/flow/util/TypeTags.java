@@ -0,0 +1,91 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Internal process-wide registry of type tags (class names, as stored with additional data values) and the classes they resolve to.
+ *
+ * Each type tag is resolved via Class.forName at most once, including tags that can not be resolved, so that repeated lookups are a single
+ * map lookup.
+ */
+public final class TypeTags {
+
+    // Marker for type tags that could not be resolved, as the map can not hold null values
+    private static final Class<?> UNRESOLVABLE = Void.TYPE;
+
+    private static final ConcurrentMap<String, Class<?>> RESOLVED = new ConcurrentHashMap<>();
+
+    static {
+        Class<?>[] common = {String.class, Integer.class, Long.class, Boolean.class, Double.class, Float.class, Short.class, Byte.class,
+                Character.class, String[].class, Integer[].class, Long[].class, Boolean[].class};
+        for (Class<?> type : common) {
+            register(type);
+        }
+    }
+
+    private TypeTags() {
+    }
+
+    /**
+     * Register a class, so that its type tag resolves without a class lookup.
+     *
+     * @param type The class
+     */
+    public static void register(Class<?> type) {
+        RESOLVED.put(type.getName(), type);
+    }
+
+    /**
+     * Resolve a type tag to its class.
+     *
+     * @param typeTag The type tag (the fully qualified class name)
+     * @return The class, or null if the tag does not resolve to a class
+     */
+    @Nullable
+    public static Class<?> resolve(String typeTag) {
+        if (typeTag == null) {
+            return null;
+        }
+        Class<?> type = RESOLVED.get(typeTag);
+        if (type == null) {
+            try {
+                type = Class.forName(typeTag);
+            } catch (ClassNotFoundException | LinkageError e) {
+                type = UNRESOLVABLE;
+            }
+            RESOLVED.putIfAbsent(typeTag, type);
+        }
+        return type != UNRESOLVABLE ? type : null;
+    }
+
+    /**
+     * Check whether the given array type is a one dimensional array of the type identified by the type tag.
+     *
+     * This is equivalent to comparing the array class name with "[L" + typeTag + ";", without building the string.
+     *
+     * @param arrayType The array type
+     * @param typeTag   The type tag of the component type
+     * @return True if the array type is an array of the tagged type
+     */
+    public static boolean isArrayOf(Class<?> arrayType, String typeTag) {
+        Class<?> componentType = arrayType.getComponentType();
+        return componentType != null && !componentType.isPrimitive() && !componentType.isArray() && componentType.getName().equals(typeTag);
+    }
+}
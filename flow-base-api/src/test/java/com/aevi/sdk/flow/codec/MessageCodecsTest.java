@@ -0,0 +1,145 @@
+package com.aevi.sdk.flow.codec;
+
+import android.support.annotation.NonNull;
+import com.aevi.sdk.flow.model.AppMessage;
+import com.aevi.sdk.flow.model.InternalData;
+import com.aevi.sdk.flow.model.Request;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static com.aevi.sdk.flow.constants.AppMessageTypes.REQUEST_MESSAGE;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.SUPPORTED_MESSAGE_CODECS;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class MessageCodecsTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void binaryCodecCanRoundTripMessage() {
+        AppMessage appMessage = createAppMessage();
+
+        String encoded = MessageCodecs.BINARY.encode(appMessage);
+        AppMessage result = MessageCodecs.decode(encoded);
+
+        assertThat(result.getMessageType()).isEqualTo(appMessage.getMessageType());
+        assertThat(result.getResponseMechanism()).isEqualTo(appMessage.getResponseMechanism());
+        assertThat(Request.fromJson(result.getMessageData())).isEqualTo(Request.fromJson(appMessage.getMessageData()));
+        assertThat(new JsonParser().parse(result.getMessageData())).isEqualTo(new JsonParser().parse(appMessage.getMessageData()));
+        assertThat(new JsonParser().parse(result.getInternalDataJson())).isEqualTo(new JsonParser().parse(appMessage.getInternalDataJson()));
+    }
+
+    @Test
+    public void binaryCodecKeepsCorrelationId() {
+        AppMessage appMessage = createAppMessage();
+        appMessage.setCorrelationId("abc");
+
+        assertThat(MessageCodecs.decode(MessageCodecs.BINARY.encode(appMessage)).getCorrelationId()).isEqualTo("abc");
+        assertThat(MessageCodecs.decode(MessageCodecs.BINARY.encode(createAppMessage())).getCorrelationId()).isNull();
+    }
+
+    @Test
+    public void binaryCodecIsSmallerThanJson() {
+        AppMessage appMessage = createAppMessage();
+
+        assertThat(MessageCodecs.BINARY.encode(appMessage).getBytes(UTF_8).length).isLessThan(appMessage.toJson(true).getBytes(UTF_8).length);
+    }
+
+    @Test
+    public void binaryCodecOnlyUsesAsciiChars() {
+        AppMessage appMessage = new AppMessage(REQUEST_MESSAGE, "{\"text\":\"\u00e9\u00e8\u20ac\",\"amount\":123456789}");
+
+        String encoded = MessageCodecs.BINARY.encode(appMessage);
+
+        assertThat(encoded.getBytes(UTF_8).length).isEqualTo(encoded.length());
+        assertThat(MessageCodecs.decode(encoded).getMessageData()).isEqualTo(appMessage.getMessageData());
+    }
+
+    @Test
+    public void binaryCodecKeepsNumbersIntact() {
+        String data = "{\"a\":-1,\"b\":9223372036854775807,\"c\":99999999999999999999,\"d\":1.5,\"e\":-0.0,\"f\":1e10,\"g\":[0,null,true,false]}";
+        AppMessage appMessage = new AppMessage(REQUEST_MESSAGE, data);
+
+        AppMessage result = MessageCodecs.decode(MessageCodecs.BINARY.encode(appMessage));
+
+        assertThat(result.getMessageData()).isEqualTo(data);
+        assertThat(result.getInternalDataJson()).isNull();
+    }
+
+    @Test
+    public void binaryCodecSendsNonJsonDataAsIs() {
+        AppMessage appMessage = new AppMessage(REQUEST_MESSAGE, "{not json");
+
+        AppMessage result = MessageCodecs.decode(MessageCodecs.BINARY.encode(appMessage));
+
+        assertThat(result.getMessageData()).isEqualTo("{not json");
+    }
+
+    @Test
+    public void canDecodeJsonMessages() {
+        AppMessage appMessage = createAppMessage();
+
+        assertThat(MessageCodecs.decode(appMessage.toJson()).getMessageData()).isEqualTo(appMessage.getMessageData());
+        assertThat(MessageCodecs.decode(appMessage.toJson(true)).getMessageData()).isEqualTo(appMessage.getMessageData());
+    }
+
+    @Test
+    public void selectsBinaryCodecIfAdvertised() {
+        InternalData internalData = new InternalData("2.3.0");
+        MessageCodecs.addSupportedCodecs(internalData);
+
+        assertThat(MessageCodecs.select(internalData)).isSameAs(MessageCodecs.BINARY);
+    }
+
+    @Test
+    public void advertisesCodecsRegisteredLaterWhenAddedAgain() {
+        InternalData internalData = new InternalData("2.3.0");
+        MessageCodecs.addSupportedCodecs(internalData);
+        MessageCodec codec = new JsonMessageCodec(true) {
+            @NonNull
+            @Override
+            public String getName() {
+                return "test";
+            }
+        };
+
+        MessageCodecs.register(codec);
+        try {
+            assertThat(internalData.getAdditionalDataValue(SUPPORTED_MESSAGE_CODECS, null)).isEqualTo("binary2,json");
+            MessageCodecs.addSupportedCodecs(internalData);
+            assertThat(internalData.getAdditionalDataValue(SUPPORTED_MESSAGE_CODECS, null)).isEqualTo("test,binary2,json");
+            assertThat(MessageCodecs.select(internalData)).isSameAs(codec);
+        } finally {
+            MessageCodecs.unregister(codec);
+        }
+        MessageCodecs.addSupportedCodecs(internalData);
+        assertThat(internalData.getAdditionalDataValue(SUPPORTED_MESSAGE_CODECS, null)).isEqualTo("binary2,json");
+    }
+
+    @Test
+    public void fallsBackToJsonForOlderPeers() {
+        assertThat(MessageCodecs.select(null)).isSameAs(MessageCodecs.JSON);
+        assertThat(MessageCodecs.select(new InternalData("2.2.6"))).isSameAs(MessageCodecs.JSON);
+        assertThat(MessageCodecs.select(new InternalData("2.3.0"))).isSameAs(MessageCodecs.JSON_NESTED);
+
+        InternalData internalData = new InternalData("2.3.0");
+        internalData.addAdditionalData(SUPPORTED_MESSAGE_CODECS, "binary10,json");
+        assertThat(MessageCodecs.select(internalData)).isSameAs(MessageCodecs.JSON_NESTED);
+    }
+
+    private AppMessage createAppMessage() {
+        Request request = new Request("pigeon");
+        request.addAdditionalData("amount", 123456789L);
+        request.addAdditionalData("negative", -42L);
+        request.addAdditionalData("rate", 1.25d);
+        request.addAdditionalData("enabled", true);
+        request.addAdditionalData("names", "one", "two", "thrée \"quoted\"");
+        request.addAdditionalData("other", "value");
+        InternalData internalData = new InternalData("2.3.0");
+        internalData.setSenderPackageName("com.test");
+        MessageCodecs.addSupportedCodecs(internalData);
+        return new AppMessage(REQUEST_MESSAGE, request.toJson(), internalData);
+    }
+}
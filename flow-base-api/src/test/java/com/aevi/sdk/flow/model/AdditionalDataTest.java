@@ -163,4 +163,80 @@ public class AdditionalDataTest {
         Map<String, Number> dataOfType = additionalData.getDataOfType(Number.class);
         assertThat(dataOfType).hasSize(4).containsKeys("int", "long", "double", "float");
     }
+
+    @Test
+    public void canHandleValuesOfUnknownType() throws Exception {
+        additionalData.addDataWithType("unknown", "value", String.class);
+        additionalData = AdditionalData.fromJson(additionalData.toJson().replace("java.lang.String", "com.unknown.Type"));
+
+        assertThat(additionalData.getValue("unknown")).isNull();
+        assertThat(additionalData.getValue("unknown", "default")).isEqualTo("default");
+        assertThat(additionalData.getDataOfType(String.class)).isEmpty();
+    }
+
+    @Test
+    public void arrayLookupOnlyMatchesSingleDimensionArrays() throws Exception {
+        additionalData.addData("one", "1", "2");
+
+        assertThat(additionalData.getValue("one", String[][].class)).isNull();
+    }
+
+    @Test
+    public void canStoreManyValues() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            additionalData.addData("key" + i, i);
+        }
+        additionalData.removeData("key3");
+        additionalData.addData("key5", "five");
+
+        assertThat(additionalData.getKeys()).hasSize(19).doesNotContain("key3");
+        assertThat(additionalData.getIntegerValue("key19")).isEqualTo(19);
+        assertThat(additionalData.getStringValue("key5")).isEqualTo("five");
+        for (int i = 0; i < 15; i++) {
+            additionalData.removeData("key" + i);
+        }
+        assertThat(additionalData.getKeys()).containsOnly("key15", "key16", "key17", "key18", "key19");
+        assertThat(additionalData.getIntegerValue("key17")).isEqualTo(17);
+    }
+
+    @Test
+    public void typedValuesSurviveJsonRoundTrip() throws Exception {
+        additionalData.addData("string", "value");
+        additionalData.addData("boolean", true);
+        additionalData.addData("int", -12);
+        additionalData.addData("long", Long.MAX_VALUE);
+        additionalData.addData("double", 2.01);
+        additionalData.addData("float", 2.01f);
+
+        AdditionalData result = AdditionalData.fromJson(additionalData.toJson());
+
+        assertThat(result).isEqualTo(additionalData);
+        assertThat(result.hashCode()).isEqualTo(additionalData.hashCode());
+        assertThat(result.getValue("long", Long.class)).isEqualTo(Long.MAX_VALUE);
+        assertThat(result.getValue("float", Float.class)).isEqualTo(2.01f);
+        assertThat(new AdditionalData(result)).isEqualTo(additionalData);
+    }
+
+    @Test
+    public void keepsExplicitSuperType() throws Exception {
+        additionalData.addDataWithType("number", 5, Number.class);
+
+        assertThat(additionalData.getValueClassName("number")).isEqualTo(Number.class.getName());
+        assertThat(additionalData.getValue("number", Number.class)).isEqualTo(5);
+        assertThat(additionalData.getValue("number", Integer.class)).isNull();
+    }
+
+    @Test
+    public void canRemoveKeysWhileIterating() throws Exception {
+        additionalData.addData("one", 1);
+        additionalData.addData("two", 2);
+        additionalData.addData("three", 3);
+
+        for (String key : additionalData.getKeys()) {
+            additionalData.removeData("two");
+        }
+        additionalData.getKeys().remove("one");
+
+        assertThat(additionalData.getKeys()).containsOnly("three");
+    }
 }
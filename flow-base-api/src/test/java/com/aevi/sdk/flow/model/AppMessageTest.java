@@ -0,0 +1,117 @@
+package com.aevi.sdk.flow.model;
+
+import org.junit.Test;
+
+import static com.aevi.sdk.flow.constants.AppMessageTypes.REQUEST_MESSAGE;
+import static com.aevi.sdk.flow.constants.ResponseMechanisms.RESPONSE_SERVICE;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class AppMessageTest {
+
+    @Test
+    public void canSerialiseLegacyFormat() {
+        AppMessage appMessage = createAppMessage();
+
+        AppMessage result = AppMessage.fromJson(appMessage.toJson());
+
+        assertAppMessageEquals(result, appMessage);
+    }
+
+    @Test
+    public void canSerialiseNestedFormat() {
+        AppMessage appMessage = createAppMessage();
+
+        AppMessage result = AppMessage.fromJson(appMessage.toJson(true));
+
+        assertAppMessageEquals(result, appMessage);
+    }
+
+    @Test
+    public void canSerialiseCorrelationId() {
+        AppMessage appMessage = createAppMessage();
+        appMessage.setCorrelationId("abc");
+
+        assertThat(AppMessage.fromJson(appMessage.toJson()).getCorrelationId()).isEqualTo("abc");
+        assertThat(AppMessage.fromJson(appMessage.toJson(true)).getCorrelationId()).isEqualTo("abc");
+        assertThat(AppMessage.fromJson(createAppMessage().toJson(true)).getCorrelationId()).isNull();
+    }
+
+    @Test
+    public void nestedFormatDoesNotEscapeMessageData() {
+        AppMessage appMessage = createAppMessage();
+
+        String json = appMessage.toJson(true);
+
+        assertThat(json).contains(appMessage.getMessageData());
+        assertThat(json.length()).isLessThan(appMessage.toJson().length());
+    }
+
+    @Test
+    public void canSerialiseNonJsonMessageDataInNestedFormat() {
+        AppMessage appMessage = new AppMessage(REQUEST_MESSAGE, "not \"json\"\né");
+
+        AppMessage result = AppMessage.fromJson(appMessage.toJson(true));
+
+        assertThat(result.getMessageData()).isEqualTo(appMessage.getMessageData());
+        assertThat(result.getInternalData()).isNull();
+    }
+
+    @Test
+    public void canSerialiseMalformedJsonMessageDataInNestedFormat() {
+        for (String messageData : new String[]{"{not json", "[1,2", "{\"a\":1}}", "{a:1}"}) {
+            AppMessage appMessage = new AppMessage(REQUEST_MESSAGE, messageData);
+
+            AppMessage result = AppMessage.fromJson(appMessage.toJson(true));
+
+            assertThat(result.getMessageData()).isEqualTo(messageData);
+        }
+    }
+
+    @Test
+    public void deserialisesNullAsNull() {
+        assertThat(AppMessage.fromJson(null)).isNull();
+    }
+
+    @Test
+    public void canDeserialiseWithUnknownFields() {
+        String json = "{\"messageType\":\"request\",\"extra\":[1,{\"a\":\"}\"}],\"messageData\":{\"id\":\"x\"},\"internalData\":null}";
+
+        AppMessage result = AppMessage.fromJson(json);
+
+        assertThat(result.getMessageType()).isEqualTo(REQUEST_MESSAGE);
+        assertThat(result.getMessageData()).isEqualTo("{\"id\":\"x\"}");
+        assertThat(result.getInternalData()).isNull();
+    }
+
+    @Test
+    public void checkNestedEnvelopeSupportedFromApiVersion() {
+        assertThat(AppMessage.supportsNestedEnvelope(null)).isFalse();
+        assertThat(AppMessage.supportsNestedEnvelope(new InternalData("2.2.6"))).isFalse();
+        assertThat(AppMessage.supportsNestedEnvelope(new InternalData("2.3.0"))).isTrue();
+        assertThat(AppMessage.supportsNestedEnvelope(new InternalData("2.3.1-SNAPSHOT"))).isTrue();
+        assertThat(AppMessage.supportsNestedEnvelope(new InternalData("3.0.0"))).isTrue();
+        assertThat(AppMessage.supportsNestedEnvelope(new InternalData("2.10.0"))).isTrue();
+    }
+
+    private AppMessage createAppMessage() {
+        Request request = new Request("pigeon");
+        request.addAdditionalData("quote", "a \"quoted\" value with a \\ and a }");
+        InternalData internalData = new InternalData("2.3.0");
+        internalData.setSenderPackageName("com.test");
+        internalData.addAdditionalData("flowStage", "PRE_FLOW");
+        AppMessage appMessage = new AppMessage(REQUEST_MESSAGE, request.toJson(), internalData);
+        appMessage.setResponseMechanism(RESPONSE_SERVICE);
+        return appMessage;
+    }
+
+    private void assertAppMessageEquals(AppMessage result, AppMessage expected) {
+        assertThat(result.getMessageType()).isEqualTo(expected.getMessageType());
+        assertThat(result.getMessageData()).isEqualTo(expected.getMessageData());
+        assertThat(result.getResponseMechanism()).isEqualTo(expected.getResponseMechanism());
+        assertThat(Request.fromJson(result.getMessageData())).isEqualTo(Request.fromJson(expected.getMessageData()));
+        InternalData internalData = result.getInternalData();
+        assertThat(internalData.getSenderApiVersion()).isEqualTo(expected.getInternalData().getSenderApiVersion());
+        assertThat(internalData.getSenderPackageName()).isEqualTo("com.test");
+        assertThat(internalData.getAdditionalData()).isEqualTo(expected.getInternalData().getAdditionalData());
+    }
+}
@@ -122,6 +122,115 @@ public class FlowConfigTest {
         assertThat(flowConfig2.shouldProcessInBackground()).isFalse();
     }
 
+    @Test
+    public void canLookUpStagesIgnoringCase() {
+        setupDefaultFlowApps();
+
+        assertThat(flowConfig.hasStage("Cauliflower")).isTrue();
+        assertThat(flowConfig.getStage("CAULIFLOWER")).isSameAs(flowConfig.getStage("cauliflower"));
+        assertThat(flowConfig.hasAppForStage("hydrogen", "BURPS")).isTrue();
+    }
+
+    @Test
+    public void canGetStagesForApp() {
+        setupDefaultFlowApps();
+        List<FlowApp> apps = new ArrayList<>();
+        apps.add(getFlowApp("helium"));
+        flowConfig.setApps("burps", apps);
+
+        assertThat(flowConfig.getStagesForApp("hydrogen")).containsOnly("CAULIFLOWER");
+        assertThat(flowConfig.getStagesForApp("helium")).containsOnly("BURPS");
+        assertThat(flowConfig.getStagesForApp("irridium")).isEmpty();
+        assertThat(flowConfig.hasAppForStage("hydrogen", "burps")).isFalse();
+    }
+
+    @Test
+    public void canGetAppsInInnerFlow() {
+        FlowConfig innerFlow = new FlowConfig("inner", "river", 1, 2, "yes", null, null, false, false);
+        List<FlowApp> apps = new ArrayList<>();
+        apps.add(getFlowApp("neon"));
+        innerFlow.setApps("leek", apps);
+        FlowStage outerStage = new FlowStage("split", AppExecutionType.SINGLE);
+        outerStage.setInnerFlow(innerFlow);
+        List<FlowStage> stages = new ArrayList<>();
+        stages.add(outerStage);
+
+        FlowConfig outerFlow = FlowConfig.fromJson(new FlowConfig("outer", "river", 1, 2, "yes", null, stages, false, false).toJson());
+
+        assertThat(outerFlow.getAllStageNames()).containsOnly("SPLIT", "LEEK");
+        assertThat(outerFlow.getFlowApp("leek", "neon")).isEqualTo(getFlowApp("neon"));
+        assertThat(outerFlow.containsApp("neon")).isTrue();
+        assertThat(outerFlow.getStagesForApp("neon")).containsOnly("LEEK");
+    }
+
+    @Test
+    public void reflectsAppsSetDirectlyOnStage() {
+        setupDefaultFlowApps();
+        List<FlowApp> apps = new ArrayList<>();
+        apps.add(getFlowApp("helium"));
+
+        flowConfig.getStage("burps").setFlowApps(apps);
+
+        assertThat(flowConfig.hasAppForStage("helium", "burps")).isTrue();
+        assertThat(flowConfig.getFlowApp("burps", "hydrogen")).isNull();
+        assertThat(flowConfig.containsApp("helium")).isTrue();
+        assertThat(flowConfig.getStagesForApp("hydrogen")).containsOnly("CAULIFLOWER");
+    }
+
+    @Test
+    public void reflectsInnerFlowSetDirectlyOnStage() {
+        FlowStage outerStage = new FlowStage("split", AppExecutionType.SINGLE);
+        List<FlowStage> stages = new ArrayList<>();
+        stages.add(outerStage);
+        FlowConfig outerFlow = new FlowConfig("outer", "river", 1, 2, "yes", null, stages, false, false);
+        FlowConfig innerFlow = new FlowConfig("inner", "river", 1, 2, "yes", null, null, false, false);
+        List<FlowApp> apps = new ArrayList<>();
+        apps.add(getFlowApp("neon"));
+        innerFlow.setApps("leek", apps);
+
+        outerStage.setInnerFlow(innerFlow);
+
+        assertThat(outerFlow.getAllStageNames()).containsOnly("SPLIT", "LEEK");
+        assertThat(outerFlow.hasAppForStage("leek")).isTrue();
+        assertThat(outerFlow.getFlowApp("leek", "neon")).isEqualTo(getFlowApp("neon"));
+    }
+
+    @Test
+    public void reflectsStagesAddedToInnerFlow() {
+        FlowStage outerStage = new FlowStage("split", AppExecutionType.SINGLE);
+        List<FlowStage> stages = new ArrayList<>();
+        stages.add(outerStage);
+        FlowConfig outerFlow = new FlowConfig("outer", "river", 1, 2, "yes", null, stages, false, false);
+        FlowConfig innerFlow = new FlowConfig("inner", "river", 1, 2, "yes", null, null, false, false);
+        outerStage.setInnerFlow(innerFlow);
+        assertThat(outerFlow.getAllStageNames()).containsOnly("SPLIT");
+        List<FlowApp> apps = new ArrayList<>();
+        apps.add(getFlowApp("neon"));
+
+        innerFlow.setApps("leek", apps);
+
+        assertThat(outerFlow.getAllStageNames()).containsOnly("SPLIT", "LEEK");
+        assertThat(outerFlow.containsApp("neon")).isTrue();
+    }
+
+    @Test
+    public void keepsIndexWhenStageOfOtherFlowChanges() {
+        setupDefaultFlowApps();
+        Set<String> stageNames = flowConfig.getAllStageNames();
+        FlowStage otherStage = new FlowStage("other", AppExecutionType.SINGLE);
+
+        otherStage.setFlowApps(new ArrayList<FlowApp>());
+
+        assertThat(flowConfig.getAllStageNames()).isSameAs(stageNames);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void cannotModifyAppsOfStageDirectly() {
+        setupDefaultFlowApps();
+
+        flowConfig.getStage("burps").getFlowApps().add(getFlowApp("helium"));
+    }
+
     private void checkHasAppForStage(String stage, boolean expected) {
         assertThat(flowConfig.hasAppForStage(stage)).isEqualTo(expected);
     }
@@ -0,0 +1,108 @@
+package com.aevi.sdk.flow.model.config;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.aevi.sdk.flow.model.config.FlowAppConditions.OUTCOME_PARTIALLY_FULFILLED;
+import static com.aevi.sdk.flow.model.config.FlowExecutionPlan.NO_STAGE;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class FlowExecutionPlanTest {
+
+    private FlowConfig flowConfig;
+    private FlowExecutionPlan plan;
+
+    @Before
+    public void setup() {
+        FlowConfig innerFlow = new FlowConfig("inner", "river", 1, 2, null, null, null, false, false);
+        innerFlow.setApps("leek", createApps(new FlowApp("neon")));
+        FlowStage split = new FlowStage("split", AppExecutionType.SINGLE, createApps(new FlowApp("argon")));
+        split.setInnerFlow(innerFlow);
+
+        List<FlowStage> stages = new ArrayList<>();
+        stages.add(new FlowStage("cauliflower", AppExecutionType.MULTIPLE,
+                                 createApps(new FlowApp("hydrogen"), new FlowApp("oxygen", false, OUTCOME_PARTIALLY_FULFILLED))));
+        stages.add(new FlowStage("carrot", AppExecutionType.NONE, createApps(new FlowApp("helium"))));
+        stages.add(split);
+        stages.add(new FlowStage("onion", AppExecutionType.MULTIPLE));
+        stages.add(new FlowStage("turnip", AppExecutionType.DYNAMIC_SELECT));
+        flowConfig = new FlowConfig("blarp", "river", 1, 2, null, null, stages, false, false);
+        plan = flowConfig.getExecutionPlan();
+    }
+
+    @Test
+    public void flattensStagesInOrder() {
+        assertThat(plan.getFlowName()).isEqualTo("blarp");
+        assertThat(plan.getStageCount()).isEqualTo(6);
+        assertThat(plan.getStageName(0)).isEqualTo("CAULIFLOWER");
+        assertThat(plan.getOrdinal("split")).isEqualTo(2);
+        assertThat(plan.getOrdinal("LEEK")).isEqualTo(3);
+        assertThat(plan.getOrdinal("raddish")).isEqualTo(NO_STAGE);
+        assertThat(plan.getOrdinal(null)).isEqualTo(NO_STAGE);
+        assertThat(plan.getAppExecutionType(plan.getOrdinal("turnip"))).isEqualTo(AppExecutionType.DYNAMIC_SELECT);
+    }
+
+    @Test
+    public void canGetAppsForStage() {
+        int ordinal = plan.getOrdinal("cauliflower");
+
+        assertThat(plan.getApps(ordinal)).extracting("id").containsExactly("hydrogen", "oxygen");
+        assertThat(plan.getFirstApp(ordinal).getId()).isEqualTo("hydrogen");
+        assertThat(plan.getApps(plan.getOrdinal("leek"))).extracting("id").containsExactly("neon");
+        assertThat(plan.getFirstApp(plan.getOrdinal("onion"))).isNull();
+    }
+
+    @Test
+    public void canGetEligibleAppsForStage() {
+        int ordinal = plan.getOrdinal("cauliflower");
+
+        assertThat(plan.getEligibleApps(ordinal)).extracting("id").containsExactly("hydrogen");
+        assertThat(plan.getEligibleApps(ordinal, OUTCOME_PARTIALLY_FULFILLED)).extracting("id").containsExactly("hydrogen", "oxygen");
+        assertThat(plan.getEligibleApps(plan.getOrdinal("leek"))).extracting("id").containsExactly("neon");
+    }
+
+    @Test
+    public void skipsStagesThatAreNotExecuted() {
+        assertThat(plan.getNextStage(NO_STAGE)).isEqualTo(plan.getOrdinal("cauliflower"));
+        assertThat(plan.getNextStage(plan.getOrdinal("cauliflower"))).isEqualTo(plan.getOrdinal("split"));
+        assertThat(plan.getNextStage(plan.getOrdinal("split"))).isEqualTo(plan.getOrdinal("leek"));
+        assertThat(plan.getNextStage(plan.getOrdinal("leek"))).isEqualTo(plan.getOrdinal("turnip"));
+        assertThat(plan.getNextStage(plan.getOrdinal("turnip"))).isEqualTo(NO_STAGE);
+    }
+
+    @Test
+    public void canCheckStageReachable() {
+        int current = plan.getOrdinal("split");
+
+        assertThat(plan.isStageReachable(current, "leek")).isTrue();
+        assertThat(plan.isStageReachable(current, "turnip")).isTrue();
+        assertThat(plan.isStageReachable(current, "onion")).isFalse();
+        assertThat(plan.isStageReachable(current, "cauliflower")).isFalse();
+        assertThat(plan.isStageReachable(NO_STAGE, "cauliflower")).isTrue();
+        assertThat(plan.isStageReachable(NO_STAGE, "carrot")).isFalse();
+        assertThat(plan.isStageReachable(NO_STAGE, "raddish")).isFalse();
+    }
+
+    @Test
+    public void reusesPlanUntilAppsChange() {
+        assertThat(flowConfig.getExecutionPlan()).isSameAs(plan);
+
+        flowConfig.setApps("onion", createApps(new FlowApp("nitrogen")));
+
+        FlowExecutionPlan updated = flowConfig.getExecutionPlan();
+        assertThat(updated).isNotSameAs(plan);
+        assertThat(updated.isStageReachable(NO_STAGE, "onion")).isTrue();
+        assertThat(plan.isStageReachable(NO_STAGE, "onion")).isFalse();
+    }
+
+    private static List<FlowApp> createApps(FlowApp... flowApps) {
+        List<FlowApp> apps = new ArrayList<>();
+        for (FlowApp flowApp : flowApps) {
+            apps.add(flowApp);
+        }
+        return apps;
+    }
+}
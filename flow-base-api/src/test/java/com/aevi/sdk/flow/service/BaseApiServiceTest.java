@@ -3,21 +3,29 @@ package com.aevi.sdk.flow.service;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import com.aevi.android.rxmessenger.ChannelClient;
 import com.aevi.android.rxmessenger.ChannelServer;
+import com.aevi.sdk.flow.codec.MessageCodecs;
 import com.aevi.sdk.flow.constants.AppMessageTypes;
 import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.FlowException;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.model.Request;
+import com.aevi.sdk.flow.util.CorrelatedChannel;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
 import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.ReplaySubject;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static com.aevi.sdk.flow.constants.ErrorConstants.FLOW_SERVICE_ERROR;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.SUPPORTED_MESSAGE_CODECS;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -73,6 +81,238 @@ public class BaseApiServiceTest {
         verifyCommsEnded(false);
     }
 
+    @Test
+    public void shouldReplyInLegacyEnvelopeToOlderClients() throws Exception {
+        incomingAppMessage = new AppMessage(AppMessageTypes.REQUEST_MESSAGE, request.toJson(), new InternalData("2.2.6"));
+        fakeIncomingMessage(incomingAppMessage);
+
+        assertThat(getLastMessageSent()).contains("\"messageData\":\"{}\"");
+    }
+
+    @Test
+    public void shouldReplyInNestedEnvelopeToNewerClients() throws Exception {
+        incomingAppMessage = new AppMessage(AppMessageTypes.REQUEST_MESSAGE, request.toJson(), new InternalData(AppMessage.NESTED_ENVELOPE_MIN_API_VERSION));
+        fakeIncomingMessage(incomingAppMessage);
+
+        assertThat(getLastMessageSent()).contains("\"messageData\":{}");
+        verifyMessageSent(AppMessageTypes.REQUEST_ACK_MESSAGE, "{}");
+    }
+
+    @Test
+    public void shouldReplyWithBinaryCodecIfClientSupportsIt() throws Exception {
+        InternalData clientInternalData = new InternalData(AppMessage.NESTED_ENVELOPE_MIN_API_VERSION);
+        MessageCodecs.addSupportedCodecs(clientInternalData);
+        incomingAppMessage = new AppMessage(AppMessageTypes.REQUEST_MESSAGE, request.toJson(), clientInternalData);
+        fakeIncomingMessage(incomingAppMessage);
+
+        assertThat(MessageCodecs.BINARY.canDecode(getLastMessageSent())).isTrue();
+        verifyMessageSent(AppMessageTypes.REQUEST_ACK_MESSAGE, "{}");
+    }
+
+    @Test
+    public void shouldAdvertiseSupportedCodecsInMessagesSent() throws Exception {
+        fakeIncomingMessage(incomingAppMessage);
+
+        AppMessage messageSent = MessageCodecs.decode(getLastMessageSent());
+        assertThat(messageSent.getInternalData().getAdditionalDataValue(SUPPORTED_MESSAGE_CODECS, null)).contains(MessageCodecs.BINARY.getName());
+    }
+
+    @Test
+    public void shouldKeepChannelOpenForMultiplexedRequests() throws Exception {
+        incomingAppMessage.setCorrelationId("one");
+        fakeIncomingMessage(incomingAppMessage);
+        AppMessage second = new AppMessage(AppMessageTypes.REQUEST_MESSAGE, new Request("dove").toJson());
+        second.setCorrelationId("two");
+        fakeIncomingMessage(second);
+
+        assertThat(apiService.requestReceived).isEqualTo(Request.fromJson(second.getMessageData()));
+        AppMessage messageSent = MessageCodecs.decode(getLastMessageSent());
+        assertThat(messageSent.getMessageType()).isEqualTo(AppMessageTypes.REQUEST_ACK_MESSAGE);
+        assertThat(messageSent.getCorrelationId()).isEqualTo("two");
+    }
+
+    @Test
+    public void shouldEndExchangeOnlyForMultiplexedRequests() throws Exception {
+        incomingAppMessage.setCorrelationId("one");
+        fakeIncomingMessage(incomingAppMessage);
+
+        apiService.lastClientCommunicator.endStream();
+
+        AppMessage messageSent = MessageCodecs.decode(getLastMessageSent());
+        assertThat(messageSent.getMessageType()).isEqualTo(AppMessageTypes.EXCHANGE_END);
+        assertThat(messageSent.getCorrelationId()).isEqualTo("one");
+        verifyCommsEnded(false);
+    }
+
+    @Test
+    public void shouldContinueMultiplexedChannelIfRequestFails() throws Exception {
+        apiService.throwExceptionInProcessRequest = true;
+        incomingAppMessage.setCorrelationId("one");
+        fakeIncomingMessage(incomingAppMessage);
+        apiService.throwExceptionInProcessRequest = false;
+        AppMessage second = new AppMessage(AppMessageTypes.REQUEST_MESSAGE, new Request("dove").toJson());
+        second.setCorrelationId("two");
+        fakeIncomingMessage(second);
+
+        assertThat(apiService.requestReceived).isEqualTo(Request.fromJson(second.getMessageData()));
+    }
+
+    @Test
+    public void shouldOnlyPassExchangeMessagesToExchangeCommunicator() throws Exception {
+        incomingAppMessage.setCorrelationId("one");
+        fakeIncomingMessage(incomingAppMessage);
+        TestObserver<AppMessage> observer = apiService.lastClientCommunicator.subscribeToMessages().test();
+
+        AppMessage other = new AppMessage(AppMessageTypes.FLOW_SERVICE_EVENT);
+        other.setCorrelationId("two");
+        fakeIncomingMessage(other);
+        AppMessage mine = new AppMessage(AppMessageTypes.FLOW_SERVICE_EVENT);
+        mine.setCorrelationId("one");
+        fakeIncomingMessage(mine);
+
+        assertThat(observer.values()).extracting("correlationId").containsOnly("one");
+        assertThat(observer.values().get(observer.valueCount() - 1).getMessageType()).isEqualTo(AppMessageTypes.FLOW_SERVICE_EVENT);
+    }
+
+    @Test
+    public void shouldProcessEachRequestInBatch() throws Exception {
+        Request second = new Request("dove");
+        fakeIncomingMessage(new AppMessage(AppMessageTypes.BATCH_REQUEST_MESSAGE, "[" + request.toJson() + ", " + second.toJson() + "]"));
+
+        assertThat(apiService.requestsReceived).containsExactly(request, second);
+        List<AppMessage> messagesSent = getMessagesSent();
+        assertThat(messagesSent).extracting("messageType").containsOnly(AppMessageTypes.REQUEST_ACK_MESSAGE);
+        assertThat(messagesSent).extracting("correlationId").containsExactly("0", "1");
+        verifyCommsEnded(false);
+    }
+
+    @Test
+    public void shouldSendErrorForMalformedBatch() throws Exception {
+        fakeIncomingMessage(new AppMessage(AppMessageTypes.BATCH_REQUEST_MESSAGE, "[" + request.toJson()));
+
+        assertThat(apiService.requestsReceived).isEmpty();
+        verifyMessageSent(AppMessageTypes.FAILURE_MESSAGE, new FlowException(FLOW_SERVICE_ERROR, "Malformed batch request").toJson());
+    }
+
+    @Test
+    public void shouldAcceptEveryRequestOfBatchFromCorrelatedClient() throws Exception {
+        CorrelatedChannel channel = new CorrelatedChannel(connectChannelClient());
+        AppMessage batch = new AppMessage(AppMessageTypes.BATCH_REQUEST_MESSAGE, "[" + request.toJson() + ", " + new Request("dove").toJson() + "]");
+
+        TestObserver<Void> observer = CorrelatedChannel.batchAccepted(channel.send(batch), 2).test();
+
+        observer.assertComplete();
+        assertThat(apiService.requestsReceived).hasSize(2);
+        assertThat(channel.isMultiplexingAdvertised()).isTrue();
+        verifyCommsEnded(false);
+    }
+
+    @Test
+    public void shouldFailBatchFromCorrelatedClientIfMalformed() throws Exception {
+        CorrelatedChannel channel = new CorrelatedChannel(connectChannelClient());
+
+        TestObserver<Void> observer = CorrelatedChannel.batchAccepted(channel.send(new AppMessage(AppMessageTypes.BATCH_REQUEST_MESSAGE, "[{}")), 1)
+                .test();
+
+        observer.assertError(FlowException.class);
+    }
+
+    @Test
+    public void shouldAcceptFurtherRequestsFromCorrelatedClientOverSameChannel() throws Exception {
+        CorrelatedChannel channel = new CorrelatedChannel(connectChannelClient());
+
+        CorrelatedChannel.accepted(channel.send(incomingAppMessage)).test().assertComplete();
+        AppMessage second = new AppMessage(AppMessageTypes.REQUEST_MESSAGE, new Request("dove").toJson());
+        CorrelatedChannel.accepted(channel.send(second)).test().assertComplete();
+
+        assertThat(apiService.requestsReceived).containsExactly(request, Request.fromJson(second.getMessageData()));
+    }
+
+    @Test
+    public void shouldHandleMessagesOnRequestScheduler() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+        apiService.setRequestScheduler(scheduler);
+        connectNewClient();
+
+        fakeIncomingMessage(incomingAppMessage);
+
+        assertThat(apiService.requestReceived).isNull();
+        scheduler.triggerActions();
+        assertThat(apiService.requestReceived).isEqualTo(request);
+    }
+
+    @Test
+    public void shouldHandleMessagesOfClientInOrder() throws Exception {
+        apiService.setConcurrentRequestHandling(4);
+        connectNewClient();
+        List<Request> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            AppMessage appMessage = new AppMessage(AppMessageTypes.REQUEST_MESSAGE, new Request("request" + i).toJson());
+            appMessage.setCorrelationId(String.valueOf(i));
+            requests.add(Request.fromJson(appMessage.getMessageData()));
+            fakeIncomingMessage(appMessage);
+        }
+
+        verify(channelServer, timeout(5000).times(20)).send(anyString());
+        assertThat(apiService.requestsReceived).containsExactlyElementsOf(requests);
+        assertThat(apiService.lastThreadName).contains("-request-");
+    }
+
+    @Test
+    public void shouldKeepHandlingMessagesOfConnectedClientAfterRequestHandlingIsReplaced() throws Exception {
+        apiService.setConcurrentRequestHandling(2);
+        connectNewClient();
+        apiService.setConcurrentRequestHandling(2);
+        apiService.setConcurrentRequestHandling(2);
+
+        fakeIncomingMessage(incomingAppMessage);
+
+        verify(channelServer, timeout(5000)).send(anyString());
+        assertThat(apiService.requestReceived).isEqualTo(request);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidParallelism() throws Exception {
+        apiService.setConcurrentRequestHandling(0);
+    }
+
+    private void connectNewClient() {
+        incomingMessagePublisher = BehaviorSubject.create();
+        when(channelServer.subscribeToMessages()).thenReturn(incomingMessagePublisher);
+        apiService.onNewClient(channelServer, "com.test");
+    }
+
+    private ChannelClient connectChannelClient() {
+        ReplaySubject<String> sentToClient = ReplaySubject.create();
+        doAnswer(invocation -> {
+            sentToClient.onNext(invocation.getArgument(0));
+            return true;
+        }).when(channelServer).send(anyString());
+        ChannelClient channelClient = mock(ChannelClient.class);
+        when(channelClient.sendMessage(anyString())).thenAnswer(invocation -> {
+            incomingMessagePublisher.onNext(invocation.getArgument(0));
+            return sentToClient;
+        });
+        return channelClient;
+    }
+
+    private List<AppMessage> getMessagesSent() {
+        ArgumentCaptor<String> msgCaptor = ArgumentCaptor.forClass(String.class);
+        verify(channelServer, atLeastOnce()).send(msgCaptor.capture());
+        List<AppMessage> messages = new ArrayList<>();
+        for (String msg : msgCaptor.getAllValues()) {
+            messages.add(MessageCodecs.decode(msg));
+        }
+        return messages;
+    }
+
+    private String getLastMessageSent() {
+        ArgumentCaptor<String> msgCaptor = ArgumentCaptor.forClass(String.class);
+        verify(channelServer, atLeastOnce()).send(msgCaptor.capture());
+        List<String> msgs = msgCaptor.getAllValues();
+        return msgs.get(msgs.size() - 1);
+    }
+
     private void verifyCommsEnded(boolean ended) {
         if (ended) {
             verify(channelServer).sendEndStream();
@@ -86,7 +326,7 @@ public class BaseApiServiceTest {
         verify(channelServer, atLeastOnce()).send(msgCaptor.capture());
         List<String> msgs = msgCaptor.getAllValues();
         String lastMsg = msgs.get(msgs.size() - 1);
-        AppMessage messageSent = AppMessage.fromJson(lastMsg);
+        AppMessage messageSent = MessageCodecs.decode(lastMsg);
         assertThat(messageSent.getMessageType()).isEqualTo(type);
         assertThat(messageSent.getMessageData()).isEqualTo(response);
     }
@@ -100,6 +340,9 @@ public class BaseApiServiceTest {
         boolean throwExceptionInProcessRequest;
         Request requestReceived;
         boolean finishRequestReceived;
+        ClientCommunicator lastClientCommunicator;
+        List<Request> requestsReceived = new ArrayList<>();
+        String lastThreadName;
 
         TestApiService(ChannelServer channelServer) {
             super("1.0.0");
@@ -110,6 +353,9 @@ public class BaseApiServiceTest {
         protected void processRequest(@NonNull ClientCommunicator clientCommunicator, @NonNull String request,
                                       @Nullable InternalData senderInternalData) {
             requestReceived = Request.fromJson(request);
+            requestsReceived.add(requestReceived);
+            lastThreadName = Thread.currentThread().getName();
+            lastClientCommunicator = clientCommunicator;
             if (throwExceptionInProcessRequest) {
                 throw new IllegalStateException("Skimaroo");
             }
@@ -4,12 +4,23 @@ import android.support.annotation.NonNull;
 import com.aevi.sdk.flow.constants.AppMessageTypes;
 import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.AuditEntry;
+import com.aevi.sdk.flow.model.InternalData;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.aevi.sdk.flow.constants.InternalDataKeys.STAGE_DEADLINE;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.SUPPORTS_AUDIT_ENTRY_BATCH;
+import static com.aevi.sdk.flow.model.AuditEntry.AuditSeverity.INFO;
 import static com.aevi.sdk.flow.model.AuditEntry.AuditSeverity.WARNING;
 import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.*;
 
@@ -17,21 +28,25 @@ public class BaseStageModelTest {
 
     private AndroidComponentDelegate androidComponentDelegate;
     private TestModel testModel;
+    private TestScheduler testScheduler;
 
     @Before
     public void setUp() throws Exception {
         androidComponentDelegate = mock(AndroidComponentDelegate.class);
         testModel = new TestModel(androidComponentDelegate);
+        testScheduler = new TestScheduler();
+        testModel.setDeadlineScheduler(testScheduler);
     }
 
     @Test
     public void shouldSendAuditEntryModelCorrectly() throws Exception {
         testModel.addAuditEntry(WARNING, "test");
+        testModel.sendEmptyResponse();
 
         ArgumentCaptor<AppMessage> auditEntryArgumentCaptor = ArgumentCaptor.forClass(AppMessage.class);
-        verify(androidComponentDelegate).sendMessage(auditEntryArgumentCaptor.capture());
+        verify(androidComponentDelegate, times(2)).sendMessage(auditEntryArgumentCaptor.capture());
 
-        AppMessage appMessage = auditEntryArgumentCaptor.getValue();
+        AppMessage appMessage = auditEntryArgumentCaptor.getAllValues().get(0);
         assertThat(appMessage.getMessageType()).isEqualTo(AppMessageTypes.AUDIT_ENTRY);
         AuditEntry auditEntry = AuditEntry.fromJson(appMessage.getMessageData());
         assertThat(auditEntry.getAuditSeverity()).isEqualTo(WARNING);
@@ -39,12 +54,89 @@ public class BaseStageModelTest {
     }
 
     @Test
-    public void shouldOnlyAllowFiveAuditEntries() throws Exception {
+    public void shouldSendResponseIfAuditEntryFailsToFormat() throws Exception {
+        testModel.addAuditEntry(WARNING, "%d", "not a number");
+        testModel.addAuditEntry(INFO, "test");
+        testModel.sendEmptyResponse();
+
+        List<AppMessage> sentMessages = getSentMessages();
+        assertThat(sentMessages).hasSize(2);
+        assertThat(AuditEntry.fromJson(sentMessages.get(0).getMessageData()).getAuditMessage()).isEqualTo("test");
+        assertThat(sentMessages.get(1).getMessageType()).isEqualTo(AppMessageTypes.RESPONSE_MESSAGE);
+    }
+
+    @Test
+    public void shouldSendAuditEntriesBeforeProcessingInActivity() throws Exception {
+        testModel.addAuditEntry(WARNING, "test");
+
+        testModel.processInActivity(null, null, "{}");
+        testModel.addAuditEntry(INFO, "later");
+
+        InOrder inOrder = inOrder(androidComponentDelegate);
+        ArgumentCaptor<AppMessage> captor = ArgumentCaptor.forClass(AppMessage.class);
+        inOrder.verify(androidComponentDelegate).sendMessage(captor.capture());
+        inOrder.verify(androidComponentDelegate).processInActivity(null, null, "{}");
+        inOrder.verify(androidComponentDelegate).sendMessage(captor.capture());
+        assertThat(AuditEntry.fromJson(captor.getAllValues().get(0).getMessageData()).getAuditMessage()).isEqualTo("test");
+        assertThat(AuditEntry.fromJson(captor.getAllValues().get(1).getMessageData()).getAuditMessage()).isEqualTo("later");
+    }
+
+    @Test
+    public void shouldBufferAuditEntriesUntilResponse() throws Exception {
+        testModel.addAuditEntry(WARNING, "test");
+
+        verify(androidComponentDelegate, never()).sendMessage(isA(AppMessage.class));
+    }
+
+    @Test
+    public void shouldDeferFormattingOfAuditEntries() throws Exception {
+        testModel.addAuditEntry(WARNING, "test %s", "one");
+        testModel.sendEmptyResponse();
+
+        assertThat(getSentMessages().get(0).getMessageData()).contains("test one");
+    }
+
+    @Test
+    public void shouldOnlyAllowFiveAuditEntriesOfMaximumLength() throws Exception {
         for (int i = 0; i < 10; i++) {
-            testModel.addAuditEntry(WARNING, "test");
+            testModel.addAuditEntry(WARNING, "%080d", i);
         }
+        testModel.sendEmptyResponse();
+
+        verify(androidComponentDelegate, times(6)).sendMessage(isA(AppMessage.class));
+    }
+
+    @Test
+    public void shouldLimitAuditEntriesToBudget() throws Exception {
+        testModel.setAuditEntryBudget(10);
+        testModel.addAuditEntry(WARNING, "test");
+        testModel.addAuditEntry(WARNING, "too long");
+        testModel.addAuditEntry(WARNING, "test");
+        testModel.sendEmptyResponse();
+        testModel.addAuditEntry(WARNING, "test");
+
+        List<AppMessage> sentMessages = getSentMessages();
+        assertThat(sentMessages).hasSize(3);
+        assertThat(sentMessages.get(0).getMessageType()).isEqualTo(AppMessageTypes.AUDIT_ENTRY);
+        assertThat(sentMessages.get(1).getMessageType()).isEqualTo(AppMessageTypes.AUDIT_ENTRY);
+        assertThat(sentMessages.get(2).getMessageType()).isEqualTo(AppMessageTypes.RESPONSE_MESSAGE);
+    }
+
+    @Test
+    public void shouldSendAuditEntriesInBatchIfSupported() throws Exception {
+        InternalData internalData = new InternalData("1.0.0");
+        internalData.addAdditionalData(SUPPORTS_AUDIT_ENTRY_BATCH, "true");
+        when(androidComponentDelegate.getSenderInternalData()).thenReturn(internalData);
 
-        verify(androidComponentDelegate, times(5)).sendMessage(isA(AppMessage.class));
+        testModel.addAuditEntry(WARNING, "one");
+        testModel.addAuditEntry(WARNING, "two");
+        testModel.sendEmptyResponse();
+
+        List<AppMessage> sentMessages = getSentMessages();
+        assertThat(sentMessages).hasSize(2);
+        assertThat(sentMessages.get(0).getMessageType()).isEqualTo(AppMessageTypes.AUDIT_ENTRY_BATCH);
+        assertThat(sentMessages.get(0).getMessageData()).isEqualTo("[" + new AuditEntry(WARNING, "one").toJson() + ","
+                                                                           + new AuditEntry(WARNING, "two").toJson() + "]");
     }
 
     @Test(expected = IllegalStateException.class)
@@ -53,6 +145,112 @@ public class BaseStageModelTest {
         testModel.sendEmptyResponse();
     }
 
+    @Test
+    public void hasNoDeadlineIfNotSet() throws Exception {
+        assertThat(testModel.hasDeadline()).isFalse();
+        assertThat(testModel.getRemainingTimeMillis()).isEqualTo(Long.MAX_VALUE);
+        testModel.deadline().test().assertNotComplete();
+    }
+
+    @Test
+    public void ignoresInvalidDeadline() throws Exception {
+        setDeadline("soon");
+
+        assertThat(testModel.hasDeadline()).isFalse();
+    }
+
+    @Test
+    public void canGetRemainingTime() throws Exception {
+        setDeadline("5000");
+
+        assertThat(testModel.getRemainingTimeMillis()).isEqualTo(5000);
+        testScheduler.advanceTimeBy(2000, TimeUnit.MILLISECONDS);
+        assertThat(testModel.getRemainingTimeMillis()).isEqualTo(3000);
+        testScheduler.advanceTimeBy(4000, TimeUnit.MILLISECONDS);
+        assertThat(testModel.getRemainingTimeMillis()).isZero();
+    }
+
+    @Test
+    public void deadlineCompletesWhenDeadlinePasses() throws Exception {
+        setDeadline("5000");
+        TestObserver<Void> deadline = testModel.deadline().test();
+
+        testScheduler.advanceTimeBy(4999, TimeUnit.MILLISECONDS);
+        deadline.assertNotComplete();
+        testScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        deadline.assertComplete();
+    }
+
+    @Test
+    public void shouldSkipOnDeadline() throws Exception {
+        setDeadline("5000");
+        testModel.skipOnDeadline();
+
+        testScheduler.advanceTimeBy(5000, TimeUnit.MILLISECONDS);
+
+        verifyResponseSent();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotAllowResponseAfterSkippingOnDeadline() throws Exception {
+        setDeadline("5000");
+        testModel.skipOnDeadline();
+        testScheduler.advanceTimeBy(5000, TimeUnit.MILLISECONDS);
+
+        testModel.sendEmptyResponse();
+    }
+
+    @Test
+    public void shouldNotSkipOnDeadlineIfResponseSent() throws Exception {
+        setDeadline("5000");
+        testModel.skipOnDeadline();
+        testModel.sendEmptyResponse();
+
+        testScheduler.advanceTimeBy(5000, TimeUnit.MILLISECONDS);
+
+        verifyResponseSent();
+    }
+
+    @Test
+    public void shouldOnlyFailResponsesAfterDeadlineIfStageCanNotBeSkipped() throws Exception {
+        testModel = new TestModel(androidComponentDelegate) {
+            @Override
+            protected void skipAfterDeadline() {
+            }
+        };
+        testModel.setDeadlineScheduler(testScheduler);
+        setDeadline("5000");
+        testModel.skipOnDeadline();
+
+        testScheduler.advanceTimeBy(5000, TimeUnit.MILLISECONDS);
+
+        verify(androidComponentDelegate, never()).sendMessage(isA(AppMessage.class));
+        try {
+            testModel.sendEmptyResponse();
+            fail("Response after deadline should fail");
+        } catch (IllegalStateException e) {
+            verify(androidComponentDelegate, never()).sendMessage(isA(AppMessage.class));
+        }
+    }
+
+    private List<AppMessage> getSentMessages() {
+        ArgumentCaptor<AppMessage> captor = ArgumentCaptor.forClass(AppMessage.class);
+        verify(androidComponentDelegate, atLeastOnce()).sendMessage(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private void setDeadline(String deadline) {
+        InternalData internalData = new InternalData("1.0.0");
+        internalData.addAdditionalData(STAGE_DEADLINE, deadline);
+        when(androidComponentDelegate.getSenderInternalData()).thenReturn(internalData);
+    }
+
+    private void verifyResponseSent() {
+        ArgumentCaptor<AppMessage> captor = ArgumentCaptor.forClass(AppMessage.class);
+        verify(androidComponentDelegate).sendMessage(captor.capture());
+        assertThat(captor.getValue().getMessageType()).isEqualTo(AppMessageTypes.RESPONSE_MESSAGE);
+    }
+
     static class TestModel extends BaseStageModel {
 
         TestModel(AndroidComponentDelegate androidComponentDelegate) {
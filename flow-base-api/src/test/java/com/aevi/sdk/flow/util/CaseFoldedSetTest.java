@@ -0,0 +1,43 @@
+package com.aevi.sdk.flow.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class CaseFoldedSetTest {
+
+    @Test
+    public void containsValuesIgnoringCase() {
+        CaseFoldedSet folded = CaseFoldedSet.of(null, Arrays.asList("Sale", "refund"));
+
+        assertThat(folded.contains("SALE")).isTrue();
+        assertThat(folded.contains("Refund")).isTrue();
+        assertThat(folded.contains("void")).isFalse();
+        assertThat(folded.contains(null)).isFalse();
+    }
+
+    @Test
+    public void reusesSnapshotOfUnchangedSet() {
+        Set<String> source = new HashSet<>(Arrays.asList("one", "two"));
+        CaseFoldedSet folded = CaseFoldedSet.of(null, source);
+
+        assertThat(CaseFoldedSet.of(folded, source)).isSameAs(folded);
+    }
+
+    @Test
+    public void takesNewSnapshotIfSetChangedWithSameSize() {
+        Set<String> source = new HashSet<>(Arrays.asList("one", "two"));
+        CaseFoldedSet folded = CaseFoldedSet.of(null, source);
+        source.remove("one");
+        source.add("three");
+
+        CaseFoldedSet updated = CaseFoldedSet.of(folded, source);
+
+        assertThat(updated.contains("ONE")).isFalse();
+        assertThat(updated.contains("THREE")).isTrue();
+    }
+}
@@ -0,0 +1,151 @@
+package com.aevi.sdk.flow.util;
+
+import android.content.ComponentName;
+import com.aevi.android.rxmessenger.ChannelClient;
+import io.reactivex.schedulers.TestScheduler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class ChannelPoolTest {
+
+    private static final ComponentName COMPONENT = new ComponentName("com.test", "com.test.Service");
+    private static final ComponentName OTHER_COMPONENT = new ComponentName("com.test", "com.test.OtherService");
+
+    private TestScheduler scheduler;
+    private ChannelPool channelPool;
+
+    @Before
+    public void setUp() {
+        scheduler = new TestScheduler();
+        channelPool = new ChannelPool(30, TimeUnit.SECONDS, scheduler);
+    }
+
+    @Test
+    public void reusesMultiplexedConnection() {
+        ChannelPool.Lease lease = channelPool.acquire(COMPONENT, componentName -> createClient());
+        lease.markMultiplexed();
+        lease.release();
+
+        ChannelPool.Lease next = channelPool.acquire(COMPONENT, componentName -> createClient());
+
+        assertThat(next.isReused()).isTrue();
+        assertThat(next.getClient()).isSameAs(lease.getClient());
+        verify(lease.getClient(), never()).closeConnection();
+    }
+
+    @Test
+    public void doesNotShareLeasedConnections() {
+        ChannelPool.Lease lease = channelPool.acquire(COMPONENT, componentName -> createClient());
+
+        ChannelPool.Lease other = channelPool.acquire(COMPONENT, componentName -> createClient());
+
+        assertThat(other.isReused()).isFalse();
+        assertThat(other.getClient()).isNotSameAs(lease.getClient());
+    }
+
+    @Test
+    public void doesNotReuseConnectionsAcrossComponents() {
+        ChannelPool.Lease lease = channelPool.acquire(COMPONENT, componentName -> createClient());
+        lease.markMultiplexed();
+        lease.release();
+
+        assertThat(channelPool.acquire(OTHER_COMPONENT, componentName -> createClient()).isReused()).isFalse();
+    }
+
+    @Test
+    public void closesConnectionIfNotMultiplexed() {
+        ChannelPool.Lease lease = channelPool.acquire(COMPONENT, componentName -> createClient());
+        lease.release();
+        lease.release();
+
+        verify(lease.getClient()).closeConnection();
+        assertThat(channelPool.getIdleCount(COMPONENT)).isZero();
+    }
+
+    @Test
+    public void keepsReusedConnectionMultiplexed() {
+        ChannelPool.Lease lease = channelPool.acquire(COMPONENT, componentName -> createClient());
+        lease.markMultiplexed();
+        lease.release();
+
+        ChannelPool.Lease next = channelPool.acquire(COMPONENT, componentName -> createClient());
+        next.release();
+
+        assertThat(channelPool.getIdleCount(COMPONENT)).isEqualTo(1);
+        verify(next.getClient(), never()).closeConnection();
+    }
+
+    @Test
+    public void closesDisconnectedIdleConnection() {
+        ChannelPool.Lease lease = channelPool.acquire(COMPONENT, componentName -> createClient());
+        lease.markMultiplexed();
+        lease.release();
+        when(lease.getClient().isConnected()).thenReturn(false);
+
+        ChannelPool.Lease next = channelPool.acquire(COMPONENT, componentName -> createClient());
+
+        assertThat(next.isReused()).isFalse();
+        verify(lease.getClient()).closeConnection();
+    }
+
+    @Test
+    public void evictsIdleConnectionsAfterTimeout() {
+        ChannelPool.Lease first = channelPool.acquire(COMPONENT, componentName -> createClient());
+        first.markMultiplexed();
+        first.release();
+        scheduler.advanceTimeBy(20, TimeUnit.SECONDS);
+        ChannelPool.Lease second = channelPool.acquire(OTHER_COMPONENT, componentName -> createClient());
+        second.markMultiplexed();
+        second.release();
+
+        scheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+
+        verify(first.getClient()).closeConnection();
+        verify(second.getClient(), never()).closeConnection();
+        assertThat(channelPool.getIdleCount(COMPONENT)).isZero();
+        assertThat(channelPool.getIdleCount(OTHER_COMPONENT)).isEqualTo(1);
+
+        scheduler.advanceTimeBy(20, TimeUnit.SECONDS);
+
+        verify(second.getClient()).closeConnection();
+        assertThat(channelPool.getIdleCount(OTHER_COMPONENT)).isZero();
+    }
+
+    @Test
+    public void limitsIdleConnectionsPerComponent() {
+        ChannelPool.Lease[] leases = new ChannelPool.Lease[ChannelPool.MAX_IDLE_PER_COMPONENT + 1];
+        for (int i = 0; i < leases.length; i++) {
+            leases[i] = channelPool.acquire(COMPONENT, componentName -> createClient());
+        }
+        for (ChannelPool.Lease lease : leases) {
+            lease.markMultiplexed();
+            lease.release();
+        }
+
+        assertThat(channelPool.getIdleCount(COMPONENT)).isEqualTo(ChannelPool.MAX_IDLE_PER_COMPONENT);
+        verify(leases[leases.length - 1].getClient()).closeConnection();
+    }
+
+    @Test
+    public void clearClosesIdleConnections() {
+        ChannelPool.Lease lease = channelPool.acquire(COMPONENT, componentName -> createClient());
+        lease.markMultiplexed();
+        lease.release();
+
+        channelPool.clear();
+
+        verify(lease.getClient()).closeConnection();
+        assertThat(channelPool.acquire(COMPONENT, componentName -> createClient()).isReused()).isFalse();
+    }
+
+    private ChannelClient createClient() {
+        ChannelClient client = mock(ChannelClient.class);
+        when(client.isConnected()).thenReturn(true);
+        return client;
+    }
+}
@@ -0,0 +1,143 @@
+package com.aevi.sdk.flow.util;
+
+import com.aevi.android.rxmessenger.ChannelClient;
+import com.aevi.sdk.flow.model.AppMessage;
+import com.aevi.sdk.flow.model.FlowException;
+import com.aevi.sdk.flow.model.InternalData;
+import io.reactivex.Completable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.ReplaySubject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.aevi.sdk.flow.constants.AppMessageTypes.*;
+import static com.aevi.sdk.flow.constants.ErrorConstants.FLOW_SERVICE_ERROR;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.SUPPORTS_MULTIPLEXING;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class CorrelatedChannelTest {
+
+    private ReplaySubject<String> fromPeer;
+    private List<AppMessage> receivedByPeer;
+    private ChannelClient client;
+    private CorrelatedChannel channel;
+
+    @Before
+    public void setup() {
+        fromPeer = ReplaySubject.create();
+        receivedByPeer = new ArrayList<>();
+        client = mock(ChannelClient.class);
+        when(client.sendMessage(anyString())).thenAnswer(invocation -> {
+            receivedByPeer.add(AppMessage.fromJson(invocation.getArgument(0)));
+            return fromPeer;
+        });
+        channel = new CorrelatedChannel(client);
+    }
+
+    @Test
+    public void sendsEachMessageAsExchangeOverOneConnection() {
+        TestObserver<Void> observer = Completable.merge(Arrays.asList(CorrelatedChannel.accepted(channel.send(new AppMessage(FLOW_EVENT, "{}"))),
+                                                                      CorrelatedChannel.accepted(channel.send(new AppMessage(FLOW_EVENT, "{}")))))
+                .test();
+
+        assertThat(receivedByPeer).extracting("messageType").containsExactly(FLOW_EVENT, FLOW_EVENT);
+        assertThat(receivedByPeer.get(0).getCorrelationId()).isNotEqualTo(receivedByPeer.get(1).getCorrelationId());
+        observer.assertNotComplete();
+
+        replyTo(0, REQUEST_ACK_MESSAGE);
+        observer.assertNotComplete();
+        replyTo(1, REQUEST_ACK_MESSAGE);
+        observer.assertComplete();
+    }
+
+    @Test
+    public void onlyReceivesMessagesOfOwnExchange() {
+        TestObserver<String> first = CorrelatedChannel.replies(channel.send(new AppMessage(RESPONSES_REQUEST))).test();
+        TestObserver<String> second = CorrelatedChannel.replies(channel.send(new AppMessage(RESPONSES_REQUEST))).test();
+
+        replyTo(1, RESPONSE_MESSAGE, "two");
+        replyTo(0, RESPONSE_MESSAGE, "one");
+        replyTo(0, EXCHANGE_END, null);
+
+        first.assertValues("one").assertComplete();
+        second.assertValues("two").assertNotComplete();
+    }
+
+    @Test
+    public void failsExchangeOnFailureMessage() {
+        TestObserver<Void> observer = CorrelatedChannel.accepted(channel.send(new AppMessage(REQUEST_MESSAGE))).test();
+
+        replyTo(0, FAILURE_MESSAGE, new FlowException(FLOW_SERVICE_ERROR, "Nope").toJson());
+
+        observer.assertError(FlowException.class);
+    }
+
+    @Test
+    public void detectsMultiplexingAdvertisedByPeer() {
+        channel.send(new AppMessage(REQUEST_MESSAGE)).test();
+        assertThat(channel.isMultiplexingAdvertised()).isFalse();
+
+        InternalData internalData = new InternalData("1.0.0");
+        internalData.addAdditionalData(SUPPORTS_MULTIPLEXING, "true");
+        AppMessage ack = new AppMessage(REQUEST_ACK_MESSAGE, internalData);
+        ack.setCorrelationId(receivedByPeer.get(0).getCorrelationId());
+        fromPeer.onNext(ack.toJson());
+
+        assertThat(channel.isMultiplexingAdvertised()).isTrue();
+    }
+
+    @Test
+    public void completesBatchOnceEveryItemIsAccepted() {
+        TestObserver<Void> observer = CorrelatedChannel.batchAccepted(channel.send(new AppMessage(BATCH_REQUEST_MESSAGE, "[{},{}]")), 2).test();
+
+        replyToItem(1, REQUEST_ACK_MESSAGE, null);
+        replyToItem(1, RESPONSE_MESSAGE, "{}");
+        observer.assertNotComplete();
+        replyToItem(0, REQUEST_ACK_MESSAGE, null);
+
+        observer.assertComplete();
+    }
+
+    @Test
+    public void failsBatchOnceEveryItemIsAccountedFor() {
+        TestObserver<Void> observer = CorrelatedChannel.batchAccepted(channel.send(new AppMessage(BATCH_REQUEST_MESSAGE, "[{},{}]")), 2).test();
+
+        replyToItem(0, FAILURE_MESSAGE, new FlowException(FLOW_SERVICE_ERROR, "Nope").toJson());
+        observer.assertNotTerminated();
+        replyToItem(1, REQUEST_ACK_MESSAGE, null);
+
+        observer.assertError(FlowException.class);
+    }
+
+    @Test
+    public void failsBatchIfConnectionEndsBeforeEveryItemIsAccepted() {
+        TestObserver<Void> observer = CorrelatedChannel.batchAccepted(channel.send(new AppMessage(BATCH_REQUEST_MESSAGE, "[{},{}]")), 2).test();
+
+        replyToItem(0, REQUEST_ACK_MESSAGE, null);
+        fromPeer.onComplete();
+
+        observer.assertError(FlowException.class);
+    }
+
+    private void replyTo(int exchange, String messageType) {
+        replyTo(exchange, messageType, null);
+    }
+
+    private void replyTo(int exchange, String messageType, String messageData) {
+        AppMessage reply = new AppMessage(messageType, messageData);
+        reply.setCorrelationId(receivedByPeer.get(exchange).getCorrelationId());
+        fromPeer.onNext(reply.toJson());
+    }
+
+    private void replyToItem(int item, String messageType, String messageData) {
+        AppMessage reply = new AppMessage(messageType, messageData);
+        reply.setCorrelationId(receivedByPeer.get(0).getCorrelationId() + ":" + item);
+        fromPeer.onNext(reply.toJson());
+    }
+}
@@ -0,0 +1,142 @@
+package com.aevi.sdk.flow.util;
+
+import com.aevi.sdk.flow.model.Device;
+import com.aevi.sdk.flow.model.DeviceListDiff;
+import com.aevi.sdk.flow.model.FlowEvent;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class DeviceRegistryTest {
+
+    private final Device deviceOne = new Device("1", "one");
+    private final Device deviceTwo = new Device("2", "two");
+
+    private PublishSubject<FlowEvent> systemEvents;
+    private List<Device> devices;
+    private int fetchCount;
+    private DeviceRegistry deviceRegistry;
+
+    @Before
+    public void setup() {
+        systemEvents = PublishSubject.create();
+        devices = new ArrayList<>(Collections.singletonList(deviceOne));
+        deviceRegistry = new DeviceRegistry(systemEvents, Single.fromCallable(() -> {
+            fetchCount++;
+            return new ArrayList<>(devices);
+        }));
+    }
+
+    @Test
+    public void reportsInitialDevicesAsAdded() {
+        deviceRegistry.observeChanges().test()
+                .assertValue(new DeviceListDiff(Collections.singletonList(deviceOne), null, null));
+
+        assertThat(deviceRegistry.getCachedDevices()).containsExactly(deviceOne);
+    }
+
+    @Test
+    public void reportsChangesAfterSystemEvent() {
+        TestObserver<DeviceListDiff> observer = deviceRegistry.observeChanges().test();
+        Device renamed = new Device("1", "renamed");
+        devices = Arrays.asList(renamed, deviceTwo);
+
+        systemEvents.onNext(new FlowEvent("devicesChanged"));
+
+        observer.assertValueAt(1, new DeviceListDiff(Collections.singletonList(deviceTwo), null, Collections.singletonList(renamed)));
+        assertThat(deviceRegistry.getCachedDevices()).containsExactly(renamed, deviceTwo);
+    }
+
+    @Test
+    public void reportsRemovedDevices() {
+        TestObserver<DeviceListDiff> observer = deviceRegistry.observeChanges().test();
+        devices = Collections.emptyList();
+
+        systemEvents.onNext(new FlowEvent("devicesChanged"));
+
+        observer.assertValueAt(1, new DeviceListDiff(null, Collections.singletonList(deviceOne), null));
+    }
+
+    @Test
+    public void doesNotReportUnchangedDevices() {
+        TestObserver<DeviceListDiff> observer = deviceRegistry.observeChanges().test();
+
+        systemEvents.onNext(new FlowEvent("settingsChanged"));
+
+        observer.assertValueCount(1);
+        assertThat(fetchCount).isEqualTo(2);
+    }
+
+    @Test
+    public void sharesSubscriptionBetweenObservers() {
+        deviceRegistry.observeChanges().test();
+        deviceRegistry.observeChanges().test();
+
+        assertThat(fetchCount).isEqualTo(1);
+    }
+
+    @Test
+    public void reportsCachedDevicesAsAddedToLaterObservers() {
+        deviceRegistry.observeChanges().test();
+
+        deviceRegistry.observeChanges().test()
+                .assertValue(new DeviceListDiff(Collections.singletonList(deviceOne), null, null));
+        assertThat(fetchCount).isEqualTo(1);
+    }
+
+    @Test
+    public void reportsChangesToLaterObserversRelativeToCachedDevices() {
+        deviceRegistry.observeChanges().test();
+        TestObserver<DeviceListDiff> observer = deviceRegistry.observeChanges().test();
+        devices = Arrays.asList(deviceOne, deviceTwo);
+
+        systemEvents.onNext(new FlowEvent("devicesChanged"));
+
+        observer.assertValueAt(1, new DeviceListDiff(Collections.singletonList(deviceTwo), null, null));
+    }
+
+    @Test
+    public void keepsObservingAfterFailedFetch() {
+        final boolean[] failFetch = {true};
+        deviceRegistry = new DeviceRegistry(systemEvents, Single.defer(() -> failFetch[0]
+                ? Single.<List<Device>>error(new IllegalStateException())
+                : Single.just(devices)));
+        TestObserver<DeviceListDiff> observer = deviceRegistry.observeChanges().test();
+        failFetch[0] = false;
+
+        systemEvents.onNext(new FlowEvent("devicesChanged"));
+
+        observer.assertNoErrors().assertNotComplete()
+                .assertValue(new DeviceListDiff(Collections.singletonList(deviceOne), null, null));
+        assertThat(deviceRegistry.getCachedDevices()).containsExactly(deviceOne);
+    }
+
+    @Test
+    public void dropsCacheWhenNoLongerObserved() {
+        TestObserver<DeviceListDiff> observer = deviceRegistry.observeChanges().test();
+
+        observer.dispose();
+
+        assertThat(deviceRegistry.getCachedDevices()).isNull();
+        assertThat(systemEvents.hasObservers()).isFalse();
+    }
+
+    @Test
+    public void dropsCacheOnError() {
+        TestObserver<DeviceListDiff> observer = deviceRegistry.observeChanges().test();
+
+        systemEvents.onError(new IllegalStateException());
+
+        observer.assertError(IllegalStateException.class);
+        assertThat(deviceRegistry.getCachedDevices()).isNull();
+    }
+}
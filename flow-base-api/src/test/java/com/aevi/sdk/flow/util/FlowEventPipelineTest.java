@@ -0,0 +1,126 @@
+package com.aevi.sdk.flow.util;
+
+import com.aevi.sdk.flow.model.FlowEvent;
+import io.reactivex.Completable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.aevi.sdk.flow.constants.FlowServiceEventTypes.FINISH_IMMEDIATELY;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class FlowEventPipelineTest {
+
+    private TestScheduler scheduler;
+    private List<List<FlowEvent>> batchesSent;
+    private Completable sinkResult;
+    private FlowEventPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        scheduler = new TestScheduler();
+        batchesSent = new ArrayList<>();
+        sinkResult = Completable.complete();
+        pipeline = new FlowEventPipeline(events -> {
+            batchesSent.add(events);
+            return sinkResult;
+        }, 100, TimeUnit.MILLISECONDS, scheduler, 4, "progress");
+    }
+
+    @Test
+    public void sendsEventsTogetherAfterWindow() {
+        FlowEvent first = new FlowEvent("one");
+        FlowEvent second = new FlowEvent("two");
+        TestObserver<Void> firstObserver = pipeline.submit(first).test();
+        pipeline.submit(second).test();
+
+        assertThat(batchesSent).isEmpty();
+        firstObserver.assertNotComplete();
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        assertThat(batchesSent).hasSize(1);
+        assertThat(batchesSent.get(0)).containsExactly(first, second);
+        firstObserver.assertComplete();
+    }
+
+    @Test
+    public void queuesEventOnlyWhenSubscribed() {
+        pipeline.submit(new FlowEvent("one"));
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        assertThat(batchesSent).isEmpty();
+    }
+
+    @Test
+    public void coalescesEventsOfSameTypeAndTarget() {
+        FlowEvent other = new FlowEvent("other");
+        FlowEvent latest = createProgressEvent("50%", "target");
+        FlowEvent otherTarget = createProgressEvent("10%", "otherTarget");
+        TestObserver<Void> supersededObserver = pipeline.submit(createProgressEvent("10%", "target")).test();
+        pipeline.submit(other).test();
+        pipeline.submit(otherTarget).test();
+        pipeline.submit(latest).test();
+
+        pipeline.flush();
+
+        assertThat(batchesSent).hasSize(1);
+        assertThat(batchesSent.get(0)).containsExactly(other, otherTarget, latest);
+        supersededObserver.assertComplete();
+    }
+
+    @Test
+    public void doesNotCoalesceOtherTypes() {
+        pipeline.submit(new FlowEvent("one")).test();
+        pipeline.submit(new FlowEvent("one")).test();
+
+        assertThat(pipeline.getQueuedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void flushesImmediatelyForTerminalEvents() {
+        FlowEvent first = new FlowEvent("one");
+        FlowEvent finish = new FlowEvent(FINISH_IMMEDIATELY);
+        pipeline.submit(first).test();
+        pipeline.submit(finish).test();
+
+        assertThat(batchesSent).hasSize(1);
+        assertThat(batchesSent.get(0)).containsExactly(first, finish);
+    }
+
+    @Test
+    public void flushesWhenQueueIsFull() {
+        for (int i = 0; i < 5; i++) {
+            pipeline.submit(new FlowEvent("event" + i)).test();
+        }
+
+        assertThat(batchesSent).hasSize(1);
+        assertThat(batchesSent.get(0)).hasSize(4);
+        assertThat(pipeline.getQueuedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void reportsSendFailureToAllEventsInBatch() {
+        IllegalStateException error = new IllegalStateException("failed");
+        sinkResult = Completable.error(error);
+        TestObserver<Void> first = pipeline.submit(new FlowEvent("one")).test();
+        TestObserver<Void> second = pipeline.submit(new FlowEvent("two")).test();
+
+        pipeline.flush();
+
+        first.assertError(error);
+        second.assertError(error);
+    }
+
+    private static FlowEvent createProgressEvent(String progress, String target) {
+        FlowEvent flowEvent = new FlowEvent("progress", progress);
+        flowEvent.setTarget(target);
+        return flowEvent;
+    }
+}
@@ -0,0 +1,79 @@
+package com.aevi.sdk.flow.util;
+
+import com.aevi.sdk.flow.model.ResponsePage;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class LazyJsonTest {
+
+    private static final String JSON = "{\"continuationToken\":\"page\\\"2\",\"responses\":[{\"id\":1}],\"empty\":null}";
+
+    private int decodeCount;
+    private LazyJson<ResponsePage> lazyJson;
+
+    @Before
+    public void setUp() {
+        lazyJson = LazyJson.of(JSON, json -> {
+            decodeCount++;
+            return ResponsePage.fromJson(json);
+        });
+    }
+
+    @Test
+    public void canReadMembersWithoutDecoding() {
+        assertThat(lazyJson.getString("continuationToken")).isEqualTo("page\"2");
+        assertThat(lazyJson.getMemberJson("responses")).isEqualTo("[{\"id\":1}]");
+        assertThat(lazyJson.getMemberJson("empty")).isNull();
+        assertThat(lazyJson.getString("unknown")).isNull();
+
+        assertThat(lazyJson.isDecoded()).isFalse();
+        assertThat(decodeCount).isZero();
+    }
+
+    @Test
+    public void decodesOnlyOnce() {
+        ResponsePage page = lazyJson.get();
+
+        assertThat(lazyJson.get()).isSameAs(page);
+        assertThat(page.getContinuationToken()).isEqualTo("page\"2");
+        assertThat(lazyJson.isDecoded()).isTrue();
+        assertThat(decodeCount).isEqualTo(1);
+    }
+
+    @Test
+    public void returnsOriginalJson() {
+        lazyJson.get();
+
+        assertThat(lazyJson.toJson()).isSameAs(JSON);
+    }
+
+    @Test
+    public void returnsCurrentJsonOfDecodedValue() {
+        assertThat(lazyJson.toCurrentJson()).isSameAs(JSON);
+
+        lazyJson.get().getResponses().add("{\"id\":2}");
+
+        assertThat(lazyJson.toCurrentJson()).contains("{\"id\":2}");
+        assertThat(lazyJson.toJson()).isSameAs(JSON);
+    }
+
+    @Test
+    public void canReadMembersOfJsonString() {
+        String[] members = JsonScanner.readMembers(JSON, "empty", "continuationToken", "unknown", "responses");
+
+        assertThat(members).containsExactly(null, "page\"2", null, "[{\"id\":1}]");
+    }
+
+    @Test
+    public void canReadMembersOfDecodedValue() {
+        LazyJson<ResponsePage> decoded = LazyJson.of(new ResponsePage(Arrays.asList("{\"id\":1}"), "page2"));
+
+        assertThat(decoded.isDecoded()).isTrue();
+        assertThat(decoded.getString("continuationToken")).isEqualTo("page2");
+        assertThat(decoded.getMemberJson("responses")).isEqualTo("[{\"id\":1}]");
+    }
+}
@@ -0,0 +1,169 @@
+package com.aevi.sdk.flow.util;
+
+import com.aevi.sdk.flow.model.ResponseQuery;
+import com.aevi.sdk.flow.model.ResponseQueryBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ResponseJournalTest {
+
+    private static final String TYPE = "com.test.Response";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+    private ResponseJournal journal;
+    private long now;
+
+    @Before
+    public void setup() throws IOException {
+        directory = new File(temporaryFolder.getRoot(), "journal");
+        journal = new ResponseJournal(directory, ResponseJournal.DEFAULT_MAX_SIZE);
+        now = journal.getCoveredSince();
+    }
+
+    @Test
+    public void canQueryById() throws IOException {
+        append("one", "sale", now + 1);
+        append("two", "sale", now + 2);
+
+        ResponseQuery query = query(new ResponseQueryBuilder().withRequestId("two"));
+
+        assertThat(journal.covers(query)).isTrue();
+        assertThat(journal.query(query)).containsExactly(json("two"));
+    }
+
+    @Test
+    public void doesNotCoverUnknownId() throws IOException {
+        append("one", "sale", now + 1);
+
+        assertThat(journal.covers(query(new ResponseQueryBuilder().withRequestId("two")))).isFalse();
+    }
+
+    @Test
+    public void canQueryByDateRangeAndFlowType() throws IOException {
+        append("one", "sale", now + 1);
+        append("two", "refund", now + 2);
+        append("three", "sale", now + 3);
+        append("four", "sale", now + 10);
+
+        ResponseQuery query = query(new ResponseQueryBuilder().withDateRange(now, now + 5).withFlowType("sale"));
+
+        assertThat(journal.query(query)).containsExactly(json("one"), json("three"));
+    }
+
+    @Test
+    public void doesNotCoverQueriesWithoutRequestId() throws IOException {
+        append("one", "sale", now + 1);
+
+        assertThat(journal.covers(query(new ResponseQueryBuilder().withDateRange(now, now + 5)))).isFalse();
+        assertThat(journal.covers(query(new ResponseQueryBuilder()))).isFalse();
+    }
+
+    @Test
+    public void doesNotCoverDateRangeIfCreationTimeIsUnknown() throws IOException {
+        append("one", "sale", ResponseJournal.Entry.UNKNOWN_CREATION_TIME);
+
+        assertThat(journal.covers(query(new ResponseQueryBuilder().withRequestId("one")))).isTrue();
+        assertThat(journal.covers(query(new ResponseQueryBuilder().withRequestId("one").withDateRange(now, now + 5)))).isFalse();
+    }
+
+    @Test
+    public void appliesMaxResults() throws IOException {
+        append("one", "sale", now + 1);
+        append("two", "sale", now + 2);
+        append("three", "sale", now + 3);
+
+        assertThat(journal.query(query(new ResponseQueryBuilder().withDateRange(now, now + 5).withMaxResults(2))))
+                .containsExactly(json("one"), json("two"));
+    }
+
+    @Test
+    public void laterResponseSupersedesEarlier() throws IOException {
+        append("one", "sale", now + 1);
+        journal.append(new ResponseJournal.Entry(TYPE, "one", "sale", null, now + 2), "{\"id\":\"one\",\"updated\":true}");
+
+        assertThat(journal.query(query(new ResponseQueryBuilder().withDateRange(now, now + 5))))
+                .containsExactly("{\"id\":\"one\",\"updated\":true}");
+    }
+
+    @Test
+    public void restoresResponsesWhenReopened() throws IOException {
+        append("one", "sale", now + 1);
+        append("two", "sale", now + 2);
+        journal.close();
+
+        ResponseJournal reopened = new ResponseJournal(directory, ResponseJournal.DEFAULT_MAX_SIZE);
+
+        assertThat(reopened.getCoveredSince()).isEqualTo(now);
+        assertThat(reopened.query(query(new ResponseQueryBuilder().withDateRange(now, now + 5)))).containsExactly(json("one"), json("two"));
+    }
+
+    @Test
+    public void dropsInterruptedWriteWhenReopened() throws IOException {
+        append("one", "sale", now + 1);
+        append("two", "sale", now + 2);
+        journal.close();
+        File segment = directory.listFiles((dir, name) -> name.endsWith(".seg"))[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.setLength(file.length() - 3);
+        file.close();
+
+        ResponseJournal reopened = new ResponseJournal(directory, ResponseJournal.DEFAULT_MAX_SIZE);
+        reopened.append(new ResponseJournal.Entry(TYPE, "three", "sale", null, now + 3), json("three"));
+
+        assertThat(reopened.query(query(new ResponseQueryBuilder().withDateRange(now, now + 5)))).containsExactly(json("one"), json("three"));
+    }
+
+    @Test
+    public void evictsOldestResponsesWhenFull() throws IOException {
+        journal = new ResponseJournal(new File(temporaryFolder.getRoot(), "small"), 8 * 1024);
+        now = journal.getCoveredSince();
+        for (int i = 1; i <= 200; i++) {
+            journal.append(new ResponseJournal.Entry(TYPE, "id" + i, "sale", null, now + i), json("id" + i));
+        }
+
+        assertThat(journal.getSize()).isLessThanOrEqualTo(8 * 1024);
+        assertThat(journal.getCoveredSince()).isGreaterThan(now);
+        assertThat(journal.covers(query(new ResponseQueryBuilder().withRequestId("id1")))).isFalse();
+        ResponseQuery covered = query(new ResponseQueryBuilder().withRequestId("id200"));
+        assertThat(journal.covers(covered)).isTrue();
+        assertThat(journal.query(covered)).containsExactly(json("id200"));
+    }
+
+    @Test
+    public void compactsSupersededResponses() throws IOException {
+        journal = new ResponseJournal(new File(temporaryFolder.getRoot(), "small"), 64 * 1024);
+        now = journal.getCoveredSince();
+        for (int i = 1; i <= 2000; i++) {
+            journal.append(new ResponseJournal.Entry(TYPE, "id" + (i % 5), "sale", null, now + i), json("id" + (i % 5)));
+        }
+
+        assertThat(journal.getCoveredSince()).isEqualTo(now);
+        assertThat(journal.getSize()).isLessThan(64 * 1024);
+        assertThat(journal.query(query(new ResponseQueryBuilder().withDateRange(now, now + 2000)))).hasSize(5);
+    }
+
+    private void append(String id, String flowType, long creationTime) throws IOException {
+        journal.append(new ResponseJournal.Entry(TYPE, id, flowType, null, creationTime), json(id));
+    }
+
+    private static ResponseQuery query(ResponseQueryBuilder builder) {
+        ResponseQuery query = builder.build();
+        query.setResponseType(TYPE);
+        return query;
+    }
+
+    private static String json(String id) {
+        return "{\"id\":\"" + id + "\"}";
+    }
+}
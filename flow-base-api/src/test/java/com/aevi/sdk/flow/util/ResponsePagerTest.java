@@ -0,0 +1,91 @@
+package com.aevi.sdk.flow.util;
+
+import com.aevi.sdk.flow.model.ResponsePage;
+import io.reactivex.Single;
+import io.reactivex.subscribers.TestSubscriber;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ResponsePagerTest {
+
+    private List<String> tokensFetched;
+    private List<ResponsePage> pages;
+
+    @Before
+    public void setUp() {
+        tokensFetched = new ArrayList<>();
+        pages = new ArrayList<>();
+        pages.add(new ResponsePage(Arrays.asList("{\"id\":1}", "{\"id\":2}"), "page2"));
+        pages.add(new ResponsePage(Arrays.asList("{\"id\":3}", "{\"id\":4}"), "page3"));
+        pages.add(new ResponsePage(Arrays.asList("{\"id\":5}"), null));
+    }
+
+    @Test
+    public void streamsResponsesOfAllPages() {
+        ResponsePager.stream(this::fetch).test()
+                .assertValues("{\"id\":1}", "{\"id\":2}", "{\"id\":3}", "{\"id\":4}", "{\"id\":5}")
+                .assertComplete();
+
+        assertThat(tokensFetched).containsExactly(null, "page2", "page3");
+    }
+
+    @Test
+    public void fetchesPagesOnDemand() {
+        TestSubscriber<String> subscriber = ResponsePager.stream(this::fetch).test(1);
+
+        subscriber.assertValues("{\"id\":1}");
+        assertThat(tokensFetched).containsExactly(null, "page2");
+
+        subscriber.request(2);
+
+        subscriber.assertValueCount(3);
+        assertThat(tokensFetched).containsExactly(null, "page2", "page3");
+        subscriber.assertNotComplete();
+    }
+
+    @Test
+    public void stopsFetchingWhenCancelled() {
+        ResponsePager.stream(this::fetch).take(1).test().assertComplete();
+
+        assertThat(tokensFetched).containsExactly((String) null);
+    }
+
+    @Test
+    public void completesForSinglePage() {
+        pages.clear();
+        pages.add(new ResponsePage(null, null));
+
+        ResponsePager.stream(this::fetch).test().assertNoValues().assertComplete();
+    }
+
+    @Test
+    public void passesOnFetchError() {
+        IllegalStateException error = new IllegalStateException("failed");
+
+        ResponsePager.stream(continuationToken -> continuationToken == null ? fetch(null) : Single.<ResponsePage>error(error)).test()
+                .assertValues("{\"id\":1}", "{\"id\":2}")
+                .assertError(error);
+    }
+
+    @Test
+    public void canSerialisePage() {
+        ResponsePage page = ResponsePage.fromJson(pages.get(0).toJson());
+
+        assertThat(page.getResponses()).containsExactly("{\"id\":1}", "{\"id\":2}");
+        assertThat(page.getContinuationToken()).isEqualTo("page2");
+        assertThat(ResponsePage.fromJson(pages.get(2).toJson()).hasMore()).isFalse();
+    }
+
+    private Single<ResponsePage> fetch(String continuationToken) {
+        return Single.fromCallable(() -> {
+            tokensFetched.add(continuationToken);
+            return pages.get(tokensFetched.size() - 1);
+        });
+    }
+}
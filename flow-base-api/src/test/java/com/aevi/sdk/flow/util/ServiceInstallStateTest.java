@@ -0,0 +1,115 @@
+package com.aevi.sdk.flow.util;
+
+import com.aevi.sdk.flow.model.InternalData;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class ServiceInstallStateTest {
+
+    private static final String PACKAGE_NAME = "com.aevi.sdk.fps";
+
+    private ServiceInstallState.Lookup lookup;
+    private ServiceInstallState serviceInstallState;
+
+    @Before
+    public void setUp() {
+        lookup = mock(ServiceInstallState.Lookup.class);
+        when(lookup.isInstalled()).thenReturn(true);
+        when(lookup.getVersion()).thenReturn("1.0.0");
+        serviceInstallState = new ServiceInstallState(PACKAGE_NAME, lookup);
+    }
+
+    @Test
+    public void looksUpStateOnlyOnce() {
+        assertThat(serviceInstallState.isInstalled()).isTrue();
+        assertThat(serviceInstallState.isInstalled()).isTrue();
+        assertThat(serviceInstallState.getVersion()).isEqualTo("1.0.0");
+        assertThat(serviceInstallState.getVersion()).isEqualTo("1.0.0");
+
+        verify(lookup, times(1)).isInstalled();
+        verify(lookup, times(1)).getVersion();
+    }
+
+    @Test
+    public void cachesNotInstalledState() {
+        when(lookup.isInstalled()).thenReturn(false);
+
+        serviceInstallState.isInstalled();
+
+        assertThat(serviceInstallState.isInstalled()).isFalse();
+        verify(lookup, times(1)).isInstalled();
+    }
+
+    @Test
+    public void looksUpStateAgainAfterPackageChanged() {
+        serviceInstallState.isInstalled();
+        serviceInstallState.getVersion();
+        when(lookup.isInstalled()).thenReturn(false);
+        when(lookup.getVersion()).thenReturn("0.0.0");
+
+        serviceInstallState.onPackageChanged(PACKAGE_NAME);
+
+        assertThat(serviceInstallState.isInstalled()).isFalse();
+        assertThat(serviceInstallState.getVersion()).isEqualTo("0.0.0");
+    }
+
+    @Test
+    public void recordsAdvertisedCapabilities() {
+        assertThat(serviceInstallState.isAdvertised("supportsThings")).isFalse();
+
+        serviceInstallState.onInternalDataReceived(createInternalData(PACKAGE_NAME));
+
+        assertThat(serviceInstallState.isAdvertised("supportsThings")).isTrue();
+        assertThat(serviceInstallState.isAdvertised("supportsOtherThings")).isFalse();
+    }
+
+    @Test
+    public void ignoresCapabilitiesOfOtherPackages() {
+        serviceInstallState.onInternalDataReceived(createInternalData("com.other"));
+
+        assertThat(serviceInstallState.isAdvertised("supportsThings")).isFalse();
+    }
+
+    @Test
+    public void forgetsCapabilitiesAfterPackageChanged() {
+        serviceInstallState.onInternalDataReceived(createInternalData(PACKAGE_NAME));
+
+        serviceInstallState.onPackageChanged(PACKAGE_NAME);
+
+        assertThat(serviceInstallState.isAdvertised("supportsThings")).isFalse();
+    }
+
+    @Test
+    public void ignoresChangesToOtherPackages() {
+        serviceInstallState.isInstalled();
+
+        serviceInstallState.onPackageChanged("com.other");
+        serviceInstallState.onPackageChanged(null);
+
+        assertThat(serviceInstallState.isInstalled()).isTrue();
+        verify(lookup, times(1)).isInstalled();
+    }
+
+    @Test
+    public void doesNotCacheValueLookedUpDuringPackageChange() {
+        when(lookup.isInstalled()).thenAnswer(invocation -> {
+            serviceInstallState.onPackageChanged(PACKAGE_NAME);
+            return false;
+        });
+
+        assertThat(serviceInstallState.isInstalled()).isFalse();
+        when(lookup.isInstalled()).thenReturn(true);
+
+        assertThat(serviceInstallState.isInstalled()).isTrue();
+    }
+
+    private static InternalData createInternalData(String senderPackageName) {
+        InternalData internalData = new InternalData("1.0.0");
+        internalData.setSenderPackageName(senderPackageName);
+        internalData.addAdditionalData("supportsThings", "true");
+        return internalData;
+    }
+}
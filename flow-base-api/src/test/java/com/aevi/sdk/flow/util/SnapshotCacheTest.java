@@ -0,0 +1,155 @@
+package com.aevi.sdk.flow.util;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.SingleSubject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class SnapshotCacheTest {
+
+    private TestScheduler scheduler;
+    private List<String> parsed;
+    private int fetchCount;
+    private SnapshotCache<List<String>> snapshotCache;
+
+    @Before
+    public void setUp() {
+        scheduler = new TestScheduler();
+        parsed = new ArrayList<>();
+        snapshotCache = new SnapshotCache<>(json -> {
+            parsed.add(json);
+            List<String> value = new ArrayList<>();
+            value.add(json);
+            return value;
+        }, 60, TimeUnit.SECONDS, scheduler);
+    }
+
+    @Test
+    public void fetchesOnlyOnceWhileFresh() {
+        List<String> first = snapshotCache.get(fetch("one")).blockingGet();
+        List<String> second = snapshotCache.get(fetch("two")).blockingGet();
+
+        assertThat(second).isSameAs(first);
+        assertThat(fetchCount).isEqualTo(1);
+    }
+
+    @Test
+    public void sharesInitialFetchBetweenCallers() {
+        SingleSubject<String> fetch = SingleSubject.create();
+
+        snapshotCache.get(fetch).test();
+        snapshotCache.get(fetch("other")).test();
+        fetch.onSuccess("one");
+
+        assertThat(snapshotCache.get(fetch("other")).blockingGet()).containsExactly("one");
+        assertThat(fetchCount).isZero();
+    }
+
+    @Test
+    public void waitsForFreshSnapshotAfterInvalidation() {
+        snapshotCache.get(fetch("one")).blockingGet();
+        snapshotCache.invalidate();
+
+        assertThat(snapshotCache.get(fetch("two")).blockingGet()).containsExactly("two");
+        assertThat(snapshotCache.get(fetch("three")).blockingGet()).containsExactly("two");
+        assertThat(fetchCount).isEqualTo(2);
+    }
+
+    @Test
+    public void sharesFetchAfterInvalidationBetweenCallers() {
+        snapshotCache.get(fetch("one")).blockingGet();
+        snapshotCache.invalidate();
+        SingleSubject<String> fetch = SingleSubject.create();
+
+        TestObserver<List<String>> first = snapshotCache.get(fetch).test();
+        TestObserver<List<String>> second = snapshotCache.get(fetch("other")).test();
+        first.assertNoValues();
+        fetch.onSuccess("two");
+
+        first.assertValue(Collections.singletonList("two"));
+        second.assertValue(Collections.singletonList("two"));
+        assertThat(fetchCount).isEqualTo(1);
+    }
+
+    @Test
+    public void revalidatesAfterMaxAge() {
+        snapshotCache.get(fetch("one")).blockingGet();
+        scheduler.advanceTimeBy(60, TimeUnit.SECONDS);
+
+        snapshotCache.get(fetch("two")).blockingGet();
+
+        assertThat(snapshotCache.get(fetch("three")).blockingGet()).containsExactly("two");
+    }
+
+    @Test
+    public void keepsSnapshotIfTokenUnchanged() {
+        List<String> first = snapshotCache.get(fetch("one")).blockingGet();
+        snapshotCache.invalidate();
+
+        snapshotCache.get(fetch("one")).blockingGet();
+
+        assertThat(snapshotCache.get(fetch("two")).blockingGet()).isSameAs(first);
+        assertThat(parsed).containsExactly("one");
+    }
+
+    @Test
+    public void fetchesAgainAfterFailure() {
+        IllegalStateException error = new IllegalStateException("failed");
+
+        snapshotCache.get(Single.error(error)).test().assertError(error);
+
+        assertThat(snapshotCache.get(fetch("one")).blockingGet()).containsExactly("one");
+    }
+
+    @Test
+    public void keepsStaleSnapshotIfRevalidationFails() {
+        snapshotCache.get(fetch("one")).blockingGet();
+        scheduler.advanceTimeBy(60, TimeUnit.SECONDS);
+
+        snapshotCache.get(Single.error(new IllegalStateException("failed"))).blockingGet();
+
+        assertThat(snapshotCache.get(fetch("two")).blockingGet()).containsExactly("one");
+        assertThat(snapshotCache.get(fetch("three")).blockingGet()).containsExactly("two");
+    }
+
+    @Test
+    public void returnsStaleSnapshotIfFetchAfterInvalidationFails() {
+        snapshotCache.get(fetch("one")).blockingGet();
+        snapshotCache.invalidate();
+
+        assertThat(snapshotCache.get(Single.error(new IllegalStateException("failed"))).blockingGet()).containsExactly("one");
+
+        assertThat(snapshotCache.get(fetch("two")).blockingGet()).containsExactly("two");
+    }
+
+    @Test
+    public void revalidatesAgainIfInvalidatedDuringFetch() {
+        snapshotCache.get(fetch("one")).blockingGet();
+        snapshotCache.invalidate();
+        SingleSubject<String> fetch = SingleSubject.create();
+        TestObserver<List<String>> observer = snapshotCache.get(fetch).test();
+
+        snapshotCache.invalidate();
+        fetch.onSuccess("two");
+
+        observer.assertValue(Collections.singletonList("two"));
+        assertThat(snapshotCache.get(fetch("three")).blockingGet()).containsExactly("three");
+        assertThat(snapshotCache.get(fetch("four")).blockingGet()).containsExactly("three");
+    }
+
+    private Single<String> fetch(String json) {
+        return Single.fromCallable(() -> {
+            fetchCount++;
+            return json;
+        });
+    }
+}
@@ -15,6 +15,9 @@ import com.aevi.sdk.pos.flow.PaymentFlowServiceApi;
 import com.aevi.sdk.pos.flow.model.*;
 import com.aevi.sdk.pos.flow.stage.*;
 
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
 import static com.aevi.sdk.flow.constants.ErrorConstants.STAGE_NOT_SUPPORTED;
 import static com.aevi.sdk.flow.constants.FlowStages.*;
 import static com.aevi.sdk.flow.constants.InternalDataKeys.FLOW_STAGE;
@@ -26,8 +29,80 @@ import static com.aevi.sdk.flow.constants.InternalDataKeys.FLOW_STAGE;
  */
 public abstract class BasePaymentFlowService extends BaseApiService {
 
+    /**
+     * Decodes the request for a stage into the model passed to the handler of the stage.
+     *
+     * @param <M> The type of model
+     */
+    public interface StageDecoder<M> {
+
+        /**
+         * @param clientCommunicator The client message communicator
+         * @param request            The request
+         * @param senderInternalData The internal data of the client that initiated this flow
+         * @return The model for the stage handler
+         */
+        M decode(@NonNull ClientCommunicator clientCommunicator, @NonNull String request, @Nullable InternalData senderInternalData);
+    }
+
+    /**
+     * Handles a request in a stage.
+     *
+     * @param <M> The type of model
+     */
+    public interface StageHandler<M> {
+
+        /**
+         * @param model The model relevant for the stage
+         */
+        void handle(@NonNull M model);
+    }
+
+    private static final class StageRoute<M> {
+
+        private final StageDecoder<M> decoder;
+        private final StageHandler<M> handler;
+
+        StageRoute(StageDecoder<M> decoder, StageHandler<M> handler) {
+            this.decoder = decoder;
+            this.handler = handler;
+        }
+
+        void dispatch(ClientCommunicator clientCommunicator, String request, InternalData senderInternalData) {
+            handler.handle(decoder.decode(clientCommunicator, request, senderInternalData));
+        }
+    }
+
+    private final Map<String, StageRoute<?>> stageRoutes = new ConcurrentHashMap<>();
+
     public BasePaymentFlowService() {
         super(PaymentFlowServiceApi.getApiVersion());
+        registerStageCallbacks();
+    }
+
+    /**
+     * Register a handler for a stage, which replaces any handler or callback method for the stage.
+     *
+     * This can be used to handle custom stages, or as an alternative to overriding the callback methods of this class. The request is only
+     * decoded for stages that have a handler.
+     *
+     * @param stage   The flow stage
+     * @param decoder The decoder for the request of the stage
+     * @param handler The handler for the stage
+     * @param <M>     The type of model passed to the handler
+     */
+    protected <M> void registerStageHandler(@NonNull String stage, @NonNull StageDecoder<M> decoder, @NonNull StageHandler<M> handler) {
+        stageRoutes.put(stage, new StageRoute<>(decoder, handler));
+    }
+
+    /**
+     * Get the stages this service routes, which are the stages of the callback methods of this class and any stages with a registered handler.
+     *
+     * @return The routed stages
+     */
+    @NonNull
+    protected Set<String> getHandledStages() {
+        return Collections.unmodifiableSet(new HashSet<>(stageRoutes.keySet()));
     }
 
     @Override
@@ -37,7 +112,7 @@ public abstract class BasePaymentFlowService extends BaseApiService {
     }
 
     /**
-     * Maps a stage to one of the callback methods that can be overridden in this class.
+     * Maps a stage to its registered handler, or to the fallback for unknown stages.
      *
      * @param senderInternalData The internal data of the client that initiated this flow
      * @param clientCommunicator The client message communicator
@@ -49,56 +124,37 @@ public abstract class BasePaymentFlowService extends BaseApiService {
             if (flowStage != null) {
                 Log.d(BasePaymentFlowService.class.getSimpleName(),
                       String.format("Mapping request for flow stage: %s", flowStage));
-                switch (flowStage) {
-                    case PRE_FLOW:
-                        onPreFlow(PreFlowModel.fromService(clientCommunicator, Payment.fromJson(request), senderInternalData));
-                        break;
-                    case SPLIT:
-                        onSplit(SplitModel.fromService(clientCommunicator, SplitRequest.fromJson(request), senderInternalData));
-                        break;
-                    case PRE_TRANSACTION:
-                        onPreTransaction(
-                                PreTransactionModel.fromService(clientCommunicator, TransactionRequest.fromJson(request), senderInternalData));
-                        break;
-                    case PAYMENT_CARD_READING:
-                        onPaymentCardReading(
-                                CardReadingModel.fromService(clientCommunicator, TransactionRequest.fromJson(request), senderInternalData));
-                        break;
-                    case POST_CARD_READING:
-                        onPostCardReading(
-                                PreTransactionModel.fromService(clientCommunicator, TransactionRequest.fromJson(request), senderInternalData));
-                        break;
-                    case TRANSACTION_PROCESSING:
-                        onTransactionProcessing(
-                                TransactionProcessingModel.fromService(clientCommunicator, TransactionRequest.fromJson(request), senderInternalData));
-                        break;
-                    case POST_TRANSACTION:
-                        onPostTransaction(
-                                PostTransactionModel.fromService(clientCommunicator, TransactionSummary.fromJson(request), senderInternalData));
-                        break;
-                    case POST_FLOW:
-                        onPostFlow(PostFlowModel.fromService(clientCommunicator, PaymentResponse.fromJson(request), senderInternalData));
-                        break;
-                    case GENERIC:
-                        onGeneric(GenericStageModel.fromService(clientCommunicator, Request.fromJson(request), senderInternalData));
-                        break;
-                    case POST_GENERIC:
-                        onPostGeneric(PostGenericStageModel.fromService(clientCommunicator, Response.fromJson(request), senderInternalData));
-                        break;
-                    case STATUS_UPDATE:
-                        onStatusUpdate(StatusUpdateModel.fromService(clientCommunicator, Request.fromJson(request), senderInternalData));
-                        break;
-                    default:
-                        onUnknownStage(flowStage, clientCommunicator, request);
-                        break;
-
+                StageRoute<?> route = stageRoutes.get(flowStage);
+                if (route != null) {
+                    route.dispatch(clientCommunicator, request, senderInternalData);
+                } else {
+                    onUnknownStage(flowStage, clientCommunicator, request);
                 }
             }
         } catch (StageNotImplementedException e) {
+            // callback methods that are not overridden, or that still call the default implementation
             returnStageNotImplemented(clientCommunicator, e.stage);
         }
     }
 
+    private void registerStageCallbacks() {
+        // payment stage models are given the raw request and only decode it when it is accessed, so the default callbacks reject it undecoded
+        registerStageHandler(PRE_FLOW, PreFlowModel::fromService, this::onPreFlow);
+        registerStageHandler(SPLIT, SplitModel::fromService, this::onSplit);
+        registerStageHandler(PRE_TRANSACTION, PreTransactionModel::fromService, this::onPreTransaction);
+        registerStageHandler(PAYMENT_CARD_READING, CardReadingModel::fromService, this::onPaymentCardReading);
+        registerStageHandler(POST_CARD_READING, PreTransactionModel::fromService, this::onPostCardReading);
+        registerStageHandler(TRANSACTION_PROCESSING, TransactionProcessingModel::fromService, this::onTransactionProcessing);
+        registerStageHandler(POST_TRANSACTION, PostTransactionModel::fromService, this::onPostTransaction);
+        registerStageHandler(POST_FLOW, PostFlowModel::fromService, this::onPostFlow);
+        registerStageHandler(GENERIC, (communicator, request, internalData) ->
+                GenericStageModel.fromService(communicator, Request.fromJson(request), internalData), this::onGeneric);
+        registerStageHandler(POST_GENERIC, (communicator, request, internalData) ->
+                PostGenericStageModel.fromService(communicator, Response.fromJson(request), internalData), this::onPostGeneric);
+        registerStageHandler(STATUS_UPDATE, (communicator, request, internalData) ->
+                StatusUpdateModel.fromService(communicator, Request.fromJson(request), internalData), this::onStatusUpdate);
+    }
+
     /**
      * Override to handle a request in the pre-flow stage.
      *
@@ -195,20 +251,21 @@ public abstract class BasePaymentFlowService extends BaseApiService {
      * @param model The model relevant for this stage
      */
     protected void onStatusUpdate(StatusUpdateModel model) {
-        throw new StageNotImplementedException(POST_GENERIC);
+        throw new StageNotImplementedException(STATUS_UPDATE);
     }
 
     /**
      * Fallback method when the flow stage can not be mapped to any of the known callback methods.
      *
-     * The default implementation here will throw an exception. Clients can override to implement an alternative fallback behaviour.
+     * The default implementation here will reply that the stage is not supported. Clients can override to implement an alternative fallback
+     * behaviour, or register a handler for the stage via {@link #registerStageHandler(String, StageDecoder, StageHandler)} instead.
      *
      * @param flowStage          The flow stage that could not be mapped
      * @param clientCommunicator The client message id
      * @param request            The request
      */
     protected void onUnknownStage(String flowStage, ClientCommunicator clientCommunicator, String request) {
-        throw new StageNotImplementedException(flowStage);
+        returnStageNotImplemented(clientCommunicator, flowStage);
     }
 
     private void returnStageNotImplemented(ClientCommunicator clientCommunicator, String stage) {
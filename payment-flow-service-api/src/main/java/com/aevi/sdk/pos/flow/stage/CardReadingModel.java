@@ -21,6 +21,7 @@ import android.support.annotation.NonNull;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.service.ClientCommunicator;
 import com.aevi.sdk.flow.stage.BaseStageModel;
+import com.aevi.sdk.flow.util.LazyJson;
 import com.aevi.sdk.pos.flow.model.Card;
 import com.aevi.sdk.pos.flow.model.TransactionRequest;
 import com.aevi.sdk.pos.flow.model.TransactionResponseBuilder;
@@ -37,19 +38,20 @@ import com.aevi.sdk.pos.flow.service.BasePaymentFlowService;
  */
 public class CardReadingModel extends BaseStageModel {
 
-    private final TransactionRequest transactionRequest;
+    private final LazyJson<TransactionRequest> transactionRequest;
     private final TransactionResponseBuilder transactionResponseBuilder;
+    private StageRequestHeader requestHeader;
 
-    private CardReadingModel(Activity activity, TransactionRequest request) {
+    private CardReadingModel(Activity activity, LazyJson<TransactionRequest> request) {
         super(activity);
         this.transactionRequest = request;
-        this.transactionResponseBuilder = new TransactionResponseBuilder(transactionRequest.getId());
+        this.transactionResponseBuilder = new TransactionResponseBuilder(getRequestHeader().getId());
     }
 
-    private CardReadingModel(ClientCommunicator clientCommunicator, TransactionRequest request, InternalData senderInternalData) {
+    private CardReadingModel(ClientCommunicator clientCommunicator, LazyJson<TransactionRequest> request, InternalData senderInternalData) {
         super(clientCommunicator, senderInternalData);
         this.transactionRequest = request;
-        this.transactionResponseBuilder = new TransactionResponseBuilder(transactionRequest.getId());
+        this.transactionResponseBuilder = new TransactionResponseBuilder(getRequestHeader().getId());
     }
 
     /**
@@ -63,7 +65,7 @@ public class CardReadingModel extends BaseStageModel {
      */
     @NonNull
     public static CardReadingModel fromActivity(Activity activity) {
-        return new CardReadingModel(activity, TransactionRequest.fromJson(getActivityRequestJson(activity)));
+        return new CardReadingModel(activity, LazyJson.of(getActivityRequestJson(activity), TransactionRequest::fromJson));
     }
 
     /**
@@ -76,7 +78,20 @@ public class CardReadingModel extends BaseStageModel {
      */
     @NonNull
     public static CardReadingModel fromService(ClientCommunicator clientCommunicator, TransactionRequest request, InternalData senderInternalData) {
-        return new CardReadingModel(clientCommunicator, request, senderInternalData);
+        return new CardReadingModel(clientCommunicator, LazyJson.of(request), senderInternalData);
+    }
+
+    /**
+     * Create an instance from a service context, deserialising the request only when it is first accessed.
+     *
+     * @param clientCommunicator The client communicator for sending/receiving messages at this point in the flow
+     * @param request            The TransactionRequest JSON
+     * @param senderInternalData The internal data of the app that started this stage
+     * @return An instance of {@link CardReadingModel}
+     */
+    @NonNull
+    public static CardReadingModel fromService(ClientCommunicator clientCommunicator, String request, InternalData senderInternalData) {
+        return new CardReadingModel(clientCommunicator, LazyJson.of(request, TransactionRequest::fromJson), senderInternalData);
     }
 
     /**
@@ -86,7 +101,22 @@ public class CardReadingModel extends BaseStageModel {
      */
     @NonNull
     public TransactionRequest getTransactionRequest() {
-        return transactionRequest;
+        return transactionRequest.get();
+    }
+
+    /**
+     * Get the header of the transaction request, which is read without deserialising the full request.
+     *
+     * This is useful to decide whether the request needs handling at all, before accessing the request itself.
+     *
+     * @return The request header
+     */
+    @NonNull
+    public StageRequestHeader getRequestHeader() {
+        if (requestHeader == null) {
+            requestHeader = StageRequestHeader.read(transactionRequest, "amounts");
+        }
+        return requestHeader;
     }
 
     /**
@@ -141,9 +171,14 @@ public class CardReadingModel extends BaseStageModel {
         doSendResponse(transactionResponseBuilder.build().toJson());
     }
 
+    @Override
+    protected void skipAfterDeadline() {
+        skipCardReading();
+    }
+
     @Override
     @NonNull
     public String getRequestJson() {
-        return transactionRequest.toJson();
+        return transactionRequest.toCurrentJson();
     }
 }
@@ -20,6 +20,7 @@ import android.support.annotation.NonNull;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.service.ClientCommunicator;
 import com.aevi.sdk.flow.stage.BaseStageModel;
+import com.aevi.sdk.flow.util.LazyJson;
 import com.aevi.sdk.pos.flow.model.PaymentResponse;
 import com.aevi.sdk.pos.flow.service.ActivityProxyService;
 import com.aevi.sdk.pos.flow.service.BasePaymentFlowService;
@@ -34,14 +35,15 @@ import com.aevi.sdk.pos.flow.service.BasePaymentFlowService;
  */
 public class PostFlowModel extends BaseStageModel {
 
-    private final PaymentResponse paymentResponse;
+    private final LazyJson<PaymentResponse> paymentResponse;
+    private StageRequestHeader requestHeader;
 
-    private PostFlowModel(Activity activity, PaymentResponse paymentResponse) {
+    private PostFlowModel(Activity activity, LazyJson<PaymentResponse> paymentResponse) {
         super(activity);
         this.paymentResponse = paymentResponse;
     }
 
-    private PostFlowModel(ClientCommunicator clientCommunicator, PaymentResponse paymentResponse, InternalData senderInternalData) {
+    private PostFlowModel(ClientCommunicator clientCommunicator, LazyJson<PaymentResponse> paymentResponse, InternalData senderInternalData) {
         super(clientCommunicator, senderInternalData);
         this.paymentResponse = paymentResponse;
     }
@@ -57,7 +59,7 @@ public class PostFlowModel extends BaseStageModel {
      */
     @NonNull
     public static PostFlowModel fromActivity(Activity activity) {
-        return new PostFlowModel(activity, PaymentResponse.fromJson(getActivityRequestJson(activity)));
+        return new PostFlowModel(activity, LazyJson.of(getActivityRequestJson(activity), PaymentResponse::fromJson));
     }
 
     /**
@@ -70,7 +72,20 @@ public class PostFlowModel extends BaseStageModel {
      */
     @NonNull
     public static PostFlowModel fromService(ClientCommunicator clientCommunicator, PaymentResponse request, InternalData senderInternalData) {
-        return new PostFlowModel(clientCommunicator, request, senderInternalData);
+        return new PostFlowModel(clientCommunicator, LazyJson.of(request), senderInternalData);
+    }
+
+    /**
+     * Create an instance from a service context, deserialising the request only when it is first accessed.
+     *
+     * @param clientCommunicator The client communicator for sending/receiving messages at this point in the flow
+     * @param request            The PaymentResponse JSON
+     * @param senderInternalData The internal data of the app that started this stage
+     * @return An instance of {@link PostFlowModel}
+     */
+    @NonNull
+    public static PostFlowModel fromService(ClientCommunicator clientCommunicator, String request, InternalData senderInternalData) {
+        return new PostFlowModel(clientCommunicator, LazyJson.of(request, PaymentResponse::fromJson), senderInternalData);
     }
 
     /**
@@ -80,7 +95,22 @@ public class PostFlowModel extends BaseStageModel {
      */
     @NonNull
     public PaymentResponse getPaymentResponse() {
-        return paymentResponse;
+        return paymentResponse.get();
+    }
+
+    /**
+     * Get the header of the payment response, which is read without deserialising the full request.
+     *
+     * This is useful to decide whether the request needs handling at all, before accessing the request itself.
+     *
+     * @return The request header
+     */
+    @NonNull
+    public StageRequestHeader getRequestHeader() {
+        if (requestHeader == null) {
+            requestHeader = StageRequestHeader.readFromPayment(paymentResponse, "originatingPayment");
+        }
+        return requestHeader;
     }
 
     /**
@@ -102,7 +132,7 @@ public class PostFlowModel extends BaseStageModel {
     @Override
     @NonNull
     public String getRequestJson() {
-        return paymentResponse.toJson();
+        return paymentResponse.toCurrentJson();
     }
 
 }
@@ -21,6 +21,7 @@ import com.aevi.sdk.flow.model.AdditionalData;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.service.ClientCommunicator;
 import com.aevi.sdk.flow.stage.BaseStageModel;
+import com.aevi.sdk.flow.util.LazyJson;
 import com.aevi.sdk.pos.flow.model.FlowResponse;
 import com.aevi.sdk.pos.flow.model.TransactionSummary;
 import com.aevi.sdk.pos.flow.service.ActivityProxyService;
@@ -42,16 +43,17 @@ import static com.aevi.sdk.flow.util.Preconditions.checkNotNull;
  */
 public class PostTransactionModel extends BaseStageModel {
 
-    private final TransactionSummary transactionSummary;
+    private final LazyJson<TransactionSummary> transactionSummary;
     private final FlowResponse flowResponse;
+    private StageRequestHeader requestHeader;
 
-    private PostTransactionModel(Activity activity, TransactionSummary transactionSummary) {
+    private PostTransactionModel(Activity activity, LazyJson<TransactionSummary> transactionSummary) {
         super(activity);
         this.transactionSummary = transactionSummary;
         this.flowResponse = new FlowResponse();
     }
 
-    private PostTransactionModel(ClientCommunicator clientCommunicator, TransactionSummary transactionSummary, InternalData senderInternalData) {
+    private PostTransactionModel(ClientCommunicator clientCommunicator, LazyJson<TransactionSummary> transactionSummary, InternalData senderInternalData) {
         super(clientCommunicator, senderInternalData);
         this.transactionSummary = transactionSummary;
         this.flowResponse = new FlowResponse();
@@ -68,7 +70,7 @@ public class PostTransactionModel extends BaseStageModel {
      */
     @NonNull
     public static PostTransactionModel fromActivity(Activity activity) {
-        return new PostTransactionModel(activity, TransactionSummary.fromJson(getActivityRequestJson(activity)));
+        return new PostTransactionModel(activity, LazyJson.of(getActivityRequestJson(activity), TransactionSummary::fromJson));
     }
 
     /**
@@ -82,7 +84,20 @@ public class PostTransactionModel extends BaseStageModel {
     @NonNull
     public static PostTransactionModel fromService(ClientCommunicator clientCommunicator, TransactionSummary request,
                                                    InternalData senderInternalData) {
-        return new PostTransactionModel(clientCommunicator, request, senderInternalData);
+        return new PostTransactionModel(clientCommunicator, LazyJson.of(request), senderInternalData);
+    }
+
+    /**
+     * Create an instance from a service context, deserialising the request only when it is first accessed.
+     *
+     * @param clientCommunicator The client communicator for sending/receiving messages at this point in the flow
+     * @param request            The TransactionSummary JSON
+     * @param senderInternalData The internal data of the app that started this stage
+     * @return An instance of {@link PostTransactionModel}
+     */
+    @NonNull
+    public static PostTransactionModel fromService(ClientCommunicator clientCommunicator, String request, InternalData senderInternalData) {
+        return new PostTransactionModel(clientCommunicator, LazyJson.of(request, TransactionSummary::fromJson), senderInternalData);
     }
 
     /**
@@ -92,7 +107,22 @@ public class PostTransactionModel extends BaseStageModel {
      */
     @NonNull
     public TransactionSummary getTransactionSummary() {
-        return transactionSummary;
+        return transactionSummary.get();
+    }
+
+    /**
+     * Get the header of the transaction summary, which is read without deserialising the full request.
+     *
+     * This is useful to decide whether the request needs handling at all, before accessing the request itself.
+     *
+     * @return The request header
+     */
+    @NonNull
+    public StageRequestHeader getRequestHeader() {
+        if (requestHeader == null) {
+            requestHeader = StageRequestHeader.read(transactionSummary, "requestedAmounts");
+        }
+        return requestHeader;
     }
 
     /**
@@ -158,6 +188,6 @@ public class PostTransactionModel extends BaseStageModel {
     @Override
     @NonNull
     public String getRequestJson() {
-        return transactionSummary.toJson();
+        return transactionSummary.toCurrentJson();
     }
 }
@@ -20,6 +20,7 @@ import android.support.annotation.NonNull;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.service.ClientCommunicator;
 import com.aevi.sdk.flow.stage.BaseStageModel;
+import com.aevi.sdk.flow.util.LazyJson;
 import com.aevi.sdk.pos.flow.model.FlowResponse;
 import com.aevi.sdk.pos.flow.model.Payment;
 import com.aevi.sdk.pos.flow.model.PaymentBuilder;
@@ -40,19 +41,18 @@ import com.aevi.sdk.pos.flow.service.BasePaymentFlowService;
  */
 public class PreFlowModel extends BaseStageModel {
 
-    private final Payment payment;
-    private final PaymentBuilder paymentBuilder;
+    private final LazyJson<Payment> payment;
+    private PaymentBuilder paymentBuilder;
+    private StageRequestHeader requestHeader;
 
-    private PreFlowModel(Activity activity, Payment payment) {
+    private PreFlowModel(Activity activity, LazyJson<Payment> payment) {
         super(activity);
         this.payment = payment;
-        this.paymentBuilder = new PaymentBuilder(payment);
     }
 
-    private PreFlowModel(ClientCommunicator clientCommunicator, Payment payment, InternalData senderInternalData) {
+    private PreFlowModel(ClientCommunicator clientCommunicator, LazyJson<Payment> payment, InternalData senderInternalData) {
         super(clientCommunicator, senderInternalData);
         this.payment = payment;
-        this.paymentBuilder = new PaymentBuilder(payment);
     }
 
     /**
@@ -66,7 +66,7 @@ public class PreFlowModel extends BaseStageModel {
      */
     @NonNull
     public static PreFlowModel fromActivity(Activity activity) {
-        return new PreFlowModel(activity, Payment.fromJson(getActivityRequestJson(activity)));
+        return new PreFlowModel(activity, LazyJson.of(getActivityRequestJson(activity), Payment::fromJson));
     }
 
     /**
@@ -79,7 +79,20 @@ public class PreFlowModel extends BaseStageModel {
      */
     @NonNull
     public static PreFlowModel fromService(ClientCommunicator clientCommunicator, Payment request, InternalData senderInternalData) {
-        return new PreFlowModel(clientCommunicator, request, senderInternalData);
+        return new PreFlowModel(clientCommunicator, LazyJson.of(request), senderInternalData);
+    }
+
+    /**
+     * Create an instance from a service context, deserialising the request only when it is first accessed.
+     *
+     * @param clientCommunicator The client communicator for sending/receiving messages at this point in the flow
+     * @param request            The Payment JSON
+     * @param senderInternalData The internal data of the app that started this stage
+     * @return An instance of {@link PreFlowModel}
+     */
+    @NonNull
+    public static PreFlowModel fromService(ClientCommunicator clientCommunicator, String request, InternalData senderInternalData) {
+        return new PreFlowModel(clientCommunicator, LazyJson.of(request, Payment::fromJson), senderInternalData);
     }
 
     /**
@@ -89,7 +102,22 @@ public class PreFlowModel extends BaseStageModel {
      */
     @NonNull
     public Payment getPayment() {
-        return payment;
+        return payment.get();
+    }
+
+    /**
+     * Get the header of the payment, which is read without deserialising the full request.
+     *
+     * This is useful to decide whether the request needs handling at all, before accessing the request itself.
+     *
+     * @return The request header
+     */
+    @NonNull
+    public StageRequestHeader getRequestHeader() {
+        if (requestHeader == null) {
+            requestHeader = StageRequestHeader.read(payment, "amounts");
+        }
+        return requestHeader;
     }
 
     /**
@@ -102,6 +130,9 @@ public class PreFlowModel extends BaseStageModel {
      */
     @NonNull
     public PaymentBuilder getPaymentBuilder() {
+        if (paymentBuilder == null) {
+            paymentBuilder = new PaymentBuilder(payment.get());
+        }
         return paymentBuilder;
     }
 
@@ -112,7 +143,7 @@ public class PreFlowModel extends BaseStageModel {
      */
     public void sendResponse() {
         FlowResponse flowResponse = new FlowResponse();
-        flowResponse.setUpdatedPayment(paymentBuilder.build());
+        flowResponse.setUpdatedPayment(getPaymentBuilder().build());
         doSendResponse(flowResponse.toJson());
     }
 
@@ -137,6 +168,6 @@ public class PreFlowModel extends BaseStageModel {
     @Override
     @NonNull
     public String getRequestJson() {
-        return payment.toJson();
+        return payment.toCurrentJson();
     }
 }
@@ -23,6 +23,7 @@ import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.model.Token;
 import com.aevi.sdk.flow.service.ClientCommunicator;
 import com.aevi.sdk.flow.stage.BaseStageModel;
+import com.aevi.sdk.flow.util.LazyJson;
 import com.aevi.sdk.pos.flow.PaymentClient;
 import com.aevi.sdk.pos.flow.model.*;
 import com.aevi.sdk.pos.flow.service.ActivityProxyService;
@@ -45,22 +46,21 @@ import static com.aevi.sdk.flow.util.Preconditions.*;
  */
 public class PreTransactionModel extends BaseStageModel {
 
-    private final TransactionRequest transactionRequest;
-    private final AmountsModifier amountsModifier;
+    private final LazyJson<TransactionRequest> transactionRequest;
+    private AmountsModifier amountsModifier;
     private final FlowResponse flowResponse;
+    private StageRequestHeader requestHeader;
 
-    private PreTransactionModel(Activity activity, @NonNull TransactionRequest transactionRequest) {
+    private PreTransactionModel(Activity activity, @NonNull LazyJson<TransactionRequest> transactionRequest) {
         super(activity);
         this.transactionRequest = transactionRequest;
-        this.amountsModifier = new AmountsModifier(transactionRequest.getAmounts());
         this.flowResponse = new FlowResponse();
     }
 
-    private PreTransactionModel(ClientCommunicator clientCommunicator, @NonNull TransactionRequest transactionRequest,
+    private PreTransactionModel(ClientCommunicator clientCommunicator, @NonNull LazyJson<TransactionRequest> transactionRequest,
                                 InternalData senderInternalData) {
         super(clientCommunicator, senderInternalData);
         this.transactionRequest = transactionRequest;
-        this.amountsModifier = new AmountsModifier(transactionRequest.getAmounts());
         this.flowResponse = new FlowResponse();
     }
 
@@ -75,7 +75,7 @@ public class PreTransactionModel extends BaseStageModel {
      */
     @NonNull
     public static PreTransactionModel fromActivity(Activity activity) {
-        return new PreTransactionModel(activity, TransactionRequest.fromJson(getActivityRequestJson(activity)));
+        return new PreTransactionModel(activity, LazyJson.of(getActivityRequestJson(activity), TransactionRequest::fromJson));
     }
 
     /**
@@ -89,7 +89,20 @@ public class PreTransactionModel extends BaseStageModel {
     @NonNull
     public static PreTransactionModel fromService(ClientCommunicator clientCommunicator, TransactionRequest request,
                                                   InternalData senderInternalData) {
-        return new PreTransactionModel(clientCommunicator, request, senderInternalData);
+        return new PreTransactionModel(clientCommunicator, LazyJson.of(request), senderInternalData);
+    }
+
+    /**
+     * Create an instance from a service context, deserialising the request only when it is first accessed.
+     *
+     * @param clientCommunicator The client communicator for sending/receiving messages at this point in the flow
+     * @param request            The TransactionRequest JSON
+     * @param senderInternalData The internal data of the app that started this stage
+     * @return An instance of {@link PreTransactionModel}
+     */
+    @NonNull
+    public static PreTransactionModel fromService(ClientCommunicator clientCommunicator, String request, InternalData senderInternalData) {
+        return new PreTransactionModel(clientCommunicator, LazyJson.of(request, TransactionRequest::fromJson), senderInternalData);
     }
 
     /**
@@ -99,7 +112,22 @@ public class PreTransactionModel extends BaseStageModel {
      */
     @NonNull
     public TransactionRequest getTransactionRequest() {
-        return transactionRequest;
+        return transactionRequest.get();
+    }
+
+    /**
+     * Get the header of the transaction request, which is read without deserialising the full request.
+     *
+     * This is useful to decide whether the request needs handling at all, before accessing the request itself.
+     *
+     * @return The request header
+     */
+    @NonNull
+    public StageRequestHeader getRequestHeader() {
+        if (requestHeader == null) {
+            requestHeader = StageRequestHeader.read(transactionRequest, "amounts");
+        }
+        return requestHeader;
     }
 
     /**
@@ -121,7 +149,7 @@ public class PreTransactionModel extends BaseStageModel {
      */
     public void changeCurrency(String currency, double exchangeRate) {
         checkNotEmpty(currency, "Currency must be set");
-        amountsModifier.changeCurrency(currency, exchangeRate);
+        getAmountsModifier().changeCurrency(currency, exchangeRate);
     }
 
     /**
@@ -139,7 +167,7 @@ public class PreTransactionModel extends BaseStageModel {
     public void setAdditionalAmount(String identifier, long amount) {
         checkNotEmpty(identifier, "Identifier must be set");
         checkNotNegative(amount, "Amount must be zero or greater");
-        amountsModifier.setAdditionalAmount(identifier, amount, false);
+        getAmountsModifier().setAdditionalAmount(identifier, amount, false);
     }
 
     /**
@@ -157,7 +185,7 @@ public class PreTransactionModel extends BaseStageModel {
     public void setAdditionalAmountAsBaseFraction(String identifier, float fraction) {
         checkNotEmpty(identifier, "Identifier must be set");
         checkNotNegative(fraction, "Fractions must not be negative");
-        amountsModifier.setAdditionalAmountAsBaseFraction(identifier, fraction);
+        getAmountsModifier().setAdditionalAmountAsBaseFraction(identifier, fraction);
     }
 
     /**
@@ -201,7 +229,7 @@ public class PreTransactionModel extends BaseStageModel {
             throw new IllegalArgumentException("Total basket value must be greater than or equal zero");
         }
         flowResponse.addNewBasket(basket);
-        amountsModifier.offsetBaseAmount(basket.getTotalBasketValue());
+        getAmountsModifier().offsetBaseAmount(basket.getTotalBasketValue());
     }
 
     /**
@@ -229,7 +257,7 @@ public class PreTransactionModel extends BaseStageModel {
         checkNotEmpty(basketItems, "Basket items must be set");
         checkNotEmpty(paymentMethod, "Payment method must be set");
         boolean foundBasket = false;
-        for (Basket basket : transactionRequest.getBaskets()) {
+        for (Basket basket : getTransactionRequest().getBaskets()) {
             if (basket.getId().equals(basketId)) {
                 foundBasket = true;
                 break;
@@ -247,7 +275,7 @@ public class PreTransactionModel extends BaseStageModel {
         if (basketItems.size() > 0) {
             flowResponse.updateBasket(basketId, basketItems);
             setAmountsPaid(new Amounts(Math.abs(flowResponse.getModifiedBasket().getTotalBasketValue()),
-                                       transactionRequest.getAmounts().getCurrency()), paymentMethod);
+                                       getTransactionRequest().getAmounts().getCurrency()), paymentMethod);
         }
     }
 
@@ -279,16 +307,16 @@ public class PreTransactionModel extends BaseStageModel {
     public void setAmountsPaid(Amounts amountsPaid, String paymentMethod) {
         checkNotNull(amountsPaid, "Amounts paid must be set");
         checkNotEmpty(paymentMethod, "Payment method must be set");
-        if (amountsPaid.getBaseAmountValue() > transactionRequest.getAmounts().getBaseAmountValue()) {
+        if (amountsPaid.getBaseAmountValue() > getTransactionRequest().getAmounts().getBaseAmountValue()) {
             throw new IllegalArgumentException("Paid base amount value can not exceed the request base amount value");
         }
         if (!amountsPaid.getAdditionalAmounts().isEmpty()) {
             throw new IllegalArgumentException("Paid additional amounts is not supported at the moment - set base amount only");
         }
-        if (amountsPaid.getTotalAmountValue() > transactionRequest.getAmounts().getTotalAmountValue()) {
+        if (amountsPaid.getTotalAmountValue() > getTransactionRequest().getAmounts().getTotalAmountValue()) {
             throw new IllegalArgumentException("Paid amounts can not exceed requested amounts");
         }
-        if (!amountsPaid.getCurrency().equals(transactionRequest.getAmounts().getCurrency())) {
+        if (!amountsPaid.getCurrency().equals(getTransactionRequest().getAmounts().getCurrency())) {
             throw new IllegalArgumentException("Paid currency does not match request currency");
         }
         flowResponse.setAmountsPaid(amountsPaid, paymentMethod);
@@ -327,7 +355,7 @@ public class PreTransactionModel extends BaseStageModel {
      */
     @NonNull
     FlowResponse getFlowResponse() {
-        if (amountsModifier.hasModifications()) {
+        if (amountsModifier != null && amountsModifier.hasModifications()) {
             flowResponse.updateRequestAmounts(amountsModifier.build());
         }
         return flowResponse;
@@ -353,9 +381,16 @@ public class PreTransactionModel extends BaseStageModel {
         sendEmptyResponse();
     }
 
+    private AmountsModifier getAmountsModifier() {
+        if (amountsModifier == null) {
+            amountsModifier = new AmountsModifier(getTransactionRequest().getAmounts());
+        }
+        return amountsModifier;
+    }
+
     @Override
     @NonNull
     public String getRequestJson() {
-        return transactionRequest.toJson();
+        return transactionRequest.toCurrentJson();
     }
 }
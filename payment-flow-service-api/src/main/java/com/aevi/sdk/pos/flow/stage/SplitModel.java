@@ -22,6 +22,7 @@ import com.aevi.sdk.flow.model.AdditionalData;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.service.ClientCommunicator;
 import com.aevi.sdk.flow.stage.BaseStageModel;
+import com.aevi.sdk.flow.util.LazyJson;
 import com.aevi.sdk.pos.flow.model.*;
 import com.aevi.sdk.pos.flow.service.ActivityProxyService;
 import com.aevi.sdk.pos.flow.service.BasePaymentFlowService;
@@ -43,21 +44,20 @@ import static com.aevi.sdk.flow.util.Preconditions.*;
  */
 public class SplitModel extends BaseStageModel {
 
-    private final SplitRequest splitRequest;
-    private final AmountsModifier amountsModifier;
+    private final LazyJson<SplitRequest> splitRequest;
+    private AmountsModifier amountsModifier;
     private final FlowResponse flowResponse;
+    private StageRequestHeader requestHeader;
 
-    private SplitModel(Activity activity, SplitRequest splitRequest) {
+    private SplitModel(Activity activity, LazyJson<SplitRequest> splitRequest) {
         super(activity);
         this.splitRequest = splitRequest;
-        this.amountsModifier = new AmountsModifier(splitRequest.getRemainingAmounts());
         this.flowResponse = new FlowResponse();
     }
 
-    private SplitModel(ClientCommunicator clientCommunicator, SplitRequest splitRequest, InternalData senderInternalData) {
+    private SplitModel(ClientCommunicator clientCommunicator, LazyJson<SplitRequest> splitRequest, InternalData senderInternalData) {
         super(clientCommunicator, senderInternalData);
         this.splitRequest = splitRequest;
-        this.amountsModifier = new AmountsModifier(splitRequest.getRemainingAmounts());
         this.flowResponse = new FlowResponse();
     }
 
@@ -72,7 +72,7 @@ public class SplitModel extends BaseStageModel {
      */
     @NonNull
     public static SplitModel fromActivity(Activity activity) {
-        return new SplitModel(activity, SplitRequest.fromJson(getActivityRequestJson(activity)));
+        return new SplitModel(activity, LazyJson.of(getActivityRequestJson(activity), SplitRequest::fromJson));
     }
 
     /**
@@ -85,7 +85,20 @@ public class SplitModel extends BaseStageModel {
      */
     @NonNull
     public static SplitModel fromService(ClientCommunicator clientCommunicator, SplitRequest request, InternalData senderInternalData) {
-        return new SplitModel(clientCommunicator, request, senderInternalData);
+        return new SplitModel(clientCommunicator, LazyJson.of(request), senderInternalData);
+    }
+
+    /**
+     * Create an instance from a service context, deserialising the request only when it is first accessed.
+     *
+     * @param clientCommunicator The client communicator for sending/receiving messages at this point in the flow
+     * @param request            The SplitRequest JSON
+     * @param senderInternalData The internal data of the app that started this stage
+     * @return An instance of {@link SplitModel}
+     */
+    @NonNull
+    public static SplitModel fromService(ClientCommunicator clientCommunicator, String request, InternalData senderInternalData) {
+        return new SplitModel(clientCommunicator, LazyJson.of(request, SplitRequest::fromJson), senderInternalData);
     }
 
     /**
@@ -95,7 +108,22 @@ public class SplitModel extends BaseStageModel {
      */
     @NonNull
     public SplitRequest getSplitRequest() {
-        return splitRequest;
+        return splitRequest.get();
+    }
+
+    /**
+     * Get the header of the split request, which is read without deserialising the full request.
+     *
+     * This is useful to decide whether the request needs handling at all, before accessing the request itself.
+     *
+     * @return The request header
+     */
+    @NonNull
+    public StageRequestHeader getRequestHeader() {
+        if (requestHeader == null) {
+            requestHeader = StageRequestHeader.readFromPayment(splitRequest, "sourcePayment");
+        }
+        return requestHeader;
     }
 
     /**
@@ -106,8 +134,8 @@ public class SplitModel extends BaseStageModel {
      * @return True if last transaction failed, false otherwise
      */
     public boolean lastTransactionFailed() {
-        return splitRequest.hasPreviousTransactions() && !splitRequest.getLastTransaction().hasProcessedRequestedAmounts() &&
-                splitRequest.getLastTransaction().hasDeclinedResponses();
+        return getSplitRequest().hasPreviousTransactions() && !getSplitRequest().getLastTransaction().hasProcessedRequestedAmounts() &&
+                getSplitRequest().getLastTransaction().hasDeclinedResponses();
     }
 
     /**
@@ -120,7 +148,7 @@ public class SplitModel extends BaseStageModel {
      */
     public void setBaseAmountForNextTransaction(long baseAmount) {
         checkNotNegative(baseAmount, "Amount must not be negative");
-        amountsModifier.updateBaseAmount(baseAmount);
+        getAmountsModifier().updateBaseAmount(baseAmount);
     }
 
     /**
@@ -138,7 +166,7 @@ public class SplitModel extends BaseStageModel {
             throw new IllegalArgumentException("Total basket value must be greater than or equal zero");
         }
         flowResponse.addNewBasket(basket);
-        amountsModifier.updateBaseAmount(basket.getTotalBasketValue());
+        getAmountsModifier().updateBaseAmount(basket.getTotalBasketValue());
     }
 
     /**
@@ -210,16 +238,16 @@ public class SplitModel extends BaseStageModel {
     public void setAmountsPaid(Amounts amountsPaid, String paymentMethod, AdditionalData paymentReferences) {
         checkNotNull(amountsPaid, "Amounts paid must be set");
         checkNotEmpty(paymentMethod, "Payment method must be set");
-        if (amountsPaid.getBaseAmountValue() > splitRequest.getRemainingAmounts().getBaseAmountValue()) {
+        if (amountsPaid.getBaseAmountValue() > getSplitRequest().getRemainingAmounts().getBaseAmountValue()) {
             throw new IllegalArgumentException("Paid base amount value can not exceed the request base amount value");
         }
         if (!amountsPaid.getAdditionalAmounts().isEmpty()) {
             throw new IllegalArgumentException("Paid additional amounts is not supported at the moment - set base amount only");
         }
-        if (amountsPaid.getTotalAmountValue() > splitRequest.getRemainingAmounts().getTotalAmountValue()) {
+        if (amountsPaid.getTotalAmountValue() > getSplitRequest().getRemainingAmounts().getTotalAmountValue()) {
             throw new IllegalArgumentException("Paid amounts can not exceed requested amounts");
         }
-        if (!amountsPaid.getCurrency().equals(splitRequest.getRemainingAmounts().getCurrency())) {
+        if (!amountsPaid.getCurrency().equals(getSplitRequest().getRemainingAmounts().getCurrency())) {
             throw new IllegalArgumentException("Paid currency does not match request currency");
         }
         flowResponse.setAmountsPaid(amountsPaid, paymentMethod);
@@ -245,7 +273,7 @@ public class SplitModel extends BaseStageModel {
      */
     @NonNull
     FlowResponse getFlowResponse() {
-        if (amountsModifier.hasModifications()) {
+        if (amountsModifier != null && amountsModifier.hasModifications()) {
             flowResponse.updateRequestAmounts(amountsModifier.build());
         }
         return flowResponse;
@@ -269,9 +297,16 @@ public class SplitModel extends BaseStageModel {
         sendEmptyResponse();
     }
 
+    private AmountsModifier getAmountsModifier() {
+        if (amountsModifier == null) {
+            amountsModifier = new AmountsModifier(getSplitRequest().getRemainingAmounts());
+        }
+        return amountsModifier;
+    }
+
     @Override
     @NonNull
     public String getRequestJson() {
-        return splitRequest.toJson();
+        return splitRequest.toCurrentJson();
     }
 }
@@ -0,0 +1,102 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.pos.flow.stage;
+
+import android.support.annotation.Nullable;
+import com.aevi.sdk.flow.util.JsonScanner;
+import com.aevi.sdk.flow.util.LazyJson;
+import com.aevi.sdk.pos.flow.model.Amounts;
+import com.aevi.util.json.JsonConverter;
+import com.aevi.util.json.Jsonable;
+
+/**
+ * The key fields of a stage request, read from the request JSON without deserialising the full request.
+ *
+ * This allows a flow service to cheaply decide whether it needs to act on a request at all, for instance based on the flow type or currency,
+ * before paying for the full deserialisation of the request via the model getters.
+ */
+public final class StageRequestHeader {
+
+    private final String id;
+    private final String flowType;
+    private final String amountsJson;
+    private Amounts amounts;
+
+    private StageRequestHeader(String id, String flowType, String amountsJson) {
+        this.id = id;
+        this.flowType = flowType;
+        this.amountsJson = amountsJson;
+    }
+
+    /**
+     * Read the header of a request that carries the flow type and amounts as top level members.
+     *
+     * @param request       The request
+     * @param amountsMember The name of the amounts member
+     * @return The header
+     */
+    static StageRequestHeader read(LazyJson<? extends Jsonable> request, String amountsMember) {
+        return new StageRequestHeader(request.getString("id"), request.getString("flowType"), request.getMemberJson(amountsMember));
+    }
+
+    /**
+     * Read the header of a request that carries the flow type and amounts in a nested payment.
+     *
+     * @param request       The request
+     * @param paymentMember The name of the payment member
+     * @return The header
+     */
+    static StageRequestHeader readFromPayment(LazyJson<? extends Jsonable> request, String paymentMember) {
+        String paymentJson = request.getMemberJson(paymentMember);
+        if (paymentJson == null) {
+            return new StageRequestHeader(request.getString("id"), null, null);
+        }
+        String[] payment = JsonScanner.readMembers(paymentJson, "flowType", "amounts");
+        return new StageRequestHeader(request.getString("id"), payment[0], payment[1]);
+    }
+
+    /**
+     * Get the id of the request.
+     *
+     * @return The request id
+     */
+    @Nullable
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the type of the flow the request is for.
+     *
+     * @return The flow type
+     */
+    @Nullable
+    public String getFlowType() {
+        return flowType;
+    }
+
+    /**
+     * Get the amounts of the request.
+     *
+     * @return The amounts
+     */
+    @Nullable
+    public Amounts getAmounts() {
+        if (amounts == null && amountsJson != null) {
+            amounts = JsonConverter.deserialize(amountsJson, Amounts.class);
+        }
+        return amounts;
+    }
+}
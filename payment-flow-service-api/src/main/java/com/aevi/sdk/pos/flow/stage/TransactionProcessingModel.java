@@ -21,6 +21,7 @@ import android.support.annotation.NonNull;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.service.ClientCommunicator;
 import com.aevi.sdk.flow.stage.BaseStageModel;
+import com.aevi.sdk.flow.util.LazyJson;
 import com.aevi.sdk.pos.flow.model.TransactionRequest;
 import com.aevi.sdk.pos.flow.model.TransactionResponse;
 import com.aevi.sdk.pos.flow.model.TransactionResponseBuilder;
@@ -39,19 +40,20 @@ import com.aevi.sdk.pos.flow.service.BasePaymentFlowService;
  */
 public class TransactionProcessingModel extends BaseStageModel {
 
-    private final TransactionRequest transactionRequest;
+    private final LazyJson<TransactionRequest> transactionRequest;
     private final TransactionResponseBuilder transactionResponseBuilder;
+    private StageRequestHeader requestHeader;
 
-    private TransactionProcessingModel(Activity activity, TransactionRequest request) {
+    private TransactionProcessingModel(Activity activity, LazyJson<TransactionRequest> request) {
         super(activity);
         this.transactionRequest = request;
-        this.transactionResponseBuilder = new TransactionResponseBuilder(transactionRequest.getId());
+        this.transactionResponseBuilder = new TransactionResponseBuilder(getRequestHeader().getId());
     }
 
-    private TransactionProcessingModel(ClientCommunicator clientCommunicator, TransactionRequest request, InternalData senderInternalData) {
+    private TransactionProcessingModel(ClientCommunicator clientCommunicator, LazyJson<TransactionRequest> request, InternalData senderInternalData) {
         super(clientCommunicator, senderInternalData);
         this.transactionRequest = request;
-        this.transactionResponseBuilder = new TransactionResponseBuilder(transactionRequest.getId());
+        this.transactionResponseBuilder = new TransactionResponseBuilder(getRequestHeader().getId());
     }
 
     /**
@@ -65,7 +67,7 @@ public class TransactionProcessingModel extends BaseStageModel {
      */
     @NonNull
     public static TransactionProcessingModel fromActivity(Activity activity) {
-        return new TransactionProcessingModel(activity, TransactionRequest.fromJson(getActivityRequestJson(activity)));
+        return new TransactionProcessingModel(activity, LazyJson.of(getActivityRequestJson(activity), TransactionRequest::fromJson));
     }
 
     /**
@@ -79,7 +81,20 @@ public class TransactionProcessingModel extends BaseStageModel {
     @NonNull
     public static TransactionProcessingModel fromService(ClientCommunicator clientCommunicator, TransactionRequest request,
                                                          InternalData senderInternalData) {
-        return new TransactionProcessingModel(clientCommunicator, request, senderInternalData);
+        return new TransactionProcessingModel(clientCommunicator, LazyJson.of(request), senderInternalData);
+    }
+
+    /**
+     * Create an instance from a service context, deserialising the request only when it is first accessed.
+     *
+     * @param clientCommunicator The client communicator for sending/receiving messages at this point in the flow
+     * @param request            The TransactionRequest JSON
+     * @param senderInternalData The internal data of the app that started this stage
+     * @return An instance of {@link TransactionProcessingModel}
+     */
+    @NonNull
+    public static TransactionProcessingModel fromService(ClientCommunicator clientCommunicator, String request, InternalData senderInternalData) {
+        return new TransactionProcessingModel(clientCommunicator, LazyJson.of(request, TransactionRequest::fromJson), senderInternalData);
     }
 
     /**
@@ -89,7 +104,22 @@ public class TransactionProcessingModel extends BaseStageModel {
      */
     @NonNull
     public TransactionRequest getTransactionRequest() {
-        return transactionRequest;
+        return transactionRequest.get();
+    }
+
+    /**
+     * Get the header of the transaction request, which is read without deserialising the full request.
+     *
+     * This is useful to decide whether the request needs handling at all, before accessing the request itself.
+     *
+     * @return The request header
+     */
+    @NonNull
+    public StageRequestHeader getRequestHeader() {
+        if (requestHeader == null) {
+            requestHeader = StageRequestHeader.read(transactionRequest, "amounts");
+        }
+        return requestHeader;
     }
 
     /**
@@ -123,9 +153,20 @@ public class TransactionProcessingModel extends BaseStageModel {
         doSendResponse(getTransactionResponse().toJson());
     }
 
+    /**
+     * As skipping this stage is not allowed, no response is sent when the stage deadline passes.
+     *
+     * The transaction may still be in progress, so the outcome is left to the handler. A response sent after the deadline fails with an
+     * {@link IllegalStateException}.
+     */
+    @Override
+    protected void skipAfterDeadline() {
+        // the deadline only makes later responses fail fast
+    }
+
     @Override
     @NonNull
     public String getRequestJson() {
-        return transactionRequest.toJson();
+        return transactionRequest.toCurrentJson();
     }
 }
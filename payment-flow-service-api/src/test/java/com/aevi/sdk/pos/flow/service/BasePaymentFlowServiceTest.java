@@ -0,0 +1,98 @@
+package com.aevi.sdk.pos.flow.service;
+
+import com.aevi.sdk.flow.model.InternalData;
+import com.aevi.sdk.flow.model.Request;
+import com.aevi.sdk.flow.service.ClientCommunicator;
+import com.aevi.sdk.flow.stage.GenericStageModel;
+import io.reactivex.Observable;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.aevi.sdk.flow.constants.ErrorConstants.STAGE_NOT_SUPPORTED;
+import static com.aevi.sdk.flow.constants.FlowStages.*;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.FLOW_STAGE;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class BasePaymentFlowServiceTest {
+
+    @Mock
+    ClientCommunicator clientCommunicator;
+
+    private TestFlowService flowService;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        when(clientCommunicator.subscribeToMessages()).thenReturn(Observable.never());
+        flowService = new TestFlowService();
+    }
+
+    @Test
+    public void routesOverriddenCallbacks() {
+        Request request = new Request("pigeon");
+
+        sendRequest(GENERIC, request.toJson());
+
+        assertThat(flowService.genericRequest).isEqualTo(request);
+    }
+
+    @Test
+    public void routesRegisteredHandlers() {
+        sendRequest("CUSTOM_STAGE", "custom");
+
+        assertThat(flowService.customRequests).containsExactly("decoded custom");
+    }
+
+    @Test
+    public void declaresHandledStages() {
+        assertThat(flowService.getHandledStages()).contains(GENERIC, PRE_FLOW, STATUS_UPDATE, "CUSTOM_STAGE").doesNotContain("OTHER_STAGE");
+    }
+
+    @Test
+    public void rejectsKnownStageWithoutDecodingRequest() {
+        sendRequest(PRE_FLOW, "not json");
+
+        verify(clientCommunicator).sendResponseAsErrorAndEnd(eq(STAGE_NOT_SUPPORTED), contains(PRE_FLOW));
+        assertThat(flowService.unknownStages).isEmpty();
+    }
+
+    @Test
+    public void passesUnknownStageToFallback() {
+        sendRequest("OTHER_STAGE", "other");
+
+        assertThat(flowService.unknownStages).containsExactly("OTHER_STAGE");
+    }
+
+    private void sendRequest(String stage, String request) {
+        InternalData internalData = new InternalData("1.0.0");
+        internalData.addAdditionalData(FLOW_STAGE, stage);
+        flowService.processRequest(clientCommunicator, request, internalData);
+    }
+
+    static class TestFlowService extends BasePaymentFlowService {
+
+        Request genericRequest;
+        List<String> customRequests = new ArrayList<>();
+        List<String> unknownStages = new ArrayList<>();
+
+        TestFlowService() {
+            registerStageHandler("CUSTOM_STAGE", (communicator, request, internalData) -> "decoded " + request, customRequests::add);
+        }
+
+        @Override
+        protected void onGeneric(GenericStageModel model) {
+            genericRequest = model.getRequest();
+        }
+
+        @Override
+        protected void onUnknownStage(String flowStage, ClientCommunicator clientCommunicator, String request) {
+            unknownStages.add(flowStage);
+        }
+    }
+}
@@ -96,6 +96,17 @@ public class PreTransactionModelTest {
         assertThat(response.getAmountsPaidPaymentMethod()).isEqualTo("reward");
     }
 
+    @Test
+    public void requestJsonShouldReflectChangesToDecodedRequest() throws Exception {
+        String requestJson = transactionRequest.toJson();
+        PreTransactionModel model = PreTransactionModel.fromService(clientCommunicator, requestJson, internalData);
+        assertThat(model.getRequestJson()).isSameAs(requestJson);
+
+        model.getTransactionRequest().setTargetPaymentAppComponent("updatedComponent");
+
+        assertThat(TransactionRequest.fromJson(model.getRequestJson()).getTargetPaymentAppComponent()).isEqualTo("updatedComponent");
+    }
+
     @Test
     public void skipShouldSendEmptyResponse() throws Exception {
         preTransactionModel.skip();
@@ -127,6 +138,31 @@ public class PreTransactionModelTest {
         preTransactionModel.setAmountsPaid(new Amounts(100, "SEK"), "reward");
     }
 
+    @Test
+    public void canReadRequestHeaderFromRawRequest() throws Exception {
+        String requestJson = transactionRequest.toJson();
+        PreTransactionModel model = PreTransactionModel.fromService(clientCommunicator, requestJson, internalData);
+
+        StageRequestHeader header = model.getRequestHeader();
+
+        assertThat(header.getId()).isEqualTo("myId");
+        assertThat(header.getFlowType()).isEqualTo("sale");
+        assertThat(header.getAmounts()).isEqualTo(new Amounts(baseAmountValue, "GBP"));
+        assertThat(model.getRequestJson()).isSameAs(requestJson);
+    }
+
+    @Test
+    public void shouldAllowAddingAdditionalAmountsToRawRequest() throws Exception {
+        PreTransactionModel model = PreTransactionModel.fromService(clientCommunicator, transactionRequest.toJson(), internalData);
+        model.setAdditionalAmount("testAmount", 500);
+
+        model.sendResponse();
+
+        FlowResponse response = getSentFlowResponse();
+        assertThat(response.getUpdatedRequestAmounts().getTotalAmountValue()).isEqualTo(baseAmountValue + 500);
+        assertThat(model.getTransactionRequest().getBaskets()).isEqualTo(requestBaskets);
+    }
+
     private FlowResponse getSentFlowResponse() {
         ArgumentCaptor<AppMessage> captor = ArgumentCaptor.forClass(AppMessage.class);
         verify(clientCommunicator).sendMessage(captor.capture());
@@ -100,6 +100,17 @@ public class SplitModelTest {
         assertThat(flowResponse).isEqualTo(new FlowResponse());
     }
 
+    @Test
+    public void canReadRequestHeaderFromSourcePayment() throws Exception {
+        SplitModel model = SplitModel.fromService(clientCommunicator, splitRequest.toJson(), internalData);
+
+        StageRequestHeader header = model.getRequestHeader();
+
+        assertThat(header.getId()).isEqualTo(splitRequest.getId());
+        assertThat(header.getFlowType()).isEqualTo("sale");
+        assertThat(header.getAmounts()).isEqualTo(new Amounts(totalRequestValue, "GBP"));
+    }
+
     private FlowResponse getSentFlowResponse() {
         ArgumentCaptor<AppMessage> captor = ArgumentCaptor.forClass(AppMessage.class);
         verify(clientCommunicator).sendMessage(captor.capture());
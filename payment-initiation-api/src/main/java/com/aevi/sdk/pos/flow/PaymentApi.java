@@ -18,6 +18,8 @@ import android.content.Context;
 import android.support.annotation.NonNull;
 import com.aevi.sdk.flow.BaseApiClient;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Main entry point to obtain references to the payment related clients.
  */
@@ -61,6 +63,28 @@ public final class PaymentApi {
         return BaseApiClient.getProcessingServiceVersion(context);
     }
 
+    /**
+     * Enable reuse of connections to the processing service across calls, for all clients in this process.
+     *
+     * By default, every call binds to the processing service and unbinds once it has finished. For applications that make frequent calls, such
+     * as polling payment settings or sending events, keeping connections open avoids the cost of binding for every call.
+     *
+     * Connections are closed after being idle for the given timeout. A connection is never shared between concurrent calls.
+     *
+     * @param idleTimeout The time after which an idle connection is closed
+     * @param unit        The unit of the timeout
+     */
+    public static void enableConnectionPooling(long idleTimeout, TimeUnit unit) {
+        BaseApiClient.enableConnectionPooling(idleTimeout, unit);
+    }
+
+    /**
+     * Disable reuse of connections to the processing service, and close any idle connections.
+     */
+    public static void disableConnectionPooling() {
+        BaseApiClient.disableConnectionPooling();
+    }
+
     /**
      * Get a new instance of a {@link PaymentClient} to initiate payments.
      *
@@ -19,6 +19,7 @@ import android.support.annotation.NonNull;
 
 import com.aevi.sdk.flow.constants.ErrorConstants;
 import com.aevi.sdk.flow.model.Device;
+import com.aevi.sdk.flow.model.DeviceListDiff;
 import com.aevi.sdk.flow.model.FlowEvent;
 import com.aevi.sdk.flow.model.FlowException;
 import com.aevi.sdk.flow.model.Request;
@@ -27,12 +28,15 @@ import com.aevi.sdk.flow.model.ResponseQuery;
 import com.aevi.sdk.flow.service.BaseResponseListenerService;
 import com.aevi.sdk.pos.flow.model.Payment;
 import com.aevi.sdk.pos.flow.model.PaymentResponse;
+import com.aevi.sdk.pos.flow.model.ResponseAggregate;
 import com.aevi.sdk.pos.flow.model.config.PaymentSettings;
 import com.aevi.sdk.pos.flow.service.BasePaymentResponseListenerService;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
@@ -46,6 +50,10 @@ public interface PaymentClient {
      *
      * This includes system settings, flow configurations, information about flow services, etc.
      *
+     * The snapshot is cached in this process. Once cached, it is returned immediately, and refreshed in the background if it is more than a
+     * minute old or if a flow service has reported a change to its service info or any application has been installed, updated or removed.
+     * A subsequent call will then return the refreshed snapshot.
+     *
      * Subscribe to system events via {@link #subscribeToSystemEvents()} for updates when the state changes.
      *
      * @return Single emitting a {@link PaymentSettings} instance
@@ -72,6 +80,21 @@ public interface PaymentClient {
     @NonNull
     Completable initiateRequest(Request request);
 
+    /**
+     * Initiate processing of a batch of requests, such as status updates or other requests that are processed in the background.
+     *
+     * The requests are sent to the processing service in a single message, which avoids the cost of a round trip per request. Each request is
+     * processed as if initiated via {@link #initiateRequest(Request)}, and responses are delivered in the same way.
+     *
+     * This method returns a {@link Completable} that will complete successfully once all requests have been accepted, or send an error if the
+     * batch is rejected. The processing service must support batched requests.
+     *
+     * @param requests The requests
+     * @return Completable that represents the acceptance of the requests
+     */
+    @NonNull
+    Completable initiateRequests(List<Request> requests);
+
     /**
      * Initiate payment processing based on the provided {@link Payment}.
      *
@@ -102,6 +125,46 @@ public interface PaymentClient {
     @NonNull
     Completable sendEvent(FlowEvent flowEvent);
 
+    /**
+     * Collect events sent via {@link #sendEvent(FlowEvent)} over a short window and send them together, to reduce the overhead of applications
+     * that send frequent events.
+     *
+     * Events of the given coalesced types replace any earlier event of the same type and target that is still waiting to be sent, which is
+     * useful for events where only the latest one is of interest, such as progress updates. Terminal events, such as
+     * {@link com.aevi.sdk.flow.constants.FlowServiceEventTypes#FINISH_IMMEDIATELY}, are sent immediately together with any waiting events.
+     *
+     * Events are queued when the returned {@link Completable} is subscribed to, and it completes once the event (or the event that replaced it)
+     * has been accepted. Sending several events together requires a processing service that supports batched requests.
+     *
+     * @param window              The time to collect events for
+     * @param unit                The unit of the window
+     * @param coalescedEventTypes The event types where only the latest event is of interest
+     */
+    void enableEventBatching(long window, TimeUnit unit, String... coalescedEventTypes);
+
+    /**
+     * Send events immediately again, after sending any events that are waiting to be sent.
+     */
+    void disableEventBatching();
+
+    /**
+     * Keep a local journal of the responses received by the {@link BasePaymentResponseListenerService} and {@link BaseResponseListenerService}
+     * implementations of this application, so that response queries can be answered without the processing service.
+     *
+     * {@link #queryPaymentResponses(ResponseQuery)} and {@link #queryResponses(ResponseQuery)} are answered from the journal if the query is for a
+     * request id that has been journaled, or for a date range that starts after the journal was enabled and after the newest response evicted from
+     * it. All other queries are sent to the processing service as before. The journal persists until {@link #disableResponseJournal()} is called.
+     *
+     * @param maxSize The maximum size of the journal in bytes, after which the oldest responses are evicted
+     * @return True if the journal was enabled
+     */
+    boolean enableResponseJournal(long maxSize);
+
+    /**
+     * Stop journaling responses and delete all journaled responses.
+     */
+    void disableResponseJournal();
+
     /**
      * Returns a stream of completed PaymentResponses for the given parameters.
      *
@@ -128,6 +191,51 @@ public interface PaymentClient {
     @NonNull
     Observable<Response> queryResponses(@NonNull ResponseQuery responseQuery);
 
+    /**
+     * Returns a stream of completed PaymentResponses for the given parameters, fetched a page at a time.
+     *
+     * Pages of {@link ResponseQuery#getPageSize()} responses are fetched from the processing service as the stream is consumed, which allows large
+     * numbers of responses to be walked without holding them all in memory. The same restrictions apply as for
+     * {@link #queryPaymentResponses(ResponseQuery)}.
+     *
+     * This requires a processing service that supports paged queries.
+     *
+     * @param responseQuery An object representing some parameters to limit the query by
+     * @return A Flowable stream of payment responses
+     */
+    @NonNull
+    Flowable<PaymentResponse> queryPaymentResponsesPaged(@NonNull ResponseQuery responseQuery);
+
+    /**
+     * Returns the counts and amount totals of the completed PaymentResponses for the given parameters, grouped by outcome, currency, flow type
+     * and payment method.
+     *
+     * The aggregate is computed by the processing service, so that no payment responses have to be sent to or deserialised by the client. The
+     * same restrictions apply as for {@link #queryPaymentResponses(ResponseQuery)}, except that the max results of the query are ignored.
+     *
+     * This requires a processing service that supports aggregate queries.
+     *
+     * @param responseQuery An object representing some parameters to limit the query by
+     * @return Single emitting a {@link ResponseAggregate}
+     */
+    @NonNull
+    Single<ResponseAggregate> queryPaymentResponseAggregate(@NonNull ResponseQuery responseQuery);
+
+    /**
+     * Returns a stream of completed Responses for the given parameters, fetched a page at a time.
+     *
+     * Pages of {@link ResponseQuery#getPageSize()} responses are fetched from the processing service as the stream is consumed, which allows large
+     * numbers of responses to be walked without holding them all in memory. The same restrictions apply as for
+     * {@link #queryResponses(ResponseQuery)}.
+     *
+     * This requires a processing service that supports paged queries.
+     *
+     * @param responseQuery An object representing some parameters to limit the query by
+     * @return A Flowable stream of responses
+     */
+    @NonNull
+    Flowable<Response> queryResponsesPaged(@NonNull ResponseQuery responseQuery);
+
     /**
      * Query for devices connected to the processing service, if multi-device is enabled.
      *
@@ -135,9 +243,8 @@ public interface PaymentClient {
      *
      * Returns a single that emits a list of currently connected devices.
      *
-     * This should be queried each time a selection is required to ensure an up-to-date list.
-     *
-     * You can subscribe to {@link #subscribeToSystemEvents()} for updates on changes to the available devices.
+     * This should be queried each time a selection is required to ensure an up-to-date list. While there is a subscription to
+     * {@link #subscribeToDeviceChanges()}, the list is kept up to date locally and returned without querying the processing service.
      *
      * @return Single emitting a list of {@link Device} objects containing basic device info
      */
@@ -153,4 +260,17 @@ public interface PaymentClient {
      */
     @NonNull
     Observable<FlowEvent> subscribeToSystemEvents();
+
+    /**
+     * Subscribe to changes to the devices connected to the processing service.
+     *
+     * The device list is queried when subscribing, and again after each system event. The first emission reports all connected devices as added,
+     * and subsequent emissions report the devices that have been added, removed or changed since the previous emission.
+     *
+     * While subscribed, {@link #getDevices()} returns the latest device list without querying the processing service.
+     *
+     * @return A stream that will emit {@link DeviceListDiff} items
+     */
+    @NonNull
+    Observable<DeviceListDiff> subscribeToDeviceChanges();
 }
@@ -15,24 +15,33 @@
 package com.aevi.sdk.pos.flow;
 
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
-import com.aevi.android.rxmessenger.ChannelClient;
 import com.aevi.sdk.flow.BaseApiClient;
 import com.aevi.sdk.flow.constants.AppMessageTypes;
+import com.aevi.sdk.flow.constants.IntentActions;
 import com.aevi.sdk.flow.constants.ResponseMechanisms;
 import com.aevi.sdk.flow.model.*;
+import com.aevi.sdk.flow.util.SnapshotCache;
 import com.aevi.sdk.pos.flow.model.Payment;
 import com.aevi.sdk.pos.flow.model.PaymentResponse;
+import com.aevi.sdk.pos.flow.model.ResponseAggregate;
 import com.aevi.sdk.pos.flow.model.config.PaymentSettings;
 
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.ObservableSource;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of payment client.
@@ -43,6 +52,11 @@ import io.reactivex.functions.Function;
 public class PaymentClientImpl extends BaseApiClient implements PaymentClient {
 
     private static final String TAG = PaymentClientImpl.class.getSimpleName();
+    private static final long SETTINGS_MAX_AGE_SECONDS = 60;
+
+    private static SnapshotCache<PaymentSettings> settingsCache;
+    private static Context settingsCacheContext;
+    private static BroadcastReceiver settingsCacheReceiver;
 
     protected PaymentClientImpl(Context context) {
         super(PaymentInitiationConfig.VERSION, context);
@@ -56,13 +70,9 @@ public class PaymentClientImpl extends BaseApiClient implements PaymentClient {
         if (!isProcessingServiceInstalled(context)) {
             return Single.error(NO_FPS_EXCEPTION);
         }
-        final ChannelClient paymentInfoMessenger = getMessengerClient(INFO_PROVIDER_SERVICE_COMPONENT);
         AppMessage appMessage = new AppMessage(AppMessageTypes.PAYMENT_FLOW_CONFIG_REQUEST, getInternalData());
-        return paymentInfoMessenger
-                .sendMessage(appMessage.toJson())
-                .map(PaymentSettings::fromJson)
-                .singleOrError()
-                .doFinally(paymentInfoMessenger::closeConnection)
+        Single<String> fetch = sendMessage(INFO_PROVIDER_SERVICE_COMPONENT, appMessage).singleOrError();
+        return getSettingsCache(context).get(fetch)
                 .onErrorResumeNext(throwable -> Single.error(createFlowException(throwable)));
     }
 
@@ -72,53 +82,97 @@ public class PaymentClientImpl extends BaseApiClient implements PaymentClient {
         if (!isProcessingServiceInstalled(context)) {
             return Completable.error(NO_FPS_EXCEPTION);
         }
-        final ChannelClient transactionMessenger = getMessengerClient(FLOW_PROCESSING_SERVICE_COMPONENT);
         AppMessage appMessage = createAppMessageForPayment(payment, ResponseMechanisms.RESPONSE_SERVICE);
 
-        return transactionMessenger
-                .sendMessage(appMessage.toJson())
+        return sendMessage(FLOW_PROCESSING_SERVICE_COMPONENT, appMessage)
                 .singleOrError()
                 .ignoreElement()
-                .doFinally(transactionMessenger::closeConnection)
                 .onErrorResumeNext(throwable -> Completable.error(createFlowException(throwable)));
     }
 
     @Override
     @NonNull
     public Observable<PaymentResponse> queryPaymentResponses(@NonNull ResponseQuery paymentResponseQuery) {
-        if (!isProcessingServiceInstalled(context)) {
-            return Observable.error(NO_FPS_EXCEPTION);
-        }
-
         paymentResponseQuery.setResponseType(PaymentResponse.class.getName());
 
-        final ChannelClient paymentInfoMessenger = getMessengerClient(INFO_PROVIDER_SERVICE_COMPONENT);
-        AppMessage appMessage = new AppMessage(AppMessageTypes.RESPONSES_REQUEST, paymentResponseQuery.toJson(), getInternalData());
-        return paymentInfoMessenger
-                .sendMessage(appMessage.toJson())
+        Observable<String> fromService = Observable.defer(() -> {
+            if (!isProcessingServiceInstalled(context)) {
+                return Observable.error(NO_FPS_EXCEPTION);
+            }
+            AppMessage appMessage = new AppMessage(AppMessageTypes.RESPONSES_REQUEST, paymentResponseQuery.toJson(), getInternalData());
+            return sendMessage(INFO_PROVIDER_SERVICE_COMPONENT, appMessage);
+        });
+        return queryResponseJournal(paymentResponseQuery, fromService)
                 .map(PaymentResponse::fromJson)
-                .doFinally(paymentInfoMessenger::closeConnection)
                 .onErrorResumeNext((Function<Throwable, ObservableSource<? extends PaymentResponse>>) throwable -> Observable
                         .error(createFlowException(throwable)));
     }
 
+    @Override
+    @NonNull
+    public Flowable<PaymentResponse> queryPaymentResponsesPaged(@NonNull ResponseQuery paymentResponseQuery) {
+        paymentResponseQuery.setResponseType(PaymentResponse.class.getName());
+        return queryResponsePages(paymentResponseQuery, PaymentResponse::fromJson);
+    }
+
+    @Override
+    @NonNull
+    public Single<ResponseAggregate> queryPaymentResponseAggregate(@NonNull ResponseQuery paymentResponseQuery) {
+        if (!isProcessingServiceInstalled(context)) {
+            return Single.error(NO_FPS_EXCEPTION);
+        }
+
+        paymentResponseQuery.setResponseType(PaymentResponse.class.getName());
+
+        AppMessage appMessage = new AppMessage(AppMessageTypes.RESPONSES_AGGREGATE_REQUEST, paymentResponseQuery.toJson(), getInternalData());
+        return sendMessage(INFO_PROVIDER_SERVICE_COMPONENT, appMessage)
+                .singleOrError()
+                .map(ResponseAggregate::fromJson)
+                .onErrorResumeNext(throwable -> Single.error(createFlowException(throwable)));
+    }
+
     protected Single<PaymentResponse> initiatePaymentDirect(final Payment payment) {
         if (!isProcessingServiceInstalled(context)) {
             return Single.error(NO_FPS_EXCEPTION);
         }
-        final ChannelClient transactionMessenger = getMessengerClient(FLOW_PROCESSING_SERVICE_COMPONENT);
         AppMessage appMessage = createAppMessageForPayment(payment, ResponseMechanisms.MESSENGER_CONNECTION);
-        return transactionMessenger
-                .sendMessage(appMessage.toJson())
+        return sendMessage(FLOW_PROCESSING_SERVICE_COMPONENT, appMessage)
                 .singleOrError()
                 .map(json -> {
                     Response response = Response.fromJson(json);
                     return response.getResponseData().getValue(AppMessageTypes.PAYMENT_MESSAGE, PaymentResponse.class);
                 })
-                .doFinally(transactionMessenger::closeConnection)
                 .onErrorResumeNext(throwable -> Single.error(createFlowException(throwable)));
     }
 
+    private static synchronized SnapshotCache<PaymentSettings> getSettingsCache(Context context) {
+        Context applicationContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        if (settingsCache == null || settingsCacheContext != applicationContext) {
+            final SnapshotCache<PaymentSettings> cache =
+                    new SnapshotCache<>(PaymentSettings::fromJson, SETTINGS_MAX_AGE_SECONDS, TimeUnit.SECONDS, Schedulers.computation());
+            // the settings include information about flow services, which changes as services report changes or apps are (un)installed
+            IntentFilter filter = new IntentFilter(IntentActions.SERVICE_INFO_CHANGE_ACTION);
+            filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+            filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addDataScheme("package");
+            BroadcastReceiver receiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    cache.invalidate();
+                }
+            };
+            if (settingsCacheReceiver != null) {
+                settingsCacheContext.unregisterReceiver(settingsCacheReceiver);
+            }
+            applicationContext.registerReceiver(receiver, filter);
+            settingsCache = cache;
+            settingsCacheContext = applicationContext;
+            settingsCacheReceiver = receiver;
+        }
+        return settingsCache;
+    }
+
     protected AppMessage createAppMessageForPayment(Payment payment, String responseMechanism) {
         AdditionalData paymentData = new AdditionalData();
         paymentData.addData(AppMessageTypes.PAYMENT_MESSAGE, payment);
@@ -15,10 +15,12 @@
 package com.aevi.sdk.pos.flow.model;
 
 import android.support.annotation.NonNull;
+import com.google.gson.annotations.JsonAdapter;
 
 /**
  * Amount represented by a value in its subunit form (such as cents or pence) and currency (ISO 4217).
  */
+@JsonAdapter(AmountJsonAdapter.class)
 public class Amount {
 
     private final long value;
@@ -0,0 +1,68 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.pos.flow.model;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import static com.aevi.sdk.flow.util.JsonAdapterUtil.*;
+
+/**
+ * Reflection-free JSON adapter for {@link Amount}.
+ */
+final class AmountJsonAdapter extends TypeAdapter<Amount> {
+
+    @Override
+    public void write(JsonWriter out, Amount amount) throws IOException {
+        if (amount == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("value").value(amount.getValue());
+        writeString(out, "currency", amount.getCurrency());
+        out.endObject();
+    }
+
+    @Override
+    public Amount read(JsonReader in) throws IOException {
+        if (skipNull(in)) {
+            return null;
+        }
+        long value = 0;
+        String currency = "XXX";
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "value":
+                    if (!skipNull(in)) {
+                        value = in.nextLong();
+                    }
+                    break;
+                case "currency":
+                    currency = readString(in);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new Amount(value, currency);
+    }
+}
@@ -17,6 +17,7 @@ package com.aevi.sdk.pos.flow.model;
 import android.support.annotation.NonNull;
 import com.aevi.util.json.JsonConverter;
 import com.aevi.util.json.Jsonable;
+import com.google.gson.annotations.JsonAdapter;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -30,6 +31,7 @@ import static com.aevi.sdk.flow.util.Preconditions.checkArgument;
  *
  * See {@link Amount} for representation of a single amount value with associated currency.
  */
+@JsonAdapter(AmountsJsonAdapter.class)
 public class Amounts implements Jsonable {
 
     private final long baseAmount;
@@ -58,6 +60,15 @@ public class Amounts implements Jsonable {
         this(baseAmount, currency, new HashMap<>());
     }
 
+    // Constructor for deserialisation, without validation (see AmountsJsonAdapter)
+    Amounts(long baseAmount, String currency, Map<String, Long> additionalAmounts, double currencyExchangeRate, String originalCurrency) {
+        this.baseAmount = baseAmount;
+        this.currency = currency;
+        this.additionalAmounts = additionalAmounts;
+        this.currencyExchangeRate = currencyExchangeRate;
+        this.originalCurrency = originalCurrency;
+    }
+
     /**
      * Initialise with another Amounts object and copy over the values.
      *
@@ -0,0 +1,88 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.pos.flow.model;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.aevi.sdk.flow.util.JsonAdapterUtil.*;
+
+/**
+ * Reflection-free JSON adapter for {@link Amounts}, including the exposed total amount.
+ */
+final class AmountsJsonAdapter extends TypeAdapter<Amounts> {
+
+    @Override
+    public void write(JsonWriter out, Amounts amounts) throws IOException {
+        if (amounts == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("baseAmount").value(amounts.getBaseAmountValue());
+        writeLongMap(out, "additionalAmounts", amounts.getAdditionalAmounts());
+        writeString(out, "currency", amounts.getCurrency());
+        out.name("currencyExchangeRate").value(amounts.getCurrencyExchangeRate());
+        writeString(out, "originalCurrency", amounts.getOriginalCurrency());
+        out.name("totalAmount").value(amounts.getTotalAmountValue());
+        out.endObject();
+    }
+
+    @Override
+    public Amounts read(JsonReader in) throws IOException {
+        if (skipNull(in)) {
+            return null;
+        }
+        long baseAmount = 0;
+        Map<String, Long> additionalAmounts = new HashMap<>();
+        String currency = "XXX";
+        double currencyExchangeRate = 0;
+        String originalCurrency = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "baseAmount":
+                    if (!skipNull(in)) {
+                        baseAmount = in.nextLong();
+                    }
+                    break;
+                case "additionalAmounts":
+                    additionalAmounts = readLongMap(in);
+                    break;
+                case "currency":
+                    currency = readString(in);
+                    break;
+                case "currencyExchangeRate":
+                    if (!skipNull(in)) {
+                        currencyExchangeRate = in.nextDouble();
+                    }
+                    break;
+                case "originalCurrency":
+                    originalCurrency = readString(in);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new Amounts(baseAmount, currency, additionalAmounts, currencyExchangeRate, originalCurrency);
+    }
+}
@@ -18,6 +18,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import com.aevi.sdk.flow.model.AdditionalData;
 import com.aevi.util.json.JsonConverter;
+import com.google.gson.annotations.JsonAdapter;
 
 import java.util.*;
 
@@ -30,6 +31,7 @@ import java.util.*;
  *
  * Please create instances via {@link BasketItemBuilder}.
  */
+@JsonAdapter(BasketItemJsonAdapter.class)
 public class BasketItem {
 
     private final String id;
@@ -301,6 +303,19 @@ public class BasketItem {
         return references != null ? references : new HashMap<>();
     }
 
+    // Raw field access for BasketItemJsonAdapter, as the public getters replace null values
+    List<BasketItemModifier> getModifiersOrNull() {
+        return modifiers;
+    }
+
+    Map<String, String> getReferencesOrNull() {
+        return references;
+    }
+
+    AdditionalData getItemDataOrNull() {
+        return itemData;
+    }
+
     private boolean referenceEquals(Map<String, String> refsOne, Map<String, String> refsTwo) {
         if ((refsOne == null || refsOne.isEmpty()) && (refsTwo == null || refsTwo.isEmpty())) {
             return true;
@@ -0,0 +1,158 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.pos.flow.model;
+
+import com.aevi.sdk.flow.model.AdditionalData;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.aevi.sdk.flow.util.JsonAdapterUtil.*;
+
+/**
+ * Reflection-free JSON adapter for {@link BasketItem}, including the exposed totals and flags.
+ *
+ * Nested types are delegated to the adapters registered with the converter.
+ */
+final class BasketItemJsonAdapter implements TypeAdapterFactory {
+
+    private static final TypeToken<List<BasketItemModifier>> MODIFIERS_TYPE = new TypeToken<List<BasketItemModifier>>() {
+    };
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (type.getRawType() != BasketItem.class) {
+            return null;
+        }
+        return (TypeAdapter<T>) new Adapter(gson.getAdapter(Measurement.class), gson.getAdapter(MODIFIERS_TYPE),
+                                            gson.getAdapter(AdditionalData.class));
+    }
+
+    private static final class Adapter extends TypeAdapter<BasketItem> {
+
+        private final TypeAdapter<Measurement> measurementAdapter;
+        private final TypeAdapter<List<BasketItemModifier>> modifiersAdapter;
+        private final TypeAdapter<AdditionalData> additionalDataAdapter;
+
+        Adapter(TypeAdapter<Measurement> measurementAdapter, TypeAdapter<List<BasketItemModifier>> modifiersAdapter,
+                TypeAdapter<AdditionalData> additionalDataAdapter) {
+            this.measurementAdapter = measurementAdapter;
+            this.modifiersAdapter = modifiersAdapter;
+            this.additionalDataAdapter = additionalDataAdapter;
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public void write(JsonWriter out, BasketItem item) throws IOException {
+            if (item == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeString(out, "id", item.getId());
+            writeString(out, "label", item.getLabel());
+            writeString(out, "category", item.getCategory());
+            out.name("amount").value(item.getIndividualAmount());
+            out.name("baseAmount").value(Float.valueOf(item.getIndividualBaseAmount()));
+            out.name("quantity").value(item.getQuantity());
+            out.name("measurement");
+            measurementAdapter.write(out, item.getMeasurement());
+            out.name("modifiers");
+            modifiersAdapter.write(out, item.getModifiersOrNull());
+            writeStringMap(out, "references", item.getReferencesOrNull());
+            out.name("itemData");
+            additionalDataAdapter.write(out, item.getItemDataOrNull());
+            out.name("totalAmount").value(item.getTotalAmount());
+            out.name("totalBaseAmount").value(Float.valueOf(item.getTotalBaseAmount()));
+            out.name("hasMeasurement").value(item.hasMeasurement());
+            out.name("hasModifiers").value(item.hasModifiers());
+            out.name("hasItemData").value(item.hasItemData());
+            out.name("hasReferences").value(item.hasReferences());
+            out.endObject();
+        }
+
+        @Override
+        public BasketItem read(JsonReader in) throws IOException {
+            if (skipNull(in)) {
+                return null;
+            }
+            String id = "";
+            String label = "";
+            String category = null;
+            long amount = 0;
+            float baseAmount = 0;
+            int quantity = 0;
+            Measurement measurement = null;
+            List<BasketItemModifier> modifiers = null;
+            Map<String, String> references = null;
+            AdditionalData itemData = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        id = readString(in);
+                        break;
+                    case "label":
+                        label = readString(in);
+                        break;
+                    case "category":
+                        category = readString(in);
+                        break;
+                    case "amount":
+                        if (!skipNull(in)) {
+                            amount = in.nextLong();
+                        }
+                        break;
+                    case "baseAmount":
+                        if (!skipNull(in)) {
+                            baseAmount = (float) in.nextDouble();
+                        }
+                        break;
+                    case "quantity":
+                        if (!skipNull(in)) {
+                            quantity = in.nextInt();
+                        }
+                        break;
+                    case "measurement":
+                        measurement = measurementAdapter.read(in);
+                        break;
+                    case "modifiers":
+                        modifiers = modifiersAdapter.read(in);
+                        break;
+                    case "references":
+                        references = readStringMap(in, new LinkedHashMap<>());
+                        break;
+                    case "itemData":
+                        itemData = additionalDataAdapter.read(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return new BasketItem(id, label, category, amount, baseAmount, quantity, measurement, modifiers, references, itemData);
+        }
+    }
+}
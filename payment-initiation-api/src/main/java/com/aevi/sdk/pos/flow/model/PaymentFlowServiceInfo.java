@@ -33,7 +33,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import com.aevi.sdk.flow.model.AdditionalData;
 import com.aevi.sdk.flow.model.BaseServiceInfo;
-import com.aevi.sdk.flow.util.ComparisonUtil;
+import com.aevi.sdk.flow.util.CaseFoldedSet;
 import com.aevi.util.json.JsonConverter;
 
 import java.util.HashSet;
@@ -55,6 +55,9 @@ public class PaymentFlowServiceInfo extends BaseServiceInfo {
     private final Set<String> supportedCurrencies;
     private final Set<String> paymentMethods;
 
+    private transient CaseFoldedSet foldedCurrencies;
+    private transient CaseFoldedSet foldedPaymentMethods;
+
     // Default constructor for deserialisation
     PaymentFlowServiceInfo() {
         canAdjustAmounts = false;
@@ -99,7 +102,9 @@ public class PaymentFlowServiceInfo extends BaseServiceInfo {
      * @return True if supported, false otherwise
      */
     public boolean supportsPaymentMethod(String paymentMethod) {
-        return paymentMethods.size() > 0 && ComparisonUtil.stringCollectionContainsIgnoreCase(paymentMethods, paymentMethod);
+        CaseFoldedSet folded = CaseFoldedSet.of(foldedPaymentMethods, paymentMethods);
+        foldedPaymentMethods = folded;
+        return folded.contains(paymentMethod);
     }
 
     /**
@@ -121,7 +126,9 @@ public class PaymentFlowServiceInfo extends BaseServiceInfo {
      * @return True if supported, false otherwise
      */
     public boolean supportsCurrency(String currency) {
-        return supportedCurrencies.size() > 0 && ComparisonUtil.stringCollectionContainsIgnoreCase(supportedCurrencies, currency);
+        CaseFoldedSet folded = CaseFoldedSet.of(foldedCurrencies, supportedCurrencies);
+        foldedCurrencies = folded;
+        return folded.contains(currency);
     }
 
     /**
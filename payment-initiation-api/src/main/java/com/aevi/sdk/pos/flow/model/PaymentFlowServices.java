@@ -16,6 +16,7 @@ package com.aevi.sdk.pos.flow.model;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import com.aevi.sdk.flow.util.CaseFoldedSet;
 import com.aevi.sdk.flow.util.ComparisonUtil;
 import com.aevi.util.json.JsonConverter;
 import com.aevi.util.json.Jsonable;
@@ -26,6 +27,9 @@ import java.util.*;
 
 /**
  * Exposes payment and flow services information with helper methods to retrieve collated data across all services.
+ *
+ * Lookups by id, stage, currency and payment method are served from indexes that are built the first time they are needed, reflecting the
+ * services at that point.
  */
 public class PaymentFlowServices implements Jsonable {
 
@@ -34,6 +38,7 @@ public class PaymentFlowServices implements Jsonable {
     private final Set<String> supportedCurrencies;
     private final Set<String> supportedPaymentMethods;
     private final Set<String> supportedDataKeys;
+    private transient volatile Index index;
 
     public PaymentFlowServices(Collection<PaymentFlowServiceInfo> paymentFlowServiceInfoList) {
         this.paymentFlowServiceInfoList = new ArrayList<>(paymentFlowServiceInfoList);
@@ -86,12 +91,40 @@ public class PaymentFlowServices implements Jsonable {
      */
     @Nullable
     public PaymentFlowServiceInfo getFlowServiceFromId(String id) {
-        for (PaymentFlowServiceInfo serviceInfo : paymentFlowServiceInfoList) {
-            if (serviceInfo.getId().equals(id)) {
-                return serviceInfo;
-            }
-        }
-        return null;
+        return getIndex().servicesById.get(id);
+    }
+
+    /**
+     * Get the flow services that operate in the given stage.
+     *
+     * @param stage The stage (case insensitive)
+     * @return An unmodifiable list of the flow services, in the order of {@link #getAll()}
+     */
+    @NonNull
+    public List<PaymentFlowServiceInfo> getFlowServicesForStage(String stage) {
+        return Index.lookup(getIndex().servicesByStage, stage);
+    }
+
+    /**
+     * Get the flow services that support the given currency.
+     *
+     * @param currency The currency (case insensitive)
+     * @return An unmodifiable list of the flow services, in the order of {@link #getAll()}
+     */
+    @NonNull
+    public List<PaymentFlowServiceInfo> getFlowServicesForCurrency(String currency) {
+        return Index.lookup(getIndex().servicesByCurrency, currency);
+    }
+
+    /**
+     * Get the flow services that support the given payment method.
+     *
+     * @param paymentMethod The payment method (case insensitive)
+     * @return An unmodifiable list of the flow services, in the order of {@link #getAll()}
+     */
+    @NonNull
+    public List<PaymentFlowServiceInfo> getFlowServicesForPaymentMethod(String paymentMethod) {
+        return Index.lookup(getIndex().servicesByPaymentMethod, paymentMethod);
     }
 
     /**
@@ -101,7 +134,7 @@ public class PaymentFlowServices implements Jsonable {
      * @return True if at least one service support it, false otherwise
      */
     public boolean isCustomRequestTypeSupported(String requestType) {
-        return ComparisonUtil.stringCollectionContainsIgnoreCase(supportedRequestTypes, requestType);
+        return getIndex().requestTypes.contains(requestType);
     }
 
     /**
@@ -121,7 +154,7 @@ public class PaymentFlowServices implements Jsonable {
      * @return True if at least one service support it, false otherwise
      */
     public boolean isCurrencySupported(String currency) {
-        return ComparisonUtil.stringCollectionContainsIgnoreCase(supportedCurrencies, currency);
+        return getIndex().servicesByCurrency.containsKey(ComparisonUtil.foldCase(currency));
     }
 
     /**
@@ -151,7 +184,7 @@ public class PaymentFlowServices implements Jsonable {
      * @return True if at least one service support it, false otherwise
      */
     public boolean isDataKeySupported(String dataKey) {
-        return ComparisonUtil.stringCollectionContainsIgnoreCase(supportedDataKeys, dataKey);
+        return getIndex().dataKeys.contains(dataKey);
     }
 
     /**
@@ -164,6 +197,16 @@ public class PaymentFlowServices implements Jsonable {
         return supportedDataKeys;
     }
 
+    private Index getIndex() {
+        // built lazily, as instances deserialised from JSON are not constructed via the constructor
+        Index current = index;
+        if (current == null) {
+            current = new Index(this);
+            index = current;
+        }
+        return current;
+    }
+
     @Override
     public String toJson() {
         return JsonConverter.serialize(this);
@@ -172,4 +215,50 @@ public class PaymentFlowServices implements Jsonable {
     public static PaymentFlowServices fromJson(String json) {
         return JsonConverter.deserialize(json, PaymentFlowServices.class);
     }
+
+    private static class Index {
+
+        private final Map<String, PaymentFlowServiceInfo> servicesById = new HashMap<>();
+        private final Map<String, List<PaymentFlowServiceInfo>> servicesByStage = new HashMap<>();
+        private final Map<String, List<PaymentFlowServiceInfo>> servicesByCurrency = new HashMap<>();
+        private final Map<String, List<PaymentFlowServiceInfo>> servicesByPaymentMethod = new HashMap<>();
+        private final CaseFoldedSet requestTypes;
+        private final CaseFoldedSet dataKeys;
+
+        Index(PaymentFlowServices paymentFlowServices) {
+            for (PaymentFlowServiceInfo serviceInfo : paymentFlowServices.paymentFlowServiceInfoList) {
+                if (!servicesById.containsKey(serviceInfo.getId())) {
+                    servicesById.put(serviceInfo.getId(), serviceInfo);
+                }
+                addAll(servicesByStage, serviceInfo.getStages(), serviceInfo);
+                addAll(servicesByCurrency, serviceInfo.getSupportedCurrencies(), serviceInfo);
+                addAll(servicesByPaymentMethod, serviceInfo.getPaymentMethods(), serviceInfo);
+            }
+            requestTypes = CaseFoldedSet.of(null, paymentFlowServices.supportedRequestTypes);
+            dataKeys = CaseFoldedSet.of(null, paymentFlowServices.supportedDataKeys);
+        }
+
+        static List<PaymentFlowServiceInfo> lookup(Map<String, List<PaymentFlowServiceInfo>> map, String key) {
+            List<PaymentFlowServiceInfo> services = map.get(ComparisonUtil.foldCase(key));
+            return services != null ? Collections.unmodifiableList(services) : Collections.<PaymentFlowServiceInfo>emptyList();
+        }
+
+        private static void addAll(Map<String, List<PaymentFlowServiceInfo>> map, Collection<String> keys, PaymentFlowServiceInfo serviceInfo) {
+            if (keys == null) {
+                return;
+            }
+            for (String key : keys) {
+                String foldedKey = ComparisonUtil.foldCase(key);
+                List<PaymentFlowServiceInfo> services = map.get(foldedKey);
+                if (services == null) {
+                    services = new ArrayList<>();
+                    map.put(foldedKey, services);
+                }
+                // keys that only differ in case fold to the same key
+                if (services.isEmpty() || services.get(services.size() - 1) != serviceInfo) {
+                    services.add(serviceInfo);
+                }
+            }
+        }
+    }
 }
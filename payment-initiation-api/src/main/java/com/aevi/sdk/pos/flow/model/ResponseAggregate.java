@@ -0,0 +1,149 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.pos.flow.model;
+
+import android.support.annotation.NonNull;
+import com.aevi.util.json.JsonConverter;
+import com.aevi.util.json.Jsonable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents the counts and amount totals of the payment responses matching a {@link com.aevi.sdk.flow.model.ResponseQuery}, grouped by outcome,
+ * currency, flow type and payment method.
+ *
+ * An aggregate carries no payment response data itself, which makes it suitable for reconciliation over large numbers of responses.
+ *
+ * See {@link ResponseAggregator} to compute an aggregate from payment responses.
+ */
+public class ResponseAggregate implements Jsonable {
+
+    private final List<ResponseAggregateGroup> groups;
+
+    /**
+     * @param groups The groups of this aggregate
+     */
+    public ResponseAggregate(List<ResponseAggregateGroup> groups) {
+        this.groups = groups != null ? groups : new ArrayList<>();
+    }
+
+    /**
+     * Get all groups of this aggregate.
+     *
+     * @return The groups
+     */
+    @NonNull
+    public List<ResponseAggregateGroup> getGroups() {
+        return Collections.unmodifiableList(groups);
+    }
+
+    /**
+     * Get the groups for the given currency.
+     *
+     * @param currency The currency
+     * @return The groups for the currency
+     */
+    @NonNull
+    public List<ResponseAggregateGroup> getGroupsForCurrency(String currency) {
+        List<ResponseAggregateGroup> groupsForCurrency = new ArrayList<>();
+        for (ResponseAggregateGroup group : groups) {
+            if (currency != null && currency.equals(group.getCurrency())) {
+                groupsForCurrency.add(group);
+            }
+        }
+        return groupsForCurrency;
+    }
+
+    /**
+     * Get the total number of payment responses across all groups.
+     *
+     * @return The total number of payment responses
+     */
+    public int getTotalCount() {
+        int totalCount = 0;
+        for (ResponseAggregateGroup group : groups) {
+            totalCount += group.getCount();
+        }
+        return totalCount;
+    }
+
+    /**
+     * Get the number of payment responses with the given outcome.
+     *
+     * @param outcome The outcome
+     * @return The number of payment responses with the outcome
+     */
+    public int getCount(PaymentResponse.Outcome outcome) {
+        int count = 0;
+        for (ResponseAggregateGroup group : groups) {
+            if (group.getOutcome() == outcome) {
+                count += group.getCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the sum of the total amounts processed in the given currency.
+     *
+     * @param currency The currency
+     * @return The sum of the total amounts processed in the currency
+     */
+    public long getTotalAmountProcessed(String currency) {
+        long total = 0;
+        for (ResponseAggregateGroup group : getGroupsForCurrency(currency)) {
+            total += group.getTotalAmountProcessed();
+        }
+        return total;
+    }
+
+    @Override
+    public String toJson() {
+        return JsonConverter.serialize(this);
+    }
+
+    public static ResponseAggregate fromJson(String json) {
+        return JsonConverter.deserialize(json, ResponseAggregate.class);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ResponseAggregate that = (ResponseAggregate) o;
+
+        return groups.equals(that.groups);
+    }
+
+    @Override
+    public int hashCode() {
+        return groups.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseAggregate{" +
+                "groups=" + groups +
+                '}';
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.pos.flow.model;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Represents the count and amount totals of the payment responses sharing an outcome, currency, flow type and payment method.
+ *
+ * Amounts are the sum of the total amount values in the lowest denomination (see {@link Amounts#getTotalAmountValue()}), in the currency of the group.
+ */
+public class ResponseAggregateGroup {
+
+    private final PaymentResponse.Outcome outcome;
+    private final String currency;
+    private final String flowType;
+    private final String paymentMethod;
+    private int count;
+    private long totalAmountRequested;
+    private long totalAmountProcessed;
+
+    /**
+     * @param outcome              The outcome of the payments in this group
+     * @param currency             The currency of the payments in this group
+     * @param flowType             The flow type of the payments in this group
+     * @param paymentMethod        The payment method of the payments in this group
+     * @param count                The number of payment responses in this group
+     * @param totalAmountRequested The sum of the total amounts requested
+     * @param totalAmountProcessed The sum of the total amounts processed
+     */
+    public ResponseAggregateGroup(PaymentResponse.Outcome outcome, String currency, String flowType, String paymentMethod, int count,
+                                  long totalAmountRequested, long totalAmountProcessed) {
+        this.outcome = outcome;
+        this.currency = currency;
+        this.flowType = flowType;
+        this.paymentMethod = paymentMethod;
+        this.count = count;
+        this.totalAmountRequested = totalAmountRequested;
+        this.totalAmountProcessed = totalAmountProcessed;
+    }
+
+    void add(long amountRequested, long amountProcessed) {
+        count++;
+        totalAmountRequested += amountRequested;
+        totalAmountProcessed += amountProcessed;
+    }
+
+    /**
+     * Get the outcome of the payments in this group.
+     *
+     * @return The outcome
+     */
+    @Nullable
+    public PaymentResponse.Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Get the currency of the payments in this group.
+     *
+     * @return The currency
+     */
+    @Nullable
+    public String getCurrency() {
+        return currency;
+    }
+
+    /**
+     * Get the flow type of the payments in this group.
+     *
+     * @return The flow type
+     */
+    @Nullable
+    public String getFlowType() {
+        return flowType;
+    }
+
+    /**
+     * Get the payment method of the payments in this group.
+     *
+     * For split payments, this is the payment method of the first transaction that was processed.
+     *
+     * @return The payment method, or null if no payment method was used or reported
+     */
+    @Nullable
+    public String getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    /**
+     * Get the number of payment responses in this group.
+     *
+     * @return The number of payment responses
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the sum of the total amounts requested for the payments in this group.
+     *
+     * @return The sum of the total amounts requested
+     */
+    public long getTotalAmountRequested() {
+        return totalAmountRequested;
+    }
+
+    /**
+     * Get the sum of the total amounts processed for the payments in this group.
+     *
+     * @return The sum of the total amounts processed
+     */
+    public long getTotalAmountProcessed() {
+        return totalAmountProcessed;
+    }
+
+    /**
+     * Check whether this group matches the given grouping values.
+     *
+     * @param outcome       The outcome
+     * @param currency      The currency
+     * @param flowType      The flow type
+     * @param paymentMethod The payment method
+     * @return True if all values match
+     */
+    public boolean matches(PaymentResponse.Outcome outcome, String currency, String flowType, String paymentMethod) {
+        return this.outcome == outcome && equal(this.currency, currency) && equal(this.flowType, flowType) &&
+                equal(this.paymentMethod, paymentMethod);
+    }
+
+    private static boolean equal(String a, String b) {
+        return a != null ? a.equals(b) : b == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ResponseAggregateGroup that = (ResponseAggregateGroup) o;
+
+        if (count != that.count) {
+            return false;
+        }
+        if (totalAmountRequested != that.totalAmountRequested) {
+            return false;
+        }
+        if (totalAmountProcessed != that.totalAmountProcessed) {
+            return false;
+        }
+        return matches(that.outcome, that.currency, that.flowType, that.paymentMethod);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = outcome != null ? outcome.hashCode() : 0;
+        result = 31 * result + (currency != null ? currency.hashCode() : 0);
+        result = 31 * result + (flowType != null ? flowType.hashCode() : 0);
+        result = 31 * result + (paymentMethod != null ? paymentMethod.hashCode() : 0);
+        result = 31 * result + count;
+        result = 31 * result + (int) (totalAmountRequested ^ (totalAmountRequested >>> 32));
+        result = 31 * result + (int) (totalAmountProcessed ^ (totalAmountProcessed >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseAggregateGroup{" +
+                "outcome=" + outcome +
+                ", currency='" + currency + '\'' +
+                ", flowType='" + flowType + '\'' +
+                ", paymentMethod='" + paymentMethod + '\'' +
+                ", count=" + count +
+                ", totalAmountRequested=" + totalAmountRequested +
+                ", totalAmountProcessed=" + totalAmountProcessed +
+                '}';
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.pos.flow.model;
+
+import android.support.annotation.NonNull;
+import com.aevi.sdk.flow.model.ResponseQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes a {@link ResponseAggregate} from payment responses.
+ *
+ * This is intended to be used where the payment responses are stored, so that only the aggregate has to be sent to clients. It can also be
+ * used as a local stand-in for the processing service, for instance in tests.
+ */
+public class ResponseAggregator {
+
+    private final ResponseQuery query;
+    private final List<ResponseAggregateGroup> groups = new ArrayList<>();
+
+    /**
+     * Create an aggregator for all payment responses added to it.
+     */
+    public ResponseAggregator() {
+        this(null);
+    }
+
+    /**
+     * Create an aggregator for the payment responses added to it that match the query.
+     *
+     * The request id, flow name, flow type and date range of the query are applied. The max results of the query are ignored, as an aggregate
+     * is always computed over all matching responses.
+     *
+     * @param query The query to match responses against, or null to match all responses
+     */
+    public ResponseAggregator(ResponseQuery query) {
+        this.query = query;
+    }
+
+    /**
+     * Compute the aggregate of the payment responses that match the query.
+     *
+     * @param query            The query to match responses against, or null to match all responses
+     * @param paymentResponses The payment responses
+     * @return The aggregate
+     */
+    @NonNull
+    public static ResponseAggregate aggregate(ResponseQuery query, Iterable<PaymentResponse> paymentResponses) {
+        ResponseAggregator aggregator = new ResponseAggregator(query);
+        for (PaymentResponse paymentResponse : paymentResponses) {
+            aggregator.add(paymentResponse);
+        }
+        return aggregator.build();
+    }
+
+    /**
+     * Add a payment response to the aggregate, if it matches the query.
+     *
+     * @param paymentResponse The payment response
+     * @return True if the response matched the query and was added
+     */
+    public boolean add(PaymentResponse paymentResponse) {
+        if (!matches(paymentResponse)) {
+            return false;
+        }
+        Payment payment = paymentResponse.getOriginatingPayment();
+        Amounts requested = paymentResponse.getTotalAmountsRequested();
+        Amounts processed = paymentResponse.getTotalAmountsProcessed();
+        PaymentResponse.Outcome outcome = paymentResponse.getOutcome();
+        String currency = getCurrency(payment, requested, processed);
+        String flowType = payment != null ? payment.getFlowType() : null;
+        String paymentMethod = getPaymentMethod(paymentResponse);
+        getGroup(outcome, currency, flowType, paymentMethod).add(requested != null ? requested.getTotalAmountValue() : 0,
+                                                                 processed != null ? processed.getTotalAmountValue() : 0);
+        return true;
+    }
+
+    /**
+     * Build the aggregate of the payment responses added so far.
+     *
+     * @return The aggregate
+     */
+    @NonNull
+    public ResponseAggregate build() {
+        List<ResponseAggregateGroup> copy = new ArrayList<>(groups.size());
+        for (ResponseAggregateGroup group : groups) {
+            copy.add(new ResponseAggregateGroup(group.getOutcome(), group.getCurrency(), group.getFlowType(), group.getPaymentMethod(),
+                                                group.getCount(), group.getTotalAmountRequested(), group.getTotalAmountProcessed()));
+        }
+        return new ResponseAggregate(copy);
+    }
+
+    private boolean matches(PaymentResponse paymentResponse) {
+        if (paymentResponse == null) {
+            return false;
+        }
+        if (query == null) {
+            return true;
+        }
+        Payment payment = paymentResponse.getOriginatingPayment();
+        if (query.getRequestId() != null && (payment == null || !query.getRequestId().equals(payment.getId()))) {
+            return false;
+        }
+        if (query.getFlowName() != null && (payment == null || !query.getFlowName().equals(payment.getFlowName()))) {
+            return false;
+        }
+        if (query.getFlowType() != null && (payment == null || !query.getFlowType().equals(payment.getFlowType()))) {
+            return false;
+        }
+        return !query.hasDateRange() || (paymentResponse.getCreationDateTimeMs() >= query.getStartDate() &&
+                paymentResponse.getCreationDateTimeMs() <= query.getEndDate());
+    }
+
+    private ResponseAggregateGroup getGroup(PaymentResponse.Outcome outcome, String currency, String flowType, String paymentMethod) {
+        // The number of distinct groups is small, so a scan is cheaper than building keys for every response
+        for (ResponseAggregateGroup group : groups) {
+            if (group.matches(outcome, currency, flowType, paymentMethod)) {
+                return group;
+            }
+        }
+        ResponseAggregateGroup group = new ResponseAggregateGroup(outcome, currency, flowType, paymentMethod, 0, 0, 0);
+        groups.add(group);
+        return group;
+    }
+
+    private static String getCurrency(Payment payment, Amounts requested, Amounts processed) {
+        if (processed != null && processed.getCurrency() != null) {
+            return processed.getCurrency();
+        }
+        if (requested != null && requested.getCurrency() != null) {
+            return requested.getCurrency();
+        }
+        return payment != null && payment.getAmounts() != null ? payment.getAmounts().getCurrency() : null;
+    }
+
+    private static String getPaymentMethod(PaymentResponse paymentResponse) {
+        for (Transaction transaction : paymentResponse.getTransactions()) {
+            TransactionResponse transactionResponse = transaction.getPaymentAppResponse();
+            if (transactionResponse != null && transactionResponse.getPaymentMethod() != null) {
+                return transactionResponse.getPaymentMethod();
+            }
+        }
+        Payment payment = paymentResponse.getOriginatingPayment();
+        return payment != null ? payment.getPaymentMethod() : null;
+    }
+}
@@ -19,16 +19,17 @@ import android.support.annotation.Nullable;
 import com.aevi.sdk.flow.model.config.FlowConfig;
 import io.reactivex.Observable;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 
 /**
  * Exposes the various flows and helper methods to query for information.
+ *
+ * Lookups by flow name, type and request class are served from indexes that are built the first time they are needed.
  */
 public class FlowConfigurations {
 
     private final List<FlowConfig> flowConfigurations;
+    private transient volatile Index index;
 
     public FlowConfigurations(List<FlowConfig> flowConfigurations) {
         this.flowConfigurations = flowConfigurations;
@@ -75,14 +76,14 @@ public class FlowConfigurations {
      * If null is passed, all types will be returned.
      *
      * @param requestClass {@link FlowConfig#REQUEST_CLASS_GENERIC}, {@link FlowConfig#REQUEST_CLASS_PAYMENT} or null for all types
-     * @return A list of supported flow types
+     * @return An unmodifiable list of supported flow types
      */
     public List<String> getFlowTypes(@Nullable final String requestClass) {
-        return stream()
-                .filter(flowConfig -> requestClass == null || flowConfig.getRequestClass().equals(requestClass))
-                .map(FlowConfig::getType)
-                .toList()
-                .blockingGet();
+        Index index = getIndex();
+        if (requestClass == null) {
+            return index.allTypes;
+        }
+        return getOrEmpty(index.typesByRequestClass, requestClass);
     }
 
     /**
@@ -94,26 +95,23 @@ public class FlowConfigurations {
      * @return True if there is at least one flow for this type, false otherwise
      */
     public boolean isFlowTypeSupported(final String type) {
-        return stream()
-                .filter(flowConfig -> flowConfig.getType().equals(type))
-                .count()
-                .blockingGet() > 0;
+        return getIndex().configsByType.containsKey(type);
     }
 
     /**
      * Get a list of all the flow names that are associated with the provided types.
      *
      * @param typesArray The types to filter by
-     * @return The list of flow names
+     * @return The list of flow names, which is unmodifiable if a single type is provided
      */
     @NonNull
     public List<String> getFlowNamesForType(String... typesArray) {
+        if (typesArray.length == 1) {
+            return getOrEmpty(getIndex().namesByType, typesArray[0]);
+        }
         List<String> flowNames = new ArrayList<>();
-        List<String> types = Arrays.asList(typesArray);
-        for (FlowConfig flowConfiguration : flowConfigurations) {
-            if (types.contains(flowConfiguration.getType())) {
-                flowNames.add(flowConfiguration.getName());
-            }
+        for (FlowConfig flowConfiguration : getFlowConfigsForType(typesArray)) {
+            flowNames.add(flowConfiguration.getName());
         }
         return flowNames;
     }
@@ -122,12 +120,16 @@ public class FlowConfigurations {
      * Get a list of all the flow configs that are associated with the provided types.
      *
      * @param typesArray The types to filter by
-     * @return The list of flow names
+     * @return The list of flow configs, which is unmodifiable if a single type is provided
      */
     @NonNull
     public List<FlowConfig> getFlowConfigsForType(String... typesArray) {
+        if (typesArray.length == 1) {
+            return getOrEmpty(getIndex().configsByType, typesArray[0]);
+        }
+        // multiple types are matched in a single pass to keep the flow configs in their configured order
         List<FlowConfig> flowConfigs = new ArrayList<>();
-        List<String> types = Arrays.asList(typesArray);
+        Set<String> types = new HashSet<>(Arrays.asList(typesArray));
         for (FlowConfig flowConfiguration : flowConfigurations) {
             if (types.contains(flowConfiguration.getType())) {
                 flowConfigs.add(flowConfiguration);
@@ -153,12 +155,68 @@ public class FlowConfigurations {
 
     @Nullable
     private FlowConfig fromName(String flowName) {
-        for (FlowConfig flowConfiguration : flowConfigurations) {
-            if (flowConfiguration.getName().equals(flowName)) {
-                return flowConfiguration;
+        return getIndex().configsByName.get(flowName);
+    }
+
+    private Index getIndex() {
+        // built lazily, as instances deserialised from JSON are not constructed via the constructor
+        Index current = index;
+        if (current == null) {
+            current = new Index(flowConfigurations);
+            index = current;
+        }
+        return current;
+    }
+
+    private static <T> List<T> getOrEmpty(Map<String, List<T>> map, String key) {
+        List<T> values = map.get(key);
+        return values != null ? values : Collections.<T>emptyList();
+    }
+
+    private static class Index {
+
+        private final Map<String, FlowConfig> configsByName = new HashMap<>();
+        private final Map<String, List<FlowConfig>> configsByType;
+        private final Map<String, List<String>> namesByType;
+        private final Map<String, List<String>> typesByRequestClass;
+        private final List<String> allTypes;
+
+        Index(List<FlowConfig> flowConfigurations) {
+            Map<String, List<FlowConfig>> configsByType = new HashMap<>();
+            Map<String, List<String>> namesByType = new HashMap<>();
+            Map<String, List<String>> typesByRequestClass = new HashMap<>();
+            List<String> allTypes = new ArrayList<>(flowConfigurations.size());
+            for (FlowConfig flowConfig : flowConfigurations) {
+                if (!configsByName.containsKey(flowConfig.getName())) {
+                    // the first flow with a name takes precedence, as with a scan in order
+                    configsByName.put(flowConfig.getName(), flowConfig);
+                }
+                addTo(configsByType, flowConfig.getType(), flowConfig);
+                addTo(namesByType, flowConfig.getType(), flowConfig.getName());
+                addTo(typesByRequestClass, flowConfig.getRequestClass(), flowConfig.getType());
+                allTypes.add(flowConfig.getType());
+            }
+            this.configsByType = unmodifiableValues(configsByType);
+            this.namesByType = unmodifiableValues(namesByType);
+            this.typesByRequestClass = unmodifiableValues(typesByRequestClass);
+            this.allTypes = Collections.unmodifiableList(allTypes);
+        }
+
+        private static <T> void addTo(Map<String, List<T>> map, String key, T value) {
+            List<T> values = map.get(key);
+            if (values == null) {
+                values = new ArrayList<>();
+                map.put(key, values);
+            }
+            values.add(value);
+        }
+
+        private static <T> Map<String, List<T>> unmodifiableValues(Map<String, List<T>> map) {
+            for (Map.Entry<String, List<T>> entry : map.entrySet()) {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
             }
+            return map;
         }
-        return null;
     }
 
 }
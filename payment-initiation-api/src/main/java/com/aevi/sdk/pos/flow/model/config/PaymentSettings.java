@@ -22,8 +22,13 @@ import com.aevi.sdk.pos.flow.model.PaymentFlowServices;
 import com.aevi.util.json.JsonConverter;
 import com.aevi.util.json.Jsonable;
 
+import io.reactivex.Completable;
+import io.reactivex.schedulers.Schedulers;
+
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Represents all available payment settings, configurations and flow service information.
@@ -35,6 +40,7 @@ public class PaymentSettings implements Jsonable {
     private final FpsSettings fpsSettings;
     private final AppFlowSettings appFlowSettings;
     private final AdditionalData additionalSettings;
+    private transient volatile ConcurrentMap<String, PaymentFlowServices> servicesForFlows;
 
     public PaymentSettings(FlowConfigurations flowConfigurations, PaymentFlowServices paymentFlowServices,
                            FpsSettings fpsSettings, AppFlowSettings appFlowSettings, AdditionalData additionalSettings) {
@@ -111,6 +117,9 @@ public class PaymentSettings implements Jsonable {
      *
      * If there is no flow by the provided name, all services will be returned.
      *
+     * The result for each flow is computed on first request and then kept for the lifetime of these settings. See
+     * {@link #precomputeServicesForFlows()} to compute the results for all flows up front.
+     *
      * @param flowName The name of the flow configuration to filter services by
      * @return An instance of {@link PaymentFlowServices} with filtered set of services, or null if no flow config found
      */
@@ -120,7 +129,49 @@ public class PaymentSettings implements Jsonable {
         if (flowConfig == null) {
             return allServices;
         }
+        ConcurrentMap<String, PaymentFlowServices> servicesForFlows = getServicesForFlows();
+        PaymentFlowServices servicesForFlow = servicesForFlows.get(flowName);
+        if (servicesForFlow == null) {
+            servicesForFlow = findServicesForFlow(flowConfig);
+            PaymentFlowServices existing = servicesForFlows.putIfAbsent(flowName, servicesForFlow);
+            if (existing != null) {
+                servicesForFlow = existing;
+            }
+        }
+        return servicesForFlow;
+    }
+
+    /**
+     * Compute the services for all flows on a background thread, so that subsequent calls to {@link #getServicesForFlow(String)} return
+     * straight away.
+     *
+     * @return A completable that completes once the services for all flows have been computed
+     */
+    @NonNull
+    public Completable precomputeServicesForFlows() {
+        return Completable.fromAction(() -> {
+            for (FlowConfig flowConfig : flowConfigurations.getAll()) {
+                getServicesForFlow(flowConfig.getName());
+            }
+        }).subscribeOn(Schedulers.computation());
+    }
+
+    private ConcurrentMap<String, PaymentFlowServices> getServicesForFlows() {
+        // created lazily, as instances deserialised from JSON are not constructed via the constructor
+        ConcurrentMap<String, PaymentFlowServices> current = servicesForFlows;
+        if (current == null) {
+            synchronized (this) {
+                current = servicesForFlows;
+                if (current == null) {
+                    current = new ConcurrentHashMap<>();
+                    servicesForFlows = current;
+                }
+            }
+        }
+        return current;
+    }
 
+    private PaymentFlowServices findServicesForFlow(FlowConfig flowConfig) {
         Set<PaymentFlowServiceInfo> paymentFlowServices = new HashSet<>();
         for (FlowStage flowStage : flowConfig.getStages(true)) {
             if (flowStage.getAppExecutionType() != AppExecutionType.NONE && !flowStage.getFlowApps().isEmpty()) {
@@ -13,8 +13,12 @@
  */
 package com.aevi.sdk.pos.flow.service;
 
+import android.support.annotation.NonNull;
+import com.aevi.sdk.flow.model.Response;
 import com.aevi.sdk.flow.service.BaseListenerService;
+import com.aevi.sdk.flow.util.ResponseJournal;
 import com.aevi.sdk.pos.flow.PaymentInitiationConfig;
+import com.aevi.sdk.pos.flow.model.Payment;
 import com.aevi.sdk.pos.flow.model.PaymentResponse;
 
 /**
@@ -26,4 +30,12 @@ public abstract class BasePaymentResponseListenerService extends BaseListenerSer
     protected BasePaymentResponseListenerService() {
         super(PaymentResponse.class, PaymentInitiationConfig.VERSION);
     }
+
+    @NonNull
+    @Override
+    protected ResponseJournal.Entry createJournalEntry(@NonNull Response response, @NonNull PaymentResponse paymentResponse) {
+        Payment payment = paymentResponse.getOriginatingPayment();
+        return new ResponseJournal.Entry(PaymentResponse.class.getName(), paymentResponse.getId(), payment != null ? payment.getFlowType() : null,
+                                         payment != null ? payment.getFlowName() : null, paymentResponse.getCreationDateTimeMs());
+    }
 }
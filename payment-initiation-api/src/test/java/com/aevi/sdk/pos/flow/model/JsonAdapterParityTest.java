@@ -0,0 +1,103 @@
+package com.aevi.sdk.pos.flow.model;
+
+import com.aevi.util.json.JsonConverter;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+/**
+ * Checks that the hand-written JSON adapters produce and accept the same JSON as reflective serialisation of the model fields.
+ */
+public class JsonAdapterParityTest {
+
+    @Test
+    public void amountMatchesReflectiveJson() throws Exception {
+        checkParity(new Amount(1234, "GBP"), Amount.class);
+        checkParity(new Amount(-1, "JPY"), Amount.class);
+    }
+
+    @Test
+    public void amountsMatchesReflectiveJson() throws Exception {
+        Amounts amounts = new Amounts(1000, "GBP");
+        amounts.addAdditionalAmount("tip", 150);
+        amounts.addAdditionalAmount("cashback", 2000);
+        amounts.setCurrencyExchangeRate(1.15);
+        amounts.setOriginalCurrency("EUR");
+        checkParity(amounts, Amounts.class);
+        checkParity(new Amounts(0, "USD"), Amounts.class);
+    }
+
+    @Test
+    public void basketItemMatchesReflectiveJson() throws Exception {
+        BasketItem basketItem = new BasketItemBuilder()
+                .withId("123")
+                .withLabel("Pandoras \"Box\"")
+                .withCategory("Greek Myths")
+                .withQuantity(3)
+                .withMeasurement(2.5f, "kg")
+                .withBaseAmountAndModifiers(500.1f,
+                                            new BasketItemModifierBuilder("tax1", "tax").withFractionalAmount(20.05f).build(),
+                                            new BasketItemModifierBuilder("tax2", "tax").withPercentage(24.56f).build())
+                .withItemData("flag", true)
+                .withItemData("sku", "abc")
+                .withReference("ref", "value")
+                .build();
+        checkParity(basketItem, BasketItem.class);
+        checkParity(new BasketItem("1", "label", null, 100, 0.1f, 1, null, null, null, null), BasketItem.class);
+        checkParity(new BasketItem("1", "label", null, 100, 100, 1, null, new ArrayList<>(), new HashMap<>(), null), BasketItem.class);
+    }
+
+    @Test
+    public void readingUsesDeserialisationDefaults() {
+        assertThat(JsonConverter.deserialize("{}", Amounts.class)).isEqualTo(new Amounts(0, "XXX"));
+        assertThat(JsonConverter.deserialize("{\"value\":null}", Amount.class)).isEqualTo(new Amount(0, "XXX"));
+        BasketItem basketItem = JsonConverter.deserialize("{\"quantity\":2,\"amount\":\"15\",\"unknown\":[1,2]}", BasketItem.class);
+        assertThat(basketItem).isEqualTo(new BasketItem("", "", null, 15, 0, 2, null, null, null, null));
+    }
+
+    private <T> void checkParity(T model, Class<T> type) throws Exception {
+        JsonElement expected = reflectiveJson(model);
+
+        JsonElement actual = new JsonParser().parse(JsonConverter.serialize(model));
+
+        assertThat(actual).isEqualTo(expected);
+        assertThat(JsonConverter.deserialize(expected.toString(), type)).isEqualTo(model);
+        assertThat(JsonConverter.deserialize(actual.toString(), type)).isEqualTo(model);
+    }
+
+    private static JsonElement reflectiveJson(Object model) throws Exception {
+        JsonObject json = new JsonObject();
+        Map<String, Object> values = new HashMap<>();
+        for (Class<?> type = model.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                values.put(field.getName(), field.get(model));
+            }
+        }
+        for (Method method : model.getClass().getMethods()) {
+            JsonConverter.ExposeMethod exposeMethod = method.getAnnotation(JsonConverter.ExposeMethod.class);
+            if (exposeMethod != null) {
+                values.put(exposeMethod.value(), method.invoke(model));
+            }
+        }
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getValue() != null) {
+                json.add(entry.getKey(), new JsonParser().parse(JsonConverter.serialize(entry.getValue())));
+            }
+        }
+        return json;
+    }
+}
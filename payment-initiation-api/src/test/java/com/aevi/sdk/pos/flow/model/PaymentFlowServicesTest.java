@@ -81,6 +81,69 @@ public class PaymentFlowServicesTest {
         assertThat(allSupportedCurrencies).hasSize(3).containsOnly("GBP", "AUD", "USD");
     }
 
+    @Test
+    public void canGetFlowServiceFromId() throws Exception {
+        assertThat(paymentFlowServices.getFlowServiceFromId(paymentFlowServiceInfoOne.getId())).isSameAs(paymentFlowServiceInfoOne);
+        assertThat(paymentFlowServices.getFlowServiceFromId("unknown")).isNull();
+    }
+
+    @Test
+    public void checksCapabilitiesIgnoringCase() throws Exception {
+        assertThat(paymentFlowServices.isCurrencySupported("aud")).isTrue();
+        assertThat(paymentFlowServices.isDataKeySupported("DATAONE")).isTrue();
+        assertThat(paymentFlowServices.isCustomRequestTypeSupported("reqthree")).isTrue();
+        assertThat(paymentFlowServices.isCustomRequestTypeSupported(null)).isFalse();
+        assertThat(paymentFlowServiceInfoOne.supportsCurrency("gbp")).isTrue();
+        assertThat(paymentFlowServiceInfoOne.supportsPaymentMethod("PIGEON")).isTrue();
+        assertThat(paymentFlowServiceInfoOne.containsStage("STAGE1")).isTrue();
+        assertThat(paymentFlowServiceInfoOne.supportsDataKey("datathree")).isFalse();
+    }
+
+    @Test
+    public void checksCapabilitiesAgainstReplacedStages() throws Exception {
+        assertThat(paymentFlowServiceInfoOne.containsStage("STAGE1")).isTrue();
+
+        paymentFlowServiceInfoOne.setStages("stage3", "stage4");
+
+        assertThat(paymentFlowServiceInfoOne.containsStage("STAGE1")).isFalse();
+        assertThat(paymentFlowServiceInfoOne.containsStage("STAGE3")).isTrue();
+    }
+
+    @Test
+    public void checksCapabilitiesAgainstModifiedSets() throws Exception {
+        assertThat(paymentFlowServiceInfoOne.containsStage("STAGE1")).isTrue();
+
+        paymentFlowServiceInfoOne.getStages().remove("stage1");
+        paymentFlowServiceInfoOne.getStages().add("stage3");
+
+        assertThat(paymentFlowServiceInfoOne.containsStage("STAGE1")).isFalse();
+        assertThat(paymentFlowServiceInfoOne.containsStage("STAGE3")).isTrue();
+    }
+
+    @Test
+    public void canGetFlowServicesForStage() throws Exception {
+        assertThat(paymentFlowServices.getFlowServicesForStage("stage2")).containsExactly(paymentFlowServiceInfoOne, paymentFlowServiceInfoTwo);
+        assertThat(paymentFlowServices.getFlowServicesForStage("STAGE3")).containsExactly(paymentFlowServiceInfoTwo);
+        assertThat(paymentFlowServices.getFlowServicesForStage("stage4")).isEmpty();
+    }
+
+    @Test
+    public void canGetFlowServicesForCurrencyAndPaymentMethod() throws Exception {
+        assertThat(paymentFlowServices.getFlowServicesForCurrency("gbp")).containsExactly(paymentFlowServiceInfoOne);
+        assertThat(paymentFlowServices.getFlowServicesForCurrency("AUD")).containsExactly(paymentFlowServiceInfoOne, paymentFlowServiceInfoTwo);
+        assertThat(paymentFlowServices.getFlowServicesForPaymentMethod("yak")).containsExactly(paymentFlowServiceInfoTwo);
+        assertThat(paymentFlowServices.getFlowServicesForPaymentMethod(null)).isEmpty();
+    }
+
+    @Test
+    public void canQueryDeserialisedInstance() throws Exception {
+        PaymentFlowServices deserialised = PaymentFlowServices.fromJson(paymentFlowServices.toJson());
+
+        assertThat(deserialised.getFlowServiceFromId(paymentFlowServiceInfoOne.getId())).isEqualTo(paymentFlowServiceInfoOne);
+        assertThat(deserialised.getFlowServicesForStage("stage1")).containsExactly(paymentFlowServiceInfoOne);
+        assertThat(deserialised.getFlowServiceFromId(paymentFlowServiceInfoOne.getId()).supportsCurrency("aud")).isTrue();
+    }
+
 
     private void buildFlowServiceOne() {
         paymentFlowServiceInfoOne = new PaymentFlowServiceInfoBuilder()
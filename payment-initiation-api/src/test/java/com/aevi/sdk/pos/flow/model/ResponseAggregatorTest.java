@@ -0,0 +1,85 @@
+package com.aevi.sdk.pos.flow.model;
+
+import com.aevi.sdk.flow.model.ResponseQuery;
+import com.aevi.sdk.flow.model.ResponseQueryBuilder;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.aevi.sdk.flow.constants.FlowStages.TRANSACTION_PROCESSING;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ResponseAggregatorTest {
+
+    private final List<PaymentResponse> paymentResponses = Arrays.asList(
+            createResponse("sale", 1000, "GBP", PaymentResponse.Outcome.FULFILLED, "card", 100),
+            createResponse("sale", 500, "GBP", PaymentResponse.Outcome.FULFILLED, "card", 200),
+            createResponse("sale", 700, "GBP", PaymentResponse.Outcome.FAILED, "card", 300),
+            createResponse("sale", 300, "USD", PaymentResponse.Outcome.FULFILLED, "cash", 400),
+            createResponse("refund", 200, "GBP", PaymentResponse.Outcome.FULFILLED, "card", 500));
+
+    @Test
+    public void canGroupResponses() {
+        ResponseAggregate aggregate = ResponseAggregator.aggregate(null, paymentResponses);
+
+        assertThat(aggregate.getGroups()).containsExactly(
+                new ResponseAggregateGroup(PaymentResponse.Outcome.FULFILLED, "GBP", "sale", "card", 2, 1500, 1500),
+                new ResponseAggregateGroup(PaymentResponse.Outcome.FAILED, "GBP", "sale", "card", 1, 700, 0),
+                new ResponseAggregateGroup(PaymentResponse.Outcome.FULFILLED, "USD", "sale", "cash", 1, 300, 300),
+                new ResponseAggregateGroup(PaymentResponse.Outcome.FULFILLED, "GBP", "refund", "card", 1, 200, 200));
+        assertThat(aggregate.getTotalCount()).isEqualTo(5);
+        assertThat(aggregate.getCount(PaymentResponse.Outcome.FAILED)).isEqualTo(1);
+        assertThat(aggregate.getTotalAmountProcessed("GBP")).isEqualTo(1700);
+    }
+
+    @Test
+    public void appliesQueryFilters() {
+        ResponseQuery query = new ResponseQueryBuilder().withFlowType("sale").withDateRange(150, 350).build();
+
+        ResponseAggregate aggregate = ResponseAggregator.aggregate(query, paymentResponses);
+
+        assertThat(aggregate.getGroups()).containsExactly(
+                new ResponseAggregateGroup(PaymentResponse.Outcome.FULFILLED, "GBP", "sale", "card", 1, 500, 500),
+                new ResponseAggregateGroup(PaymentResponse.Outcome.FAILED, "GBP", "sale", "card", 1, 700, 0));
+    }
+
+    @Test
+    public void canSerialiseAggregate() {
+        ResponseAggregate aggregate = ResponseAggregator.aggregate(null, paymentResponses);
+
+        assertThat(ResponseAggregate.fromJson(aggregate.toJson())).isEqualTo(aggregate);
+    }
+
+    @Test
+    public void buildReturnsSnapshot() {
+        ResponseAggregator aggregator = new ResponseAggregator();
+        aggregator.add(paymentResponses.get(0));
+        ResponseAggregate aggregate = aggregator.build();
+
+        aggregator.add(paymentResponses.get(1));
+
+        assertThat(aggregate.getTotalCount()).isEqualTo(1);
+        assertThat(aggregator.build().getTotalCount()).isEqualTo(2);
+    }
+
+    private static PaymentResponse createResponse(String flowType, long amount, String currency, PaymentResponse.Outcome outcome,
+                                                  String paymentMethod, long creationDateTimeMs) {
+        Payment payment = new PaymentBuilder().withPaymentFlow(flowType).withAmounts(new Amounts(amount, currency)).build();
+        PaymentResponse paymentResponse = new PaymentResponse(payment);
+        paymentResponse.outcome = outcome;
+        paymentResponse.totalAmountsRequested = new Amounts(amount, currency);
+        paymentResponse.creationDateTimeMs = creationDateTimeMs;
+        Transaction transaction = new Transaction(new Amounts(amount, currency), null, null, null);
+        boolean approved = outcome != PaymentResponse.Outcome.FAILED;
+        TransactionResponse transactionResponse = new TransactionResponse("id", null, approved ? TransactionResponse.Outcome.APPROVED :
+                TransactionResponse.Outcome.DECLINED, null, new Amounts(amount, currency), null, null, paymentMethod);
+        transactionResponse.setFlowStage(TRANSACTION_PROCESSING);
+        transaction.addTransactionResponse(transactionResponse);
+        paymentResponse.transactions.add(transaction);
+        if (approved) {
+            paymentResponse.totalAmountsProcessed = new Amounts(amount, currency);
+        }
+        return paymentResponse;
+    }
+}
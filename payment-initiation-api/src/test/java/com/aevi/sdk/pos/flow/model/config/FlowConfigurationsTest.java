@@ -0,0 +1,89 @@
+package com.aevi.sdk.pos.flow.model.config;
+
+import com.aevi.sdk.flow.model.config.AppExecutionType;
+import com.aevi.sdk.flow.model.config.FlowConfig;
+import com.aevi.sdk.flow.model.config.FlowStage;
+import com.aevi.util.json.JsonConverter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.aevi.sdk.flow.constants.FlowStages.TRANSACTION_PROCESSING;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class FlowConfigurationsTest {
+
+    private FlowConfig sale;
+    private FlowConfig refund;
+    private FlowConfig otherSale;
+    private FlowConfig tokenisation;
+    private FlowConfigurations flowConfigurations;
+
+    @Before
+    public void setup() {
+        sale = createPaymentFlow("sale", "sale");
+        refund = createPaymentFlow("refund", "refund");
+        otherSale = createPaymentFlow("otherSale", "sale");
+        tokenisation = new FlowConfig("tokenisation", "tokenisation", 1, 2, null, null, null, false, false);
+        List<FlowConfig> flowConfigs = new ArrayList<>();
+        Collections.addAll(flowConfigs, sale, refund, otherSale, tokenisation);
+        flowConfigurations = new FlowConfigurations(flowConfigs);
+    }
+
+    @Test
+    public void canGetFlowConfigurationByName() {
+        assertThat(flowConfigurations.getFlowConfiguration("refund")).isSameAs(refund);
+        assertThat(flowConfigurations.getFlowConfiguration("unknown")).isNull();
+    }
+
+    @Test
+    public void canGetFlowTypesForRequestClass() {
+        assertThat(flowConfigurations.getFlowTypes(FlowConfig.REQUEST_CLASS_PAYMENT)).containsExactly("sale", "refund", "sale");
+        assertThat(flowConfigurations.getFlowTypes(FlowConfig.REQUEST_CLASS_GENERIC)).containsExactly("tokenisation");
+        assertThat(flowConfigurations.getFlowTypes(null)).containsExactly("sale", "refund", "sale", "tokenisation");
+        assertThat(flowConfigurations.getFlowTypes("unknown")).isEmpty();
+    }
+
+    @Test
+    public void canCheckFlowTypeSupported() {
+        assertThat(flowConfigurations.isFlowTypeSupported("refund")).isTrue();
+        assertThat(flowConfigurations.isFlowTypeSupported("unknown")).isFalse();
+    }
+
+    @Test
+    public void canGetFlowsForType() {
+        assertThat(flowConfigurations.getFlowNamesForType("sale")).containsExactly("sale", "otherSale");
+        assertThat(flowConfigurations.getFlowConfigsForType("sale")).containsExactly(sale, otherSale);
+        assertThat(flowConfigurations.getFlowConfigsForType("unknown")).isEmpty();
+    }
+
+    @Test
+    public void keepsConfiguredOrderForMultipleTypes() {
+        assertThat(flowConfigurations.getFlowNamesForType("tokenisation", "sale")).containsExactly("sale", "otherSale", "tokenisation");
+        assertThat(flowConfigurations.getFlowConfigsForType("refund", "sale")).containsExactly(sale, refund, otherSale);
+    }
+
+    @Test
+    public void canCheckStageDefinedForFlow() {
+        assertThat(flowConfigurations.isStageDefinedForFlow(TRANSACTION_PROCESSING, "sale")).isTrue();
+        assertThat(flowConfigurations.isStageDefinedForFlow(TRANSACTION_PROCESSING, "tokenisation")).isFalse();
+        assertThat(flowConfigurations.isStageDefinedForFlow(TRANSACTION_PROCESSING, "unknown")).isFalse();
+    }
+
+    @Test
+    public void canQueryDeserialisedInstance() {
+        FlowConfigurations deserialised = JsonConverter.deserialize(JsonConverter.serialize(flowConfigurations), FlowConfigurations.class);
+
+        assertThat(deserialised.getFlowConfiguration("refund")).isEqualTo(refund);
+        assertThat(deserialised.getFlowNamesForType("sale")).containsExactly("sale", "otherSale");
+    }
+
+    private static FlowConfig createPaymentFlow(String name, String type) {
+        List<FlowStage> stages = new ArrayList<>();
+        stages.add(new FlowStage(TRANSACTION_PROCESSING, AppExecutionType.SINGLE));
+        return new FlowConfig(name, type, 1, 2, null, null, stages, false, false);
+    }
+}
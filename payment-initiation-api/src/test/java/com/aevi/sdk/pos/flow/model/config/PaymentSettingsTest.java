@@ -0,0 +1,89 @@
+package com.aevi.sdk.pos.flow.model.config;
+
+import com.aevi.sdk.flow.model.config.AppExecutionType;
+import com.aevi.sdk.flow.model.config.FlowApp;
+import com.aevi.sdk.flow.model.config.FlowConfig;
+import com.aevi.sdk.flow.model.config.FlowStage;
+import com.aevi.sdk.pos.flow.model.PaymentFlowServiceInfo;
+import com.aevi.sdk.pos.flow.model.PaymentFlowServices;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class PaymentSettingsTest {
+
+    private PaymentFlowServiceInfo serviceOne;
+    private PaymentFlowServiceInfo serviceTwo;
+    private PaymentSettings paymentSettings;
+
+    @Before
+    public void setup() {
+        serviceOne = createService("one", "GBP");
+        serviceTwo = createService("two", "USD");
+        List<FlowConfig> flowConfigs = new ArrayList<>();
+        flowConfigs.add(createFlow("saleOne", AppExecutionType.SINGLE, "one"));
+        flowConfigs.add(createFlow("saleBoth", AppExecutionType.MULTIPLE, "one", "two"));
+        flowConfigs.add(createFlow("saleNone", AppExecutionType.NONE, "one"));
+        paymentSettings = new PaymentSettings(new FlowConfigurations(flowConfigs), new PaymentFlowServices(Arrays.asList(serviceOne, serviceTwo)),
+                                              null, null, null);
+    }
+
+    @Test
+    public void canGetServicesForFlow() {
+        assertThat(paymentSettings.getServicesForFlow("saleOne").getAll()).containsExactly(serviceOne);
+        assertThat(paymentSettings.getServicesForFlow("saleOne").getAllSupportedCurrencies()).containsOnly("GBP");
+        assertThat(paymentSettings.getServicesForFlow("saleBoth").getAll()).containsOnly(serviceOne, serviceTwo);
+    }
+
+    @Test
+    public void returnsAllServicesIfNoneDefinedForFlow() {
+        assertThat(paymentSettings.getServicesForFlow("saleNone")).isSameAs(paymentSettings.getPaymentFlowServices());
+        assertThat(paymentSettings.getServicesForFlow("unknown")).isSameAs(paymentSettings.getPaymentFlowServices());
+        assertThat(paymentSettings.getServicesForFlow(null)).isSameAs(paymentSettings.getPaymentFlowServices());
+    }
+
+    @Test
+    public void memoisesServicesForFlow() {
+        PaymentFlowServices servicesForFlow = paymentSettings.getServicesForFlow("saleOne");
+
+        assertThat(paymentSettings.getServicesForFlow("saleOne")).isSameAs(servicesForFlow);
+    }
+
+    @Test
+    public void canPrecomputeServicesForFlows() {
+        paymentSettings.precomputeServicesForFlows().blockingAwait();
+
+        assertThat(paymentSettings.getServicesForFlow("saleBoth").getAll()).containsOnly(serviceOne, serviceTwo);
+    }
+
+    @Test
+    public void memoisesServicesForFlowOfDeserialisedInstance() {
+        PaymentSettings deserialised = PaymentSettings.fromJson(paymentSettings.toJson());
+
+        PaymentFlowServices servicesForFlow = deserialised.getServicesForFlow("saleOne");
+
+        assertThat(servicesForFlow.getAll()).containsExactly(serviceOne);
+        assertThat(deserialised.getServicesForFlow("saleOne")).isSameAs(servicesForFlow);
+    }
+
+    private static PaymentFlowServiceInfo createService(String id, String currency) {
+        return new PaymentFlowServiceInfo(id, "com.test." + id, "Test", "1.0.0", "2.0.0", id, false, null, null, null, true, true, currency,
+                                          new HashSet<>(Arrays.asList(currency)), null, null);
+    }
+
+    private static FlowConfig createFlow(String name, AppExecutionType appExecutionType, String... appIds) {
+        List<FlowApp> flowApps = new ArrayList<>();
+        for (String appId : appIds) {
+            flowApps.add(new FlowApp(appId));
+        }
+        List<FlowStage> stages = new ArrayList<>();
+        stages.add(new FlowStage("TRANSACTION_PROCESSING", appExecutionType, flowApps));
+        return new FlowConfig(name, "sale", 1, 2, null, null, stages, false, false);
+    }
+}